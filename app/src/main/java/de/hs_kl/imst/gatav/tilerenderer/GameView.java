@@ -3,8 +3,9 @@ package de.hs_kl.imst.gatav.tilerenderer;
 import android.content.Context;
 import android.graphics.Canvas;
 import android.graphics.Color;
-import android.graphics.Paint;
-import android.graphics.Rect;
+import android.net.LocalServerSocket;
+import android.os.Build;
+import android.os.SystemClock;
 import android.sax.StartElementListener;
 import android.support.v4.view.GestureDetectorCompat;
 import android.util.Log;
@@ -14,26 +15,58 @@ import android.view.MotionEvent;
 import android.view.SurfaceHolder;
 import android.view.SurfaceView;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import de.hs_kl.imst.gatav.tilerenderer.analytics.GameEventRecorder;
+import de.hs_kl.imst.gatav.tilerenderer.analytics.Heatmap;
+import de.hs_kl.imst.gatav.tilerenderer.analytics.HeatmapStore;
 import de.hs_kl.imst.gatav.tilerenderer.drawable.GameContent;
+import de.hs_kl.imst.gatav.tilerenderer.drawable.RenderSnapshot;
+import de.hs_kl.imst.gatav.tilerenderer.drawable.SpriteCache;
+import de.hs_kl.imst.gatav.tilerenderer.drawable.TextureAtlas;
 import de.hs_kl.imst.gatav.tilerenderer.drawable.TileGraphics;
+import de.hs_kl.imst.gatav.tilerenderer.score.HighScoreStore;
+import de.hs_kl.imst.gatav.tilerenderer.spectate.LocalSocketTransport;
+import de.hs_kl.imst.gatav.tilerenderer.spectate.SpectatorClient;
+import de.hs_kl.imst.gatav.tilerenderer.spectate.StateStreamWriter;
+import de.hs_kl.imst.gatav.tilerenderer.spectate.StateTransport;
 import de.hs_kl.imst.gatav.tilerenderer.util.Direction;
+import de.hs_kl.imst.gatav.tilerenderer.util.LatencyStats;
+import de.hs_kl.imst.gatav.tilerenderer.util.LevelData;
 import de.hs_kl.imst.gatav.tilerenderer.util.LevelHelper;
+import de.hs_kl.imst.gatav.tilerenderer.util.RenderScheduler;
+import de.hs_kl.imst.gatav.tilerenderer.util.ResolutionScaler;
+import de.hs_kl.imst.gatav.tilerenderer.util.ResourceManager;
+import de.hs_kl.imst.gatav.tilerenderer.util.SwipeRecognizer;
+import de.hs_kl.imst.gatav.tilerenderer.util.TripleBuffer;
 
 
 /**
  * {@link SurfaceView} welches sich um die Darstellung des Spiels und Interaktion mit diesem kümmert.
- * Erzeugt eine Gameloop ({@link GameView#gameThread}), welcher die Aktualisierung von Spielzustand
- * und -darstellung regelt.
+ * Erzeugt eine Gameloop ({@link GameView#gameThread}), welche den Spielzustand aktualisiert und
+ * bei Änderungen einen {@link RenderSnapshot} in einem Dreifachpuffer veröffentlicht, sowie einen
+ * Render-Thread ({@link GameView#renderThread}), welcher jeweils den zuletzt veröffentlichten
+ * Snapshot zeichnet.
  */
 public class GameView extends SurfaceView implements SurfaceHolder.Callback, Runnable, GestureDetector.OnGestureListener {
+    private static final String TAG = "GameView";
 
     private SurfaceHolder surfaceHolder;
 
     private Thread gameThread;
-    private boolean runningRenderLoop = false;
-    public boolean gameOver=false;
+    private Thread renderThread;
+    private volatile boolean runningRenderLoop = false;
+    public volatile boolean gameOver=false;
 
-    private String levelName;
+    private volatile String levelName;
+
+    /**
+     * Sagt das nächste Level voraus und lädt es während des Spiels im Hintergrund
+     */
+    private final LevelSequencer levelSequencer;
 
     private Thread timeThread;
     private volatile boolean runningTimeThread=false;    // access to elementary data types (not double or long) are atomic and should be volatile to synchronize content
@@ -44,19 +77,97 @@ public class GameView extends SurfaceView implements SurfaceHolder.Callback, Run
 
     private double maxCollectedTargets = 30;
 
-    private int gameMode=0; // 0 game not startet, 1 game started by first fling gesture, 2 game over
+    private boolean fogOfWar = false;
+    private boolean wreckingBall = false;
+
+    private volatile int gameMode=0; // 0 game not startet, 1 game started by first fling gesture, 2 game over
 
     private float gameWidth = -1;
     private float gameHeight = -1;
 
     private GestureDetectorCompat gestureDetector;
 
-    private GameContent gameContent;
+    /**
+     * Wischrichtung aus den rohen Touch-Samples; ein gehaltener Wisch wird von der Gameloop
+     * wiederholt, solange der Weg frei ist
+     */
+    private final SwipeRecognizer swipeRecognizer;
+    private static final float SWIPE_MIN_DISTANCE_DP = 16f;
+    private static final float SWIPE_MIN_VELOCITY_DP = 150f;   // dp pro Sekunde
 
-    private Paint scoreAndTimePaint = new Paint();
-    {   scoreAndTimePaint.setColor(Color.WHITE);
-        scoreAndTimePaint.setTextSize(20);
-    }
+    /**
+     * Zeitpunkt (uptimeMillis) des Touch-Samples, das den letzten noch nicht dargestellten Zug
+     * ausgelöst hat, 0 falls keiner aussteht; die Gameloop misst daraus die Eingabelatenz
+     */
+    private final AtomicLong pendingMoveTime = new AtomicLong();
+    private final LatencyStats inputLatency = new LatencyStats();
+    private static final int LATENCY_LOG_INTERVAL = 20;     // Züge pro Logausgabe
+
+    /**
+     * Gameloop zeichnet nur bei Änderungen und schläft ansonsten bis zur nächsten Anforderung
+     */
+    private final RenderScheduler renderScheduler = new RenderScheduler();
+    private static final long HUD_INTERVAL_MS = 10;     // Auflösung der Zeitanzeige
+    private static final float MAX_FRAME_SECONDS = 0.1f;
+
+    private volatile GameContent gameContent;
+
+    /**
+     * Übergabe der Bildzustände von der Gameloop an den Render-Thread. Die Gameloop ist höchstens
+     * ein Bild voraus: vor dem nächsten Snapshot wartet sie, bis der letzte abgeholt wurde.
+     */
+    private final TripleBuffer<RenderSnapshot> snapshots =
+            new TripleBuffer<>(new RenderSnapshot(), new RenderSnapshot(), new RenderSnapshot());
+    private final RenderScheduler frameScheduler = new RenderScheduler();       // neuer Snapshot liegt vor
+    private final RenderScheduler frameTakenScheduler = new RenderScheduler();  // Snapshot wurde abgeholt
+    private static final long MAX_FRAME_WAIT_MS = 50;
+
+    /**
+     * Zuschauer-Stream: ein neu verbundener Zuschauer wird vom Game Thread übernommen
+     * ({@link #attachSpectator()}), damit Snapshot und folgende Deltas zusammenpassen
+     */
+    private LocalServerSocket spectatorServer;
+    private volatile StateStreamWriter pendingSpectator;
+    private StateStreamWriter spectatorStream;
+
+    /**
+     * Ist ein Client gesetzt, zeigt diese View nur ein fremdes Spiel an
+     */
+    private SpectatorClient spectatorClient;
+
+    /**
+     * Ereignisprotokoll zur Auswertung des Spielverhaltens (nicht im Zuschauermodus)
+     */
+    private final GameEventRecorder eventRecorder;
+    // Sitzungsbeginn, vom Game Thread aufgezeichnet
+    private final AtomicReference<GameContent> pendingSession = new AtomicReference<>();
+    private static final int EVENT_BUFFER_RECORDS = 4096;
+
+    /**
+     * Zähler pro Kachel des laufenden Spiels (nicht im Zuschauermodus); wird bei Spielende an
+     * den {@link HeatmapStore} übergeben
+     */
+    private Heatmap heatmap;
+    private final HeatmapStore heatmapStore;
+
+    private final HudRenderer hud = new HudRenderer();
+
+    /**
+     * Dynamische Auflösung: überschreitet das Zeichnen das Budget, wird das Spielfeld kleiner
+     * gezeichnet und hochskaliert; die Anzeige bleibt in voller Auflösung. Nur Render-Thread.
+     */
+    private final ResolutionScaler resolutionScaler =
+            new ResolutionScaler(FRAME_BUDGET_MS, ResolutionScaler.DEFAULT_LEVELS);
+    private final ScaledRenderTarget scaledTarget = new ScaledRenderTarget();
+    private static final float FRAME_BUDGET_MS = 12f;  // Rest bis 16,7 ms für Übertragung und System
+    private volatile boolean adaptiveResolution = true;
+
+    /**
+     * Langes Drücken spult das laufende Spiel zurück; die Spielzeit läuft dabei weiter
+     */
+    private volatile boolean rewindRequested = false;
+    private static final float REWIND_SECONDS = 3f;
+    private static final int BACKGROUND_COLOR = Color.parseColor("#555555");
 
     /**
      * Konstruktor, initialisiert surfaceHolder und setzt damit den Lifecycle des SurfaceViews in Gang
@@ -70,54 +181,60 @@ public class GameView extends SurfaceView implements SurfaceHolder.Callback, Run
         surfaceHolder.addCallback(this);
 
         gestureDetector = new GestureDetectorCompat(context, this);
-
-        scoreAndTimePaint.setTextSize(20f * context.getResources().getDisplayMetrics().density);
+        float density = context.getResources().getDisplayMetrics().density;
+        swipeRecognizer = new SwipeRecognizer(SWIPE_MIN_DISTANCE_DP * density, SWIPE_MIN_VELOCITY_DP * density);
+
+        // skalierte Sprite Sheets über App-Starts hinweg wiederverwenden
+        if(!TextureAtlas.hasDiskCache())
+            TextureAtlas.setDiskCache(SpriteCache.forContext(context));
+        // große Level werden in Chunks ausgelagert und nur um den Spieler geladen
+        if(!GameContent.hasWorldDirectory())
+            GameContent.setWorldDirectory(new File(context.getCacheDir(), "world"));
+        ResourceManager.get().attach(context);
+        ResourceManager.get().register(scaledTarget, ResourceManager.PRIORITY_SURFACE);
+        // höchstens 1/8 des Heaps für Grafiken, bevor Sheets des nächsten Levels vorab entstehen
+        levelSequencer = new LevelSequencer(context.getAssets(), Runtime.getRuntime().maxMemory() / 8);
+
+        hud.setTextSize(20f * context.getResources().getDisplayMetrics().density);
+
+        eventRecorder = new GameEventRecorder(new File(new File(context.getFilesDir(), "analytics"), "events.bin"),
+                EVENT_BUFFER_RECORDS);
+        eventRecorder.start();
+        heatmapStore = new HeatmapStore(new File(new File(context.getFilesDir(), "analytics"), "heatmaps"));
     }
 
     /**
-     * Aktualisiert die grafische Darstellung; wird von Gameloop aufgerufen
+     * Aktualisiert die grafische Darstellung; wird vom Render-Thread aufgerufen
      * @param canvas Zeichenfläche
+     * @param snapshot darzustellender Zustand
      */
-    void updateGraphics(Canvas canvas) {
+    void updateGraphics(Canvas canvas, RenderSnapshot snapshot) {
+        long start = System.nanoTime();
+        if(resolutionScaler.isEnabled() != adaptiveResolution)
+            resolutionScaler.setEnabled(adaptiveResolution);
+        // Hintergrund und Spielfeld ggf. in reduzierter Auflösung
+        Canvas board = scaledTarget.begin(canvas, resolutionScaler.getScale());
+
         // Layer 0 (clear background)
-        canvas.drawColor(Color.parseColor("#555555"));
+        board.drawColor(BACKGROUND_COLOR);
 
         // Layer 1 (Game content)
-        if(gameContent == null) return;
-        canvas.save();
-        canvas.translate((canvas.getWidth() - gameContent.getGameWidth()) / 2,
-                (canvas.getHeight() - gameContent.getGameHeight()) / 2);
-        gameContent.draw(canvas);
-        canvas.restore();
-
-        // Layer 2 (Collected Targets, Score and Elapsed Time)
-        String collectedText = String.format("%d gesammelt", gameContent.getCollectedTargets());
-        String scoreText = String.format("Punkte: %d", gameContent.getCollectedScore());
-        String timeText = "Zeit: " + String.format("%.2f", getElapsedTime()) + " Sekunden";
-        String timeTextFake = "Zeit: " + String.format("%.2f", 200.0) + " Sekunden";
-        Rect collectedTextBounds = new Rect();
-        scoreAndTimePaint.getTextBounds(collectedText, 0, collectedText.length(), collectedTextBounds);
-        Rect scoreTextBounds = new Rect();
-        scoreAndTimePaint.getTextBounds(scoreText, 0, scoreText.length(), scoreTextBounds);
-        Rect timeTextBounds = new Rect();
-        scoreAndTimePaint.getTextBounds(timeText, 0, timeText.length(), timeTextBounds);
-        float textWidth = Math.max(scoreAndTimePaint.measureText(timeText), scoreAndTimePaint.measureText(timeTextFake))+10;
-        textWidth = Math.max(scoreAndTimePaint.measureText(collectedText), textWidth);
-        textWidth = Math.max(scoreAndTimePaint.measureText(scoreText), textWidth);
-        canvas.save();
-        canvas.translate(gameWidth - textWidth, scoreTextBounds.height());
-        canvas.drawText(collectedText, 0, 0, scoreAndTimePaint);
-        canvas.translate(0, (int) (timeTextBounds.height() * 1.5));
-        canvas.drawText(scoreText, 0, 0, scoreAndTimePaint);
-        if(gameMode==1) {   // game running
-            canvas.translate(0, (int)(timeTextBounds.height()*1.5));
-            canvas.drawText(timeText, 0, 0, scoreAndTimePaint);
-        }
-        if(gameMode==2) {   // game running
-            canvas.translate(0, (int)(timeTextBounds.height()*1.5));
-            canvas.drawText("Game Over!", 0, 0, scoreAndTimePaint);
+        if(snapshot.hasContent()) {
+            board.save();
+            board.translate(snapshot.getOffsetX(canvas.getWidth()), snapshot.getOffsetY(canvas.getHeight()));
+            snapshot.draw(board);
+            board.restore();
         }
-        canvas.restore();
+        scaledTarget.end(canvas, board);
+
+        // Layer 2 (Collected Targets, Score and Elapsed Time) in voller Auflösung
+        if(snapshot.hasContent())
+            hud.draw(canvas, gameWidth, snapshot.getCollectedTargets(), snapshot.getCollectedScore(),
+                    snapshot.getTimeCentis(), snapshot.getGameMode());
+
+        if(resolutionScaler.record(System.nanoTime() - start))
+            Log.d(TAG, "Auflösung " + Math.round(resolutionScaler.getScale() * 100) + " % (Ø "
+                    + resolutionScaler.getAverageMillis() + " ms)");
     }
 
     /**
@@ -135,9 +252,19 @@ public class GameView extends SurfaceView implements SurfaceHolder.Callback, Run
      */
     @Override
     public void surfaceCreated(SurfaceHolder holder) {
-        // Gameloop anwerfen
-        gameThread = new Thread(this);
+        // Gameloop und Render-Thread anwerfen; Flag vor dem Start setzen, damit ein schnelles
+        // surfaceDestroyed nicht überschrieben wird
+        runningRenderLoop = true;
+        ResourceManager.get().surfaceCreated();
+        gameThread = new Thread(this, "GameLoop");
+        renderThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                renderLoop();
+            }
+        }, "Render");
         gameThread.start();
+        renderThread.start();
     }
 
     /**
@@ -156,15 +283,73 @@ public class GameView extends SurfaceView implements SurfaceHolder.Callback, Run
 
         // Ermitteln der Größe der einzelnen Elemente
         Pair<Integer, Integer> maxLevelSize = LevelHelper.getLargestLevelDimensions(getContext());
-        // minimale Breite hält alle quadratischen Kacheln sichbar im Spielfeld
-        TileGraphics.setTileSize(Math.min(gameWidth / maxLevelSize.first,
-                gameHeight / maxLevelSize.second));
+        // minimale Breite hält alle quadratischen Kacheln sichbar im Spielfeld; größere Level
+        // zeigen mit der Kamera einen Ausschnitt von höchstens VIEW_TILES Kacheln
+        TileGraphics.setTileSize(Math.min(gameWidth / Math.min(maxLevelSize.first, GameContent.VIEW_TILES),
+                gameHeight / Math.min(maxLevelSize.second, GameContent.VIEW_TILES)));
 
-        gameContent = new GameContent(getContext(), levelName);
+        startLevel(levelSequencer.take(levelName));
+    }
+
+    /**
+     * Spielfeld für {@link #levelName} erzeugen und an die Gameloop übergeben; anschließend wird
+     * der Nachfolger im Hintergrund vorab geladen
+     * @param level vorab eingelesenes Level oder null, um die Leveldatei jetzt zu lesen
+     */
+    private void startLevel(LevelData level) {
+        finishHeatmap();
+        // vollständig einrichten, bevor die Gameloop das neue Spielfeld sieht
+        GameContent content = level != null ? new GameContent(getContext(), levelName, level)
+                : new GameContent(getContext(), levelName);
+        content.setFogOfWar(fogOfWar);
+        content.setWreckingBall(wreckingBall);
+        if(spectatorClient != null)
+            content.setMirrored(true);
+        else {
+            // der Rekorder hat nur einen Schreiber: Beginn im Game Thread aufzeichnen (recordSession)
+            pendingSession.set(content);
+            Heatmap map = new Heatmap(content);
+            content.addGameEventListener(map);
+            synchronized(this) {
+                heatmap = map;
+            }
+        }
+        GameContent previous = gameContent;
+        gameContent = content;
+        if(previous != null)
+            previous.close();
+        // neues Spielfeld => verbundener Zuschauer braucht einen neuen Snapshot
+        if(spectatorStream != null && pendingSpectator == null)
+            pendingSpectator = spectatorStream;
 
         // Reset der Zustände bei "onResume"
         gameOver=false;
         gameMode=0;
+        renderScheduler.requestRender();
+
+        if(spectatorClient == null)
+            levelSequencer.prefetchAfter(levelName);
+    }
+
+    /**
+     * Nach Game Over direkt das nächste Level starten; nur aus dem UI Thread aufrufen
+     * @return true, falls es ein nächstes Level gibt
+     */
+    private boolean startNextLevel() {
+        String next = levelSequencer.getNext(levelName);
+        if(next == null) return false;
+        runningTimeThread = false;
+        try {
+            if(timeThread != null)
+                timeThread.join();
+        } catch(InterruptedException e) {
+            e.printStackTrace();
+        }
+        long start = SystemClock.uptimeMillis();
+        levelName = next;
+        startLevel(levelSequencer.take(next));
+        Log.d(TAG, "Levelwechsel zu " + next + ": " + (SystemClock.uptimeMillis() - start) + " ms");
+        return true;
     }
 
     /**
@@ -178,53 +363,303 @@ public class GameView extends SurfaceView implements SurfaceHolder.Callback, Run
         // Gameloop and Time Thread beenden
         runningRenderLoop = false;
         runningTimeThread = false;
+        renderScheduler.requestRender();    // schlafende Gameloop und Render-Thread aufwecken
+        frameScheduler.requestRender();
+        frameTakenScheduler.requestRender();
         gameMode=0;
         gameOver=false;
         gameContent.resetPlayerDirection();
 
         try {
             gameThread.join();
+            renderThread.join();
             if(timeThread != null)  // überhaupt gestartet?
                 timeThread.join();
         }catch(InterruptedException e) {
             e.printStackTrace();
         }
+        // Sheets und Nebel werden beim nächsten Zeichnen neu erzeugt
+        ResourceManager.get().surfaceDestroyed();
+        // beim nächsten surfaceChanged entsteht ein neues Spielfeld
+        gameContent.close();
+        // abgebrochenes Spiel zählt ebenfalls; die Gameloop ist beendet
+        finishHeatmap();
+    }
+
+    /**
+     * Heatmap des laufenden Spiels zur gesammelten des Levels addieren lassen. Aufruf erst, wenn
+     * die Gameloop das Spielfeld nicht mehr aktualisiert (Spielende, beendete Gameloop bzw.
+     * ersetztes Spielfeld); der Listener bleibt registriert, da er nur vom Game Thread entfernt
+     * werden dürfte
+     */
+    synchronized private void finishHeatmap() {
+        if(heatmap == null) return;
+        heatmapStore.add(levelName, heatmap);
+        heatmap = null;
     }
 
     /**
-     * Gameloop, ruft {@link #updateContent(float)} und {@link #updateGraphics(Canvas)} auf
-     * und ermittelt die seit dem letzten Schleifendurchlauf vergangene Zeit (wird zum zeitlich
-     * korrekten Aktualisieren des Spielzustandes benötigt)
+     * Gameloop, ruft {@link #updateContent(float)} auf, ermittelt die seit dem letzten
+     * Schleifendurchlauf vergangene Zeit (wird zum zeitlich korrekten Aktualisieren des
+     * Spielzustandes benötigt) und übergibt bei Änderungen einen {@link RenderSnapshot} an den
+     * Render-Thread
      */
     @Override
     public void run() {
-        runningRenderLoop = true;
-
         long lastTime = System.currentTimeMillis();
+        boolean publishRequested = true;
+        int publishedTimeCentis = -1;
 
         while(runningRenderLoop) {
             long currentTime = System.currentTimeMillis();
             long delta = currentTime - lastTime;
-            float fracsec = (float)delta / 1000f;
+            // nach dem Schlafen nicht die gesamte Wartezeit auf einmal animieren
+            float fracsec = Math.min((float)delta / 1000f, MAX_FRAME_SECONDS);
+            float idleSeconds = (float)delta / 1000f - fracsec;
             lastTime = currentTime;
 
-            Canvas canvas = surfaceHolder.lockCanvas();
-            if(canvas == null) continue;
-
-            if(!gameOver)
+            boolean publish = publishRequested | renderScheduler.consume();
+            publishRequested = false;
+
+            GameContent content = gameContent;
+            long moveTime = pendingMoveTime.get();
+            attachSpectator();
+            if(spectatorClient != null && content != null)
+                spectatorClient.applyPending(content);
+            recordSession(content);
+
+            if(rewindRequested) {
+                rewindRequested = false;
+                if(!gameOver && content != null && !content.isMirrored()) {
+                    content.rewind(REWIND_SECONDS);
+                    // Zuschauer erhalten den zurückgespulten Zustand als neuen Snapshot
+                    if(spectatorStream != null && pendingSpectator == null)
+                        pendingSpectator = spectatorStream;
+                    publish = true;
+                }
+            }
+            if(!gameOver) {
+                // die verschlafene Zeit zählt für geplante Ereignisse (z.B. dynamisches Ziel) mit
+                if(idleSeconds > 0 && content != null && !content.isAnimating())
+                    content.advanceIdleTime(idleSeconds);
                 updateContent(fracsec); // kompletten Spielzustand aktualisieren
+                repeatHeldSwipe(content);
+            }
 
-            if(gameContent!=null && gameContent.getCollectedTargets() >= maxCollectedTargets) {
+            // content == gameContent: nicht das Spielfeld eines gerade gewechselten Levels beenden
+            if(!gameOver && content!=null && content == gameContent
+                    && content.getCollectedTargets() >= maxCollectedTargets) {
                 gameMode = 2;
                 gameOver = true; // Game over
+                hud.setNextLevelHint(spectatorClient == null && levelSequencer.getNext(levelName) != null);
+                if(spectatorClient == null) {
+                    int timeCentis = (int)Math.round(getElapsedTime() * 100);
+                    eventRecorder.recordGameOver(content.getCollectedTargets(), timeCentis);
+                    HighScoreStore.get(getContext()).add(levelName, content.getCollectedScore(), timeCentis);
+                    finishHeatmap();
+                }
+                publish = true;
             }
 
-            updateGraphics(canvas); // Neu zeichnen
+            // Neues Bild nur, wenn sich etwas geändert hat: Animation, Spielzustand oder Zeitanzeige
+            if(content != null && (content.consumeChanged() | content.isAnimating()))
+                publish = true;
+            int timeCentis = gameMode == 1 ? (int)Math.round(getElapsedTime() * 100) : -1;
+            if(timeCentis != publishedTimeCentis)
+                publish = true;
+
+            if(publish) {
+                // nicht weiter als ein Bild vorauslaufen (Takt gibt der Render-Thread bzw. VSync vor)
+                while(runningRenderLoop && snapshots.isPending())
+                    frameTakenScheduler.await(MAX_FRAME_WAIT_MS);
+                RenderSnapshot snapshot = snapshots.getBack();
+                if(content != null)
+                    content.capture(snapshot, (int)Math.round(getElapsedTime() * 100), gameMode);
+                snapshots.publish();
+                frameScheduler.requestRender();
+                publishedTimeCentis = timeCentis;
+                if(moveTime != 0 && pendingMoveTime.compareAndSet(moveTime, 0))
+                    recordInputLatency(SystemClock.uptimeMillis() - moveTime);
+                continue;
+            }
+
+            // Nichts zu zeichnen => schlafen bis zur nächsten Änderung der Zeitanzeige, zum nächsten
+            // geplanten Ereignis (z.B. dynamisches Ziel) bzw. nach Spielende bis zur nächsten Anforderung
+            long timeout = 0;
+            if(gameMode != 2) {
+                long nextEvent = content == null ? -1 : content.getMillisUntilNextEvent();
+                if(nextEvent >= 0)
+                    timeout = Math.max(1, nextEvent);
+                if(gameMode == 1 && (timeout == 0 || timeout > HUD_INTERVAL_MS))
+                    timeout = HUD_INTERVAL_MS;
+            }
+            publishRequested = renderScheduler.await(timeout);
+        }
+    }
+
+    /**
+     * Beginn einer von {@link #startLevel(LevelData)} vorgemerkten Sitzung aufzeichnen und den
+     * Rekorder für deren Ereignisse registrieren; wird vom Game Thread aufgerufen
+     * @param content aktuelles Spielfeld
+     */
+    private void recordSession(GameContent content) {
+        // nur das gerade laufende Spielfeld; ein inzwischen neu vorgemerktes bleibt erhalten
+        if(content == null || !pendingSession.compareAndSet(content, null)) return;
+        eventRecorder.beginSession(content.getLevelName());
+        content.addGameEventListener(eventRecorder);
+    }
+
+    /**
+     * Gehaltenen Wisch fortsetzen, sobald der letzte Zug beendet ist; wird vom Game Thread aufgerufen
+     * @param content Spielinhalt
+     */
+    private void repeatHeldSwipe(GameContent content) {
+        Direction held = swipeRecognizer.getHeldDirection();
+        if(held == null || content == null || content.isMirrored()) return;
+        if(content.isPlayerDirectionIDLE() && content.canPlayerMove(held))
+            content.setPlayerDirection(held);
+    }
+
+    /**
+     * Latenz vom Touch-Sample bis zur Übergabe des ersten Bildes mit dem Zug; wird vom Game
+     * Thread aufgerufen
+     * @param millis Latenz in Millisekunden
+     */
+    private void recordInputLatency(long millis) {
+        inputLatency.record(millis);
+        if(inputLatency.getCount() >= LATENCY_LOG_INTERVAL) {
+            Log.d(TAG, "Eingabelatenz: " + inputLatency);
+            inputLatency.reset();
+        }
+    }
+
+    /**
+     * Render-Thread: zeichnet den jeweils neuesten Snapshot, während die Gameloop bereits den
+     * nächsten Tick berechnet
+     */
+    private void renderLoop() {
+        boolean retry = false;
+        while(runningRenderLoop) {
+            frameScheduler.await(retry ? HUD_INTERVAL_MS : 0);
+            if(!runningRenderLoop) break;
 
+            Canvas canvas = surfaceHolder.lockCanvas();
+            if(canvas == null) {    // Surface (noch) nicht verfügbar, später erneut versuchen
+                retry = true;
+                continue;
+            }
+            retry = false;
+            RenderSnapshot snapshot = snapshots.acquire();
+            frameTakenScheduler.requestRender();
+            updateGraphics(canvas, snapshot); // Neu zeichnen
             surfaceHolder.unlockCanvasAndPost(canvas);
         }
     }
 
+    /**
+     * Übernimmt einen neu verbundenen Zuschauer: Snapshot senden und für Deltas registrieren.
+     * Wird vom Game Thread aufgerufen.
+     */
+    private void attachSpectator() {
+        StateStreamWriter writer = pendingSpectator;
+        if(writer == null || gameContent == null) return;
+        pendingSpectator = null;
+        if(spectatorStream != null && spectatorStream != writer)
+            spectatorStream.close();
+        spectatorStream = writer;
+        gameContent.removeGameEventListener(writer);
+        writer.writeSnapshot(gameContent);
+        gameContent.addGameEventListener(writer);
+    }
+
+    /**
+     * Spiel für Zuschauer veröffentlichen: wartet im Hintergrund auf Verbindungen an einem
+     * lokalen Socket. Ein neuer Zuschauer ersetzt den bisherigen.
+     * @param socketName Name des Sockets im abstrakten Namensraum
+     */
+    public void publishToSpectators(String socketName) {
+        try {
+            spectatorServer = new LocalServerSocket(socketName);
+        } catch(IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        final LocalServerSocket server = spectatorServer;
+        Thread acceptThread = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    while(true) {
+                        StateTransport transport = LocalSocketTransport.accept(server);
+                        pendingSpectator = new StateStreamWriter(transport.getOutputStream());
+                        renderScheduler.requestRender();
+                    }
+                } catch(IOException e) {
+                    // Server geschlossen
+                }
+            }});
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    /**
+     * Statt selbst zu spielen, ein fremdes Spiel anzeigen
+     * @param transport Verbindung zum spielenden Gerät bzw. Prozess
+     */
+    public void spectate(StateTransport transport) {
+        spectatorClient = new SpectatorClient(transport);
+        spectatorClient.setRenderScheduler(renderScheduler);
+        spectatorClient.start();
+    }
+
+    /**
+     * Nebel des Krieges für alle folgenden Spielfelder; vor dem Anzeigen der View aufrufen
+     * @param enabled true: nur Kacheln in Sichtlinie des Spielers sind sichtbar
+     */
+    public void setFogOfWar(boolean enabled) {
+        fogOfWar = enabled;
+    }
+
+    /**
+     * Abrissbirne am Spieler für alle folgenden Spielfelder; vor dem Anzeigen der View aufrufen
+     * @param enabled true: Physik-Modus mit schwingender Kugel
+     */
+    public void setWreckingBall(boolean enabled) {
+        wreckingBall = enabled;
+    }
+
+    /**
+     * Dynamische Auflösung ein- oder ausschalten
+     * @param enabled true: Spielfeld bei Überschreiten des Zeitbudgets kleiner zeichnen
+     */
+    public void setAdaptiveResolution(boolean enabled) {
+        adaptiveResolution = enabled;
+    }
+
+    /**
+     * Zuschauer-Verbindungen beenden; wird beim Beenden der Activity aufgerufen
+     */
+    public void closeSpectatorStreams() {
+        if(spectatorServer != null) {
+            try {
+                spectatorServer.close();
+            } catch(IOException e) {
+                e.printStackTrace();
+            }
+            spectatorServer = null;
+        }
+        if(spectatorStream != null)
+            spectatorStream.close();
+        if(spectatorClient != null)
+            spectatorClient.stop();
+    }
+
+    /**
+     * Ereignisprotokoll abschließen; wird beim Beenden der Activity aufgerufen
+     */
+    public void closeEventRecorder() {
+        eventRecorder.close();
+    }
+
     public  void startTimeThread() {
         if(runningTimeThread) return;
         runningTimeThread = true;
@@ -246,7 +681,8 @@ public class GameView extends SurfaceView implements SurfaceHolder.Callback, Run
 
 
     /**
-     * Um den GestureDetector verwenden zu können, müssen die Touch-Events an diesen weitergeleitet werden
+     * Touch-Events werden an den {@link SwipeRecognizer} (inkl. der zwischen zwei Events
+     * gesammelten historischen Samples) und an den GestureDetector weitergeleitet.
      * Hier wäre evtl. eine geeignete Stelle, um Eingaben vorrübergehend
      * (bspw. während Animationen) zu deaktivieren, indem eben dieses Weiterleiten deaktiviert wird
      * @param event Aktuelles {@link MotionEvent}
@@ -254,55 +690,57 @@ public class GameView extends SurfaceView implements SurfaceHolder.Callback, Run
      */
     @Override
     public boolean onTouchEvent(MotionEvent event) {
-
-        if(gestureDetector.onTouchEvent(event))
-            return true;
-        else
-            return super.onTouchEvent(event);
+        gestureDetector.onTouchEvent(event);
+
+        switch(event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                // Move-Events nicht bis zum nächsten VSync sammeln lassen
+                if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP)
+                    requestUnbufferedDispatch(event);
+                swipeRecognizer.down(event.getX(), event.getY(), event.getEventTime());
+                return true;
+            case MotionEvent.ACTION_MOVE:
+                for(int h = 0; h < event.getHistorySize(); h++)
+                    startMove(swipeRecognizer.move(event.getHistoricalX(h), event.getHistoricalY(h),
+                            event.getHistoricalEventTime(h)));
+                startMove(swipeRecognizer.move(event.getX(), event.getY(), event.getEventTime()));
+                return true;
+            case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_CANCEL:
+                swipeRecognizer.up();
+                return true;
+        }
+        return super.onTouchEvent(event);
     }
 
     /**
-     * Die Fling-Geste wird genutzt, um die Spielfigur durch den Level zu bewegen.
+     * Eine erkannte Wischrichtung wird genutzt, um die Spielfigur durch den Level zu bewegen.
      * Der eigentliche Move wird dem Gameloop synchron signalisiert und von diesem ausgeführt.
-     * @param e1 {@link MotionEvent} welches die Geste gestartet hat (Ursprung)
-     * @param e2 {@link MotionEvent} am Ende der Geste (aktuelle Position)
-     * @param velocityX Geschwindigkeit der Geste auf der X-Achse (Pixel / Sekunde)
-     * @param velocityY Geschwindigkeit der Geste auf der Y-Achse (Pixel / Sekunde)
-     * @return true wenn das Event verarbeitet wurde, andernfalls false
+     * @param direction erkannte Richtung oder null
      */
-    @Override
-    public boolean onFling(MotionEvent e1, MotionEvent e2, float velocityX, float velocityY) {
-
-        // Wird der Player aktuell noch animiert, wird der Fling wegkonsumiert
-        // (bei uns nur konzeptionell notwendig, da die laufende Animation in GameContent
-        // neue Animationen eh abblockt)
-        if(!gameContent.isPlayerDirectionIDLE())
-            return true;
-
-        float deg = (float) Math.toDegrees(
-                Math.acos(velocityX/Math.sqrt(velocityX * velocityX + velocityY * velocityY))
-        );
-        if(velocityY > 0)
-            deg = 180f + (180f - deg);
-
-        if(deg > 315 || deg < 45)
-            gameContent.setPlayerDirection(Direction.RIGHT);
-        else if(deg >= 45 && deg <= 135)
-            gameContent.setPlayerDirection(Direction.UP);
-        else if(deg > 135 && deg < 225)
-            gameContent.setPlayerDirection(Direction.LEFT);
-        else if(deg >= 225 && deg < 315)
-            gameContent.setPlayerDirection(Direction.DOWN);
-
-        // erster Fling startet den Zeitzähler
+    private void startMove(Direction direction) {
+        GameContent content = gameContent;
+        if(direction == null || content == null)
+            return;
+        // Wird der Player aktuell noch animiert, wird der Wisch wegkonsumiert; ein gehaltener
+        // Wisch wird nach dem laufenden Zug von der Gameloop fortgesetzt
+        if(!content.isPlayerDirectionIDLE())
+            return;
+        // Zuschauer steuern nicht selbst
+        if(content.isMirrored())
+            return;
+
+        content.setPlayerDirection(direction);
+        pendingMoveTime.set(swipeRecognizer.getCommitTime());
+
+        // erster Zug startet den Zeitzähler
         gameMode=1;
         startTimeThread();
-
-        return true;
+        renderScheduler.requestRender();
     }
 
     /**
-     * Wird hier nicht true zurück gegeben, erfolgen keine onFling events
+     * Wird hier nicht true zurück gegeben, erkennt der GestureDetector keine weiteren Gesten
      * @param e {@link MotionEvent} aktuelles Event
      * @return true.
      */
@@ -311,10 +749,31 @@ public class GameView extends SurfaceView implements SurfaceHolder.Callback, Run
         return true;
     }
 
+    /**
+     * Langes Drücken während des Spiels spult einige Sekunden zurück; ausgeführt vom Game Thread
+     * @param e {@link MotionEvent} aktuelles Event
+     */
+    @Override
+    public void onLongPress(MotionEvent e) {
+        if(gameMode != 1 || spectatorClient != null) return;
+        rewindRequested = true;
+        renderScheduler.requestRender();
+    }
+
+    /**
+     * Tippen nach Game Over startet das nächste Level
+     * @param e {@link MotionEvent} aktuelles Event
+     * @return true, falls das nächste Level gestartet wurde
+     */
+    @Override
+    public boolean onSingleTapUp(MotionEvent e) {
+        if(gameMode != 2 || spectatorClient != null) return false;
+        return startNextLevel();
+    }
+
     // Nicht genutzte Gesten
     @Override public void onShowPress(MotionEvent e) {}
-    @Override public boolean onSingleTapUp(MotionEvent e) { return false; }
     @Override public boolean onScroll(MotionEvent e1, MotionEvent e2, float distanceX, float distanceY) { return false; }
-    @Override public void onLongPress(MotionEvent e) {}
+    @Override public boolean onFling(MotionEvent e1, MotionEvent e2, float velocityX, float velocityY) { return false; }
 
 }
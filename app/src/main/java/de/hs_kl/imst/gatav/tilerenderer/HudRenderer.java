@@ -0,0 +1,129 @@
+package de.hs_kl.imst.gatav.tilerenderer;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+
+/**
+ * Zeichnet die Anzeige von gesammelten Zielen, Punkten und Zeit.
+ *
+ * Die Texte werden in wiederverwendete char-Puffer geschrieben statt per String.format erzeugt,
+ * damit das Zeichnen eines Frames keine Objekte anlegt.
+ */
+class HudRenderer {
+    private static final char[] COLLECTED_SUFFIX = " gesammelt".toCharArray();
+    private static final char[] SCORE_PREFIX = "Punkte: ".toCharArray();
+    private static final char[] TIME_PREFIX = "Zeit: ".toCharArray();
+    private static final char[] TIME_SUFFIX = " Sekunden".toCharArray();
+    private static final String TIME_TEXT_FAKE = "Zeit: 200.00 Sekunden";    // Referenzbreite der Zeitanzeige
+    private static final String GAME_OVER_TEXT = "Game Over!";
+    private static final String NEXT_LEVEL_TEXT = "Tippen: nächstes Level";
+
+    private final Paint paint = new Paint();
+    {   paint.setColor(Color.WHITE);
+        paint.setTextSize(20);
+    }
+
+    private final char[] collectedText = new char[32];
+    private final char[] scoreText = new char[32];
+    private final char[] timeText = new char[48];
+    private final Rect collectedTextBounds = new Rect();
+    private final Rect scoreTextBounds = new Rect();
+    private final Rect timeTextBounds = new Rect();
+    private float timeTextFakeWidth = -1;
+    private volatile boolean nextLevelHint = false;
+
+    void setTextSize(float textSize) {
+        paint.setTextSize(textSize);
+        timeTextFakeWidth = -1;
+    }
+
+    /**
+     * @param nextLevelHint true: nach Game Over auf das nächste Level hinweisen
+     */
+    void setNextLevelHint(boolean nextLevelHint) {
+        this.nextLevelHint = nextLevelHint;
+    }
+
+    /**
+     * Anzeige rechtsbündig am oberen Rand zeichnen
+     * @param canvas Zeichenfläche
+     * @param width Breite der Zeichenfläche
+     * @param collected Anzahl gesammelter Ziele
+     * @param score Punkte
+     * @param timeCentis vergangene Zeit in Hundertstelsekunden
+     * @param gameMode 0 nicht gestartet, 1 läuft, 2 Game Over
+     */
+    void draw(Canvas canvas, float width, int collected, int score, int timeCentis, int gameMode) {
+        int collectedLength = appendInt(collectedText, 0, collected);
+        collectedLength = append(collectedText, collectedLength, COLLECTED_SUFFIX);
+        int scoreLength = append(scoreText, 0, SCORE_PREFIX);
+        scoreLength = appendInt(scoreText, scoreLength, score);
+        int timeLength = append(timeText, 0, TIME_PREFIX);
+        timeLength = appendCentis(timeText, timeLength, timeCentis);
+        timeLength = append(timeText, timeLength, TIME_SUFFIX);
+
+        paint.getTextBounds(collectedText, 0, collectedLength, collectedTextBounds);
+        paint.getTextBounds(scoreText, 0, scoreLength, scoreTextBounds);
+        paint.getTextBounds(timeText, 0, timeLength, timeTextBounds);
+        if(timeTextFakeWidth < 0)
+            timeTextFakeWidth = paint.measureText(TIME_TEXT_FAKE);
+        float textWidth = Math.max(paint.measureText(timeText, 0, timeLength), timeTextFakeWidth)+10;
+        textWidth = Math.max(paint.measureText(collectedText, 0, collectedLength), textWidth);
+        textWidth = Math.max(paint.measureText(scoreText, 0, scoreLength), textWidth);
+
+        canvas.save();
+        canvas.translate(width - textWidth, scoreTextBounds.height());
+        canvas.drawText(collectedText, 0, collectedLength, 0, 0, paint);
+        canvas.translate(0, (int) (timeTextBounds.height() * 1.5));
+        canvas.drawText(scoreText, 0, scoreLength, 0, 0, paint);
+        if(gameMode==1) {   // game running
+            canvas.translate(0, (int)(timeTextBounds.height()*1.5));
+            canvas.drawText(timeText, 0, timeLength, 0, 0, paint);
+        }
+        if(gameMode==2) {   // game over
+            canvas.translate(0, (int)(timeTextBounds.height()*1.5));
+            canvas.drawText(GAME_OVER_TEXT, 0, 0, paint);
+            if(nextLevelHint) {
+                canvas.translate(0, (int)(timeTextBounds.height()*1.5));
+                canvas.drawText(NEXT_LEVEL_TEXT, 0, 0, paint);
+            }
+        }
+        canvas.restore();
+    }
+
+    private static int append(char[] buf, int pos, char[] text) {
+        System.arraycopy(text, 0, buf, pos, text.length);
+        return pos + text.length;
+    }
+
+    /**
+     * Schreibt eine nicht negative Ganzzahl in Dezimaldarstellung
+     */
+    static int appendInt(char[] buf, int pos, int value) {
+        if(value < 0) {
+            buf[pos++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for(int v = value / 10; v > 0; v /= 10)
+            digits++;
+        for(int i = pos + digits - 1; i >= pos; i--) {
+            buf[i] = (char)('0' + value % 10);
+            value /= 10;
+        }
+        return pos + digits;
+    }
+
+    /**
+     * Schreibt Hundertstel als Dezimalzahl mit zwei Nachkommastellen (entspricht "%.2f")
+     */
+    static int appendCentis(char[] buf, int pos, int centis) {
+        pos = appendInt(buf, pos, centis / 100);
+        buf[pos++] = '.';
+        buf[pos++] = (char)('0' + (centis / 10) % 10);
+        buf[pos++] = (char)('0' + centis % 10);
+        return pos;
+    }
+}
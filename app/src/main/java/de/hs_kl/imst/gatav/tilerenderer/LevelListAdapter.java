@@ -0,0 +1,89 @@
+package de.hs_kl.imst.gatav.tilerenderer;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+import android.widget.ImageView;
+import android.widget.TextView;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import de.hs_kl.imst.gatav.tilerenderer.score.HighScore;
+import de.hs_kl.imst.gatav.tilerenderer.score.HighScoreStore;
+
+/**
+ * Zeilen der Levelauswahl: Vorschaubild, Name und bestes Ergebnis des Levels.
+ * Vorschaubilder werden erst beim Anzeigen einer Zeile über den {@link LevelThumbnailLoader} angefordert.
+ */
+public class LevelListAdapter extends BaseAdapter {
+    private final LayoutInflater inflater;
+    private final LevelThumbnailLoader thumbnailLoader;
+    private final HighScoreStore highScores;
+    private final StringBuilder bestText = new StringBuilder();
+    private List<String> levels = new ArrayList<>();
+
+    private static class ViewHolder {
+        ImageView thumbnail;
+        TextView name;
+        TextView best;
+    }
+
+    public LevelListAdapter(LayoutInflater inflater, LevelThumbnailLoader thumbnailLoader,
+                            HighScoreStore highScores) {
+        this.inflater = inflater;
+        this.thumbnailLoader = thumbnailLoader;
+        this.highScores = highScores;
+    }
+
+    /**
+     * @param levels Namen aller Level (ohne .txt)
+     */
+    public void setLevels(List<String> levels) {
+        this.levels = levels;
+        notifyDataSetChanged();
+    }
+
+    @Override
+    public int getCount() { return levels.size(); }
+
+    @Override
+    public String getItem(int position) { return levels.get(position); }
+
+    @Override
+    public long getItemId(int position) { return position; }
+
+    @Override
+    public View getView(int position, View convertView, ViewGroup parent) {
+        ViewHolder holder;
+        if(convertView == null) {
+            convertView = inflater.inflate(R.layout.level_list_item, parent, false);
+            holder = new ViewHolder();
+            holder.thumbnail = (ImageView) convertView.findViewById(R.id.level_thumbnail);
+            holder.name = (TextView) convertView.findViewById(R.id.level_name);
+            holder.best = (TextView) convertView.findViewById(R.id.level_best);
+            convertView.setTag(holder);
+        } else
+            holder = (ViewHolder) convertView.getTag();
+
+        String level = getItem(position);
+        holder.name.setText(level);
+        thumbnailLoader.load(level, holder.thumbnail);
+
+        // Bestenlisten werden im Hintergrund geladen; bis dahin bleibt die Zeile leer
+        HighScore best = highScores.peekBest(level);
+        if(best == null)
+            holder.best.setText("");
+        else {
+            bestText.setLength(0);
+            bestText.append(best.getScore()).append(" Punkte, ")
+                    .append(best.getTimeCentis() / 100).append('.');
+            int centis = best.getTimeCentis() % 100;
+            if(centis < 10) bestText.append('0');
+            bestText.append(centis).append(" s");
+            holder.best.setText(bestText);
+        }
+        return convertView;
+    }
+}
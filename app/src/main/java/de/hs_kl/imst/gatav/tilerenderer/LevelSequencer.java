@@ -0,0 +1,164 @@
+package de.hs_kl.imst.gatav.tilerenderer;
+
+import android.content.res.AssetManager;
+import android.os.Process;
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import de.hs_kl.imst.gatav.tilerenderer.drawable.TextureAtlas;
+import de.hs_kl.imst.gatav.tilerenderer.util.LevelData;
+import de.hs_kl.imst.gatav.tilerenderer.util.ResourceManager;
+
+/**
+ * Reihenfolge der Level (alphabetisch wie in der Levelauswahl) und vorausschauendes Laden des
+ * jeweils nächsten Levels, während das aktuelle gespielt wird.
+ *
+ * {@link #prefetchAfter(String)} liest im Hintergrund (ein Thread mit Hintergrundpriorität, der
+ * sich im Leerlauf beendet) die Leveldatei des Nachfolgers ein und erzeugt die Sprite Sheets seines
+ * Themes für die aktuelle Kachelgröße. Sheets werden nur erzeugt, solange der beim
+ * {@link ResourceManager} belegte Speicher samt neuem Sheet unter der Obergrenze bleibt und kein
+ * Speichermangel gemeldet ist; das eingelesene Level selbst ist klein und wird immer gehalten.
+ * Beim Levelwechsel liefert {@link #take(String)} das vorab gelesene Level, sodass nur noch die
+ * Kacheln erzeugt werden müssen.
+ */
+public class LevelSequencer {
+    private static final String TAG = "LevelSequencer";
+
+    private final AssetManager assetManager;
+    private final long memoryCap;
+    private final ThreadPoolExecutor executor;
+
+    private volatile String[] levels = null;    // sortiert, null bis zum ersten Auflisten
+
+    // vorab gelesenes Level
+    private String prefetchedName = null;
+    private LevelData prefetchedLevel = null;
+
+    /**
+     * @param assetManager Quelle der Level und Grafiken
+     * @param memoryCap Obergrenze des beim {@link ResourceManager} belegten Speichers in Bytes, bis
+     *                  zu der Sprite Sheets vorab erzeugt werden
+     */
+    public LevelSequencer(AssetManager assetManager, long memoryCap) {
+        this.assetManager = assetManager;
+        this.memoryCap = memoryCap;
+        executor = new ThreadPoolExecutor(1, 1, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(final Runnable r) {
+                        return new Thread(new Runnable() {
+                            @Override
+                            public void run() {
+                                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                                r.run();
+                            }
+                        }, TAG);
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * @param level Name des aktuellen Levels
+     * @return Name des nächsten Levels; null nach dem letzten Level oder solange die Level noch
+     * nicht aufgelistet wurden
+     */
+    public String getNext(String level) {
+        String[] levels = this.levels;
+        if(levels == null) return null;
+        for(int i = 0; i < levels.length - 1; i++)
+            if(levels[i].equals(level))
+                return levels[i + 1];
+        return null;
+    }
+
+    /**
+     * Nächstes Level im Hintergrund vorab laden
+     * @param level Name des gerade begonnenen Levels
+     */
+    public void prefetchAfter(final String level) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                prefetch(level);
+            }
+        });
+    }
+
+    /**
+     * Vorab gelesenes Level abholen
+     * @param level Name des gewünschten Levels
+     * @return eingelesenes Level oder null, falls es (noch) nicht vorab gelesen wurde
+     */
+    synchronized public LevelData take(String level) {
+        if(!level.equals(prefetchedName)) return null;
+        LevelData result = prefetchedLevel;
+        prefetchedName = null;
+        prefetchedLevel = null;
+        return result;
+    }
+
+    private void prefetch(String level) {
+        if(levels == null)
+            levels = listLevels();
+        String next = getNext(level);
+        if(next == null) return;
+
+        synchronized(this) {
+            if(next.equals(prefetchedName)) return;
+        }
+        LevelData data;
+        try {
+            data = LevelData.parse(assetManager.open("levels/" + next + ".txt"));
+        } catch(IOException e) {
+            Log.w(TAG, "Level " + next + " nicht lesbar", e);
+            return;
+        }
+        synchronized(this) {
+            prefetchedName = next;
+            prefetchedLevel = data;
+        }
+
+        prefetchSheet(next);
+        prefetchSheet(TextureAtlas.DEFAULT_THEME);
+    }
+
+    /**
+     * Sprite Sheet eines Themes erzeugen, falls es noch fehlt und in die Obergrenze passt
+     */
+    private void prefetchSheet(String theme) {
+        TextureAtlas atlas = TextureAtlas.get(assetManager, theme);
+        if(atlas == null) return;
+        long needed = atlas.estimateSheetBytes();
+        if(needed == 0) return;
+        ResourceManager resources = ResourceManager.get();
+        long used = resources.getUsedBytes();
+        if(resources.isMemoryLow() || used + needed > memoryCap) {
+            Log.d(TAG, "Sheet " + theme + " nicht vorab erzeugt: " + (used + needed) / 1024 + " KB > "
+                    + memoryCap / 1024 + " KB");
+            return;
+        }
+        atlas.prefetchSheet();
+    }
+
+    private String[] listLevels() {
+        ArrayList<String> levelList = new ArrayList<>();
+        try {
+            String[] files = assetManager.list("levels");
+            for(String s : files)
+                if(s.endsWith(".txt"))
+                    levelList.add(s.substring(0, s.lastIndexOf(".")));
+        } catch(IOException e) {
+            e.printStackTrace();
+        }
+        Collections.sort(levelList);
+        return levelList.toArray(new String[levelList.size()]);
+    }
+}
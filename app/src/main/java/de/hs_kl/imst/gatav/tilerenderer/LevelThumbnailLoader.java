@@ -0,0 +1,235 @@
+package de.hs_kl.imst.gatav.tilerenderer;
+
+import android.content.Context;
+import android.content.res.AssetManager;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+import android.util.LruCache;
+import android.widget.ImageView;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import de.hs_kl.imst.gatav.tilerenderer.util.LevelData;
+import de.hs_kl.imst.gatav.tilerenderer.util.ResourceManager;
+
+/**
+ * Lädt Vorschaubilder der Level für die Levelauswahl.
+ *
+ * Vorschaubilder werden nur für angefragte (also sichtbare) Zeilen im Hintergrund aus dem
+ * Levelgitter erzeugt, im Speicher (LRU) gehalten und im Cache-Verzeichnis unter dem Hash des
+ * Levelinhalts abgelegt. Die zuletzt angefragten Zeilen werden zuerst bearbeitet, Anfragen für
+ * beim Scrollen wiederverwendete Zeilen werden abgebrochen.
+ *
+ * Der Speicher-Cache ist beim {@link ResourceManager} angemeldet und wird bei Speichermangel als
+ * Erstes geleert.
+ */
+public class LevelThumbnailLoader implements ResourceManager.Resource {
+    private static final String TAG = "LevelThumbnailLoader";
+
+    // Farben entsprechen den Ersatzfarben der Kacheln (Wall, Floor, Player)
+    private static final int WALL_COLOR = 0xFF5F3900;
+    private static final int FLOOR_COLOR = 0xFF149942;
+    private static final int PLAYER_COLOR = 0xFFF0CC00;
+
+    private final AssetManager assetManager;
+    private final File diskCacheDir;
+    private final int thumbnailSize;
+    private final LruCache<String, Bitmap> memoryCache;
+    private final ThreadPoolExecutor executor;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Laufende Aufträge pro ImageView; nur im UI Thread verwendet
+     */
+    private final HashMap<ImageView, Future<?>> pendingLoads = new HashMap<>();
+
+    /**
+     * @param context Kontext
+     * @param thumbnailSize maximale Kantenlänge der Vorschaubilder in Pixeln
+     */
+    public LevelThumbnailLoader(Context context, int thumbnailSize) {
+        this.assetManager = context.getAssets();
+        this.diskCacheDir = new File(context.getCacheDir(), "thumbnails");
+        this.thumbnailSize = thumbnailSize;
+
+        // 1/16 des verfügbaren Heaps für Vorschaubilder
+        int cacheKb = (int) (Runtime.getRuntime().maxMemory() / 1024 / 16);
+        memoryCache = new LruCache<String, Bitmap>(cacheKb) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return bitmap.getRowBytes() * bitmap.getHeight() / 1024 + 1;
+            }
+        };
+
+        // zuletzt angefragte Zeilen zuerst (LIFO), Threads mit Hintergrundpriorität
+        executor = new ThreadPoolExecutor(2, 2, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingDeque<Runnable>() {
+                    @Override
+                    public boolean offer(Runnable runnable) {
+                        return offerFirst(runnable);
+                    }
+                },
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(final Runnable r) {
+                        return new Thread(new Runnable() {
+                            @Override
+                            public void run() {
+                                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                                r.run();
+                            }
+                        }, TAG);
+                    }
+                });
+
+        ResourceManager.get().register(this, ResourceManager.PRIORITY_CACHE);
+    }
+
+    /**
+     * Vorschaubild eines Levels in ein ImageView laden; nur aus dem UI Thread aufrufen
+     * @param levelName Name des Levels (ohne .txt)
+     * @param view Ziel, ein evtl. noch laufender Auftrag für dieses View wird abgebrochen
+     */
+    public void load(final String levelName, final ImageView view) {
+        Future<?> previous = pendingLoads.remove(view);
+        if(previous != null)
+            previous.cancel(true);
+        view.setTag(levelName);
+
+        Bitmap cached = memoryCache.get(levelName);
+        if(cached != null) {
+            view.setImageBitmap(cached);
+            return;
+        }
+        view.setImageDrawable(null);
+
+        Future<?> future = executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                final Bitmap bitmap = loadOrRender(levelName);
+                if(bitmap == null || Thread.currentThread().isInterrupted()) return;
+                memoryCache.put(levelName, bitmap);
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if(!levelName.equals(view.getTag())) return;   // Zeile inzwischen wiederverwendet
+                        pendingLoads.remove(view);
+                        view.setImageBitmap(bitmap);
+                    }
+                });
+            }
+        });
+        pendingLoads.put(view, future);
+    }
+
+    /**
+     * Speicher-Cache leeren (z.B. bei Speichermangel); die Dateien im Cache-Verzeichnis bleiben erhalten
+     */
+    public void clearMemoryCache() {
+        memoryCache.evictAll();
+    }
+
+    @Override
+    public long getByteCount() {
+        return memoryCache.size() * 1024L;  // Größe im Cache in KB
+    }
+
+    @Override
+    public void release() {
+        clearMemoryCache();
+    }
+
+    /**
+     * Alle Aufträge abbrechen; wird beim Beenden der Activity aufgerufen
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+        pendingLoads.clear();
+        ResourceManager.get().unregister(this);
+    }
+
+    /**
+     * Vorschaubild aus dem Cache-Verzeichnis lesen oder neu erzeugen und dort ablegen
+     */
+    private Bitmap loadOrRender(String levelName) {
+        LevelData level;
+        try {
+            level = LevelData.parse(assetManager.open("levels/" + levelName + ".txt"));
+        } catch(IOException e) {
+            Log.w(TAG, "Level " + levelName + " nicht lesbar", e);
+            return null;
+        }
+        if(level.getWidth() == 0 || level.getHeight() == 0) return null;
+
+        File file = new File(diskCacheDir, level.getContentHash() + "_" + thumbnailSize + ".png");
+        if(file.isFile()) {
+            Bitmap bitmap = BitmapFactory.decodeFile(file.getPath());
+            if(bitmap != null) return bitmap;
+        }
+
+        Bitmap bitmap = render(level, thumbnailSize);
+        if(!Thread.currentThread().isInterrupted())
+            store(bitmap, file);
+        return bitmap;
+    }
+
+    /**
+     * Zeichnet das Levelgitter mit einer ganzzahligen Anzahl Pixel pro Kachel
+     * @param level Level
+     * @param maxSize maximale Kantenlänge in Pixeln
+     * @return Vorschaubild
+     */
+    static Bitmap render(LevelData level, int maxSize) {
+        int cell = Math.max(1, maxSize / Math.max(level.getWidth(), level.getHeight()));
+        int width = level.getWidth() * cell;
+        int height = level.getHeight() * cell;
+        int[] pixels = new int[width * height];
+        for(int y = 0; y < level.getHeight(); y++)
+            for(int x = 0; x < level.getWidth(); x++) {
+                int color;
+                switch(level.get(x, y)) {
+                    case 'w': case 'W': case 'd': case 'D': case 'x': case 'X': color = WALL_COLOR; break;
+                    case 'f': case 'F': color = FLOOR_COLOR; break;
+                    case 'p': case 'P': color = PLAYER_COLOR; break;
+                    default: continue;  // transparent
+                }
+                for(int py = y * cell; py < (y + 1) * cell; py++) {
+                    int row = py * width;
+                    for(int px = x * cell; px < (x + 1) * cell; px++)
+                        pixels[row + px] = color;
+                }
+            }
+        return Bitmap.createBitmap(pixels, width, height, Bitmap.Config.ARGB_8888);
+    }
+
+    private void store(Bitmap bitmap, File file) {
+        if(!diskCacheDir.isDirectory() && !diskCacheDir.mkdirs()) return;
+        File tmp = new File(diskCacheDir, file.getName() + ".tmp");
+        FileOutputStream out = null;
+        try {
+            out = new FileOutputStream(tmp);
+            bitmap.compress(Bitmap.CompressFormat.PNG, 100, out);
+        } catch(IOException e) {
+            Log.w(TAG, "Vorschaubild nicht speicherbar: " + file, e);
+            tmp.delete();
+            return;
+        } finally {
+            if(out != null)
+                try { out.close(); } catch(IOException e) { e.printStackTrace(); }
+        }
+        if(!tmp.renameTo(file))
+            tmp.delete();
+    }
+}
@@ -1,66 +1,127 @@
 package de.hs_kl.imst.gatav.tilerenderer;
 
-import android.content.Context;
 import android.content.Intent;
 import android.content.res.AssetManager;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
+import android.os.AsyncTask;
 import android.support.v7.app.AppCompatActivity;
 import android.os.Bundle;
-import android.view.LayoutInflater;
 import android.view.View;
-import android.view.ViewGroup;
 import android.widget.AdapterView;
-import android.widget.ArrayAdapter;
-import android.widget.ImageView;
 import android.widget.ListView;
-import android.widget.TextView;
-import android.widget.Toast;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.util.ArrayList;
+import java.util.Collections;
+
+import de.hs_kl.imst.gatav.tilerenderer.score.HighScoreStore;
+import de.hs_kl.imst.gatav.tilerenderer.util.ResourceManager;
 
 public class MainActivity extends AppCompatActivity {
 
+    private static final long SCORE_REFRESH_MS = 200;    // höchstens so oft die Liste neu zeichnen
+
+    private LevelThumbnailLoader thumbnailLoader;
+    private LevelListAdapter levelAdapter;
+    private HighScoreStore highScores;
+    private AsyncTask<Void, Void, Void> scorePreloader;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
+        ResourceManager.get().attach(this);     // Caches bei Speichermangel freigeben
 
-        AssetManager am = getResources().getAssets();
-        ArrayList<String> levelList = new ArrayList<String>();  // alle Level-Namen ohne .txt
-
-        try {
-            String[] files = am.list("levels");
-            for(String s : files) {
-                if(!s.endsWith(".txt")) continue;
-                s = s.substring(0, s.lastIndexOf("."));
-                levelList.add(s);
-            }
-        }catch(IOException e){
-            e.printStackTrace();
-        }
-
-        ArrayAdapter<String> itemsAdapter =
-                new ArrayAdapter<String>(this, android.R.layout.simple_list_item_1, levelList);
+        // Liste sofort (leer) anzeigen, Level werden im Hintergrund ermittelt
+        thumbnailLoader = new LevelThumbnailLoader(this,
+                getResources().getDimensionPixelSize(R.dimen.level_thumbnail_size));
+        highScores = HighScoreStore.get(this);
+        levelAdapter = new LevelListAdapter(getLayoutInflater(), thumbnailLoader, highScores);
 
         ListView listView = (ListView) findViewById(R.id.level_list);
-        listView.setAdapter(itemsAdapter);
+        listView.setAdapter(levelAdapter);
 
 		listView.setOnItemClickListener(new AdapterView.OnItemClickListener() {
 			public void onItemClick(AdapterView<?> parent, View view,
 					int position, long id) {
-			    //Toast.makeText(getApplicationContext(), ((TextView) view).getText(), Toast.LENGTH_SHORT).show();
                 String level = (String) parent.getItemAtPosition(position);
                 Intent intent = new Intent(MainActivity.this, MainGameActivity.class);
                 intent.putExtra("level", level);
                 startActivity(intent);
 			}
 		});
+
+        new AsyncTask<Void, Void, ArrayList<String>>() {
+            @Override
+            protected ArrayList<String> doInBackground(Void... params) {
+                AssetManager am = getResources().getAssets();
+                ArrayList<String> levelList = new ArrayList<String>();  // alle Level-Namen ohne .txt
+                try {
+                    String[] files = am.list("levels");
+                    for(String s : files) {
+                        if(!s.endsWith(".txt")) continue;
+                        s = s.substring(0, s.lastIndexOf("."));
+                        levelList.add(s);
+                    }
+                }catch(IOException e){
+                    e.printStackTrace();
+                }
+                Collections.sort(levelList);
+                return levelList;
+            }
+
+            @Override
+            protected void onPostExecute(ArrayList<String> levelList) {
+                // Liste sofort anzeigen, Bestleistungen erscheinen, sobald sie geladen sind
+                levelAdapter.setLevels(levelList);
+                preloadHighScores(levelList);
+            }
+        }.execute();
+    }
+
+    /**
+     * Lädt die Bestenlisten im Hintergrund in Listenreihenfolge (sichtbare Zeilen zuerst) und
+     * zeichnet die Liste dabei regelmäßig neu
+     * @param levelList Namen aller Level
+     */
+    private void preloadHighScores(final ArrayList<String> levelList) {
+        scorePreloader = new AsyncTask<Void, Void, Void>() {
+            @Override
+            protected Void doInBackground(Void... params) {
+                long lastRefresh = System.currentTimeMillis();
+                for(String level : levelList) {
+                    if(isCancelled()) break;
+                    highScores.preload(level);
+                    if(System.currentTimeMillis() - lastRefresh >= SCORE_REFRESH_MS) {
+                        lastRefresh = System.currentTimeMillis();
+                        publishProgress();
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            protected void onProgressUpdate(Void... values) {
+                levelAdapter.notifyDataSetChanged();
+            }
+
+            @Override
+            protected void onPostExecute(Void result) {
+                levelAdapter.notifyDataSetChanged();
+            }
+        }.execute();
     }
 
+    @Override
+    protected void onResume() {
+        super.onResume();
+        levelAdapter.notifyDataSetChanged();    // neue Bestleistungen anzeigen
+    }
 
+    @Override
+    protected void onDestroy() {
+        if(scorePreloader != null)
+            scorePreloader.cancel(false);
+        thumbnailLoader.shutdown();
+        super.onDestroy();
+    }
 }
-
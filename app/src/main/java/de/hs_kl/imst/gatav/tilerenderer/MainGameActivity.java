@@ -5,6 +5,10 @@ import android.os.Bundle;
 import android.view.Menu;
 import android.view.MenuItem;
 
+import java.io.IOException;
+
+import de.hs_kl.imst.gatav.tilerenderer.spectate.LocalSocketTransport;
+
 public class MainGameActivity extends AppCompatActivity {
 
     private GameView gameView;
@@ -16,8 +20,35 @@ public class MainGameActivity extends AppCompatActivity {
         String level=getIntent().getExtras().getString("level");
 
         gameView = new GameView(this, level);
+        // Nebel des Krieges (z.B. per "adb shell am start --ez fog true")
+        gameView.setFogOfWar(getIntent().getExtras().getBoolean("fog", false));
+        // Abrissbirne am Spieler (z.B. per "adb shell am start --ez wreckingball true")
+        gameView.setWreckingBall(getIntent().getExtras().getBoolean("wreckingball", false));
+        // dynamische Auflösung abschalten (z.B. per "adb shell am start --ez adaptiveresolution false")
+        gameView.setAdaptiveResolution(getIntent().getExtras().getBoolean("adaptiveresolution", true));
+
+        // Zuschauer-Stream über lokalen Socket (z.B. per "adb shell am start --es publish <name>")
+        String publish = getIntent().getExtras().getString("publish");
+        String spectate = getIntent().getExtras().getString("spectate");
+        if(publish != null)
+            gameView.publishToSpectators(publish);
+        else if(spectate != null) {
+            try {
+                gameView.spectate(LocalSocketTransport.connect(spectate));
+            } catch(IOException e) {
+                e.printStackTrace();
+            }
+        }
+
         setContentView(gameView);
     }
 
+    @Override
+    protected void onDestroy() {
+        gameView.closeSpectatorStreams();
+        gameView.closeEventRecorder();
+        super.onDestroy();
+    }
+
 
 }
@@ -0,0 +1,77 @@
+package de.hs_kl.imst.gatav.tilerenderer;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+
+import de.hs_kl.imst.gatav.tilerenderer.util.ResourceManager;
+
+/**
+ * Zeichenfläche in reduzierter Auflösung: zwischen {@link #begin(Canvas, float)} und
+ * {@link #end(Canvas, Canvas)} wird in eine kleinere Bitmap gezeichnet (mit denselben
+ * Koordinaten wie auf der eigentlichen Zeichenfläche), die anschließend gefiltert auf die volle
+ * Größe hochskaliert wird.
+ *
+ * Die Bitmap wird nur vergrößert, kleinere Stufen zeichnen in einen Ausschnitt. Sie gehört allein
+ * dem Render-Thread und kann vom {@link ResourceManager} freigegeben werden.
+ */
+class ScaledRenderTarget implements ResourceManager.Resource {
+    private volatile Bitmap bitmap = null;
+    private Canvas bitmapCanvas;
+    private Bitmap drawing;     // Bitmap zwischen begin und end, unabhängig von release
+    private final Paint filter = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final Rect src = new Rect();
+    private final Rect dst = new Rect();
+
+    /**
+     * @param target eigentliche Zeichenfläche
+     * @param scale Kantenlänge relativ zur vollen Auflösung
+     * @return Zeichenfläche für das Bild; target selbst bei voller Auflösung oder ohne Speicher
+     */
+    Canvas begin(Canvas target, float scale) {
+        int width = target.getWidth();
+        int height = target.getHeight();
+        if(scale >= 1f || width <= 0 || height <= 0) return target;
+        int w = Math.max(1, Math.round(width * scale));
+        int h = Math.max(1, Math.round(height * scale));
+
+        Bitmap bitmap = this.bitmap;
+        if(bitmap == null || bitmap.getWidth() < w || bitmap.getHeight() < h) {
+            bitmap = Bitmap.createBitmap(w, h, Bitmap.Config.ARGB_8888);
+            if(bitmap == null) return target;
+            bitmapCanvas = new Canvas(bitmap);
+            this.bitmap = bitmap;
+        }
+        drawing = bitmap;
+        src.set(0, 0, w, h);
+        dst.set(0, 0, width, height);
+        bitmapCanvas.save();
+        bitmapCanvas.clipRect(src);
+        bitmapCanvas.scale((float) w / width, (float) h / height);
+        return bitmapCanvas;
+    }
+
+    /**
+     * Reduziert gezeichnetes Bild auf die eigentliche Zeichenfläche übertragen
+     * @param target eigentliche Zeichenfläche
+     * @param used Rückgabe von {@link #begin(Canvas, float)}
+     */
+    void end(Canvas target, Canvas used) {
+        if(used == target) return;
+        bitmapCanvas.restore();
+        target.drawBitmap(drawing, src, dst, filter);
+        drawing = null;
+    }
+
+    @Override
+    public long getByteCount() {
+        Bitmap bitmap = this.bitmap;
+        return bitmap == null ? 0 : (long) bitmap.getRowBytes() * bitmap.getHeight();
+    }
+
+    @Override
+    public void release() {
+        bitmap = null;
+    }
+}
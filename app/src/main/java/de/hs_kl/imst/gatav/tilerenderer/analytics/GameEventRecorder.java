@@ -0,0 +1,279 @@
+package de.hs_kl.imst.gatav.tilerenderer.analytics;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import de.hs_kl.imst.gatav.tilerenderer.drawable.GameContent;
+import de.hs_kl.imst.gatav.tilerenderer.drawable.GameEventListener;
+import de.hs_kl.imst.gatav.tilerenderer.util.Direction;
+
+/**
+ * Zeichnet Spielereignisse für die Auswertung des Spielverhaltens auf.
+ *
+ * Wird als {@link GameEventListener} bei {@link GameContent} registriert. Jedes Ereignis wird als
+ * Datensatz fester Größe in einen vorab angelegten Ringpuffer geschrieben (ein Erzeuger, ein
+ * Verbraucher); der Game Thread blockiert dabei nie und allokiert nichts. Ein Hintergrund-Thread
+ * hängt die Datensätze gesammelt an eine Datei an. Ist der Ringpuffer voll, werden Ereignisse
+ * verworfen und gezählt.
+ *
+ * Dateiformat: Folge von Datensätzen aus vier Big-Endian-Ints (Zeit in ms seit Beginn der Aufzeichnung,
+ * Typ, a, b). Auf einen {@link #TYPE_SESSION}-Datensatz folgen zusätzlich b Bytes Levelname (UTF-8).
+ * Im Ringpuffer steht in b stattdessen das Fach des Levelnamens in einer kleinen Namenstabelle, so dass
+ * jeder Datensatz den Namen zum Zeitpunkt der Aufzeichnung behält, auch wenn bis zum Schreiben
+ * weitere Spiele beginnen.
+ */
+public class GameEventRecorder implements GameEventListener {
+    private static final String TAG = "GameEventRecorder";
+
+    /** Beginn eines Spiels; a = Startzeit in Sekunden (Unix), b = Länge des folgenden Levelnamens */
+    public static final int TYPE_SESSION = 0;
+    /** Spielerzug; a = Position, b = Richtung (ordinal) */
+    public static final int TYPE_MOVE = 1;
+    /** Ziel platziert; a = Position, b = Nummer des Ziels (Punktestufe) */
+    public static final int TYPE_TARGET_SPAWNED = 2;
+    /** Ziel eingesammelt; a = Position, b = Punkte */
+    public static final int TYPE_TARGET_COLLECTED = 3;
+    /** Dynamisches Ziel erzeugt; a = Position der Quelle, b = Richtung (ordinal) */
+    public static final int TYPE_DYN_SPAWNED = 4;
+    /** Dynamisches Ziel gefangen; b = Punkte */
+    public static final int TYPE_DYN_CAUGHT = 5;
+    /** Dynamisches Ziel verpasst */
+    public static final int TYPE_DYN_MISSED = 6;
+    /** Spielende; a = eingesammelte Ziele, b = benötigte Zeit in Hundertstelsekunden */
+    public static final int TYPE_GAME_OVER = 7;
+
+    public static final int RECORD_BYTES = 16;
+    private static final int RECORD_INTS = RECORD_BYTES / 4;
+    private static final int BATCH_RECORDS = 256;
+    private static final int SESSION_SLOTS = 16;     // noch nicht geschriebene Spielbeginne
+    private static final long FLUSH_INTERVAL_NS = TimeUnit.MILLISECONDS.toNanos(500);
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final File file;
+    private final int[] ring;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong();   // nächster zu schreibender Datensatz (Game Thread)
+    private final AtomicLong tail = new AtomicLong();   // nächster zu lesender Datensatz (Writer Thread)
+    private final long startNanos = System.nanoTime();
+    private volatile int droppedEvents = 0;
+    private final String[] sessionLevels = new String[SESSION_SLOTS];
+    private long sessionsRecorded = 0;                  // nur Game Thread
+    private volatile long sessionsWritten = 0;          // nur Writer Thread schreibt
+
+    private final byte[] batch = new byte[BATCH_RECORDS * RECORD_BYTES];
+    private volatile boolean running = false;
+    private Thread writerThread;
+
+    /**
+     * @param file Protokolldatei, wird angelegt bzw. fortgesetzt
+     * @param capacity Anzahl Datensätze im Ringpuffer, wird auf eine Zweierpotenz aufgerundet
+     */
+    public GameEventRecorder(File file, int capacity) {
+        this.file = file;
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        ring = new int[size * RECORD_INTS];
+        mask = size - 1;
+    }
+
+    /**
+     * Startet den Writer Thread
+     */
+    public synchronized void start() {
+        if(running) return;
+        running = true;
+        writerThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writeLoop();
+            }
+        }, TAG);
+        writerThread.setPriority(Thread.MIN_PRIORITY);
+        writerThread.start();
+    }
+
+    /**
+     * Schreibt alle bis hierhin aufgezeichneten Ereignisse und beendet den Writer Thread
+     */
+    public synchronized void close() {
+        if(!running) return;
+        running = false;
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join();
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writerThread = null;
+        if(droppedEvents > 0)
+            Log.w(TAG, droppedEvents + " Ereignisse verworfen (Ringpuffer voll)");
+    }
+
+    /**
+     * @return Anzahl verworfener Ereignisse
+     */
+    public int getDroppedEvents() { return droppedEvents; }
+
+    /**
+     * Beginn eines neuen Spiels; vor dem Registrieren als Listener und wie alle Ereignisse aus
+     * dem Game Thread aufrufen
+     * @param levelName Name des Levels
+     */
+    public void beginSession(String levelName) {
+        if(sessionsRecorded - sessionsWritten >= SESSION_SLOTS) {
+            droppedEvents++;    // alle Fächer noch belegt
+            return;
+        }
+        int slot = (int)(sessionsRecorded % SESSION_SLOTS);
+        // wird vor dem Datensatz veröffentlicht (head.lazySet in record)
+        sessionLevels[slot] = levelName;
+        if(record(TYPE_SESSION, (int)(System.currentTimeMillis() / 1000), slot))
+            sessionsRecorded++;
+    }
+
+    /**
+     * Spielende, z.B. nach dem Einsammeln der geforderten Anzahl Ziele
+     * @param collectedTargets eingesammelte Ziele
+     * @param timeCentis Spielzeit in Hundertstelsekunden
+     */
+    public void recordGameOver(int collectedTargets, int timeCentis) {
+        record(TYPE_GAME_OVER, collectedTargets, timeCentis);
+    }
+
+    @Override
+    public void onPlayerMoved(int x, int y, Direction direction) {
+        record(TYPE_MOVE, position(x, y), direction.ordinal());
+    }
+
+    @Override
+    public void onTargetSpawned(int x, int y, int targetNumber) {
+        record(TYPE_TARGET_SPAWNED, position(x, y), targetNumber);
+    }
+
+    @Override
+    public void onTargetCollected(int x, int y, int score) {
+        record(TYPE_TARGET_COLLECTED, position(x, y), score);
+    }
+
+    @Override
+    public void onDynamicTargetSpawned(int x, int y, Direction direction) {
+        record(TYPE_DYN_SPAWNED, position(x, y), direction.ordinal());
+    }
+
+    @Override
+    public void onDynamicTargetCaught(int score) {
+        record(TYPE_DYN_CAUGHT, 0, score);
+    }
+
+    @Override
+    public void onDynamicTargetExpired() {
+        record(TYPE_DYN_MISSED, 0, 0);
+    }
+
+    @Override
+    public void onTickEnd() {
+    }
+
+    /**
+     * Kachelposition in einem Int: X in den oberen, Y in den unteren 16 Bit
+     */
+    public static int position(int x, int y) {
+        return (x << 16) | (y & 0xFFFF);
+    }
+
+    /**
+     * Datensatz in den Ringpuffer schreiben; nur aus dem Game Thread aufrufen
+     * @return false, falls der Datensatz verworfen wurde
+     */
+    private boolean record(int type, int a, int b) {
+        long h = head.get();
+        long used = h - tail.get();
+        if(used > mask) {
+            droppedEvents++;
+            return false;
+        }
+        int i = (int)(h & mask) * RECORD_INTS;
+        ring[i] = (int)((System.nanoTime() - startNanos) / 1000000L);
+        ring[i + 1] = type;
+        ring[i + 2] = a;
+        ring[i + 3] = b;
+        head.lazySet(h + 1);
+        // halb voll: Writer nicht erst zum nächsten Intervall schreiben lassen
+        if(used == (mask + 1) / 2)
+            LockSupport.unpark(writerThread);
+        return true;
+    }
+
+    private void writeLoop() {
+        FileOutputStream out = null;
+        try {
+            File dir = file.getParentFile();
+            if(dir != null && !dir.isDirectory() && !dir.mkdirs())
+                throw new IOException("Verzeichnis nicht anlegbar: " + dir);
+            out = new FileOutputStream(file, true);
+            while(true) {
+                boolean stop = !running;    // vor dem Leeren lesen, damit nach close() nichts fehlt
+                int written = drain(out);
+                if(stop) break;
+                if(written == 0)
+                    LockSupport.parkNanos(this, FLUSH_INTERVAL_NS);
+            }
+        } catch(IOException e) {
+            Log.w(TAG, "Ereignisprotokoll nicht schreibbar: " + file, e);
+            running = false;
+        } finally {
+            if(out != null)
+                try { out.close(); } catch(IOException e) { e.printStackTrace(); }
+        }
+    }
+
+    /**
+     * Schreibt alle verfügbaren Datensätze in Blöcken von bis zu {@link #BATCH_RECORDS}
+     * @return Anzahl geschriebener Datensätze
+     */
+    private int drain(FileOutputStream out) throws IOException {
+        long t = tail.get();
+        long h = head.get();
+        int total = (int)(h - t);
+        int pos = 0;
+        while(t < h) {
+            int i = (int)(t & mask) * RECORD_INTS;
+            for(int k = 0; k < RECORD_INTS; k++)
+                pos = putInt(batch, pos, ring[i + k]);
+            int type = ring[i + 1];
+            int b = ring[i + 3];
+            t++;
+            tail.lazySet(t);
+
+            if(type == TYPE_SESSION) {
+                byte[] name = sessionLevels[b].getBytes(UTF8);
+                sessionLevels[b] = null;
+                sessionsWritten++;      // Fach frei für den Game Thread
+                putInt(batch, pos - 4, name.length);
+                out.write(batch, 0, pos);
+                out.write(name);
+                pos = 0;
+            } else if(pos == batch.length) {
+                out.write(batch, 0, pos);
+                pos = 0;
+            }
+        }
+        if(pos > 0)
+            out.write(batch, 0, pos);
+        return total;
+    }
+
+    private static int putInt(byte[] buf, int pos, int v) {
+        buf[pos] = (byte)(v >>> 24);
+        buf[pos + 1] = (byte)(v >>> 16);
+        buf[pos + 2] = (byte)(v >>> 8);
+        buf[pos + 3] = (byte) v;
+        return pos + 4;
+    }
+}
@@ -0,0 +1,308 @@
+package de.hs_kl.imst.gatav.tilerenderer.analytics;
+
+import android.graphics.Bitmap;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import de.hs_kl.imst.gatav.tilerenderer.drawable.GameContent;
+import de.hs_kl.imst.gatav.tilerenderer.drawable.GameEventListener;
+import de.hs_kl.imst.gatav.tilerenderer.util.Direction;
+
+/**
+ * Zähler pro Kachel eines Levels: Besuche des Spielers, platzierte und eingesammelte Ziele.
+ *
+ * Wird als {@link GameEventListener} bei {@link GameContent} registriert; jedes Ereignis erhöht nur
+ * einen int in einem vorab angelegten Array, ohne Allokation und ohne Sperren. Lesen, Zusammenführen
+ * und Speichern erst, nachdem der Game Thread das Spiel beendet hat (bzw. nach der Übergabe an einen
+ * anderen Thread).
+ *
+ * Heatmaps mehrerer Spiele oder Simulationen werden mit {@link #merge(Heatmap)} bzw. parallel mit
+ * {@link #reduce(List, ExecutorService, int)} addiert. Dateiformat ({@link #write(File)}, GZIP):
+ * Kennung, Breite, Höhe, Anzahl Spiele und danach pro Ebene Breite * Höhe Zähler (Big-Endian-Ints,
+ * zeilenweise). Zusätzlich lässt sich jede Ebene als PNG ausgeben.
+ */
+public class Heatmap implements GameEventListener {
+    /** Ebene: Spieler hat die Kachel betreten */
+    public static final int LAYER_VISITS = 0;
+    /** Ebene: Ziel wurde auf der Kachel platziert */
+    public static final int LAYER_SPAWNS = 1;
+    /** Ebene: Ziel wurde auf der Kachel eingesammelt */
+    public static final int LAYER_PICKUPS = 2;
+    public static final int LAYER_COUNT = 3;
+
+    private static final int MAGIC = 0x484D5031;    // "HMP1"
+
+    private final int width, height;
+    private final int[][] counts;   // [Ebene][y * width + x]
+    private int sessions;
+
+    /**
+     * @param width Breite des Levels in Kacheln
+     * @param height Höhe des Levels in Kacheln
+     */
+    public Heatmap(int width, int height) {
+        this.width = width;
+        this.height = height;
+        counts = new int[LAYER_COUNT][width * height];
+        sessions = 1;
+    }
+
+    /**
+     * @param content Spielinhalt, dessen Abmessungen übernommen werden
+     */
+    public Heatmap(GameContent content) {
+        this(content.getColumns(), content.getRows());
+    }
+
+    public int getWidth() { return width; }
+    public int getHeight() { return height; }
+
+    /**
+     * @return Anzahl der zusammengeführten Spiele
+     */
+    public int getSessions() { return sessions; }
+
+    /**
+     * @return Zähler einer Ebene an einer Kachel, 0 außerhalb des Levels
+     */
+    public int get(int layer, int x, int y) {
+        if(x < 0 || y < 0 || x >= width || y >= height) return 0;
+        return counts[layer][y * width + x];
+    }
+
+    /**
+     * @return Summe aller Zähler einer Ebene
+     */
+    public long total(int layer) {
+        long sum = 0;
+        int[] c = counts[layer];
+        for(int i = 0; i < c.length; i++)
+            sum += c[i];
+        return sum;
+    }
+
+    private void count(int layer, int x, int y) {
+        if(x < 0 || y < 0 || x >= width || y >= height) return;
+        counts[layer][y * width + x]++;
+    }
+
+    @Override
+    public void onPlayerMoved(int x, int y, Direction direction) {
+        count(LAYER_VISITS, x, y);
+    }
+
+    @Override
+    public void onTargetSpawned(int x, int y, int targetNumber) {
+        count(LAYER_SPAWNS, x, y);
+    }
+
+    @Override
+    public void onTargetCollected(int x, int y, int score) {
+        count(LAYER_PICKUPS, x, y);
+    }
+
+    @Override public void onDynamicTargetSpawned(int x, int y, Direction direction) {}
+    @Override public void onDynamicTargetCaught(int score) {}
+    @Override public void onDynamicTargetExpired() {}
+    @Override public void onTickEnd() {}
+
+    /**
+     * Zähler einer anderen Heatmap desselben Levels hinzuaddieren (sättigend)
+     * @param other andere Heatmap
+     * @throws IllegalArgumentException falls die Abmessungen nicht übereinstimmen
+     */
+    public void merge(Heatmap other) {
+        checkSize(other);
+        for(int layer = 0; layer < LAYER_COUNT; layer++)
+            add(counts[layer], other.counts[layer], 0, counts[layer].length);
+        sessions += other.sessions;
+    }
+
+    /**
+     * Heatmaps desselben Levels parallel addieren: die Kacheln werden in gleich große Bereiche
+     * aufgeteilt, jeder Auftrag summiert alle Heatmaps über seinen Bereich und schreibt nur dorthin
+     * @param maps zu addierende Heatmaps, mindestens eine
+     * @param executor führt die Aufträge aus
+     * @param parallelism Anzahl der Bereiche
+     * @return neue Heatmap mit den Summen
+     * @throws InterruptedException falls beim Warten unterbrochen
+     */
+    public static Heatmap reduce(final List<Heatmap> maps, ExecutorService executor, int parallelism)
+            throws InterruptedException {
+        Heatmap first = maps.get(0);
+        final Heatmap result = new Heatmap(first.width, first.height);
+        result.sessions = 0;
+        for(int i = 0; i < maps.size(); i++) {
+            result.checkSize(maps.get(i));
+            result.sessions += maps.get(i).sessions;
+        }
+
+        int cells = first.width * first.height;
+        int chunk = Math.max(1, (cells + parallelism - 1) / parallelism);
+        ArrayList<Future<?>> futures = new ArrayList<>();
+        for(int start = 0; start < cells; start += chunk) {
+            final int from = start;
+            final int to = Math.min(cells, start + chunk);
+            futures.add(executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    for(int m = 0; m < maps.size(); m++)
+                        for(int layer = 0; layer < LAYER_COUNT; layer++)
+                            add(result.counts[layer], maps.get(m).counts[layer], from, to);
+                }
+            }));
+        }
+        try {
+            for(int i = 0; i < futures.size(); i++)
+                futures.get(i).get();
+        } catch(ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+        return result;
+    }
+
+    private static void add(int[] target, int[] source, int from, int to) {
+        for(int i = from; i < to; i++) {
+            int sum = target[i] + source[i];
+            target[i] = sum < 0 ? Integer.MAX_VALUE : sum;
+        }
+    }
+
+    private void checkSize(Heatmap other) {
+        if(other.width != width || other.height != height)
+            throw new IllegalArgumentException("Heatmap " + other.width + "x" + other.height + " passt nicht zu "
+                    + width + "x" + height);
+    }
+
+    /**
+     * Heatmap speichern; es wird zunächst eine temporäre Datei geschrieben und diese dann umbenannt
+     * @param file Zieldatei
+     * @throws IOException falls beim Schreiben etwas schief geht
+     */
+    public void write(File file) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(new FileOutputStream(tmp))));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(width);
+            out.writeInt(height);
+            out.writeInt(sessions);
+            for(int layer = 0; layer < LAYER_COUNT; layer++) {
+                int[] c = counts[layer];
+                for(int i = 0; i < c.length; i++)
+                    out.writeInt(c[i]);
+            }
+        } finally {
+            out.close();
+        }
+        if(!tmp.renameTo(file))
+            throw new IOException("Umbenennen fehlgeschlagen: " + tmp);
+    }
+
+    /**
+     * Mit {@link #write(File)} gespeicherte Heatmap lesen
+     * @param file Quelldatei
+     * @return Heatmap
+     * @throws IOException falls die Datei nicht lesbar ist oder ein unbekanntes Format hat
+     */
+    public static Heatmap read(File file) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(new FileInputStream(file))));
+        try {
+            if(in.readInt() != MAGIC)
+                throw new IOException("Unbekanntes Format: " + file);
+            int width = in.readInt();
+            int height = in.readInt();
+            if(width < 0 || height < 0 || (long) width * height > Integer.MAX_VALUE / LAYER_COUNT)
+                throw new IOException("Ungültige Größe " + width + "x" + height + ": " + file);
+            Heatmap map = new Heatmap(width, height);
+            map.sessions = in.readInt();
+            for(int layer = 0; layer < LAYER_COUNT; layer++) {
+                int[] c = map.counts[layer];
+                for(int i = 0; i < c.length; i++)
+                    c[i] = in.readInt();
+            }
+            return map;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Farben einer Ebene (logarithmisch von transparent über blau und rot nach gelb)
+     * @param layer Ebene
+     * @param pixels Ausgabe, mindestens Breite * Höhe ARGB-Werte, zeilenweise
+     */
+    public void toColors(int layer, int[] pixels) {
+        int[] c = counts[layer];
+        int max = 0;
+        for(int i = 0; i < c.length; i++)
+            max = Math.max(max, c[i]);
+        double scale = max == 0 ? 0 : 1.0 / Math.log1p(max);
+        for(int i = 0; i < c.length; i++) {
+            float t = (float) (Math.log1p(c[i]) * scale);
+            pixels[i] = ramp(t);
+        }
+    }
+
+    private static int ramp(float t) {
+        if(t <= 0) return 0;
+        int alpha = 0x80 + (int) (0x7F * t);
+        int r, g, b;
+        if(t < 0.5f) {          // blau => rot
+            float u = t * 2;
+            r = (int) (255 * u);
+            g = 0;
+            b = (int) (255 * (1 - u));
+        } else {                // rot => gelb
+            float u = (t - 0.5f) * 2;
+            r = 255;
+            g = (int) (255 * u);
+            b = 0;
+        }
+        return (alpha << 24) | (r << 16) | (g << 8) | b;
+    }
+
+    /**
+     * Ebene als PNG speichern
+     * @param layer Ebene
+     * @param file Zieldatei
+     * @param scale Pixel pro Kachel
+     * @return true, falls das Bild geschrieben wurde
+     * @throws IOException falls beim Schreiben etwas schief geht
+     */
+    public boolean writePng(int layer, File file, int scale) throws IOException {
+        if(width == 0 || height == 0) return false;
+        int[] pixels = new int[width * height];
+        toColors(layer, pixels);
+        Bitmap bitmap = Bitmap.createBitmap(pixels, width, height, Bitmap.Config.ARGB_8888);
+        if(bitmap == null) return false;
+        if(scale > 1) {
+            Bitmap scaled = Bitmap.createScaledBitmap(bitmap, width * scale, height * scale, false);
+            bitmap.recycle();
+            bitmap = scaled;
+        }
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            return bitmap.compress(Bitmap.CompressFormat.PNG, 100, out);
+        } finally {
+            out.close();
+            bitmap.recycle();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package de.hs_kl.imst.gatav.tilerenderer.analytics;
+
+import android.os.Process;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Sammelt die Heatmaps aller Spiele pro Level in <code>&lt;level&gt;.heat</code> (siehe
+ * {@link Heatmap#write(java.io.File)}) und legt daneben die Besuche als
+ * <code>&lt;level&gt;_visits.png</code> ab.
+ *
+ * Zusammenführen und Schreiben laufen in einem eigenen Thread mit Hintergrundpriorität; ein
+ * übergebenes Spiel wird danach vom Aufrufer nicht mehr verändert.
+ */
+public class HeatmapStore {
+    private static final String TAG = "HeatmapStore";
+    private static final int PNG_SCALE = 8;     // Pixel pro Kachel
+
+    private final File dir;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(final Runnable r) {
+            return new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    r.run();
+                }
+            }, TAG);
+        }
+    });
+
+    /**
+     * @param dir Verzeichnis der Heatmaps
+     */
+    public HeatmapStore(File dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * @param level Name des Levels
+     * @return Datei der gesammelten Heatmap
+     */
+    public File getFile(String level) {
+        return new File(dir, level + ".heat");
+    }
+
+    /**
+     * Heatmap eines beendeten Spiels im Hintergrund zur gesammelten Heatmap des Levels addieren;
+     * passt die gespeicherte nicht mehr zum Level (geänderte Größe), wird sie ersetzt
+     * @param level Name des Levels
+     * @param session Heatmap des Spiels
+     */
+    public void add(final String level, final Heatmap session) {
+        writer.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if(!dir.isDirectory() && !dir.mkdirs())
+                        throw new IOException("Verzeichnis nicht anlegbar: " + dir);
+                    File file = getFile(level);
+                    Heatmap total = session;
+                    if(file.isFile()) {
+                        try {
+                            Heatmap stored = Heatmap.read(file);
+                            if(stored.getWidth() == session.getWidth() && stored.getHeight() == session.getHeight()) {
+                                stored.merge(session);
+                                total = stored;
+                            }
+                        } catch(IOException e) {
+                            Log.w(TAG, "Heatmap nicht lesbar, wird ersetzt: " + file, e);
+                        }
+                    }
+                    total.write(file);
+                    total.writePng(Heatmap.LAYER_VISITS, new File(dir, level + "_visits.png"), PNG_SCALE);
+                } catch(IOException e) {
+                    Log.w(TAG, "Heatmap für " + level + " nicht speicherbar", e);
+                }
+            }
+        });
+    }
+}
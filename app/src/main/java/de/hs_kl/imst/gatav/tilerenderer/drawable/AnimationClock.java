@@ -0,0 +1,85 @@
+package de.hs_kl.imst.gatav.tilerenderer.drawable;
+
+import android.content.res.AssetManager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Gemeinsamer Takt aller animierten Kacheltypen eines Spielfeldes.
+ *
+ * Statt jede animierte Kachel einzeln in {@link GameContent#update(float)} zu aktualisieren, wird
+ * pro Kacheltyp ein Bildindex weitergeschaltet; der Aufwand hängt also nur von der Anzahl der
+ * animierten Typen ab, nicht von der Anzahl animierter Kacheln. Die Bildindizes gelangen über den
+ * {@link RenderSnapshot} in den Render-Thread, der im {@link StaticLayerCache} nur die Kacheln der
+ * Typen neu zeichnet, deren Bild gewechselt hat.
+ */
+public class AnimationClock {
+    /**
+     * Standarddauer eines Bildes in Sekunden
+     */
+    public static final float DEFAULT_FRAME_SECONDS = 0.25f;
+
+    private final ArrayList<TileAnimation> animations = new ArrayList<>();
+    private final HashMap<String, TileAnimation> byName = new HashMap<>();
+
+    /**
+     * Liefert die Animation eines Kacheltyps und legt sie beim ersten Zugriff an. Die Bilder heißen
+     * im Atlas &lt;name&gt;_0, &lt;name&gt;_1, ...
+     * @param assetManager AssetManager, null für einfarbige Kacheln
+     * @param levelName Name des Levels (= Theme)
+     * @param name Name des Kacheltyps
+     * @return Animation oder null, falls der Atlas weniger als zwei Bilder enthält
+     */
+    public TileAnimation get(AssetManager assetManager, String levelName, String name) {
+        if(byName.containsKey(name))
+            return byName.get(name);
+        TileAnimation animation = null;
+        Sprite[] frames = assetManager == null ? null : TextureAtlas.getFrames(assetManager, levelName, name);
+        if(frames != null && frames.length > 1) {
+            animation = new TileAnimation(animations.size(), name, frames, DEFAULT_FRAME_SECONDS);
+            animations.add(animation);
+        }
+        byName.put(name, animation);
+        return animation;
+    }
+
+    /**
+     * @return Anzahl animierter Kacheltypen
+     */
+    public int size() {
+        return animations.size();
+    }
+
+    /**
+     * Alle Animationen weiterschalten; nur aus dem Simulations-Thread aufrufen
+     * @param fracsec vergangene Zeit in Sekunden
+     * @return true, falls bei mindestens einem Typ das Bild gewechselt hat
+     */
+    public boolean update(float fracsec) {
+        boolean changed = false;
+        for(int i = 0; i < animations.size(); i++) {    // ohne Iterator, da pro Frame aufgerufen
+            TileAnimation animation = animations.get(i);
+            animation.elapsed += fracsec;
+            if(animation.elapsed < animation.getFrameSeconds()) continue;
+            int steps = (int) (animation.elapsed / animation.getFrameSeconds());
+            animation.elapsed -= steps * animation.getFrameSeconds();
+            animation.frame = (animation.frame + steps) % animation.getFrameCount();
+            changed = true;
+        }
+        return changed;
+    }
+
+    /**
+     * Aktuelle Bildindizes aller Typen kopieren
+     * @param target wiederverwendetes Array oder null
+     * @return Bildindex pro {@link TileAnimation#getId()}
+     */
+    int[] copyFrames(int[] target) {
+        if(target == null || target.length != animations.size())
+            target = new int[animations.size()];
+        for(int i = 0; i < target.length; i++)
+            target[i] = animations.get(i).frame;
+        return target;
+    }
+}
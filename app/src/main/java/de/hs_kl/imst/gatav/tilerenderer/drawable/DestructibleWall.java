@@ -0,0 +1,39 @@
+package de.hs_kl.imst.gatav.tilerenderer.drawable;
+
+import android.graphics.Color;
+
+/**
+ * Wand, die während des Spiels (z.B. von einer Abrissbirne) zerstört werden kann und dann zu
+ * Boden wird. Explosive Wände reißen beim Zerstören ihre zerstörbaren Nachbarn mit
+ * (Kettenreaktion, siehe {@link GameContent#destroyWall(int, int)}).
+ *
+ * Der Boden, der an ihre Stelle tritt, wird bereits beim Laden erzeugt, damit das Zerstören keinen
+ * Speicher allokiert.
+ */
+public class DestructibleWall extends Wall {
+    private final boolean explosive;
+    private final Floor rubble;
+
+    /**
+     * Bereits zum Zerstören vorgemerkt (jede Wand wird höchstens einmal zerstört)
+     */
+    boolean doomed = false;
+
+    /**
+     * @param x X-Koordinate im Gitter
+     * @param y Y-Koordinate im Gitter
+     * @param sprite Grafik oder null
+     * @param explosive true: zerstört beim Zerstören die zerstörbaren Nachbarn
+     * @param rubble Boden, der nach dem Zerstören an dieser Stelle liegt
+     */
+    public DestructibleWall(int x, int y, Sprite sprite, boolean explosive, Floor rubble) {
+        super(x, y, sprite);
+        this.explosive = explosive;
+        this.rubble = rubble;
+
+        tilePaint.setColor(Color.parseColor(explosive ? "#B03A2E" : "#8A5A2B"));
+    }
+
+    public boolean isExplosive() { return explosive; }
+    public Floor getRubble() { return rubble; }
+}
@@ -2,15 +2,13 @@ package de.hs_kl.imst.gatav.tilerenderer.drawable;
 
 import android.graphics.Color;
 
-import java.io.InputStream;
-
 
 public class DynamicTarget extends MovableTileGraphics {
     private int score=42;
     public int getScore() { return score; }
 
-    public DynamicTarget(int x, int y, InputStream is) {
-        super(x, y, is);
+    public DynamicTarget(int x, int y, Sprite sprite) {
+        super(x, y, sprite);
 
         tilePaint.setColor(Color.parseColor("#BF1111"));
     }
@@ -4,13 +4,11 @@ import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
 
-import java.io.InputStream;
-
 public class Floor extends TileGraphics {
     private Paint floorPaint = new Paint();
 
-    public Floor(int x, int y, InputStream is) {
-        super(x, y, is);
+    public Floor(int x, int y, Sprite sprite) {
+        super(x, y, sprite);
 
         tilePaint.setColor(Color.parseColor("#149942"));
     }
@@ -0,0 +1,137 @@
+package de.hs_kl.imst.gatav.tilerenderer.drawable;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+
+import de.hs_kl.imst.gatav.tilerenderer.util.FieldOfView;
+import de.hs_kl.imst.gatav.tilerenderer.util.ResourceManager;
+
+/**
+ * Nebel des Krieges: nur Kacheln in Sichtlinie des Spielers sind sichtbar, bereits gesehene
+ * Bereiche werden abgedunkelt, der Rest bleibt schwarz.
+ *
+ * Der Sichtbereich wird nur neu berechnet, wenn der Spieler die Kachel wechselt. Der Nebel liegt
+ * als Bitmap mit einem Pixel pro Kachel vor und wird mit einem einzigen, ungefilterten
+ * drawBitmap auf das Spielfeld skaliert.
+ *
+ * Berechnet wird im Simulations-Thread ({@link #update(int, int)}), die Pixel gelangen über den
+ * {@link RenderSnapshot} in den Render-Thread, der allein die Bitmap beschreibt. Die Bitmap kann
+ * vom {@link ResourceManager} freigegeben werden und wird beim nächsten Zeichnen neu erzeugt.
+ */
+class FogOfWar implements ResourceManager.Resource {
+    // Index: sichtbar (Bit 0) | gesehen (Bit 1); sichtbar ohne gesehen kommt nicht vor
+    private static final int[] FOG_COLORS = {0xFF000000, 0x00000000, 0xA0000000, 0x00000000};
+
+    private final FieldOfView fov;
+    private final int[] pixels;
+    private int version = 0;
+    private int viewerX = -1, viewerY = -1;
+
+    // nur Render-Thread (bis auf release)
+    private volatile Bitmap bitmap = null;
+    private int bitmapVersion = -1;
+    private final Rect destination;
+    private final Paint paint = new Paint();
+
+    /**
+     * @param tiles Kacheln des Levels, alle Chunks geladen; nicht begehbare Kacheln verdecken die Sicht
+     */
+    FogOfWar(TileGrid tiles) {
+        int height = tiles.getRows();
+        int width = tiles.getColumns();
+        fov = new FieldOfView(width, height);
+        for(int y = 0; y < height; y++)
+            for(int x = 0; x < width; x++) {
+                TileGraphics tile = tiles.get(x, y);
+                fov.setOpaque(x, y, tile == null || !tile.isPassable());
+            }
+        pixels = new int[width * height];
+        destination = new Rect(0, 0, (int)(width * TileGraphics.getTileSize()), (int)(height * TileGraphics.getTileSize()));
+        paint.setFilterBitmap(false);   // harte Kachelkanten
+    }
+
+    /**
+     * Sichtbereich aktualisieren, falls der Betrachter die Kachel gewechselt hat
+     * @param x X-Koordinate des Betrachters
+     * @param y Y-Koordinate des Betrachters
+     * @return true, wenn sich der Nebel geändert hat
+     */
+    boolean update(int x, int y) {
+        if(x == viewerX && y == viewerY) return false;
+        viewerX = x;
+        viewerY = y;
+        fov.compute(x, y);
+
+        long[] visible = fov.getVisibleBits();
+        long[] seen = fov.getSeenBits();
+        for(int i = 0; i < pixels.length; i++) {
+            int v = (int)(visible[i >>> 6] >>> i) & 1;
+            int s = (int)(seen[i >>> 6] >>> i) & 1;
+            pixels[i] = FOG_COLORS[v | (s << 1)];
+        }
+        version++;
+        return true;
+    }
+
+    /**
+     * Sichtdurchlässigkeit einer Kachel ändern (z.B. zerstörte Wand); der Sichtbereich wird beim
+     * nächsten {@link #update(int, int)} neu berechnet
+     * @param x X-Koordinate
+     * @param y Y-Koordinate
+     * @param opaque true: verdeckt die Sicht
+     */
+    void setOpaque(int x, int y, boolean opaque) {
+        fov.setOpaque(x, y, opaque);
+        viewerX = viewerY = -1;
+    }
+
+    /**
+     * @return wird bei jeder Änderung des Nebels erhöht
+     */
+    int getVersion() { return version; }
+
+    /**
+     * @param target wiederverwendetes Array oder null
+     * @return Kopie der Nebelpixel (eine Farbe pro Kachel)
+     */
+    int[] copyPixels(int[] target) {
+        if(target == null || target.length != pixels.length)
+            target = new int[pixels.length];
+        System.arraycopy(pixels, 0, target, 0, pixels.length);
+        return target;
+    }
+
+    /**
+     * Nebel zeichnen; die Bitmap wird nur bei neuer Version beschrieben
+     * @param canvas Zeichenfläche
+     * @param snapshotPixels Nebelpixel aus dem Snapshot
+     * @param snapshotVersion zugehörige Version
+     */
+    void draw(Canvas canvas, int[] snapshotPixels, int snapshotVersion) {
+        Bitmap bitmap = this.bitmap;
+        if(bitmap == null) {
+            bitmap = Bitmap.createBitmap(Math.max(1, fov.getWidth()), Math.max(1, fov.getHeight()), Bitmap.Config.ARGB_8888);
+            if(bitmap == null) return;
+            this.bitmap = bitmap;
+            bitmapVersion = -1;
+        }
+        if(bitmapVersion != snapshotVersion && snapshotPixels.length > 0) {
+            bitmap.setPixels(snapshotPixels, 0, fov.getWidth(), 0, 0, fov.getWidth(), fov.getHeight());
+            bitmapVersion = snapshotVersion;
+        }
+        canvas.drawBitmap(bitmap, null, destination, paint);
+    }
+
+    @Override
+    public long getByteCount() {
+        Bitmap bitmap = this.bitmap;
+        return bitmap == null ? 0 : (long) bitmap.getRowBytes() * bitmap.getHeight();
+    }
+
+    @Override
+    public void release() {
+        bitmap = null;
+    }
+}
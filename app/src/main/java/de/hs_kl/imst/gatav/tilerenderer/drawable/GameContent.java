@@ -4,20 +4,27 @@ import android.content.Context;
         import android.content.res.AssetManager;
         import android.graphics.Canvas;
         import android.graphics.Paint;
+        import android.graphics.Rect;
         import android.support.annotation.Nullable;
         import android.util.Log;
 
-        import java.io.BufferedReader;
+        import java.io.File;
         import java.io.IOException;
         import java.io.InputStream;
-        import java.io.InputStreamReader;
         import java.util.ArrayList;
-        import java.util.Collections;
         import java.util.Random;
 
+        import de.hs_kl.imst.gatav.tilerenderer.util.BallPhysics;
         import de.hs_kl.imst.gatav.tilerenderer.util.Direction;
+        import de.hs_kl.imst.gatav.tilerenderer.util.LevelData;
+        import de.hs_kl.imst.gatav.tilerenderer.util.ResourceManager;
+        import de.hs_kl.imst.gatav.tilerenderer.util.TimerWheel;
+        import de.hs_kl.imst.gatav.tilerenderer.world.ChunkCache;
+        import de.hs_kl.imst.gatav.tilerenderer.world.ChunkFile;
 
 public class GameContent implements Drawable {
+    private static final String TAG = "GameContent";
+
     /**
      * Breite und Höhe des Spielfeldes in Pixel
      */
@@ -26,11 +33,66 @@ public class GameContent implements Drawable {
     public int getGameWidth() { return gameWidth; }
     public int getGameHeight() { return gameHeight; }
 
+    /**
+     * Breite und Höhe des Spielfeldes in Kacheln
+     */
+    public int getColumns() { return tiles == null ? 0 : tiles.getColumns(); }
+    public int getRows() { return tiles == null ? 0 : tiles.getRows(); }
+
     /**
      * Beinhaltet alle Tiles, die das Spielfeld als solches darstellen. Diese werden als erstes
      * gezeichnet und bilden somit die unterste Ebene.
      */
-    private TileGraphics[][] tiles;         // [zeilen][spalten]
+    private TileGrid tiles;
+
+    /**
+     * Level, die in einer Richtung mehr Kacheln haben, werden nicht als Ganzes gezeichnet, sondern
+     * mit einer Kamera, die dem Spieler folgt (siehe {@link #isScrolling()})
+     */
+    public static final int VIEW_TILES = 32;
+    private boolean scrolling = false;
+
+    /**
+     * Große Level liegen als Chunk-Datei vor (siehe {@link #setWorldDirectory(File)}); als Kacheln
+     * existieren dann nur die Chunks im Umkreis {@link #WORLD_RADIUS} um den Spieler, der
+     * {@link ChunkCache} hält zusätzlich die zuletzt benutzten Levelzeichen. null, falls das
+     * ganze Level im Speicher liegt.
+     */
+    private ChunkCache world;
+    private File worldFile;
+    private static final int WORLD_RADIUS = 2;
+    private static final long WORLD_CACHE_BYTES = 256 * 1024;
+    private static File worldDirectory = null;
+    private static final String WORLD_SUFFIX = ".chunks";
+    private int worldFocus = -1, worldGeneration = -1;     // zuletzt abgeglichen
+    private final Rect clip = new Rect();                   // nur Render-Thread
+
+    /**
+     * Gemeinsamer Takt der animierten Kacheltypen in {@link GameContent#tiles}
+     */
+    private final AnimationClock animationClock = new AnimationClock();
+
+    /**
+     * Zwischengespeicherte unterste Ebene; wird nur vom Render-Thread verwendet
+     */
+    private StaticLayerCache staticLayer;
+
+    /**
+     * Zerstörbare Wände: Warteschlange der zum Zerstören vorgemerkten Kacheln (y * Breite + x) und
+     * Protokoll aller seit dem Laden geänderten Kacheln, aus dem der Render-Thread den
+     * {@link StaticLayerCache} nachzieht. Beide fassen alle zerstörbaren Wände, jede Wand wird
+     * höchstens einmal eingetragen; zur Laufzeit wird also nichts vergrößert.
+     */
+    private int[] destructionQueue = new int[0];
+    private int destructionHead = 0, destructionTail = 0;
+    private int[] tileChanges = new int[0];
+    private int tileChangeCount = 0;
+
+    /**
+     * Mindestgeschwindigkeit der Abrissbirne senkrecht zur Wand in Kacheln pro Sekunde, ab der
+     * zerstörbare Wände zerbrechen
+     */
+    private static final float WALL_BREAK_SPEED = 6f;
 
     /**
      * Beinhaltet Referenzen auf alle dynamischen Kacheln, deren {@link Drawable#update(float)} Methode
@@ -42,12 +104,7 @@ public class GameContent implements Drawable {
      * Beinhaltet alle Ziele. Diese werden als zweites und somit über die in {@link GameContent#tiles}
      * definierten Elemente gezeichnet.
      */
-    private TileGraphics[][] targetTiles;   // [zeilen][spalten]
-
-    /**
-     * Beinhaltet Referenzen auf alle Ziele
-     */
-    private ArrayList<TileGraphics> targets = new ArrayList<>();
+    private OverlayLayer<Target> targets;
 
     /**
      * Beinhaltet Referenzen auf Kacheln (hier alle vom Typ {@link Floor}), auf welchen ein Ziel
@@ -55,6 +112,12 @@ public class GameContent implements Drawable {
      */
     private ArrayList<TileGraphics> possibleTargets = new ArrayList<>();
 
+    /**
+     * Ordnet jeder Kachel die darauf befindlichen Elemente (Spieler, Ziele, dynamisches Ziel) zu.
+     * Grundlage aller Kollisions- und Belegungsabfragen.
+     */
+    private OccupancyIndex occupancy;
+
     /**
      * Anzahl der eingesammelten Ziele
      */
@@ -78,6 +141,31 @@ public class GameContent implements Drawable {
     private DynamicTarget dynTarget = null;
 
     public DynamicTarget getDynTarget() { return dynTarget;}
+    public Player getPlayer() { return player; }
+    public OverlayLayer<Target> getTargets() { return targets; }
+    public String getLevelName() { return levelName; }
+
+    /**
+     * Beobachter, die über Zustandsänderungen informiert werden (z.B. Zuschauer-Stream)
+     */
+    private ArrayList<GameEventListener> eventListeners = new ArrayList<>();
+    public void addGameEventListener(GameEventListener listener) { eventListeners.add(listener); }
+    public void removeGameEventListener(GameEventListener listener) { eventListeners.remove(listener); }
+
+    /**
+     * Im Spiegelbetrieb wird der Spielzustand ausschließlich von außen (Zuschauer-Stream) gesetzt,
+     * es werden also keine eigenen Ziele erzeugt.
+     */
+    private boolean mirrored = false;
+    public void setMirrored(boolean mirrored) {
+        this.mirrored = mirrored;
+        if(mirrored) {
+            timers.cancel(spawnTimer);
+            spawnTimer = -1;
+        } else
+            scheduleDynamicTargetSpawn();
+    }
+    public boolean isMirrored() { return mirrored; }
 
     /**
      * Wird in {@link GameContent#movePlayer(Direction)} verwendet, um dem Game Thread
@@ -90,11 +178,99 @@ public class GameContent implements Drawable {
     synchronized public void setPlayerDirection(Direction newDirection) { playerDirection = newDirection;}
     synchronized public Direction getPlayerDirection() { return playerDirection; }
 
+    /**
+     * Wird bei jeder sichtbaren Änderung (Zug, neues oder entferntes Ziel) gesetzt und von
+     * {@link #consumeChanged()} zurückgesetzt; Grundlage für das Zeichnen nur bei Bedarf
+     */
+    private boolean changed = true;
+
+    /**
+     * @return true, falls sich seit dem letzten Aufruf etwas am Spielzustand geändert hat
+     */
+    public boolean consumeChanged() {
+        boolean result = changed;
+        changed = false;
+        return result;
+    }
+
+    /**
+     * @return true, solange eine Animation läuft oder ein Zug des Spielers ansteht
+     */
+    public boolean isAnimating() {
+        return player.isMoving() || dynTarget != null || !isPlayerDirectionIDLE() || wreckingBalls != null
+                || particles.size() > 0;
+    }
+
+    /**
+     * Erzeugungsrate des dynamischen Ziels pro Sekunde (entspricht 0.004 pro Frame bei 60 fps)
+     */
+    private static final double DYN_TARGET_SPAWN_RATE = 0.24;
+    private static final float DYN_TARGET_SPEED = 0.4f;
+
+    /**
+     * Zeitgesteuerte Ereignisse in Spielzeit: Erzeugen und Verschwinden des dynamischen Ziels
+     */
+    private final TimerWheel timers = new TimerWheel(8);
+    private int spawnTimer = -1, expireTimer = -1;
+
+    private final Runnable spawnTask = new Runnable() {
+        @Override
+        public void run() {
+            spawnTimer = -1;
+            if(dynTarget != null || mirrored) return;
+            createAndMoveDynamicTarget();
+            if(dynTarget == null)       // keine gültige Richtung gefunden => erneut versuchen
+                scheduleDynamicTargetSpawn();
+        }
+    };
+
+    private final Runnable expireTask = new Runnable() {
+        @Override
+        public void run() {
+            expireTimer = -1;
+            if(dynTarget == null) return;
+            removeDynamicTarget();
+            for(int i = 0; i < eventListeners.size(); i++)
+                eventListeners.get(i).onDynamicTargetExpired();
+        }
+    };
+
     /**
      * Zufallszahlengenerator zum Hinzufügen neuer Ziele
      */
     private Random random = new Random();
 
+    /**
+     * Nebel des Krieges, null wenn ausgeschaltet
+     */
+    private FogOfWar fog;
+
+    /**
+     * Abrissbirnen, null außerhalb des Physik-Modus
+     */
+    private WreckingBalls wreckingBalls;
+
+    /**
+     * Partikeleffekte (eingesammelte Ziele, Trümmer); Vorrat wird einmalig angelegt
+     */
+    private final ParticleSystem particles = new ParticleSystem(ParticleSystem.DEFAULT_CAPACITY, random);
+
+    /**
+     * Verlauf der letzten Zustandsänderungen zum Zurückspulen
+     */
+    private final RewindBuffer history = new RewindBuffer(RewindBuffer.DEFAULT_CAPACITY);
+    public ParticleSystem getParticles() { return particles; }
+
+    /**
+     * Ziele des Levels mit Punkten und Auswahlgewichten
+     */
+    private TargetTable targetTable;
+
+    /**
+     * Wiederverwendete Reihenfolge der Richtungen für {@link #createAndMoveDynamicTarget()}
+     */
+    private final int[] directionOrder = {0, 1, 2, 3};
+
 
     private Context context;
 
@@ -114,22 +290,160 @@ public class GameContent implements Drawable {
      * @param levelName Name des zu ladenden Levels
      */
     public GameContent(Context context, String levelName) {
+        this(context.getAssets(), levelName, openLevel(context.getAssets(), levelName));
+        this.context = context;
+    }
+
+    /**
+     * @param context Kontext
+     * @param levelName Name des Levels
+     * @param level bereits eingelesenes Level (z.B. im Hintergrund vorab geladen)
+     */
+    public GameContent(Context context, String levelName, LevelData level) {
+        this(context.getAssets(), levelName, level);
         this.context = context;
-        this.assetManager = context.getAssets();
+    }
+
+    /**
+     * Konstruktor ohne {@link Context}, z.B. für Simulationen und Tests ohne Grafiken
+     * @param assetManager Quelle der Grafiken; null für einfarbige Kacheln
+     * @param levelName Name des Levels
+     * @param levelIs Leveldaten; null falls das Level nicht geöffnet werden konnte
+     */
+    public GameContent(AssetManager assetManager, String levelName, InputStream levelIs) {
+        this(assetManager, levelName, parseLevel(levelIs));
+    }
+
+    /**
+     * Konstruktor ohne {@link Context} für ein bereits eingelesenes Level
+     * @param assetManager Quelle der Grafiken; null für einfarbige Kacheln
+     * @param levelName Name des Levels
+     * @param level eingelesenes Level; null falls das Level nicht gelesen werden konnte
+     */
+    public GameContent(AssetManager assetManager, String levelName, LevelData level) {
+        this.assetManager = assetManager;
         this.levelName = levelName;
+        targetTable = TargetTable.load(assetManager, levelName);
 
         // Level laden mit Wall (W), Floor (F) und Player (P)
         // Target wird im geladenen Level zum Schluss zusätzlich gesetzt
         try {
-            loadLevel(assetManager.open(String.format("levels/%s.txt", levelName)));
+            if(level == null)
+                throw new IOException("Level " + levelName + " nicht gefunden");
+            loadLevel(level);
         } catch (IOException e) {
             e.printStackTrace();
         }
 
         // Player ist animiert und muss deshalb updates auf seine Position erfahren
         dynamicTiles.add(player);
+        scheduleDynamicTargetSpawn();
+        // Ausgangszustand samt der ersten Ziele ist der früheste Punkt zum Zurückspulen
+        if(player != null)
+            history.start(this);
+
+        if(assetManager == null) return;
+        // Sprite Sheets für die aktuelle Kachelgröße vorab erzeugen statt beim ersten Zeichnen
+        TextureAtlas atlas = TextureAtlas.get(assetManager, levelName);
+        if(atlas != null)
+            atlas.getSheet();
+        atlas = TextureAtlas.get(assetManager, TextureAtlas.DEFAULT_THEME);
+        if(atlas != null)
+            atlas.getSheet();
+    }
+
+
+    @Nullable
+    private static LevelData parseLevel(InputStream levelIs) {
+        if(levelIs == null) return null;
+        try {
+            return LevelData.parse(levelIs);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+
+    @Nullable
+    private static InputStream openLevel(AssetManager assetManager, String levelName) {
+        try {
+            return assetManager.open(String.format("levels/%s.txt", levelName));
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+
+    /**
+     * Zerstörbare Wand zum Zerstören vormerken; zerstört wird am Ende des Physik-Schritts in
+     * {@link #update(float)}. Nur aus dem Game Thread aufrufen.
+     * @param x X-Koordinate
+     * @param y Y-Koordinate
+     * @return true, falls dort eine noch nicht vorgemerkte zerstörbare Wand steht
+     */
+    public boolean destroyWall(int x, int y) {
+        TileGraphics tile = tiles.get(x, y);
+        if(!(tile instanceof DestructibleWall)) return false;
+        DestructibleWall wall = (DestructibleWall) tile;
+        if(wall.doomed) return false;
+        wall.doomed = true;
+        destructionQueue[destructionTail++] = y * tiles.getColumns() + x;
+        return true;
     }
 
+    /**
+     * Vorgemerkte Wände in Boden verwandeln. Jede Zerstörung ändert nur ihre eigene Kachel:
+     * Begehbarkeit (Gitter), mögliche Zielkacheln, Sichtlinien des Nebels und einen Eintrag im
+     * Änderungsprotokoll für den {@link StaticLayerCache}. Bei ausgelagerten Leveln wird zudem
+     * das Levelzeichen im Chunk ersetzt, damit die Wand nach dem Nachladen zerstört bleibt.
+     * Explosive Wände merken ihre Nachbarn vor, die noch im selben Tick folgen.
+     */
+    private void processDestruction() {
+        while(destructionHead < destructionTail) {
+            int cell = destructionQueue[destructionHead++];
+            int width = tiles.getColumns();
+            int x = cell % width;
+            int y = cell / width;
+            DestructibleWall wall = (DestructibleWall) tiles.get(x, y);
+            Floor rubble = wall.getRubble();
+            tiles.set(x, y, rubble);
+            if(world != null && !world.setCell(x, y, 'f'))
+                Log.w(TAG, "Zerstörte Wand " + x + "/" + y + " nicht im Chunk gespeichert");
+            possibleTargets.add(rubble);
+            tileChanges[tileChangeCount++] = cell;
+            if(fog != null)
+                fog.setOpaque(x, y, false);
+            particles.emitDebris(x + 0.5f, y + 0.5f, wall.isExplosive());
+            if(wall.isExplosive())
+                for(int dy = -1; dy <= 1; dy++)
+                    for(int dx = -1; dx <= 1; dx++)
+                        if(dx != 0 || dy != 0)
+                            destroyWall(x + dx, y + dy);
+        }
+        changed = true;
+    }
+
+    /**
+     * Prüft ohne zu ziehen, ob die Nachbarkachel des Players in einer Richtung begehbar ist
+     * (z.B. um einen gehaltenen Wisch nicht gegen eine Wand zu wiederholen)
+     * @param direction Richtung
+     * @return true, falls ein Zug in diese Richtung möglich ist
+     */
+    public boolean canPlayerMove(Direction direction) {
+        int x = player.getX();
+        int y = player.getY();
+        switch(direction) {
+            case UP: y--; break;
+            case DOWN: y++; break;
+            case RIGHT: x++; break;
+            case LEFT: x--; break;
+            default: return false;
+        }
+        TileGraphics targetTile = tiles.get(x, y);
+        return targetTile != null && targetTile.isPassable();
+    }
 
     /**
      * Überprüfung der Möglichkeit einer Verschiebung des Players in eine vorgegebene Richtung
@@ -151,34 +465,40 @@ public class GameContent implements Drawable {
             case RIGHT: newX = player.getX() + 1; newY = player.getY(); break;
             case LEFT: newX = player.getX() - 1; newY = player.getY(); break;
         }
-        if ((!(newX >= 0 && newX < gameWidth && newY >= 0 && newY < gameHeight)))
+        if(!tiles.isInside(newX, newY))
             throw new AssertionError("Spieler wurde außerhalb des Spielfeldes bewegt. Loch im Level?");
 
-        // Zweiter Schritt: Prüfen ob Spieler sich an Zielposition bewegen kann (Zielkachel.isPassable())
-        TileGraphics targetTile = tiles[newY][newX];
+        // Zweiter Schritt: Prüfen ob Spieler sich an Zielposition bewegen kann (Zielkachel.isPassable());
+        // bei ausgelagerten Leveln ist eine noch nicht geladene Kachel vorerst nicht begehbar
+        TileGraphics targetTile = tiles.get(newX, newY);
         if(targetTile == null || !targetTile.isPassable())
             return false;
 
         // Dritter Schritt: Spieler verschieben bzw. Verschieben starten.
         // Hinterher steht der Spieler logisch bereits auf der neuen Position
+        history.recordMove(player.getX(), player.getY());
         player.move(newX, newY);
+        changed = true;
+        for(int i = 0; i < eventListeners.size(); i++)
+            eventListeners.get(i).onPlayerMoved(newX, newY, direction);
 
         // Vierter Schritt: Prüfen ob auf der Zielkachel ein Target existiert
-        if(targetTiles[newY][newX] != null && targetTiles[newY][newX] instanceof Target) {
-            collectedTargets++;
-            collectedScore += ((Target)targetTiles[newY][newX]).getScore();
-            // Altes Ziel entfernen
-            targets.remove(targetTiles[newY][newX]);
-            targetTiles[newY][newX] = null;
+        Target target = occupancy.find(newX, newY, Target.class);
+        if(target != null) {
+            int score = target.getScore();
+            collectTarget(target);
+            for(int i = 0; i < eventListeners.size(); i++)
+                eventListeners.get(i).onTargetCollected(newX, newY, score);
             // Neues Ziel erzeugen
             createNewTarget();
         }
         // Prüfen ob auf der Zielposition das dynamische Target existert => Sonderpunkte :-)
         if(dynTarget!=null) {
-            if(samePosition(player, dynTarget)) {
-                collectedScore += dynTarget.getScore();
-                dynamicTiles.remove(dynTarget);
-                dynTarget = null;
+            if(occupancy.find(newX, newY, DynamicTarget.class) != null) {
+                int score = dynTarget.getScore();
+                catchDynamicTarget();
+                for(int i = 0; i < eventListeners.size(); i++)
+                    eventListeners.get(i).onDynamicTargetCaught(score);
             }
         }
 
@@ -187,28 +507,103 @@ public class GameContent implements Drawable {
 
 
     /**
-     * Spielinhalt zeichnen
+     * Spielinhalt zeichnen; Erfassen und Zeichnen im selben Thread (z.B. Tests)
      * @param canvas Zeichenfläche, auf die zu Zeichnen ist
      */
     @Override
     public void draw(Canvas canvas) {
-        // Erste Ebene zeichnen (Wände und Boden)
-        for (int yIndex = 0; yIndex < tiles.length; yIndex++)
-            for (int xIndex = 0; xIndex < tiles[yIndex].length; xIndex++) {
-                if(tiles[yIndex][xIndex] == null) continue;
-                tiles[yIndex][xIndex].draw(canvas);
-            }
+        capture(localSnapshot, 0, 0);
+        draw(canvas, localSnapshot);
+    }
+
+    /**
+     * Snapshot für {@link #draw(Canvas)}
+     */
+    private final RenderSnapshot localSnapshot = new RenderSnapshot();
+
+    /**
+     * Aktuellen Zustand für das nächste Bild festhalten; nur aus dem Simulations-Thread aufrufen
+     * @param snapshot zu befüllender, gerade nicht gezeichneter Snapshot
+     * @param timeCentis angezeigte Spielzeit in Hundertstelsekunden
+     * @param gameMode Spielphase für die Anzeige
+     */
+    public void capture(RenderSnapshot snapshot, int timeCentis, int gameMode) {
+        snapshot.content = this;
+        snapshot.playerX = player.getCurrentX();
+        snapshot.playerY = player.getCurrentY();
+        snapshot.dynTarget = dynTarget;
+        if(dynTarget != null) {
+            snapshot.dynX = dynTarget.getCurrentX();
+            snapshot.dynY = dynTarget.getCurrentY();
+        }
+
+        int count = targets.size();
+        if(snapshot.targets.length < count)
+            snapshot.targets = new Target[Math.max(count, snapshot.targets.length * 2)];
+        for(int i = 0; i < count; i++)
+            snapshot.targets[i] = targets.get(i);
+        for(int i = count; i < snapshot.targetCount; i++)
+            snapshot.targets[i] = null;
+        snapshot.targetCount = count;
+
+        snapshot.animationFrames = animationClock.copyFrames(snapshot.animationFrames);
+        snapshot.tileChanges = tileChanges;
+        snapshot.tileChangeCount = tileChangeCount;
+
+        if(wreckingBalls == null)
+            snapshot.ballCount = 0;
+        else
+            wreckingBalls.capture(snapshot);
+        particles.capture(snapshot);
+
+        if(fog == null)
+            snapshot.fogVersion = -1;
+        else if(snapshot.fogVersion != fog.getVersion()) {
+            snapshot.fogPixels = fog.copyPixels(snapshot.fogPixels);
+            snapshot.fogVersion = fog.getVersion();
+        }
+
+        snapshot.collectedTargets = collectedTargets;
+        snapshot.collectedScore = collectedScore;
+        snapshot.timeCentis = timeCentis;
+        snapshot.gameMode = gameMode;
+    }
+
+    /**
+     * Spielinhalt aus einem Snapshot zeichnen; liest außer dem Snapshot nur unveränderliche Daten
+     * (Grafiken) sowie Wände und Boden, die höchstens durch zerstörte Wände ersetzt werden (das
+     * Änderungsprotokoll im Snapshot sorgt für das Nachzeichnen) bzw. als ganze Chunks kommen und
+     * gehen, und darf daher parallel zu {@link #update(float)} laufen
+     * @param canvas Zeichenfläche
+     * @param snapshot mit {@link #capture(RenderSnapshot, int, int)} befüllter Zustand
+     */
+    void draw(Canvas canvas, RenderSnapshot snapshot) {
+        // Erste Ebene zeichnen (Wände und Boden); große Level nur im sichtbaren Ausschnitt
+        if(staticLayer != null)
+            staticLayer.draw(canvas, snapshot.animationFrames, snapshot.tileChanges, snapshot.tileChangeCount);
+        else if(canvas.getClipBounds(clip)) {
+            float tileSize = TileGraphics.getTileSize();
+            tiles.draw(canvas, snapshot.animationFrames, (int) Math.floor(clip.left / tileSize),
+                    (int) Math.floor(clip.top / tileSize), (int) Math.ceil(clip.right / tileSize),
+                    (int) Math.ceil(clip.bottom / tileSize));
+        }
         // Zweite Ebene zeichnen
-        for (int yIndex = 0; yIndex < targetTiles.length; yIndex++)
-            for (int xIndex = 0; xIndex < targetTiles[yIndex].length; xIndex++) {
-                if(targetTiles[yIndex][xIndex] == null) continue;
-                targetTiles[yIndex][xIndex].draw(canvas);
-            }
+        for(int i = 0; i < snapshot.targetCount; i++)
+            snapshot.targets[i].draw(canvas);
         // Dynamisches Ziel zeichnen
-        if(dynTarget!=null)
-            dynTarget.draw(canvas);
+        if(snapshot.dynTarget != null)
+            snapshot.dynTarget.drawAt(canvas, snapshot.dynX, snapshot.dynY);
+        // Abrissbirnen
+        if(wreckingBalls != null && snapshot.ballCount > 0)
+            wreckingBalls.draw(canvas, snapshot);
+        // Partikel
+        if(snapshot.particleCount > 0)
+            particles.draw(canvas, snapshot);
+        // Nebel über alles außer dem Spieler
+        if(fog != null && snapshot.fogVersion >= 0)
+            fog.draw(canvas, snapshot.fogPixels, snapshot.fogVersion);
         // Spieler zeichnen
-        player.draw(canvas);
+        player.drawAt(canvas, snapshot.playerX, snapshot.playerY);
     }
 
 
@@ -222,82 +617,263 @@ public class GameContent implements Drawable {
         // vorhandenen Player Move einmalig ausführen bzw. anstoßen, falls
         // PlayerDirection nicht IDLE ist und Player aktuell nicht in einer Animation
         //Log.d("updateGameContent", ""+isPlayerDirectionIDLE()+" "+player.isMoving());
+        occupancy.nextTick();
+        if(world != null)
+            pageWorld();
         if(!isPlayerDirectionIDLE() && !player.isMoving())
             movePlayer(getPlayerDirection());
-        // Dynamisches Ziel vielleicht erzeugen
-        if(dynTarget==null) {
-            if(random.nextDouble()<0.004)
-                createAndMoveDynamicTarget();
+
+        // 2. Schritt: Updates bei allen dynamischen Kacheln durchführen (auch Player), animierte
+        // Kacheltypen gemeinsam weiterschalten
+        for(int i = 0; i < dynamicTiles.size(); i++)     // ohne Iterator, da pro Frame aufgerufen
+            dynamicTiles.get(i).update(fracsec);
+        if(animationClock.update(fracsec))
+            changed = true;
+        if(wreckingBalls != null) {
+            wreckingBalls.update(fracsec, player.getCurrentX() + 0.5f, player.getCurrentY() + 0.5f);
+            changed = true;
+        }
+        // vorgemerkte Wände (samt Kettenreaktion) zerstören
+        if(destructionHead < destructionTail)
+            processDestruction();
+        if(particles.size() > 0) {
+            particles.update(fracsec);
+            changed = true;
         }
 
-        // 2. Schritt: Updates bei allen dynamischen Kacheln durchführen (auch Player)
-        for(TileGraphics dynamicTile : dynamicTiles)
-            dynamicTile.update(fracsec);
+        // Sichtbereich nur beim Wechsel der Kachel neu berechnen
+        if(fog != null && fog.update(player.getX(), player.getY()))
+            changed = true;
 
         // 3. Schritt: Animationen auf Ende überprüfen und ggf. wieder freischalten
         // Player Move fertig ausgeführt => Sperre für neues Player Event freischalten
         if(!player.isMoving())
             resetPlayerDirection();
-        // Animation des dynamischen Ziels abgeschlossen
-        if(dynTarget!= null && !dynTarget.isMoving()) {
-            dynamicTiles.remove(dynTarget);
-            dynTarget = null;
-        }
+        // fällige Ereignisse auslösen (dynamisches Ziel erzeugen bzw. nach seiner Animation entfernen)
+        timers.advance(fracsec);
+
+        history.endTick(fracsec, this);
+        for(int i = 0; i < eventListeners.size(); i++)
+            eventListeners.get(i).onTickEnd();
     }
 
 
     /**
-     * Level aus Stream laden und Datenstrukturen entsprechend initialisieren
-     * @param levelIs InputStream von welchem Leveldaten gelesen werden sollen
-     * @throws IOException falls beim Laden etwas schief geht (IO Fehler, Fehler in Leveldatei)
+     * Datenstrukturen anhand eines eingelesenen Levels initialisieren
+     * @param level eingelesenes Level
+     * @throws IOException falls die Leveldatei fehlerhaft ist
      */
-    private void loadLevel(InputStream levelIs) throws IOException {
-        // Erster Schritt: Leveldatei zeilenweise lesen und Inhalt zwischenspeichern. Zudem ermitteln, wie breit der Level maximal ist.
-        // Spielfeldgröße ermitteln
-        ArrayList<String> levelLines = new ArrayList<>();
-        BufferedReader br = new BufferedReader(new InputStreamReader(levelIs));
-        int maxLineLength = 0;
-        String currentLine = null;
-        while((currentLine = br.readLine()) != null) {
-            maxLineLength = Math.max(maxLineLength, currentLine.length());
-            levelLines.add(currentLine);
-        }
-        br.close();
+    private void loadLevel(LevelData level) throws IOException {
+        // Erster Schritt: Spielfeldgröße ermitteln
+        int maxLineLength = level.getWidth();
         gameWidth = (int)(maxLineLength * TileGraphics.getTileSize());
-        gameHeight = (int)(levelLines.size() * TileGraphics.getTileSize());
+        gameHeight = (int)(level.getHeight() * TileGraphics.getTileSize());
+        scrolling = maxLineLength > VIEW_TILES || level.getHeight() > VIEW_TILES;
 
 
         // Zweiter Schritt: basierend auf dem Inhalt der Leveldatei die Datenstrukturen befüllen
-        tiles = new TileGraphics[levelLines.size()][];
-        targetTiles = new TileGraphics[levelLines.size()][];
-
-        for(int yIndex = 0; yIndex < levelLines.size(); yIndex++) {
-            tiles[yIndex] = new TileGraphics[maxLineLength];
-            targetTiles[yIndex] = new TileGraphics[maxLineLength];
-            String line = levelLines.get(yIndex);
-            for(int xIndex = 0; xIndex < maxLineLength && xIndex < line.length(); xIndex++) {
-                TileGraphics tg = getTileByCharacter(line.charAt(xIndex), xIndex, yIndex);
-                // Floor Tiles sind gleichzeitig Kacheln, auf denen Ziele erscheinen können
-                if(tg instanceof Floor) {
-                    possibleTargets.add(tg);
-                    tiles[yIndex][xIndex] = tg;
-                } else if(tg instanceof Player) {   // auch auf der Player Kachel können Ziele erscheinen, zusätzlich ist sie eine Floor Kachel
-                    tiles[yIndex][xIndex] = getTileByCharacter('f', xIndex, yIndex);
-                    possibleTargets.add(tiles[yIndex][xIndex]);
+        tiles = new TileGrid(maxLineLength, level.getHeight());
+        targets = new OverlayLayer<>(maxLineLength, level.getHeight(), 8);
+
+        // Spieler suchen und Platz für alle zerstörbaren Wände und den Boden, der aus ihnen wird
+        int destructible = 0;
+        for(int yIndex = 0; yIndex < level.getHeight(); yIndex++)
+            for(int xIndex = 0; xIndex < maxLineLength; xIndex++) {
+                char c = level.get(xIndex, yIndex);
+                if(c == 'p' || c == 'P') {
                     if (player != null)
                         throw new IOException("Invalid level file, contains more than one player!");
-                    player = (Player) tg;
-                } else {                            // Wall Kacheln
-                    tiles[yIndex][xIndex] = tg;
-                }
+                    player = (Player) getTileByCharacter(c, xIndex, yIndex);
+                } else if(c == 'd' || c == 'D' || c == 'x' || c == 'X')
+                    destructible++;
             }
+        if(player == null)
+            throw new IOException("Invalid level file, contains no player!");
+        destructionQueue = new int[destructible];
+        tileChanges = new int[destructible];
+
+        if(scrolling)
+            openWorld(level);
+        if(world != null) {
+            // nur die Chunks um den Spieler als Kacheln erzeugen
+            world.focus(player.getX(), player.getY());
+            world.awaitPaging();
+            pageWorld();
+        } else {
+            for(int i = 0; i < tiles.getChunkCount(); i++)
+                tiles.setChunk(i, new TileGraphics[TileGrid.CHUNK_SIZE * TileGrid.CHUNK_SIZE]);
+            for(int yIndex = 0; yIndex < level.getHeight(); yIndex++)
+                for(int xIndex = 0; xIndex < maxLineLength; xIndex++) {
+                    TileGraphics tg = getFloorOrWall(level.get(xIndex, yIndex), xIndex, yIndex);
+                    tiles.set(xIndex, yIndex, tg);
+                    // Floor Tiles sind gleichzeitig Kacheln, auf denen Ziele erscheinen können
+                    if(tg instanceof Floor)
+                        possibleTargets.add(tg);
+                }
+            possibleTargets.ensureCapacity(possibleTargets.size() + destructible);
+        }
+
+        // große Level werden bei jedem Bild nur im sichtbaren Ausschnitt gezeichnet
+        if(!scrolling) {
+            staticLayer = new StaticLayerCache(tiles, animationClock.size());
+            ResourceManager.get().register(staticLayer, ResourceManager.PRIORITY_SURFACE);
         }
 
+        // Belegungsindex aufbauen, zunächst steht nur der Spieler im Level
+        occupancy = new OccupancyIndex(maxLineLength);
+        occupancy.add(player);
+
         // Dritter Schritt: erste Ziele erzeugen und platzieren
         createNewTarget(); createNewTarget(); createNewTarget();
     }
 
 
+    /**
+     * Großes Level als Chunk-Datei im {@link #setWorldDirectory(File) Verzeichnis} ablegen und
+     * öffnen; ohne Verzeichnis oder bei Fehlern bleibt das ganze Level im Speicher
+     * @param level eingelesenes Level
+     */
+    private void openWorld(LevelData level) {
+        File dir = getWorldDirectory();
+        if(dir == null) return;
+        try {
+            if(!dir.isDirectory() && !dir.mkdirs())
+                throw new IOException("Verzeichnis nicht anlegbar: " + dir);
+            // eigene Datei pro Spielfeld: das vorige Spielfeld kann noch zurückschreiben
+            worldFile = File.createTempFile("level", WORLD_SUFFIX, dir);
+            ChunkFile.write(level, TileGrid.CHUNK_SIZE, worldFile);
+            // die Levelzeichen des Umkreises plus einen Ring Vorrat
+            world = new ChunkCache(ChunkFile.open(worldFile), WORLD_CACHE_BYTES, WORLD_RADIUS + 1);
+        } catch(IOException e) {
+            Log.w(TAG, "Level " + levelName + " nicht auslagerbar", e);
+            if(worldFile != null)
+                worldFile.delete();
+            worldFile = null;
+        }
+    }
+
+
+    /**
+     * Kacheln an die Position des Spielers anpassen: Chunks im Umkreis {@link #WORLD_RADIUS},
+     * deren Levelzeichen geladen sind, als Kacheln erzeugen und Chunks jenseits eines weiteren
+     * Rings wieder verwerfen. Kostet nur etwas, wenn der Spieler den Chunk wechselt oder der
+     * {@link ChunkCache} nachgeladen hat. Nur aus dem Game Thread aufrufen.
+     */
+    private void pageWorld() {
+        world.focus(player.getX(), player.getY());
+        int focus = tiles.chunkIndex(player.getX(), player.getY());
+        int generation = world.getGeneration();
+        if(focus == worldFocus && generation == worldGeneration) return;
+        worldFocus = focus;
+        worldGeneration = generation;
+
+        int focusX = focus % tiles.getChunksX(), focusY = focus / tiles.getChunksX();
+        boolean loaded = false;
+        for(int index = 0; index < tiles.getChunkCount(); index++) {
+            int distance = Math.max(Math.abs(index % tiles.getChunksX() - focusX),
+                    Math.abs(index / tiles.getChunksX() - focusY));
+            if(distance <= WORLD_RADIUS && !tiles.isLoaded(index)) {
+                TileGraphics[] chunk = createChunk(index);
+                if(chunk != null) {
+                    tiles.setChunk(index, chunk);
+                    loaded = true;
+                }
+            } else if(distance > WORLD_RADIUS + 1 && tiles.isLoaded(index)) {
+                tiles.setChunk(index, null);
+                loaded = true;
+            }
+        }
+        if(!loaded) return;
+
+        // Ziele erscheinen nur auf vorhandenen Kacheln
+        possibleTargets.clear();
+        for(int y = 0; y < tiles.getRows(); y += TileGrid.CHUNK_SIZE)
+            for(int x = 0; x < tiles.getColumns(); x += TileGrid.CHUNK_SIZE) {
+                if(!tiles.isLoaded(tiles.chunkIndex(x, y))) continue;
+                for(int dy = 0; dy < TileGrid.CHUNK_SIZE; dy++)
+                    for(int dx = 0; dx < TileGrid.CHUNK_SIZE; dx++) {
+                        TileGraphics tile = tiles.get(x + dx, y + dy);
+                        if(tile instanceof Floor)
+                            possibleTargets.add(tile);
+                    }
+            }
+        changed = true;
+    }
+
+
+    /**
+     * Kacheln eines Chunks aus den Levelzeichen im {@link ChunkCache} erzeugen
+     * @param index Nummer des Chunks
+     * @return Kacheln oder null, falls die Levelzeichen (noch) nicht geladen sind
+     */
+    @Nullable
+    private TileGraphics[] createChunk(int index) {
+        int left = index % tiles.getChunksX() * TileGrid.CHUNK_SIZE;
+        int top = index / tiles.getChunksX() * TileGrid.CHUNK_SIZE;
+        TileGraphics[] chunk = new TileGraphics[TileGrid.CHUNK_SIZE * TileGrid.CHUNK_SIZE];
+        for(int dy = 0; dy < TileGrid.CHUNK_SIZE; dy++)
+            for(int dx = 0; dx < TileGrid.CHUNK_SIZE; dx++) {
+                int x = left + dx, y = top + dy;
+                if(!tiles.isInside(x, y)) continue;
+                int cell = world.getCell(x, y);
+                if(cell == ChunkCache.UNLOADED)
+                    return null;    // zwischenzeitlich verdrängt
+                chunk[dy * TileGrid.CHUNK_SIZE + dx] = getFloorOrWall((char) cell, x, y);
+            }
+        return chunk;
+    }
+
+
+    /**
+     * @return true, falls das Level größer als {@link #VIEW_TILES} ist und daher mit einer Kamera
+     *         gezeigt wird, die dem Spieler folgt
+     */
+    public boolean isScrolling() { return scrolling; }
+
+    /**
+     * @return true, falls das Level ausgelagert ist und nur die Chunks um den Spieler als Kacheln vorliegen
+     */
+    public boolean isPaged() { return world != null; }
+
+    TileGrid getTiles() { return tiles; }
+
+    /**
+     * Wartet, bis der {@link ChunkCache} alle angeforderten Chunks geladen hat (z.B. in Tests)
+     */
+    void awaitPaging() {
+        if(world != null)
+            world.awaitPaging();
+    }
+
+    /**
+     * Verzeichnis für ausgelagerte große Level; ohne Verzeichnis bleiben auch große Level ganz im
+     * Speicher. Übrig gebliebene Dateien (z.B. nach einem Absturz) werden gelöscht.
+     * @param dir Verzeichnis, z.B. im Cache der App
+     */
+    synchronized public static void setWorldDirectory(File dir) {
+        worldDirectory = dir;
+        File[] stale = dir.listFiles();
+        if(stale != null)
+            for(File file : stale)
+                if(file.getName().endsWith(WORLD_SUFFIX))
+                    file.delete();
+    }
+
+    synchronized public static boolean hasWorldDirectory() { return worldDirectory != null; }
+
+    synchronized private static File getWorldDirectory() { return worldDirectory; }
+
+    /**
+     * Chunk-Datei eines ausgelagerten Levels schließen und löschen; danach nicht mehr aktualisieren.
+     * Das Zeichnen bereits gezeichneter Snapshots bleibt möglich.
+     */
+    public void close() {
+        if(world == null) return;
+        world.close();
+        worldFile.delete();
+    }
+
+
     /**
      * Erzeugt ein dynamisches Ziel TODO
      *
@@ -312,14 +888,16 @@ public class GameContent implements Drawable {
         TileGraphics sourceTile = possibleTargets.get(random.nextInt(possibleTargets.size()));
         // Sicherstellen, dass das Ziel nicht an der gleichen Position wie der Spieler erzeugt wird
         // und sich dort nicht bereits ein normales Ziel befindet
-        while(samePosition(sourceTile, player) || targetTiles[sourceTile.getY()][sourceTile.getX()]!=null)
+        while(!occupancy.isFree(sourceTile.getX(), sourceTile.getY()))
             sourceTile = possibleTargets.get(random.nextInt(possibleTargets.size()));
 
         // Destination bestimmen, falls möglich, ansonsten Abbruch
         // 0 left, 1 right, 2 up, 3 down
-        ArrayList<Integer> dl = new ArrayList<Integer>();
-        dl.add(0); dl.add(1); dl.add(2); dl.add(3);
-        Collections.shuffle(dl);
+        int[] dl = directionOrder;
+        for(int i = dl.length - 1; i > 0; i--) {    // Fisher-Yates, ohne Objekte zu erzeugen
+            int j = random.nextInt(i + 1);
+            int tmp = dl[i]; dl[i] = dl[j]; dl[j] = tmp;
+        }
 
         TileGraphics destinationTile=null;
         Direction destinationDirection=Direction.IDLE;
@@ -327,7 +905,7 @@ public class GameContent implements Drawable {
         int newX=-1, newY=-1;
         // alle vier Richtungen zufällig durchgehen, bis die erste passt oder eben keine
         for(int i=0; i<4; i++) {
-            switch(dl.get(i)) {
+            switch(dl[i]) {
                 case 0: newX=sourceTile.getX()-1; newY=sourceTile.getY();
                     destinationDirection=Direction.LEFT; destDir=0; break;
                 case 1: newX=sourceTile.getX()+1; newY=sourceTile.getY();
@@ -337,9 +915,7 @@ public class GameContent implements Drawable {
                 case 3: newX=sourceTile.getX(); newY=sourceTile.getY()+1;
                     destinationDirection=Direction.DOWN; destDir=3; break;
             }
-            if ((!(newX >= 0 && newX < gameWidth && newY >= 0 && newY < gameHeight)))
-                continue;
-            destinationTile = tiles[newY][newX];
+            destinationTile = tiles.get(newX, newY);
             if(destinationTile == null || !destinationTile.isPassable()) {
                 destinationTile = null;
                 continue;
@@ -349,11 +925,108 @@ public class GameContent implements Drawable {
         if(destinationTile==null)
             return;
 
-        // Dynamischen Ziel erzeugen und Move einstellen
-        dynTarget = new DynamicTarget(sourceTile.getX(), sourceTile.getY(), getGraphicsStream(levelName, "sse"+destDir));  // TODO
+        spawnDynamicTarget(sourceTile.getX(), sourceTile.getY(), destinationDirection);
+        history.recordDynamicSpawn();
+        for(int i = 0; i < eventListeners.size(); i++)
+            eventListeners.get(i).onDynamicTargetSpawned(sourceTile.getX(), sourceTile.getY(), destinationDirection);
+    }
+
+
+    /**
+     * Dynamisches Ziel an einer Position erzeugen und den Move in eine Richtung einstellen.
+     * Die Sprite-Nummer entspricht der Ordinalzahl der Richtung (0 left, 1 right, 2 up, 3 down).
+     * @param x X-Koordinate der Quelle
+     * @param y Y-Koordinate der Quelle
+     * @param direction Bewegungsrichtung
+     */
+    private void spawnDynamicTarget(int x, int y, Direction direction) {
+        int newX = x, newY = y;
+        switch(direction) {
+            case LEFT: newX--; break;
+            case RIGHT: newX++; break;
+            case UP: newY--; break;
+            case DOWN: newY++; break;
+        }
+        dynTarget = new DynamicTarget(x, y, getSprite(levelName, "sse"+direction.ordinal()));  // TODO
+        occupancy.add(dynTarget);
         dynTarget.move(newX, newY);
-        dynTarget.setSpeed(0.4f);   // TODO
+        dynTarget.setSpeed(DYN_TARGET_SPEED);
         dynamicTiles.add(dynTarget);
+        // verschwindet, sobald die Bewegung über eine Kachel abgeschlossen ist
+        timers.cancel(expireTimer);
+        expireTimer = timers.schedule(expireTask, Math.round(1000 / DYN_TARGET_SPEED));
+        changed = true;
+    }
+
+
+    /**
+     * Ziel einsammeln und entfernen
+     * @param target Ziel
+     */
+    private void collectTarget(Target target) {
+        history.recordCollect(target.getX(), target.getY(), target.getNumber());
+        collectedTargets++;
+        collectedScore += target.getScore();
+        targetTable.updateForScore(collectedScore);
+        particles.emitPickup(target.getX() + 0.5f, target.getY() + 0.5f, target.getScore());
+        // Altes Ziel entfernen
+        targets.remove(target);
+        occupancy.remove(target);
+        changed = true;
+    }
+
+
+    /**
+     * Dynamisches Ziel fangen: Sonderpunkte gutschreiben und Ziel entfernen
+     */
+    private void catchDynamicTarget() {
+        history.recordDynamicCatch(dynTarget.getScore());
+        collectedScore += dynTarget.getScore();
+        targetTable.updateForScore(collectedScore);
+        particles.emitPickup(dynTarget.getCurrentX() + 0.5f, dynTarget.getCurrentY() + 0.5f, dynTarget.getScore());
+        removeDynamicTarget();
+    }
+
+
+    /**
+     * Dynamisches Ziel aus dem Spiel nehmen
+     */
+    private void removeDynamicTarget() {
+        dynamicTiles.remove(dynTarget);
+        occupancy.remove(dynTarget);
+        dynTarget = null;
+        timers.cancel(expireTimer);
+        expireTimer = -1;
+        scheduleDynamicTargetSpawn();
+        changed = true;
+    }
+
+
+    /**
+     * Nächstes dynamisches Ziel planen; die Abstände sind exponentialverteilt (Poisson-Prozess
+     * mit {@link #DYN_TARGET_SPAWN_RATE}), unabhängig von der Bildrate
+     */
+    private void scheduleDynamicTargetSpawn() {
+        if(mirrored || player == null || possibleTargets.isEmpty() || timers.isScheduled(spawnTimer))
+            return;
+        double seconds = -Math.log(1 - random.nextDouble()) / DYN_TARGET_SPAWN_RATE;
+        spawnTimer = timers.schedule(spawnTask, (long) (seconds * 1000));
+    }
+
+
+    /**
+     * @return Millisekunden Spielzeit bis zum nächsten zeitgesteuerten Ereignis, -1 falls keines
+     *         geplant ist
+     */
+    public long getMillisUntilNextEvent() { return timers.getMillisUntilNext(); }
+
+    /**
+     * Spielzeit ohne Aktualisierung der Animationen vergehen lassen (z.B. während die Gameloop
+     * ohne laufende Animation geschlafen hat); fällige Ereignisse werden ausgelöst
+     * @param fracsec Spielzeit in Sekunden
+     */
+    public void advanceIdleTime(float fracsec) {
+        timers.advance(fracsec);
     }
 
 
@@ -366,16 +1039,65 @@ public class GameContent implements Drawable {
         TileGraphics targetTile = possibleTargets.get(random.nextInt(possibleTargets.size()));
         // Sicherstellen, dass das Ziel nicht an der gleichen Position wie der Spieler erzeugt wird
         // und sich dort nicht bereits ein Ziel befindet
-        while(samePosition(targetTile, player) || targetTiles[targetTile.getY()][targetTile.getX()]!=null)
+        while(!occupancy.isFree(targetTile.getX(), targetTile.getY()))
             targetTile = possibleTargets.get(random.nextInt(possibleTargets.size()));
 
         // Ziel zufällig auswählen
         Target newTarget = chooseTarget(targetTile.getX(), targetTile.getY(), 0);
 
-        targetTiles[newTarget.getY()][newTarget.getX()] = newTarget;
         targets.add(newTarget);
+        occupancy.add(newTarget);
+        history.recordSpawn(newTarget.getX(), newTarget.getY());
+        changed = true;
+        for(int i = 0; i < eventListeners.size(); i++)
+            eventListeners.get(i).onTargetSpawned(newTarget.getX(), newTarget.getY(), newTarget.getNumber());
+    }
+
+
+    /**
+     * Nebel des Krieges ein- oder ausschalten; nur aus dem Game Thread bzw. vor dessen Start
+     * aufrufen. In ausgelagerten Leveln (siehe {@link #isPaged()}) nicht verfügbar.
+     * @param enabled true: nur Kacheln in Sichtlinie des Spielers sind sichtbar
+     */
+    public void setFogOfWar(boolean enabled) {
+        if(enabled == (fog != null)) return;
+        if(enabled && world != null) {
+            Log.w(TAG, "Kein Nebel in ausgelagerten Leveln, er benötigt das ganze Level");
+            return;
+        }
+        if(enabled) {
+            fog = new FogOfWar(tiles);
+            fog.update(player.getX(), player.getY());
+            ResourceManager.get().register(fog, ResourceManager.PRIORITY_SURFACE);
+        } else
+            fog = null;     // Bitmap nicht recyceln, der Render-Thread könnte sie gerade zeichnen
+        changed = true;
+    }
+
+    public boolean isFogOfWar() { return fog != null; }
+
+    /**
+     * Abrissbirne am Spieler ein- oder ausschalten; nur aus dem Game Thread bzw. vor dessen Start aufrufen
+     * @param enabled true: am Spieler hängt eine Kugel, die beim Laufen mitschwingt
+     */
+    public void setWreckingBall(boolean enabled) {
+        if(enabled == (wreckingBalls != null)) return;
+        if(enabled) {
+            wreckingBalls = new WreckingBalls(tiles);
+            wreckingBalls.getPhysics().setHitListener(new BallPhysics.HitListener() {
+                @Override
+                public void onHit(int ball, int cellX, int cellY, float speed) {
+                    if(speed >= WALL_BREAK_SPEED)
+                        destroyWall(cellX, cellY);
+                }
+            });
+            wreckingBalls.attach(player.getCurrentX() + 0.5f, player.getCurrentY() + 0.5f);
+        } else
+            wreckingBalls = null;
+        changed = true;
     }
 
+    public boolean isWreckingBall() { return wreckingBalls != null; }
 
     /**
      * Sucht das neue Ziel aus
@@ -385,69 +1107,230 @@ public class GameContent implements Drawable {
      * @return Das Ziel
      */
     private Target chooseTarget(int x, int y, int targetNumber) {
-        int targetScores [] = {1, 2, 4, 8};    // TODO
-        double targetProps [] = {0.6, 0.8,0.95}; // TODO
-        int targetIndex;
-
-        // zufällige Auswahl des Targets nach Wahrscheinlichkeiten in targetProps
-        if(targetNumber==0) {
-            double dice = random.nextDouble();
-            targetIndex = targetProps.length;
-            while (targetIndex > 0 && dice < targetProps[targetIndex-1])
-                targetIndex--;
-            targetNumber = targetIndex+1;
-        } else  // explizite Wahl der Nummer des Targets
-        {
-            if(targetNumber<1 || targetNumber>targetScores.length)    // explizit ausgewähltes Target
-                targetNumber = 1;
-            targetIndex=targetNumber-1;
+        // zufällige Auswahl des Targets nach den Gewichten der Zieltabelle
+        if(targetNumber==0)
+            targetNumber = targetTable.sample(random);
+        else if(targetNumber<1 || targetNumber>targetTable.size())    // explizit ausgewähltes Target
+            targetNumber = 1;
+
+        return new Target(x, y, getSprite(levelName, targetTable.getSpriteName(targetNumber)),
+                targetTable.getScore(targetNumber), targetNumber);
+    }
+
+
+    /**
+     * Spielzustand um einige Sekunden Spielzeit zurücksetzen: Spieler, Ziele und Punktestand.
+     * Zerstörte Wände bleiben zerstört, ein dynamisches Ziel wird entfernt. Beobachter (z.B.
+     * Zuschauer-Stream) werden nicht informiert. Nur aus dem Game Thread aufrufen.
+     * @param seconds so weit zurück, höchstens so weit wie der Verlauf reicht
+     * @return Anzahl rückgängig gemachter Einträge
+     */
+    public int rewind(float seconds) {
+        if(player.isMoving())
+            player.finishMove();
+        resetPlayerDirection();
+        if(dynTarget != null)
+            removeDynamicTarget();
+        int undone = history.rewind(this, seconds);
+        changed = true;
+        return undone;
+    }
+
+    /**
+     * @return Spielzeit des Verlaufs in Millisekunden
+     */
+    int getHistoryTimeMillis() { return history.getTimeMillis(); }
+
+    /**
+     * @return Spielzeit in Millisekunden, bis zu der zurückgespult werden kann
+     */
+    int getHistoryStartMillis() { return history.getOldestMillis(); }
+
+    /*
+     * Zurückspulen: Umkehrung der im Verlauf eingetragenen Änderungen, aufgerufen von RewindBuffer
+     */
+
+    void undoMove(int fromX, int fromY) {
+        if(player.isMoving())
+            player.finishMove();
+        player.move(fromX, fromY);
+        player.finishMove();
+    }
+
+    void undoCollect(int x, int y, int targetNumber) {
+        if(!targets.isInside(x, y) || targets.get(x, y) != null)
+            return;
+        Target target = chooseTarget(x, y, targetNumber);
+        targets.add(target);
+        occupancy.add(target);
+        collectedTargets--;
+        collectedScore -= target.getScore();
+        targetTable.updateForScore(collectedScore);
+    }
+
+    void undoSpawn(int x, int y) {
+        Target target = targets.get(x, y);
+        if(target != null) {
+            targets.remove(target);
+            occupancy.remove(target);
         }
+    }
+
+    void undoDynamicSpawn() {
+        if(dynTarget != null)
+            removeDynamicTarget();
+    }
 
-        return new Target(x, y, getGraphicsStream(levelName, "can"+targetNumber), targetScores[targetIndex]);   // TODO
+    void undoDynamicCatch(int score) {
+        collectedScore -= score;
+        targetTable.updateForScore(collectedScore);
     }
 
 
+    /*
+     * Spiegelbetrieb: Anwenden von außen (Zuschauer-Stream) empfangener Zustandsänderungen.
+     * Diese Methoden dürfen nur aus dem Game Thread heraus aufgerufen werden.
+     */
+
     /**
-     * Prüft ob zwei Kacheln auf den gleichen Koordinaten liegen
-     * @param a erste Kachel
-     * @param b zweite Kachel
-     * @return true wenn Position gleich, andernfalls false
+     * Setzt den kompletten Spielzustand zurück: alle Ziele und das dynamische Ziel werden entfernt,
+     * Spieler und Punktestand werden direkt gesetzt
+     * @param playerX X-Koordinate des Spielers
+     * @param playerY Y-Koordinate des Spielers
+     * @param collected Anzahl eingesammelter Ziele
+     * @param score Punktestand
      */
-    private boolean samePosition(TileGraphics a, TileGraphics b) {
-        if(a.getX() == b.getX() && a.getY() == b.getY())
-            return true;
-        return false;
+    public void mirrorReset(int playerX, int playerY, int collected, int score) {
+        for(int i = 0; i < targets.size(); i++)
+            occupancy.remove(targets.get(i));
+        targets.clear();
+        if(dynTarget != null)
+            removeDynamicTarget();
+        player.move(playerX, playerY);
+        player.finishMove();
+        resetPlayerDirection();
+        collectedTargets = collected;
+        collectedScore = score;
+        targetTable.updateForScore(collectedScore);
+        changed = true;
     }
 
     /**
-     * Besorgt Inputstream einer Grafikdatei eines bestimmten Levels aus den Assets
+     * Spieler auf eine Nachbarkachel bewegen; eine evtl. noch laufende Animation wird abgeschlossen
+     * @param x neue X-Koordinate
+     * @param y neue Y-Koordinate
+     */
+    public void mirrorPlayerMove(int x, int y) {
+        if(player.isMoving())
+            player.finishMove();
+        player.move(x, y);
+        changed = true;
+    }
+
+    /**
+     * Ziel an vorgegebener Position platzieren
+     * @param x X-Koordinate
+     * @param y Y-Koordinate
+     * @param targetNumber Nummer des Ziels (1-...)
+     */
+    public void mirrorTargetSpawn(int x, int y, int targetNumber) {
+        if(!targets.isInside(x, y) || targets.get(x, y) != null)
+            return;
+        Target newTarget = chooseTarget(x, y, targetNumber);
+        targets.add(newTarget);
+        occupancy.add(newTarget);
+        changed = true;
+    }
+
+    /**
+     * Ziel an vorgegebener Position einsammeln
+     * @param x X-Koordinate
+     * @param y Y-Koordinate
+     */
+    public void mirrorTargetCollect(int x, int y) {
+        Target target = targets.get(x, y);
+        if(target != null)
+            collectTarget(target);
+    }
+
+    /**
+     * Dynamisches Ziel erzeugen; ein evtl. vorhandenes wird ersetzt
+     * @param x X-Koordinate der Quelle
+     * @param y Y-Koordinate der Quelle
+     * @param direction Bewegungsrichtung
+     */
+    public void mirrorDynamicTargetSpawn(int x, int y, Direction direction) {
+        if(dynTarget != null)
+            removeDynamicTarget();
+        spawnDynamicTarget(x, y, direction);
+    }
+
+    /**
+     * Dynamisches Ziel wurde gefangen
+     */
+    public void mirrorDynamicTargetCaught() {
+        if(dynTarget != null)
+            catchDynamicTarget();
+    }
+
+    /**
+     * Dynamisches Ziel ist ungefangen verschwunden
+     */
+    public void mirrorDynamicTargetExpired() {
+        if(dynTarget != null)
+            removeDynamicTarget();
+    }
+
+
+    /**
+     * Besorgt eine Grafik eines bestimmten Levels aus dessen Texturatlas bzw. dem Standard-Atlas
      * @param levelName     Levelname
      * @param graphicsName  Grafikname
-     * @return Inputstream
+     * @return Grafik oder null, falls nicht vorhanden
      */
-    private InputStream getGraphicsStream(String levelName, String graphicsName) {
-        try {
-            return assetManager.open("levels/" + levelName + "/" + graphicsName + ".png");
-        }catch(IOException e){
-            try {
-                return assetManager.open("levels/default/" + graphicsName + ".png");
-            }catch(IOException e2){
-                return null;
-            }
-        }
+    private Sprite getSprite(String levelName, String graphicsName) {
+        if(assetManager == null) return null;
+        return TextureAtlas.getSprite(assetManager, levelName, graphicsName);
     }
 
 
+    /**
+     * Kachel mit der Animation ihres Typs versehen, falls der Atlas Bilder &lt;name&gt;_0, ... enthält
+     * @param tile Kachel
+     * @param name Name des Kacheltyps
+     * @return tile
+     */
+    private TileGraphics animate(TileGraphics tile, String name) {
+        tile.setAnimation(animationClock.get(assetManager, levelName, name));
+        return tile;
+    }
+
     @Nullable
     private TileGraphics getTileByCharacter(char c, int xIndex, int yIndex) {
         switch(c) {
             case 'w':
-            case 'W': return new Wall(xIndex, yIndex, getGraphicsStream(levelName, "wall"));    // TODO
+            case 'W': return animate(new Wall(xIndex, yIndex, getSprite(levelName, "wall")), "wall");    // TODO
+            case 'd':
+            case 'D': return new DestructibleWall(xIndex, yIndex, getSprite(levelName, "wall_destructible"), false,
+                    (Floor) getTileByCharacter('f', xIndex, yIndex));
+            case 'x':
+            case 'X': return new DestructibleWall(xIndex, yIndex, getSprite(levelName, "wall_explosive"), true,
+                    (Floor) getTileByCharacter('f', xIndex, yIndex));
             case 'f':
-            case 'F': return new Floor(xIndex, yIndex, null);
+            case 'F': return animate(new Floor(xIndex, yIndex, null), "floor");
             case 'p':
-            case 'P': return new Player(xIndex, yIndex, getGraphicsStream(levelName, "bender"));
+            case 'P': return new Player(xIndex, yIndex, getSprite(levelName, "bender"));
         }
         return null;
     }
+
+    /**
+     * Kachel der untersten Ebene; die Startposition des Spielers ist Boden
+     */
+    @Nullable
+    private TileGraphics getFloorOrWall(char c, int xIndex, int yIndex) {
+        if(c == 'p' || c == 'P')
+            c = 'f';
+        return getTileByCharacter(c, xIndex, yIndex);
+    }
 }
@@ -0,0 +1,59 @@
+package de.hs_kl.imst.gatav.tilerenderer.drawable;
+
+import de.hs_kl.imst.gatav.tilerenderer.util.Direction;
+
+/**
+ * Beobachter für Zustandsänderungen in {@link GameContent}.
+ *
+ * Alle Methoden werden synchron aus dem Game Thread heraus aufgerufen und übergeben nur primitive
+ * Werte, damit Implementierungen ohne Allokation pro Ereignis auskommen können.
+ */
+public interface GameEventListener {
+    /**
+     * Spieler hat einen Zug auf eine Nachbarkachel begonnen
+     * @param x neue X-Koordinate
+     * @param y neue Y-Koordinate
+     * @param direction Zugrichtung
+     */
+    void onPlayerMoved(int x, int y, Direction direction);
+
+    /**
+     * Neues Ziel wurde platziert
+     * @param x X-Koordinate
+     * @param y Y-Koordinate
+     * @param targetNumber Nummer des Ziels (1-...)
+     */
+    void onTargetSpawned(int x, int y, int targetNumber);
+
+    /**
+     * Ziel wurde vom Spieler eingesammelt
+     * @param x X-Koordinate
+     * @param y Y-Koordinate
+     * @param score Punkte des Ziels
+     */
+    void onTargetCollected(int x, int y, int score);
+
+    /**
+     * Dynamisches Ziel wurde erzeugt und bewegt sich von (x,y) aus in die angegebene Richtung
+     * @param x X-Koordinate der Quelle
+     * @param y Y-Koordinate der Quelle
+     * @param direction Bewegungsrichtung
+     */
+    void onDynamicTargetSpawned(int x, int y, Direction direction);
+
+    /**
+     * Dynamisches Ziel wurde vom Spieler gefangen
+     * @param score Sonderpunkte
+     */
+    void onDynamicTargetCaught(int score);
+
+    /**
+     * Dynamisches Ziel hat seine Bewegung beendet, ohne gefangen zu werden
+     */
+    void onDynamicTargetExpired();
+
+    /**
+     * Ende eines Aufrufs von {@link GameContent#update(float)}
+     */
+    void onTickEnd();
+}
@@ -4,8 +4,6 @@ package de.hs_kl.imst.gatav.tilerenderer.drawable;
 import android.graphics.Canvas;
 import android.util.Log;
 
-import java.io.InputStream;
-
 import de.hs_kl.imst.gatav.tilerenderer.util.Direction;
 
 public abstract class MovableTileGraphics extends TileGraphics {
@@ -17,13 +15,22 @@ public abstract class MovableTileGraphics extends TileGraphics {
     protected float currentX, currentY;     // Gleitkomma-Koordinaten zur Bewegung zwischen zwei Kacheln
     protected int targetX, targetY;
 
+    /**
+     * @return X-Position in Kacheln, während einer Bewegung zwischen zwei Kacheln
+     */
+    public float getCurrentX() { return currentX; }
+    public float getCurrentY() { return currentY; }
+
+    public int getSourceX() { return isMoving() ? sourceX : x; }
+    public int getSourceY() { return isMoving() ? sourceY : y; }
+
     protected volatile Direction currentDirection = Direction.IDLE;  // aktuell keine Bewegung
     synchronized public boolean isMoving() { return currentDirection != Direction.IDLE; }
     synchronized protected void setMovingDirection(Direction newDirection) { currentDirection = newDirection; }
 
 
-    public MovableTileGraphics(int x, int y, InputStream is) {
-        super(x, y, is);
+    public MovableTileGraphics(int x, int y, Sprite sprite) {
+        super(x, y, sprite);
         currentX = x;
         currentY = y;
     }
@@ -52,6 +59,32 @@ public abstract class MovableTileGraphics extends TileGraphics {
         super.move(x, y);
     }
 
+    /**
+     * Bricht eine laufende Animation ab und setzt das Element direkt auf seine logische Position
+     */
+    public void finishMove() {
+        currentX = x;
+        currentY = y;
+        stopMoving();
+    }
+
+    /**
+     * Animation beendet: Stillstandssignal setzen und verlassene Kachel im Belegungsindex freigeben
+     */
+    private void stopMoving() {
+        setMovingDirection(Direction.IDLE);
+        if(occupancy != null)
+            occupancy.settled(this);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected boolean isInTransit() {
+        return isMoving();
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -68,7 +101,7 @@ public abstract class MovableTileGraphics extends TileGraphics {
             if((currentDirection == Direction.LEFT && currentX <= targetX) ||
                     (currentDirection == Direction.RIGHT && currentX >= targetX)) {
                 currentX = targetX;
-                setMovingDirection(Direction.IDLE);
+                stopMoving();
             }
         }else if(currentDirection == Direction.UP || currentDirection == Direction.DOWN) {
             currentY += fracsec * deltaY * speed;   // Bewegung
@@ -77,7 +110,7 @@ public abstract class MovableTileGraphics extends TileGraphics {
             if((currentDirection == Direction.UP && currentY <= targetY) ||
                     (currentDirection == Direction.DOWN && currentY >= targetY)) {
                 currentY = targetY;
-                setMovingDirection(Direction.IDLE);
+                stopMoving();
             }
         }
 
@@ -88,15 +121,23 @@ public abstract class MovableTileGraphics extends TileGraphics {
      */
     @Override
     public void draw(Canvas canvas) {
+        drawAt(canvas, currentX, currentY);
+    }
+
+    /**
+     * Zeichnet das Element an einer vorgegebenen Position, z.B. aus einem {@link RenderSnapshot}
+     * @param canvas Zeichenfläche
+     * @param tileX X-Position in Kacheln
+     * @param tileY Y-Position in Kacheln
+     */
+    void drawAt(Canvas canvas, float tileX, float tileY) {
         // Aktuelle Transformationsmatrix speichern
         canvas.save();
         // Transformationsmatrix an Pixel-Koordinate von Block verschieben
-        canvas.translate(currentX * tileSize, currentY * tileSize);
-        // An der aktuellen Position ein Rechteck entsprechender Größe oder die existierende Bitmap
-        if(tileBitmap == null)
+        canvas.translate(tileX * tileSize, tileY * tileSize);
+        // An der aktuellen Position die Grafik oder ersatzweise ein Rechteck entsprechender Größe
+        if(sprite == null || !sprite.draw(canvas, 0, 0))
             canvas.drawRect(0, 0, tileSize, tileSize, tilePaint);
-        else
-            canvas.drawBitmap(tileBitmap, 0 , 0, null);
         // Transformationsmatrix auf den Stand von vorherigem canvas.save() zurücksetzen
         canvas.restore();
     }
@@ -0,0 +1,214 @@
+package de.hs_kl.imst.gatav.tilerenderer.drawable;
+
+import java.util.Arrays;
+
+import de.hs_kl.imst.gatav.tilerenderer.util.IntIntMap;
+
+/**
+ * Index, der jeder Kachel des Spielfeldes die darauf befindlichen Elemente (Spieler, Ziele, ...)
+ * zuordnet. Ersetzt das Durchsuchen aller Elemente bei Kollisions- und Belegungsabfragen.
+ *
+ * Jedes Element belegt seine logische Kachel ({@link TileGraphics#getX()}, {@link TileGraphics#getY()})
+ * und, solange es sich bewegt, zusätzlich die Kachel, die es gerade verlässt. Pro Kachel werden die
+ * Elemente als doppelt verkettete Liste über int-Arrays geführt; der Kopf jeder Liste liegt in einer
+ * {@link IntIntMap}. Damit sind Einfügen, Entfernen und Verschieben O(1) und Abfragen O(Anzahl der
+ * Elemente auf der Kachel), ohne dass Objekte erzeugt werden.
+ *
+ * Registrierte Elemente melden ihre Bewegungen selbst (siehe {@link TileGraphics#move(int, int)}).
+ */
+public class OccupancyIndex {
+    private static final int NONE = -1;
+    private static final int SLOT_CELL = 0;     // logische Kachel
+    private static final int SLOT_LEAVING = 1;  // Kachel, die gerade verlassen wird
+
+    private final int columns;
+
+    private TileGraphics[] entities = new TileGraphics[16];
+    private int[] enterTick = new int[16];
+    private int[] freeIds = new int[16];
+    private int freeCount = 0;
+    private int idCount = 0;
+
+    // pro Knoten (id * 2 + slot)
+    private int[] nodeCell = new int[32];
+    private int[] nodeNext = new int[32];
+    private int[] nodePrev = new int[32];
+
+    private final IntIntMap heads = new IntIntMap(64);
+
+    private int tick = 0;
+
+    /**
+     * @param columns Breite des Spielfeldes in Kacheln
+     */
+    public OccupancyIndex(int columns) {
+        this.columns = columns;
+        Arrays.fill(nodeCell, NONE);
+    }
+
+    /**
+     * Beginnt einen neuen Tick; Elemente, die ab jetzt eine Kachel betreten, gelten als
+     * "in diesem Tick eingetreten"
+     */
+    public void nextTick() {
+        tick++;
+    }
+
+    /**
+     * Element an seiner aktuellen Position aufnehmen
+     * @param entity Element
+     */
+    public void add(TileGraphics entity) {
+        if(entity.occupancy != null)
+            throw new IllegalStateException("Element ist bereits in einem Belegungsindex registriert");
+        int id = freeCount > 0 ? freeIds[--freeCount] : idCount++;
+        ensureCapacity(id);
+        entities[id] = entity;
+        entity.occupancy = this;
+        entity.occupancyId = id;
+        enterTick[id] = tick;
+        link(id * 2 + SLOT_CELL, cellOf(entity.getX(), entity.getY()));
+    }
+
+    /**
+     * Element aus dem Index entfernen
+     * @param entity Element
+     */
+    public void remove(TileGraphics entity) {
+        if(entity.occupancy != this) return;
+        int id = entity.occupancyId;
+        unlink(id * 2 + SLOT_CELL);
+        unlink(id * 2 + SLOT_LEAVING);
+        entities[id] = null;
+        entity.occupancy = null;
+        entity.occupancyId = NONE;
+        freeIds[freeCount++] = id;
+    }
+
+    /**
+     * Wird von {@link TileGraphics#move(int, int)} aufgerufen, nachdem die logische Position
+     * geändert wurde
+     * @param entity Element
+     * @param oldX bisherige X-Koordinate
+     * @param oldY bisherige Y-Koordinate
+     * @param inTransit true, falls die bisherige Kachel bis zum Ende der Animation belegt bleibt
+     */
+    void moved(TileGraphics entity, int oldX, int oldY, boolean inTransit) {
+        int id = entity.occupancyId;
+        unlink(id * 2 + SLOT_LEAVING);
+        unlink(id * 2 + SLOT_CELL);
+        if(inTransit)
+            link(id * 2 + SLOT_LEAVING, cellOf(oldX, oldY));
+        link(id * 2 + SLOT_CELL, cellOf(entity.getX(), entity.getY()));
+        enterTick[id] = tick;
+    }
+
+    /**
+     * Wird am Ende einer Bewegungsanimation aufgerufen und gibt die verlassene Kachel frei
+     * @param entity Element
+     */
+    void settled(TileGraphics entity) {
+        unlink(entity.occupancyId * 2 + SLOT_LEAVING);
+    }
+
+    /**
+     * @return true, wenn sich auf der Kachel kein Element befindet (auch keines, das sie gerade verlässt)
+     */
+    public boolean isFree(int x, int y) {
+        return !heads.containsKey(cellOf(x, y));
+    }
+
+    /**
+     * Erstes Element eines Typs, dessen logische Position die Kachel ist
+     * @param x X-Koordinate
+     * @param y Y-Koordinate
+     * @param type gesuchter Typ
+     * @return Element oder null
+     */
+    public <T extends TileGraphics> T find(int x, int y, Class<T> type) {
+        for(int node = heads.get(cellOf(x, y), NONE); node != NONE; node = nodeNext[node])
+            if((node & 1) == SLOT_CELL && type.isInstance(entities[node >> 1]))
+                return type.cast(entities[node >> 1]);
+        return null;
+    }
+
+    /*
+     * Iteration über alle Elemente einer Kachel ohne Objekterzeugung:
+     * for(int n = index.first(x, y); n >= 0; n = index.next(n)) index.entityAt(n) ...
+     */
+
+    /**
+     * @return erster Knoten der Kachel oder -1
+     */
+    public int first(int x, int y) {
+        return heads.get(cellOf(x, y), NONE);
+    }
+
+    /**
+     * @return nächster Knoten oder -1
+     */
+    public int next(int node) {
+        return nodeNext[node];
+    }
+
+    public TileGraphics entityAt(int node) {
+        return entities[node >> 1];
+    }
+
+    /**
+     * @return true, falls das Element des Knotens die Kachel gerade verlässt
+     */
+    public boolean isLeaving(int node) {
+        return (node & 1) == SLOT_LEAVING;
+    }
+
+    /**
+     * @return true, falls das Element des Knotens die Kachel in diesem Tick betreten hat
+     */
+    public boolean isEntering(int node) {
+        return (node & 1) == SLOT_CELL && enterTick[node >> 1] == tick;
+    }
+
+    private int cellOf(int x, int y) {
+        return y * columns + x;
+    }
+
+    private void link(int node, int cell) {
+        int head = heads.get(cell, NONE);
+        nodeCell[node] = cell;
+        nodePrev[node] = NONE;
+        nodeNext[node] = head;
+        if(head != NONE)
+            nodePrev[head] = node;
+        heads.put(cell, node);
+    }
+
+    private void unlink(int node) {
+        int cell = nodeCell[node];
+        if(cell == NONE) return;
+        int prev = nodePrev[node];
+        int next = nodeNext[node];
+        if(prev != NONE)
+            nodeNext[prev] = next;
+        else if(next != NONE)
+            heads.put(cell, next);
+        else
+            heads.remove(cell, NONE);
+        if(next != NONE)
+            nodePrev[next] = prev;
+        nodeCell[node] = NONE;
+    }
+
+    private void ensureCapacity(int id) {
+        if(id < entities.length) return;
+        int capacity = entities.length * 2;
+        entities = Arrays.copyOf(entities, capacity);
+        enterTick = Arrays.copyOf(enterTick, capacity);
+        freeIds = Arrays.copyOf(freeIds, capacity);
+        int oldNodes = nodeCell.length;
+        nodeCell = Arrays.copyOf(nodeCell, capacity * 2);
+        Arrays.fill(nodeCell, oldNodes, nodeCell.length, NONE);
+        nodeNext = Arrays.copyOf(nodeNext, capacity * 2);
+        nodePrev = Arrays.copyOf(nodePrev, capacity * 2);
+    }
+}
@@ -0,0 +1,107 @@
+package de.hs_kl.imst.gatav.tilerenderer.drawable;
+
+import de.hs_kl.imst.gatav.tilerenderer.util.IntIntMap;
+
+/**
+ * Dünn besetzte Ebene über dem Kachelraster (z.B. Ziele, Pickups, Markierungen): höchstens ein
+ * Element pro Kachel.
+ *
+ * Die Elemente liegen lückenlos in einem Array (Entfernen durch Nachrücken des letzten Elements),
+ * zusätzlich ordnet eine {@link IntIntMap} jeder belegten Kachel ihren Index zu. Zeichnen und
+ * Durchlaufen kosten O(Anzahl Elemente), Nachschlagen, Einfügen und Entfernen O(1), unabhängig
+ * von der Größe des Levels.
+ *
+ * Elemente einer Ebene dürfen ihre Kachel nicht wechseln, solange sie in der Ebene liegen.
+ */
+public class OverlayLayer<T extends TileGraphics> {
+    private final int width;
+    private final int height;
+    private TileGraphics[] items;
+    private int size = 0;
+    private final IntIntMap cellToIndex;
+
+    /**
+     * @param width Breite des Levels in Kacheln
+     * @param height Höhe des Levels in Kacheln
+     * @param expectedSize erwartete Anzahl Elemente
+     */
+    public OverlayLayer(int width, int height, int expectedSize) {
+        this.width = width;
+        this.height = height;
+        items = new TileGraphics[Math.max(4, expectedSize)];
+        cellToIndex = new IntIntMap(expectedSize);
+    }
+
+    public int size() { return size; }
+
+    /**
+     * @param index 0 bis {@link #size()}-1; die Reihenfolge ändert sich beim Entfernen
+     */
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        return (T) items[index];
+    }
+
+    /**
+     * @return Element auf der Kachel oder null
+     */
+    @SuppressWarnings("unchecked")
+    public T get(int x, int y) {
+        if(!isInside(x, y)) return null;
+        int index = cellToIndex.get(cell(x, y), -1);
+        return index < 0 ? null : (T) items[index];
+    }
+
+    public boolean isInside(int x, int y) {
+        return x >= 0 && x < width && y >= 0 && y < height;
+    }
+
+    /**
+     * @param item neues Element
+     * @return false, falls die Kachel außerhalb liegt oder bereits belegt ist
+     */
+    public boolean add(T item) {
+        if(!isInside(item.getX(), item.getY())) return false;
+        int key = cell(item.getX(), item.getY());
+        if(cellToIndex.containsKey(key)) return false;
+        if(size == items.length) {
+            TileGraphics[] grown = new TileGraphics[items.length * 2];
+            System.arraycopy(items, 0, grown, 0, size);
+            items = grown;
+        }
+        items[size] = item;
+        cellToIndex.put(key, size);
+        size++;
+        return true;
+    }
+
+    /**
+     * @return true, falls das Element in der Ebene lag
+     */
+    public boolean remove(T item) {
+        int key = cell(item.getX(), item.getY());
+        int index = cellToIndex.get(key, -1);
+        if(index < 0 || items[index] != item) return false;
+        cellToIndex.remove(key, -1);
+        // Lücke mit dem letzten Element füllen
+        size--;
+        if(index != size) {
+            TileGraphics last = items[size];
+            items[index] = last;
+            cellToIndex.put(cell(last.getX(), last.getY()), index);
+        }
+        items[size] = null;
+        return true;
+    }
+
+    public void clear() {
+        for(int i = 0; i < size; i++)
+            items[i] = null;
+        size = 0;
+        cellToIndex.clear();
+    }
+
+    private int cell(int x, int y) {
+        return y * width + x;
+    }
+}
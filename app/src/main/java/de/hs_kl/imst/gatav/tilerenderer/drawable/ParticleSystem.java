@@ -0,0 +1,217 @@
+package de.hs_kl.imst.gatav.tilerenderer.drawable;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+
+import java.util.Random;
+
+/**
+ * Partikel für Effekte (eingesammelte Ziele, Trümmer zerstörter Wände) aus einem Vorrat fester
+ * Größe: alle Partikel liegen spaltenweise in primitiven Arrays, die beim Erzeugen angelegt werden.
+ * Lebende Partikel stehen lückenlos am Anfang, ein abgelaufenes wird durch das letzte ersetzt.
+ * Aktualisieren, Erfassen und Zeichnen allokieren daher keinen Speicher.
+ *
+ * Gezeichnet wird gebündelt: {@link #capture(RenderSnapshot)} sortiert die Positionen nach Farbe in
+ * ein Array des Snapshots, {@link #draw(Canvas, RenderSnapshot)} zeichnet jede Farbe mit einem
+ * einzigen drawPoints.
+ *
+ * Wird das Zeitbudget eines Bildes überschritten, solange Partikel unterwegs sind, sinkt die
+ * Qualität: Ausstöße werden entsprechend ausgedünnt und der nutzbare Vorrat verkleinert. Bei
+ * eingehaltenem Budget erholt sie sich langsam wieder.
+ */
+public class ParticleSystem {
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    /**
+     * Farben der Partikel (Index in {@link #PALETTE})
+     */
+    public static final int COLOR_GOLD = 0;
+    public static final int COLOR_SPARK = 1;
+    public static final int COLOR_DEBRIS = 2;
+    public static final int COLOR_DUST = 3;
+    private static final int[] PALETTE = {0xFFF2C200, 0xFFFFFFFF, 0xFF7A4E2A, 0xFFA8A8A8};
+
+    /**
+     * Länge eines Bildes, ab der die Qualität sinkt (in Sekunden)
+     */
+    private static final float FRAME_BUDGET_SECONDS = 1f / 45f;
+    private static final float MIN_QUALITY = 0.125f;
+    private static final float QUALITY_DECAY = 0.75f;       // Faktor pro zu langsamem Bild
+    private static final float QUALITY_RECOVERY = 0.02f;    // Zuwachs pro Bild im Budget
+
+    private static final float GRAVITY = 14f;   // Kacheln pro Sekunde²
+    private static final float DRAG = 1.5f;     // Anteil der Geschwindigkeit, der pro Sekunde verloren geht
+    private static final float POINT_SIZE = 0.1f;   // in Kacheln
+
+    private final int capacity;
+    private final float[] x, y;     // Position in Kacheln
+    private final float[] vx, vy;   // Geschwindigkeit in Kacheln pro Sekunde
+    private final float[] life;     // verbleibende Lebensdauer in Sekunden
+    private final byte[] color;     // Index in PALETTE
+    private int count = 0;
+
+    private final Random random;
+    private float quality = 1f;
+
+    // Erfassen (Simulations-Thread)
+    private final int[] colorOffsets = new int[PALETTE.length];
+
+    // Zeichnen (Render-Thread)
+    private final Paint paint = new Paint();
+
+    /**
+     * @param capacity Höchstzahl gleichzeitig lebender Partikel
+     * @param random Zufallszahlen für Richtung, Geschwindigkeit und Lebensdauer
+     */
+    public ParticleSystem(int capacity, Random random) {
+        this.capacity = capacity;
+        this.random = random;
+        x = new float[capacity];
+        y = new float[capacity];
+        vx = new float[capacity];
+        vy = new float[capacity];
+        life = new float[capacity];
+        color = new byte[capacity];
+        paint.setStrokeCap(Paint.Cap.SQUARE);
+    }
+
+    public int size() { return count; }
+    public int getCapacity() { return capacity; }
+    public float getQuality() { return quality; }
+
+    /**
+     * Partikel kreisförmig ausstoßen; die Anzahl wird mit der aktuellen Qualität skaliert und
+     * auf den freien Vorrat begrenzt
+     * @param cx X-Koordinate des Mittelpunkts in Kacheln
+     * @param cy Y-Koordinate des Mittelpunkts in Kacheln
+     * @param amount gewünschte Anzahl bei voller Qualität
+     * @param colorIndex Farbe, z.B. {@link #COLOR_GOLD}
+     * @param speed höchste Anfangsgeschwindigkeit in Kacheln pro Sekunde
+     * @param lift zusätzliche Anfangsgeschwindigkeit nach oben
+     * @param lifeSeconds höchste Lebensdauer in Sekunden
+     * @return Anzahl tatsächlich erzeugter Partikel
+     */
+    public int emit(float cx, float cy, int amount, int colorIndex, float speed, float lift, float lifeSeconds) {
+        int limit = (int) (capacity * quality);
+        int n = Math.min(Math.round(amount * quality), limit - count);
+        for(int k = 0; k < n; k++) {
+            int i = count++;
+            double angle = random.nextDouble() * 2 * Math.PI;
+            float v = speed * (0.3f + 0.7f * random.nextFloat());
+            x[i] = cx;
+            y[i] = cy;
+            vx[i] = (float) Math.cos(angle) * v;
+            vy[i] = (float) Math.sin(angle) * v - lift;
+            life[i] = lifeSeconds * (0.5f + 0.5f * random.nextFloat());
+            color[i] = (byte) colorIndex;
+        }
+        return Math.max(n, 0);
+    }
+
+    /**
+     * Goldener Funkenregen beim Einsammeln eines Ziels
+     * @param cx X-Koordinate des Mittelpunkts in Kacheln
+     * @param cy Y-Koordinate des Mittelpunkts in Kacheln
+     * @param score Punkte des Ziels, bestimmen die Menge
+     */
+    public void emitPickup(float cx, float cy, int score) {
+        int amount = 24 + 8 * Math.max(score, 0);
+        emit(cx, cy, amount, COLOR_GOLD, 5f, 4f, 0.8f);
+        emit(cx, cy, amount / 3, COLOR_SPARK, 7f, 3f, 0.5f);
+    }
+
+    /**
+     * Trümmer und Staub einer zerstörten Wand
+     * @param cx X-Koordinate des Mittelpunkts in Kacheln
+     * @param cy Y-Koordinate des Mittelpunkts in Kacheln
+     * @param explosive true für eine explodierte Wand (mehr und schnellere Trümmer)
+     */
+    public void emitDebris(float cx, float cy, boolean explosive) {
+        float speed = explosive ? 9f : 4f;
+        emit(cx, cy, explosive ? 48 : 24, COLOR_DEBRIS, speed, 2f, 0.9f);
+        emit(cx, cy, explosive ? 32 : 16, COLOR_DUST, speed * 0.5f, 1f, 1.2f);
+    }
+
+    /**
+     * Alle Partikel in einer Schleife bewegen und abgelaufene entfernen; passt außerdem die
+     * Qualität an die Länge des letzten Bildes an
+     * @param fracsec seit dem letzten Aufruf vergangene Zeit in Sekunden
+     */
+    public void update(float fracsec) {
+        if(count == 0) return;
+        if(fracsec > FRAME_BUDGET_SECONDS)
+            quality = Math.max(MIN_QUALITY, quality * QUALITY_DECAY);
+        else
+            quality = Math.min(1f, quality + QUALITY_RECOVERY);
+
+        float damping = Math.max(0f, 1f - DRAG * fracsec);
+        float gravity = GRAVITY * fracsec;
+        int i = 0;
+        while(i < count) {
+            float remaining = life[i] - fracsec;
+            if(remaining <= 0) {    // durch das letzte Partikel ersetzen, Stelle erneut prüfen
+                int last = --count;
+                x[i] = x[last];
+                y[i] = y[last];
+                vx[i] = vx[last];
+                vy[i] = vy[last];
+                life[i] = life[last];
+                color[i] = color[last];
+                continue;
+            }
+            life[i] = remaining;
+            vx[i] *= damping;
+            vy[i] = vy[i] * damping + gravity;
+            x[i] += vx[i] * fracsec;
+            y[i] += vy[i] * fracsec;
+            i++;
+        }
+    }
+
+    /**
+     * Positionen nach Farbe sortiert (in Pixeln) in den Snapshot übernehmen; Arrays werden
+     * wiederverwendet
+     * @param snapshot Ziel
+     */
+    void capture(RenderSnapshot snapshot) {
+        if(snapshot.particlePoints == null || snapshot.particlePoints.length < capacity * 2)
+            snapshot.particlePoints = new float[capacity * 2];
+        if(snapshot.particleColorCounts == null)
+            snapshot.particleColorCounts = new int[PALETTE.length];
+        int[] counts = snapshot.particleColorCounts;
+        for(int c = 0; c < counts.length; c++)
+            counts[c] = 0;
+        for(int i = 0; i < count; i++)
+            counts[color[i]]++;
+        int offset = 0;
+        for(int c = 0; c < counts.length; c++) {
+            colorOffsets[c] = offset;
+            offset += counts[c];
+        }
+        float tileSize = TileGraphics.getTileSize();
+        float[] points = snapshot.particlePoints;
+        for(int i = 0; i < count; i++) {
+            int j = colorOffsets[color[i]]++ * 2;
+            points[j] = x[i] * tileSize;
+            points[j + 1] = y[i] * tileSize;
+        }
+        snapshot.particleCount = count;
+    }
+
+    /**
+     * Partikel eines Snapshots zeichnen, ein drawPoints pro Farbe
+     * @param canvas Zeichenfläche
+     * @param snapshot Zustand
+     */
+    void draw(Canvas canvas, RenderSnapshot snapshot) {
+        paint.setStrokeWidth(Math.max(1f, POINT_SIZE * TileGraphics.getTileSize()));
+        int offset = 0;
+        for(int c = 0; c < PALETTE.length; c++) {
+            int n = snapshot.particleColorCounts[c];
+            if(n == 0) continue;
+            paint.setColor(PALETTE[c]);
+            canvas.drawPoints(snapshot.particlePoints, offset * 2, n * 2, paint);
+            offset += n;
+        }
+    }
+}
@@ -5,12 +5,10 @@ import android.graphics.Color;
 import android.graphics.Paint;
 import android.util.Log;
 
-import java.io.InputStream;
-
 public class Player extends MovableTileGraphics {
 
-    public Player(int x, int y, InputStream is) {
-        super(x, y, is);
+    public Player(int x, int y, Sprite sprite) {
+        super(x, y, sprite);
 
         tilePaint.setColor(Color.parseColor("#F0CC00"));
     }
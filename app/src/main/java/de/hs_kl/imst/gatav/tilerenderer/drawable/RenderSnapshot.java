@@ -0,0 +1,80 @@
+package de.hs_kl.imst.gatav.tilerenderer.drawable;
+
+import android.graphics.Canvas;
+
+/**
+ * Zustand eines Spiels, wie er für ein Bild benötigt wird: interpolierte Positionen von Spieler
+ * und dynamischem Ziel, die Ziele sowie die Werte der Anzeige.
+ *
+ * Wird vom Simulations-Thread mit {@link GameContent#capture(RenderSnapshot, int, int)} befüllt und
+ * nach der Übergabe (siehe {@link de.hs_kl.imst.gatav.tilerenderer.util.TripleBuffer}) vom
+ * Render-Thread nur noch gelesen. Die Arrays wachsen bei Bedarf und werden wiederverwendet.
+ */
+public class RenderSnapshot {
+    GameContent content;
+
+    float playerX, playerY;
+    DynamicTarget dynTarget;            // null, falls keines unterwegs ist; nur Grafik wird verwendet
+    float dynX, dynY;
+
+    int targetCount;
+    Target[] targets = new Target[8];   // Ziele bewegen sich nicht und werden nach dem Erzeugen nicht verändert
+
+    int ballCount;
+    float[] balls;                      // pro Abrissbirne: x, y, Aufhängepunkt x (NaN ohne Kette), y
+
+    int particleCount;
+    float[] particlePoints;             // x, y in Pixeln, nach Farbe sortiert
+    int[] particleColorCounts;          // Anzahl pro Farbe des ParticleSystem
+
+    int[] animationFrames;              // Bildindex pro animiertem Kacheltyp
+    int[] tileChanges;                  // Protokoll geänderter Kacheln, wird nur angehängt
+    int tileChangeCount;
+
+    int[] fogPixels;                    // null ohne Nebel
+    int fogVersion = -1;
+
+    int collectedTargets;
+    int collectedScore;
+    int timeCentis;
+    int gameMode;
+
+    /**
+     * Zeichnet das Spielfeld dieses Zustands; nur aus dem Render-Thread aufrufen
+     * @param canvas Zeichenfläche
+     */
+    public void draw(Canvas canvas) {
+        if(content != null)
+            content.draw(canvas, this);
+    }
+
+    public boolean hasContent() { return content != null; }
+    public float getGameWidth() { return content == null ? 0 : content.getGameWidth(); }
+    public float getGameHeight() { return content == null ? 0 : content.getGameHeight(); }
+
+    /**
+     * Kamera: Verschiebung des Spielfelds auf der Zeichenfläche. Kleine Level werden zentriert,
+     * große (siehe {@link GameContent#isScrolling()}) folgen dem Spieler.
+     * @param viewWidth Breite der Zeichenfläche in Pixeln
+     * @return Verschiebung in X-Richtung in Pixeln
+     */
+    public float getOffsetX(int viewWidth) {
+        if(content == null) return 0;
+        if(!content.isScrolling()) return (viewWidth - getGameWidth()) / 2;
+        return viewWidth / 2f - (playerX + 0.5f) * TileGraphics.getTileSize();
+    }
+
+    /**
+     * @param viewHeight Höhe der Zeichenfläche in Pixeln
+     * @return Verschiebung in Y-Richtung in Pixeln, siehe {@link #getOffsetX(int)}
+     */
+    public float getOffsetY(int viewHeight) {
+        if(content == null) return 0;
+        if(!content.isScrolling()) return (viewHeight - getGameHeight()) / 2;
+        return viewHeight / 2f - (playerY + 0.5f) * TileGraphics.getTileSize();
+    }
+    public int getCollectedTargets() { return collectedTargets; }
+    public int getCollectedScore() { return collectedScore; }
+    public int getTimeCentis() { return timeCentis; }
+    public int getGameMode() { return gameMode; }
+}
@@ -0,0 +1,223 @@
+package de.hs_kl.imst.gatav.tilerenderer.drawable;
+
+/**
+ * Verlauf der letzten Spielzustände zum Zurückspulen, als Ringpuffer fester Größe aus ints.
+ *
+ * {@link GameContent} trägt jede Zustandsänderung als Delta ein, meist ein einzelnes int (Typ,
+ * Position und Zielnummer bzw. Punkte gepackt): Zug des Spielers (mit Ausgangskachel), platziertes
+ * und eingesammeltes Ziel, erzeugtes und gefangenes dynamisches Ziel. Am Ende eines Ticks mit
+ * Deltas folgt eine Zeitmarke, alle {@link #KEYFRAME_INTERVAL_MS} zusätzlich ein Schlüsselbild mit
+ * dem vollständigen Zustand (Spieler, Zähler, Ziele).
+ *
+ * Zurückgespult wird rückwärts: Deltas werden umgekehrt angewendet, bis eine Zeitmarke bzw. ein
+ * Schlüsselbild erreicht ist, das nicht neuer als der Zielzeitpunkt ist; ein Schlüsselbild wird
+ * dann direkt übernommen. Der Aufwand hängt nur von der Anzahl der Einträge ab.
+ *
+ * Mehrteilige Einträge tragen ihren Kopf (Typ und Länge) am Anfang und am Ende, damit sie in beide
+ * Richtungen gelesen werden können. Ist der Puffer voll, werden die ältesten Einträge verworfen;
+ * der Speicher ist also fest, die Länge des Verlaufs hängt von der Anzahl der Änderungen ab
+ * (ca. 20 ints pro Sekunde für Schlüsselbilder plus bis zu 7 pro Zug). Verworfen wird immer bis
+ * zum nächsten Schlüsselbild, der älteste Eintrag ist also stets ein Schlüsselbild: weiter als bis
+ * dorthin wird nicht zurückgespult. Nur aus dem Game Thread verwenden; Eintragen allokiert keinen
+ * Speicher.
+ */
+class RewindBuffer {
+    static final int DEFAULT_CAPACITY = 1 << 14;
+    static final int KEYFRAME_INTERVAL_MS = 500;
+
+    // Typen in den unteren 4 Bit
+    private static final int MOVE = 1;              // x, y: Ausgangskachel des Spielers
+    private static final int COLLECT = 2;           // x, y, Zielnummer
+    private static final int SPAWN = 3;             // x, y
+    private static final int DYN_SPAWN = 4;
+    private static final int DYN_CATCH = 5;         // Punkte in den oberen 28 Bit
+    private static final int TIME = 6;              // Kopf, Zeit, Kopf
+    private static final int KEYFRAME = 7;          // Kopf, Zeit, Spieler, Ziele, Punkte, Ziel..., Kopf
+    private static final int TIME_LENGTH = 3;
+    private static final int KEYFRAME_FIXED_LENGTH = 6;
+
+    private final int[] ring;
+    private final int mask;
+    private long head = 0;      // nächster zu schreibender Index
+    private long tail = 0;      // Anfang des ältesten Eintrags
+
+    private double timeSeconds = 0;
+    private int lastKeyframeMillis = Integer.MIN_VALUE;
+    private boolean tickHasDeltas = false;
+    private int[] keyTargets = new int[8];  // Zwischenspeicher beim Übernehmen eines Schlüsselbilds
+
+    /**
+     * @param capacity Anzahl ints, wird auf eine Zweierpotenz aufgerundet
+     */
+    RewindBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(16, capacity - 1)) << 1;
+        ring = new int[size];
+        mask = size - 1;
+    }
+
+    /**
+     * @return Spielzeit seit dem Laden in Millisekunden
+     */
+    int getTimeMillis() { return (int) (timeSeconds * 1000); }
+
+    /**
+     * @return Spielzeit des ältesten Schlüsselbilds in Millisekunden, bis dorthin reicht der Verlauf
+     */
+    int getOldestMillis() {
+        return head > tail ? ring[(int) ((tail + 1) & mask)] : getTimeMillis();
+    }
+
+    /**
+     * @return belegte ints
+     */
+    int size() { return (int) (head - tail); }
+
+    int getCapacity() { return ring.length; }
+
+    private static int pack(int type, int x, int y, int arg) {
+        return type | (x & 0x3FF) << 4 | (y & 0x3FF) << 14 | (arg & 0xFF) << 24;
+    }
+
+    void recordMove(int fromX, int fromY) { delta(pack(MOVE, fromX, fromY, 0)); }
+    void recordCollect(int x, int y, int targetNumber) { delta(pack(COLLECT, x, y, targetNumber)); }
+    void recordSpawn(int x, int y) { delta(pack(SPAWN, x, y, 0)); }
+    void recordDynamicSpawn() { delta(DYN_SPAWN); }
+    void recordDynamicCatch(int score) { delta(DYN_CATCH | score << 4); }
+
+    private void delta(int value) {
+        reserve(1);
+        ring[(int) (head++ & mask)] = value;
+        tickHasDeltas = true;
+    }
+
+    /**
+     * Verlauf verwerfen und mit einem Schlüsselbild des aktuellen Zustands neu beginnen (z.B. nach
+     * dem Laden des Levels, damit dessen erste Ziele nie zurückgenommen werden)
+     * @param content Spielinhalt
+     */
+    void start(GameContent content) {
+        head = tail = 0;
+        tickHasDeltas = false;
+        writeKeyframe(getTimeMillis(), content);
+    }
+
+    /**
+     * Ende eines Ticks: Zeitmarke und ggf. Schlüsselbild eintragen
+     * @param fracsec Dauer des Ticks in Sekunden
+     * @param content Spielinhalt für das Schlüsselbild
+     */
+    void endTick(float fracsec, GameContent content) {
+        timeSeconds += fracsec;
+        int time = getTimeMillis();
+        if(tickHasDeltas) {
+            reserve(TIME_LENGTH);
+            int header = TIME | TIME_LENGTH << 4;
+            write(header);
+            write(time);
+            write(header);
+            tickHasDeltas = false;
+        }
+        if(time - lastKeyframeMillis >= KEYFRAME_INTERVAL_MS)
+            writeKeyframe(time, content);
+    }
+
+    private void writeKeyframe(int time, GameContent content) {
+        OverlayLayer<Target> targets = content.getTargets();
+        int length = KEYFRAME_FIXED_LENGTH + targets.size();
+        if(length > ring.length) return;
+        reserve(length);
+        int header = KEYFRAME | length << 4;
+        Player player = content.getPlayer();
+        write(header);
+        write(time);
+        write(pack(0, player.getX(), player.getY(), 0));
+        write(content.getCollectedTargets());
+        write(content.getCollectedScore());
+        for(int i = 0; i < targets.size(); i++) {
+            Target target = targets.get(i);
+            write(pack(0, target.getX(), target.getY(), target.getNumber()));
+        }
+        write(header);
+        lastKeyframeMillis = time;
+    }
+
+    private void write(int value) {
+        ring[(int) (head++ & mask)] = value;
+    }
+
+    /**
+     * Platz für n ints schaffen, indem die ältesten Einträge bis zum nächsten Schlüsselbild
+     * verworfen werden
+     */
+    private void reserve(int n) {
+        while(head + n - tail > ring.length) {
+            tail += length(ring[(int) (tail & mask)]);
+            while(tail < head && (ring[(int) (tail & mask)] & 0xF) != KEYFRAME)
+                tail += length(ring[(int) (tail & mask)]);
+        }
+    }
+
+    private static int length(int first) {
+        int type = first & 0xF;
+        return (type == TIME || type == KEYFRAME) ? first >>> 4 : 1;
+    }
+
+    /**
+     * Zustand rückwärts bis zu einem Zeitpunkt wiederherstellen; Einträge danach werden verworfen
+     * @param content Spielinhalt
+     * @param seconds so weit zurück (in Sekunden Spielzeit)
+     * @return Anzahl rückgängig gemachter bzw. verworfener Einträge
+     */
+    int rewind(GameContent content, float seconds) {
+        int target = getTimeMillis() - (int) (seconds * 1000);
+        int undone = 0;
+        while(head > tail) {
+            int last = ring[(int) ((head - 1) & mask)];
+            int type = last & 0xF;
+            if(type == TIME || type == KEYFRAME) {
+                long start = head - (last >>> 4);
+                int time = ring[(int) ((start + 1) & mask)];
+                // ältestes Schlüsselbild: weiter zurück reicht der Verlauf nicht
+                if(time <= target || start == tail) {
+                    if(type == KEYFRAME)
+                        restoreKeyframe(content, start, (last >>> 4) - KEYFRAME_FIXED_LENGTH);
+                    break;
+                }
+                head = start;
+            } else {
+                undo(content, last);
+                head--;
+            }
+            undone++;
+        }
+        lastKeyframeMillis = Integer.MIN_VALUE;     // nach dem Sprung sofort neues Schlüsselbild
+        tickHasDeltas = false;
+        return undone;
+    }
+
+    private void undo(GameContent content, int value) {
+        int x = (value >>> 4) & 0x3FF;
+        int y = (value >>> 14) & 0x3FF;
+        switch(value & 0xF) {
+            case MOVE: content.undoMove(x, y); break;
+            case COLLECT: content.undoCollect(x, y, value >>> 24); break;
+            case SPAWN: content.undoSpawn(x, y); break;
+            case DYN_SPAWN: content.undoDynamicSpawn(); break;
+            case DYN_CATCH: content.undoDynamicCatch(value >>> 4); break;
+        }
+    }
+
+    private void restoreKeyframe(GameContent content, long start, int targetCount) {
+        int player = ring[(int) ((start + 2) & mask)];
+        int collected = ring[(int) ((start + 3) & mask)];
+        int score = ring[(int) ((start + 4) & mask)];
+        if(keyTargets.length < targetCount)
+            keyTargets = new int[targetCount];
+        for(int i = 0; i < targetCount; i++)
+            keyTargets[i] = ring[(int) ((start + 5 + i) & mask)];
+        content.mirrorReset((player >>> 4) & 0x3FF, (player >>> 14) & 0x3FF, collected, score);
+        for(int i = 0; i < targetCount; i++)
+            content.mirrorTargetSpawn((keyTargets[i] >>> 4) & 0x3FF, (keyTargets[i] >>> 14) & 0x3FF,
+                    keyTargets[i] >>> 24);
+    }
+}
@@ -0,0 +1,40 @@
+package de.hs_kl.imst.gatav.tilerenderer.drawable;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+
+/**
+ * Einzelne Grafik innerhalb eines {@link TextureAtlas}
+ */
+public class Sprite {
+    private final TextureAtlas atlas;
+    private final int index;
+
+    // wiederverwendete Rechtecke zum Zeichnen (es wird nur aus einem Thread gezeichnet)
+    private static final Rect src = new Rect();
+    private static final Rect dst = new Rect();
+
+    Sprite(TextureAtlas atlas, int index) {
+        this.atlas = atlas;
+        this.index = index;
+    }
+
+    public TextureAtlas getAtlas() { return atlas; }
+    public int getIndex() { return index; }
+
+    /**
+     * Grafik in Kachelgröße an einer Pixelposition zeichnen
+     * @param canvas Zeichenfläche
+     * @param left linker Rand in Pixeln
+     * @param top oberer Rand in Pixeln
+     * @return false, falls die Grafik nicht verfügbar ist und der Aufrufer einen Ersatz zeichnen muss
+     */
+    public boolean draw(Canvas canvas, float left, float top) {
+        Bitmap sheet = atlas.getSheet(index, src);
+        if(sheet == null) return false;
+        dst.set((int) left, (int) top, (int) left + src.width(), (int) top + src.height());
+        canvas.drawBitmap(sheet, src, dst, null);
+        return true;
+    }
+}
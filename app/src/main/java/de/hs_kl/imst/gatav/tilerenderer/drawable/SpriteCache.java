@@ -0,0 +1,192 @@
+package de.hs_kl.imst.gatav.tilerenderer.drawable;
+
+import android.content.Context;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Persistenter Cache für bereits skalierte Sprite Sheets (siehe {@link TextureAtlas}).
+ *
+ * Pro Theme und Kachelgröße wird das Sheet einmal als unkomprimierte ARGB_8888 Pixeldaten im
+ * Cache-Verzeichnis der App abgelegt. Spätere Starts lesen die Pixel direkt (per Memory Mapping)
+ * in ein Bitmap, ohne PNG zu dekodieren oder zu skalieren.
+ *
+ * Dateiname: &lt;theme&gt;_&lt;kachelgröße&gt;_&lt;stempel&gt;.raw; der Stempel ändert sich mit jeder
+ * Installation bzw. jedem Update der App (und damit der Assets). Dateien mit anderem Stempel werden
+ * beim Öffnen des Caches gelöscht, ebenso die ältesten Dateien, falls der Cache zu groß wird.
+ * Temporäre Dateien, die gerade (evtl. von einem anderen Cache-Objekt) geschrieben werden, bleiben
+ * dabei unangetastet.
+ */
+public class SpriteCache {
+    private static final String TAG = "SpriteCache";
+    private static final int MAGIC = 0x46574253;   // "FWBS"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 6 * 4;
+    private static final String SUFFIX = ".raw";
+    private static final String TMP_SUFFIX = ".tmp";
+    private static final long STALE_TMP_MILLIS = 60 * 1000;  // älter: Rest eines abgebrochenen Schreibvorgangs
+
+    private final File dir;
+    private final String stamp;
+    private final long maxBytes;
+
+    /**
+     * @param dir Cache-Verzeichnis
+     * @param stamp Kennung des Asset-Standes
+     * @param maxBytes maximale Gesamtgröße aller Dateien
+     */
+    public SpriteCache(File dir, String stamp, long maxBytes) {
+        this.dir = dir;
+        this.stamp = stamp;
+        this.maxBytes = maxBytes;
+        if(!dir.isDirectory() && !dir.mkdirs())
+            Log.w(TAG, "Cache-Verzeichnis nicht anlegbar: " + dir);
+        evict();
+    }
+
+    /**
+     * Cache im Cache-Verzeichnis der App; Asset-Stand ist Version und Installationszeit der App
+     * @param context Kontext
+     * @return Cache
+     */
+    public static SpriteCache forContext(Context context) {
+        String stamp;
+        try {
+            PackageInfo info = context.getPackageManager().getPackageInfo(context.getPackageName(), 0);
+            stamp = Integer.toHexString(info.versionCode) + Long.toHexString(info.lastUpdateTime);
+        } catch(PackageManager.NameNotFoundException e) {
+            stamp = "0";
+        }
+        return new SpriteCache(new File(context.getCacheDir(), "sprites"), stamp, 16 * 1024 * 1024);
+    }
+
+    /**
+     * Liest ein Sheet aus dem Cache
+     * @param theme Theme
+     * @param tileSize Kachelgröße
+     * @param layoutHash Kennung von Anzahl und Reihenfolge der Grafiken im Sheet
+     * @return Bitmap oder null, falls nicht (gültig) im Cache
+     */
+    public Bitmap load(String theme, int tileSize, int layoutHash) {
+        File file = fileFor(theme, tileSize);
+        if(!file.isFile()) return null;
+        FileInputStream in = null;
+        try {
+            in = new FileInputStream(file);
+            FileChannel channel = in.getChannel();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if(buffer.getInt() != MAGIC || buffer.getInt() != VERSION || buffer.getInt() != tileSize
+                    || buffer.getInt() != layoutHash)
+                return discard(file);
+            int width = buffer.getInt();
+            int height = buffer.getInt();
+            if(width <= 0 || height <= 0 || buffer.remaining() != width * height * 4)
+                return discard(file);
+            Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            bitmap.copyPixelsFromBuffer(buffer);
+            file.setLastModified(System.currentTimeMillis());   // für die Verdrängung
+            return bitmap;
+        } catch(IOException | RuntimeException e) {
+            Log.w(TAG, "Cache-Datei unlesbar: " + file, e);
+            return discard(file);
+        } finally {
+            if(in != null)
+                try { in.close(); } catch(IOException e) { e.printStackTrace(); }
+        }
+    }
+
+    /**
+     * Schreibt ein Sheet in den Cache
+     * @param theme Theme
+     * @param tileSize Kachelgröße
+     * @param layoutHash Kennung von Anzahl und Reihenfolge der Grafiken im Sheet
+     * @param sheet Sheet im Format ARGB_8888
+     */
+    synchronized public void store(String theme, int tileSize, int layoutHash, Bitmap sheet) {
+        if(sheet.getConfig() != Bitmap.Config.ARGB_8888) return;
+        File file = fileFor(theme, tileSize);
+        File tmp = new File(dir, file.getName() + TMP_SUFFIX);
+        int pixelBytes = sheet.getRowBytes() * sheet.getHeight();
+        RandomAccessFile out = null;
+        try {
+            out = new RandomAccessFile(tmp, "rw");
+            out.setLength(HEADER_SIZE + pixelBytes);
+            MappedByteBuffer buffer = out.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + pixelBytes);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(tileSize).putInt(layoutHash)
+                    .putInt(sheet.getWidth()).putInt(sheet.getHeight());
+            sheet.copyPixelsToBuffer(buffer);
+            buffer.force();
+        } catch(IOException | RuntimeException e) {
+            Log.w(TAG, "Cache-Datei nicht schreibbar: " + file, e);
+            tmp.delete();
+            return;
+        } finally {
+            if(out != null)
+                try { out.close(); } catch(IOException e) { e.printStackTrace(); }
+        }
+        // erst vollständig geschriebene Dateien sind unter ihrem Namen sichtbar
+        if(!tmp.renameTo(file))
+            tmp.delete();
+        evict();
+    }
+
+    private File fileFor(String theme, int tileSize) {
+        return new File(dir, theme + "_" + tileSize + "_" + stamp + SUFFIX);
+    }
+
+    private Bitmap discard(File file) {
+        file.delete();
+        return null;
+    }
+
+    /**
+     * Löscht Dateien eines anderen Asset-Standes und die am längsten nicht genutzten Dateien,
+     * bis die Maximalgröße eingehalten wird
+     */
+    synchronized private void evict() {
+        File[] files = dir.listFiles();
+        if(files == null) return;
+        String current = "_" + stamp + SUFFIX;
+        long now = System.currentTimeMillis();
+        long total = 0;
+        for(int i = 0; i < files.length; i++) {
+            if(files[i].getName().endsWith(TMP_SUFFIX)) {
+                // wird evtl. gerade geschrieben und danach umbenannt
+                if(now - files[i].lastModified() > STALE_TMP_MILLIS)
+                    files[i].delete();
+                files[i] = null;
+            } else if(!files[i].getName().endsWith(current)) {
+                files[i].delete();
+                files[i] = null;
+            } else
+                total += files[i].length();
+        }
+        if(total <= maxBytes) return;
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                if(a == null || b == null) return a == null ? (b == null ? 0 : -1) : 1;
+                long diff = a.lastModified() - b.lastModified();
+                return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+            }
+        });
+        for(int i = 0; i < files.length && total > maxBytes; i++) {
+            if(files[i] == null) continue;
+            total -= files[i].length();
+            files[i].delete();
+        }
+    }
+}
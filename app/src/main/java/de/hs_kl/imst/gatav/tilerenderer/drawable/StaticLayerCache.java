@@ -0,0 +1,145 @@
+package de.hs_kl.imst.gatav.tilerenderer.drawable;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffXfermode;
+
+import java.util.Arrays;
+
+import de.hs_kl.imst.gatav.tilerenderer.util.ResourceManager;
+
+/**
+ * Zwischenspeicher der untersten Ebene (Wände und Boden) als eine Bitmap in Spielfeldgröße, die
+ * pro Bild mit einem einzigen drawBitmap gezeichnet wird.
+ *
+ * Wechselt bei einem animierten Kacheltyp das Bild (siehe {@link AnimationClock}), werden nur die
+ * Kacheln dieses Typs neu in die Bitmap gezeichnet. Ebenso werden von zerstörten Wänden (siehe
+ * {@link GameContent#destroyWall(int, int)}) nur die Kacheln neu gezeichnet, die seit dem letzten
+ * Bild im Änderungsprotokoll hinzugekommen sind. Die Bitmap gehört allein dem Render-Thread, kann
+ * vom {@link ResourceManager} freigegeben werden und wird dann beim nächsten Zeichnen vollständig
+ * neu aufgebaut.
+ */
+class StaticLayerCache implements ResourceManager.Resource {
+    private final TileGrid tiles;
+    private final int width, height;
+
+    /**
+     * Kacheln (y * width + x) pro {@link TileAnimation#getId()}; enthält auch Kacheln, die erst
+     * nach dem Zerstören einer Wand animiert sind
+     */
+    private int[][] animatedCells;
+
+    // nur Render-Thread (bis auf release)
+    private volatile Bitmap bitmap = null;
+    private Canvas layerCanvas;
+    private float bitmapTileSize = -1;
+    private int[] drawnFrames;
+    private int drawnChanges = 0;
+    private final Paint clearPaint = new Paint();
+
+    /**
+     * @param tiles Kacheln der untersten Ebene, alle Chunks geladen; werden nicht kopiert
+     * @param animationCount Anzahl der Animationen der zugehörigen {@link AnimationClock}
+     */
+    StaticLayerCache(TileGrid tiles, int animationCount) {
+        this.tiles = tiles;
+        height = tiles.getRows();
+        width = tiles.getColumns();
+
+        int[] counts = new int[animationCount];
+        for(int pass = 0; pass < 2; pass++) {   // 1. Durchlauf zählen, 2. Durchlauf eintragen
+            for(int y = 0; y < height; y++)
+                for(int x = 0; x < width; x++) {
+                    TileGraphics tile = tiles.get(x, y);
+                    if(tile == null) continue;
+                    addCell(tile.getAnimation(), y * width + x, counts, pass);
+                    if(tile instanceof DestructibleWall)
+                        addCell(((DestructibleWall) tile).getRubble().getAnimation(), y * width + x, counts, pass);
+                }
+            if(pass == 0) {
+                animatedCells = new int[animationCount][];
+                for(int i = 0; i < animationCount; i++)
+                    animatedCells[i] = new int[counts[i]];
+                Arrays.fill(counts, 0);
+            }
+        }
+
+        clearPaint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.CLEAR));
+    }
+
+    private void addCell(TileAnimation animation, int cell, int[] counts, int pass) {
+        if(animation == null) return;
+        int id = animation.getId();
+        if(pass == 1)
+            animatedCells[id][counts[id]] = cell;
+        counts[id]++;
+    }
+
+    /**
+     * Ebene zeichnen und dabei geänderte Kacheln in der Bitmap aktualisieren
+     * @param canvas Zeichenfläche
+     * @param frames Bildindex pro {@link TileAnimation#getId()}
+     * @param changes Änderungsprotokoll (y * width + x), wird nur angehängt
+     * @param changeCount Länge des Protokolls zum Zeitpunkt des Snapshots
+     */
+    void draw(Canvas canvas, int[] frames, int[] changes, int changeCount) {
+        Bitmap bitmap = this.bitmap;
+        float tileSize = TileGraphics.getTileSize();
+        if(bitmap == null || bitmapTileSize != tileSize) {
+            bitmap = Bitmap.createBitmap(Math.max(1, (int) (width * tileSize)), Math.max(1, (int) (height * tileSize)),
+                    Bitmap.Config.ARGB_8888);
+            if(bitmap == null) {    // ohne Zwischenspeicher direkt zeichnen
+                drawTiles(canvas, frames);
+                return;
+            }
+            layerCanvas = new Canvas(bitmap);
+            bitmapTileSize = tileSize;
+            drawTiles(layerCanvas, frames);
+            drawnFrames = frames.clone();
+            drawnChanges = changeCount;
+            this.bitmap = bitmap;
+        } else {
+            for(int id = 0; id < animatedCells.length; id++) {
+                if(drawnFrames[id] == frames[id]) continue;
+                int[] cells = animatedCells[id];
+                for(int i = 0; i < cells.length; i++) {
+                    TileGraphics tile = tiles.get(cells[i] % width, cells[i] / width);
+                    TileAnimation animation = tile.getAnimation();
+                    if(animation != null && animation.getId() == id)    // z.B. noch nicht zerstörte Wand
+                        redrawCell(cells[i], frames);
+                }
+                drawnFrames[id] = frames[id];
+            }
+            for(; drawnChanges < changeCount; drawnChanges++)
+                redrawCell(changes[drawnChanges], frames);
+        }
+        canvas.drawBitmap(bitmap, 0, 0, null);
+    }
+
+    private void redrawCell(int cell, int[] frames) {
+        int x = cell % width;
+        int y = cell / width;
+        float tileSize = bitmapTileSize;
+        layerCanvas.drawRect(x * tileSize, y * tileSize, (x + 1) * tileSize, (y + 1) * tileSize, clearPaint);
+        TileGraphics tile = tiles.get(x, y);
+        if(tile != null)
+            tile.draw(layerCanvas, frames);
+    }
+
+    private void drawTiles(Canvas canvas, int[] frames) {
+        tiles.draw(canvas, frames, 0, 0, width, height);
+    }
+
+    @Override
+    public long getByteCount() {
+        Bitmap bitmap = this.bitmap;
+        return bitmap == null ? 0 : (long) bitmap.getRowBytes() * bitmap.getHeight();
+    }
+
+    @Override
+    public void release() {
+        bitmap = null;
+    }
+}
@@ -4,24 +4,29 @@ import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
 
-import java.io.InputStream;
-
 
 public class Target extends TileGraphics {
     private int score=1;
     public int getScore() { return score; }
+    private int number=1;
+    public int getNumber() { return number; }
 
-    public Target(int x, int y, InputStream is) {
-        super(x, y, is);
+    public Target(int x, int y, Sprite sprite) {
+        super(x, y, sprite);
 
         tilePaint.setColor(Color.parseColor("#BF1111"));
     }
 
-    public Target(int x, int y, InputStream is, int score) {
-        this(x, y, is);
+    public Target(int x, int y, Sprite sprite, int score) {
+        this(x, y, sprite);
         this.score = score;
     }
 
+    public Target(int x, int y, Sprite sprite, int score, int number) {
+        this(x, y, sprite, score);
+        this.number = number;
+    }
+
 
     /**
      * {@inheritDoc}
@@ -0,0 +1,184 @@
+package de.hs_kl.imst.gatav.tilerenderer.drawable;
+
+import android.content.res.AssetManager;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Random;
+
+import de.hs_kl.imst.gatav.tilerenderer.util.AliasSampler;
+
+/**
+ * Tabelle der Ziele eines Levels: pro Stufe Sprite, Punkte und Gewicht für die Zufallsauswahl.
+ *
+ * Wird aus <code>levels/&lt;level&gt;/targets.txt</code> geladen, ersatzweise aus
+ * <code>levels/default/targets.txt</code>. Eine Zeile beschreibt eine Stufe:
+ * <pre>
+ * # Sprite  Punkte  Gewicht  [Abnahme]
+ * can1      1       60
+ * can4      8       5        0.01
+ * </pre>
+ * Mit Abnahme &gt; 0 wird die Stufe mit steigendem Punktestand seltener
+ * (Gewicht * e^(-Abnahme * Punktestand)), aber nie seltener als {@link #MIN_WEIGHT_FACTOR} * Gewicht;
+ * so bleibt auch bei hohem Punktestand immer eine Stufe ziehbar. Negative Abnahmen sind unzulässig.
+ * Die Stufennummer (1-...) ergibt sich aus der Zeile.
+ */
+public class TargetTable {
+    /**
+     * Höchstzahl der Stufen; die Stufennummer wird im Zuschauer-Stream in 4 Bit übertragen
+     */
+    public static final int MAX_TIERS = 15;
+
+    /**
+     * Untergrenze des angepassten Gewichts relativ zum Gewicht aus der Tabelle
+     */
+    static final double MIN_WEIGHT_FACTOR = 1e-9;
+
+    private final String[] sprites;
+    private final int[] scores;
+    private final double[] weights;
+    private final double[] decays;
+    private final AliasSampler sampler;
+    private boolean scoreDependent = false;
+
+    TargetTable(String[] sprites, int[] scores, double[] weights, double[] decays) {
+        this.sprites = sprites;
+        this.scores = scores;
+        this.weights = weights;
+        this.decays = decays;
+        for(int i = 0; i < decays.length; i++)
+            if(decays[i] != 0)
+                scoreDependent = true;
+        sampler = new AliasSampler(weights);
+    }
+
+    /**
+     * Bisherige feste Ziele: can1-can4 mit 1, 2, 4 und 8 Punkten (60/20/15/5 %)
+     */
+    public static TargetTable createDefault() {
+        return new TargetTable(new String[] {"can1", "can2", "can3", "can4"}, new int[] {1, 2, 4, 8},
+                new double[] {60, 20, 15, 5}, new double[4]);
+    }
+
+    /**
+     * @param assetManager Quelle der Tabellen; null für {@link #createDefault()}
+     * @param levelName Name des Levels
+     * @return Tabelle des Levels, sonst des Default-Themes, sonst {@link #createDefault()}
+     */
+    public static TargetTable load(AssetManager assetManager, String levelName) {
+        if(assetManager == null)
+            return createDefault();
+        String[] candidates = {levelName, TextureAtlas.DEFAULT_THEME};
+        for(String name : candidates) {
+            InputStream is;
+            try {
+                is = assetManager.open("levels/" + name + "/targets.txt");
+            } catch(IOException e) {
+                continue;   // keine eigene Tabelle
+            }
+            try {
+                return parse(is);
+            } catch(IOException e) {
+                e.printStackTrace();
+            }
+        }
+        return createDefault();
+    }
+
+    /**
+     * @param is Tabelle im Textformat, wird geschlossen
+     * @return Tabelle
+     * @throws IOException bei Lese- oder Formatfehlern
+     */
+    public static TargetTable parse(InputStream is) throws IOException {
+        ArrayList<String> sprites = new ArrayList<>();
+        ArrayList<Integer> scores = new ArrayList<>();
+        ArrayList<Double> weights = new ArrayList<>();
+        ArrayList<Double> decays = new ArrayList<>();
+        BufferedReader br = new BufferedReader(new InputStreamReader(is, "UTF-8"));
+        try {
+            String line;
+            int lineNumber = 0;
+            while((line = br.readLine()) != null) {
+                lineNumber++;
+                int comment = line.indexOf('#');
+                if(comment >= 0) line = line.substring(0, comment);
+                line = line.trim();
+                if(line.isEmpty()) continue;
+                String[] fields = line.split("\\s+");
+                if(fields.length < 3 || fields.length > 4)
+                    throw new IOException("targets.txt Zeile " + lineNumber + ": Sprite Punkte Gewicht [Abnahme] erwartet");
+                try {
+                    int score = Integer.parseInt(fields[1]);
+                    double weight = Double.parseDouble(fields[2]);
+                    double decay = fields.length == 4 ? Double.parseDouble(fields[3]) : 0;
+                    if(!(weight >= 0) || Double.isInfinite(weight) || !(decay >= 0) || Double.isInfinite(decay))
+                        throw new NumberFormatException(line);
+                    sprites.add(fields[0]);
+                    scores.add(score);
+                    weights.add(weight);
+                    decays.add(decay);
+                } catch(NumberFormatException e) {
+                    throw new IOException("targets.txt Zeile " + lineNumber + ": ungültige Zahl", e);
+                }
+            }
+        } finally {
+            br.close();
+        }
+
+        int n = sprites.size();
+        if(n == 0 || n > MAX_TIERS)
+            throw new IOException("targets.txt: 1 bis " + MAX_TIERS + " Stufen erwartet, " + n + " gefunden");
+        String[] spriteArray = sprites.toArray(new String[n]);
+        int[] scoreArray = new int[n];
+        double[] weightArray = new double[n];
+        double[] decayArray = new double[n];
+        double sum = 0;
+        for(int i = 0; i < n; i++) {
+            scoreArray[i] = scores.get(i);
+            weightArray[i] = weights.get(i);
+            decayArray[i] = decays.get(i);
+            sum += weightArray[i];
+        }
+        if(!(sum > 0))
+            throw new IOException("targets.txt: alle Gewichte sind 0");
+        return new TargetTable(spriteArray, scoreArray, weightArray, decayArray);
+    }
+
+    /**
+     * @return Anzahl Stufen
+     */
+    public int size() { return scores.length; }
+
+    /**
+     * @param tier Stufennummer (1-...)
+     */
+    public int getScore(int tier) { return scores[tier - 1]; }
+
+    /**
+     * @param tier Stufennummer (1-...)
+     */
+    public String getSpriteName(int tier) { return sprites[tier - 1]; }
+
+    /**
+     * Gewichte an den Punktestand anpassen; ohne Abnahme in der Tabelle ohne Wirkung
+     * @param collectedScore aktueller Punktestand
+     */
+    public void updateForScore(int collectedScore) {
+        if(!scoreDependent) return;
+        for(int i = 0; i < weights.length; i++)
+            if(decays[i] != 0)
+                sampler.setWeight(i, weights[i] * Math.max(MIN_WEIGHT_FACTOR, Math.exp(-decays[i] * collectedScore)));
+    }
+
+    /**
+     * @param random Zufallszahlengenerator
+     * @return zufällige Stufennummer (1-...) nach den aktuellen Gewichten
+     */
+    public int sample(Random random) {
+        return sampler.sample(random) + 1;
+    }
+}
@@ -0,0 +1,288 @@
+package de.hs_kl.imst.gatav.tilerenderer.drawable;
+
+import android.content.res.AssetManager;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import de.hs_kl.imst.gatav.tilerenderer.util.ResourceManager;
+
+/**
+ * Texturatlas eines Level-Themes. Wird beim Build vom Gradle Task packTextureAtlases aus den
+ * Grafiken in assets/levels/&lt;theme&gt;/ erzeugt und besteht aus atlas/&lt;theme&gt;.png und der
+ * Tabelle atlas/&lt;theme&gt;.txt mit den Positionen der einzelnen Grafiken.
+ *
+ * Der Atlas wird pro Theme genau einmal dekodiert und daraus ein Sprite Sheet erzeugt, in dem alle
+ * Grafiken bereits auf die aktuelle {@link TileGraphics#getTileSize()} skaliert in einem Raster liegen.
+ * Alle {@link Sprite}s eines Themes zeichnen Ausschnitte dieses einen Bitmaps.
+ *
+ * Das Sheet ist beim {@link ResourceManager} angemeldet; nach einer Freigabe wird es beim nächsten
+ * {@link #getSheet()} (meist aus dem persistenten Cache) neu erzeugt.
+ */
+public class TextureAtlas implements ResourceManager.Resource {
+    private static final String TAG = "TextureAtlas";
+    public static final String DEFAULT_THEME = "default";
+
+    /**
+     * Bereits geladene Atlanten (Theme => Atlas, null falls das Theme keinen Atlas hat)
+     */
+    private static final HashMap<String, TextureAtlas> loadedAtlases = new HashMap<>();
+
+    /**
+     * Persistenter Cache skalierter Sheets; ohne Cache wird bei jedem Start neu skaliert
+     */
+    private static SpriteCache diskCache = null;
+    synchronized public static void setDiskCache(SpriteCache cache) { diskCache = cache; }
+    synchronized public static boolean hasDiskCache() { return diskCache != null; }
+    synchronized private static SpriteCache getDiskCache() { return diskCache; }
+
+    private final AssetManager assetManager;
+    private final String theme;
+
+    private final ArrayList<String> names = new ArrayList<>();
+    private final ArrayList<Rect> atlasRects = new ArrayList<>();
+    private final HashMap<String, Sprite> sprites = new HashMap<>();
+
+    /**
+     * Skaliertes Sprite Sheet: Grafik i liegt in Zeile i / sheetColumns, Spalte i % sheetColumns
+     */
+    private Bitmap sheet = null;
+    private int sheetTileSize = -1;
+    private int sheetColumns = 1;
+
+    private TextureAtlas(AssetManager assetManager, String theme) {
+        this.assetManager = assetManager;
+        this.theme = theme;
+    }
+
+    public String getTheme() { return theme; }
+
+    /**
+     * Liefert eine Grafik eines Levels; fehlt sie im Theme des Levels, wird im Standard-Theme gesucht
+     * @param assetManager AssetManager
+     * @param levelName Name des Levels (= Theme)
+     * @param graphicsName Name der Grafik ohne Endung
+     * @return Sprite oder null, falls die Grafik in keinem Atlas existiert
+     */
+    public static Sprite getSprite(AssetManager assetManager, String levelName, String graphicsName) {
+        TextureAtlas atlas = get(assetManager, levelName);
+        Sprite sprite = atlas == null ? null : atlas.getSprite(graphicsName);
+        if(sprite == null) {
+            atlas = get(assetManager, DEFAULT_THEME);
+            sprite = atlas == null ? null : atlas.getSprite(graphicsName);
+        }
+        return sprite;
+    }
+
+    /**
+     * Liefert die Bilder einer Animation (&lt;name&gt;_0, &lt;name&gt;_1, ... bis zur ersten Lücke)
+     * aus dem Theme des Levels bzw. dem Standard-Theme
+     * @param assetManager AssetManager
+     * @param levelName Name des Levels (= Theme)
+     * @param name Name der Animation
+     * @return Bilder oder null, falls keines existiert
+     */
+    public static Sprite[] getFrames(AssetManager assetManager, String levelName, String name) {
+        TextureAtlas atlas = get(assetManager, levelName);
+        Sprite[] frames = atlas == null ? null : atlas.getFrames(name);
+        if(frames == null) {
+            atlas = get(assetManager, DEFAULT_THEME);
+            frames = atlas == null ? null : atlas.getFrames(name);
+        }
+        return frames;
+    }
+
+    /**
+     * Liefert den Atlas eines Themes und lädt ihn beim ersten Zugriff
+     * @param assetManager AssetManager
+     * @param theme Name des Themes
+     * @return Atlas oder null, falls für das Theme kein Atlas existiert
+     */
+    synchronized public static TextureAtlas get(AssetManager assetManager, String theme) {
+        if(loadedAtlases.containsKey(theme))
+            return loadedAtlases.get(theme);
+        TextureAtlas atlas = new TextureAtlas(assetManager, theme);
+        try {
+            atlas.loadTable();
+        } catch(IOException e) {
+            atlas = null;   // Theme ohne eigene Grafiken
+        }
+        if(atlas != null)
+            ResourceManager.get().register(atlas, ResourceManager.PRIORITY_SURFACE);
+        loadedAtlases.put(theme, atlas);
+        return atlas;
+    }
+
+    /**
+     * @param name Name der Grafik ohne Endung
+     * @return Sprite oder null, falls der Atlas die Grafik nicht enthält
+     */
+    public Sprite getSprite(String name) {
+        return sprites.get(name);
+    }
+
+    /**
+     * @param name Name der Animation
+     * @return Bilder &lt;name&gt;_0, &lt;name&gt;_1, ... oder null, falls der Atlas keines enthält
+     */
+    public Sprite[] getFrames(String name) {
+        int count = 0;
+        while(sprites.containsKey(name + "_" + count))
+            count++;
+        if(count == 0) return null;
+        Sprite[] frames = new Sprite[count];
+        for(int i = 0; i < count; i++)
+            frames[i] = sprites.get(name + "_" + i);
+        return frames;
+    }
+
+    /**
+     * Liefert das Sprite Sheet für die aktuelle Kachelgröße und erzeugt es bei Bedarf
+     * @return Sprite Sheet oder null, falls der Atlas nicht dekodiert werden konnte
+     */
+    synchronized Bitmap getSheet() {
+        int tileSize = (int) TileGraphics.getTileSize();
+        if(sheet == null || sheetTileSize != tileSize)
+            buildSheet(tileSize);
+        return sheet;
+    }
+
+    /**
+     * Liefert das Sprite Sheet samt Position einer Grafik darin; beides stammt aus demselben
+     * Stand, auch wenn ein anderer Thread das Sheet gerade neu erzeugt
+     * @param index Nummer der Grafik
+     * @param rect Ausgabe: Position im Sheet
+     * @return Sprite Sheet oder null, falls der Atlas nicht dekodiert werden konnte
+     */
+    synchronized Bitmap getSheet(int index, Rect rect) {
+        Bitmap result = getSheet();
+        if(result != null)
+            getSheetRect(index, rect);
+        return result;
+    }
+
+    /**
+     * Sprite Sheet für die aktuelle Kachelgröße vorab erzeugen (z.B. im Hintergrund für das
+     * nächste Level)
+     * @return true, falls das Sheet danach vorliegt
+     */
+    public boolean prefetchSheet() {
+        return getSheet() != null;
+    }
+
+    /**
+     * @return Speicherbedarf des Sprite Sheets für die aktuelle Kachelgröße in Bytes; 0, falls es
+     * bereits vorliegt
+     */
+    synchronized public long estimateSheetBytes() {
+        int tileSize = (int) TileGraphics.getTileSize();
+        if((sheet != null && sheetTileSize == tileSize) || tileSize <= 0 || names.isEmpty()) return 0;
+        int columns = (int) Math.ceil(Math.sqrt(names.size()));
+        int rows = (names.size() + columns - 1) / columns;
+        return 4L * columns * tileSize * rows * tileSize;     // ARGB_8888
+    }
+
+    @Override
+    synchronized public long getByteCount() {
+        return sheet == null ? 0 : (long) sheet.getRowBytes() * sheet.getHeight();
+    }
+
+    /**
+     * Sprite Sheet verwerfen; nicht recyceln, der Render-Thread könnte es gerade zeichnen
+     */
+    @Override
+    synchronized public void release() {
+        sheet = null;   // sheetTileSize bleibt gültig für ein evtl. laufendes Sprite.draw
+    }
+
+    /**
+     * Position einer Grafik im Sprite Sheet; nur gültig nach {@link #getSheet()} und unter
+     * derselben Sperre
+     * @param index Nummer der Grafik
+     * @param rect Ausgabe
+     */
+    private void getSheetRect(int index, Rect rect) {
+        int left = (index % sheetColumns) * sheetTileSize;
+        int top = (index / sheetColumns) * sheetTileSize;
+        rect.set(left, top, left + sheetTileSize, top + sheetTileSize);
+    }
+
+    private void loadTable() throws IOException {
+        BufferedReader br = new BufferedReader(new InputStreamReader(assetManager.open("atlas/" + theme + ".txt"), "UTF-8"));
+        try {
+            String line;
+            while((line = br.readLine()) != null) {
+                line = line.trim();
+                if(line.isEmpty() || line.startsWith("#")) continue;
+                String[] parts = line.split("\\s+");
+                if(parts.length != 5)
+                    throw new IOException("Ungültige Zeile in atlas/" + theme + ".txt: " + line);
+                int x = Integer.parseInt(parts[1]);
+                int y = Integer.parseInt(parts[2]);
+                Rect rect = new Rect(x, y, x + Integer.parseInt(parts[3]), y + Integer.parseInt(parts[4]));
+                sprites.put(parts[0], new Sprite(this, names.size()));
+                names.add(parts[0]);
+                atlasRects.add(rect);
+            }
+        } finally {
+            br.close();
+        }
+    }
+
+    /**
+     * Sprite Sheet aus dem persistenten Cache lesen oder andernfalls den Atlas dekodieren, alle
+     * Grafiken skaliert in ein neues Sheet kopieren und dieses im Cache ablegen. Der dekodierte
+     * Atlas selbst wird danach nicht mehr benötigt.
+     */
+    private void buildSheet(int tileSize) {
+        sheet = null;   // nicht recyceln, der Render-Thread könnte das alte Sheet gerade zeichnen
+        if(tileSize <= 0 || names.isEmpty()) return;
+
+        sheetColumns = (int) Math.ceil(Math.sqrt(names.size()));
+        sheetTileSize = tileSize;
+        int layoutHash = names.hashCode() * 31 + sheetColumns;
+        SpriteCache cache = getDiskCache();
+        if(cache != null) {
+            sheet = cache.load(theme, tileSize, layoutHash);
+            if(sheet != null) return;
+        }
+
+        Bitmap atlas;
+        InputStream is = null;
+        try {
+            is = assetManager.open("atlas/" + theme + ".png");
+            atlas = BitmapFactory.decodeStream(is);
+        } catch(IOException e) {
+            Log.e(TAG, "Atlas für Theme " + theme + " nicht lesbar", e);
+            return;
+        } finally {
+            if(is != null)
+                try { is.close(); } catch(IOException e) { e.printStackTrace(); }
+        }
+        if(atlas == null) return;
+
+        int rows = (names.size() + sheetColumns - 1) / sheetColumns;
+        sheet = Bitmap.createBitmap(sheetColumns * tileSize, rows * tileSize, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(sheet);
+        Paint filter = new Paint(Paint.FILTER_BITMAP_FLAG);
+        Rect dst = new Rect();
+        for(int i = 0; i < names.size(); i++) {
+            getSheetRect(i, dst);
+            canvas.drawBitmap(atlas, atlasRects.get(i), dst, filter);
+        }
+        atlas.recycle();
+
+        if(cache != null)
+            cache.store(theme, tileSize, layoutHash, sheet);
+    }
+}
@@ -0,0 +1,42 @@
+package de.hs_kl.imst.gatav.tilerenderer.drawable;
+
+/**
+ * Animation eines Kacheltyps (z.B. Wasser) aus mehreren Bildern eines {@link TextureAtlas}.
+ *
+ * Alle Kacheln eines Typs teilen sich eine Instanz und damit das aktuelle Bild; weitergeschaltet
+ * wird ausschließlich von der {@link AnimationClock}.
+ */
+public class TileAnimation {
+    private final int id;
+    private final String name;
+    private final Sprite[] frames;
+    private final float frameSeconds;
+
+    // nur Simulations-Thread
+    int frame = 0;
+    float elapsed = 0;
+
+    TileAnimation(int id, String name, Sprite[] frames, float frameSeconds) {
+        this.id = id;
+        this.name = name;
+        this.frames = frames;
+        this.frameSeconds = frameSeconds;
+    }
+
+    /**
+     * @return Nummer der Animation innerhalb ihrer {@link AnimationClock}, Index in
+     * {@link RenderSnapshot#animationFrames}
+     */
+    public int getId() { return id; }
+    public String getName() { return name; }
+    public int getFrameCount() { return frames.length; }
+    public float getFrameSeconds() { return frameSeconds; }
+
+    /**
+     * @param index Nummer des Bildes
+     * @return Grafik des Bildes
+     */
+    public Sprite getFrame(int index) {
+        return frames[index];
+    }
+}
@@ -1,12 +1,8 @@
 package de.hs_kl.imst.gatav.tilerenderer.drawable;
 
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
 import android.graphics.Paint;
 
-import java.io.InputStream;
-
 /**
  * Basisklasse für Elemente unseres Spielfeldes. Da diese Blöcke in einem Gitter angeordnet werden,
  * ist es sinnvoll, sie mit ihren Koordinaten im Gitter, und nicht mit x und y Pixelkoordinaten zu
@@ -23,7 +19,19 @@ public abstract class TileGraphics implements Drawable {
     protected static float tileSize = 45f;
 
     protected Paint tilePaint = new Paint();
-    protected Bitmap tileBitmap = null;
+    protected Sprite sprite = null;
+
+    /**
+     * Animation des Kacheltyps, deren aktuelles Bild statt {@link #sprite} gezeichnet wird; null
+     * für unbewegte Kacheln
+     */
+    protected TileAnimation animation = null;
+
+    /**
+     * Belegungsindex, in dem das Element registriert ist (siehe {@link OccupancyIndex#add(TileGraphics)})
+     */
+    OccupancyIndex occupancy = null;
+    int occupancyId = -1;
 
     /**
      * Liefert Auskunft darüber, ob ein Block für den Spieler passierbar ist
@@ -31,13 +39,15 @@ public abstract class TileGraphics implements Drawable {
      */
     public abstract boolean isPassable();
 
-    public TileGraphics(int x, int y, InputStream is) {
+    /**
+     * @param x X-Koordinate im Gitter
+     * @param y Y-Koordinate im Gitter
+     * @param sprite Grafik aus einem {@link TextureAtlas}; null für ein einfarbiges Rechteck
+     */
+    public TileGraphics(int x, int y, Sprite sprite) {
         this.x = x;
         this.y = y;
-
-        if(is != null) {
-            tileBitmap = Bitmap.createScaledBitmap(BitmapFactory.decodeStream(is), (int)tileSize, (int)tileSize, true);
-        }
+        this.sprite = sprite;
     }
 
 
@@ -47,8 +57,20 @@ public abstract class TileGraphics implements Drawable {
      * @param y neue Y-Koordinate
      */
     public void move(int x, int y) {
+        int oldX = this.x;
+        int oldY = this.y;
         this.x = x;
         this.y = y;
+        if(occupancy != null)
+            occupancy.moved(this, oldX, oldY, isInTransit());
+    }
+
+    /**
+     * @return true, falls das Element nach {@link #move(int, int)} noch bis zum Ende einer Animation
+     * auf der verlassenen Kachel steht
+     */
+    protected boolean isInTransit() {
+        return false;
     }
 
 
@@ -59,20 +81,43 @@ public abstract class TileGraphics implements Drawable {
     public void update(float fracsec) {}
 
 
+    /**
+     * @param animation gemeinsame Animation des Kacheltyps (siehe {@link AnimationClock}) oder null
+     */
+    public void setAnimation(TileAnimation animation) {
+        this.animation = animation;
+    }
+
+    public TileAnimation getAnimation() {
+        return animation;
+    }
+
+
     /**
      * {@inheritDoc}
      */
     @Override
     public void draw(Canvas canvas) {
+        drawSprite(canvas, animation == null ? sprite : animation.getFrame(animation.frame));
+    }
+
+    /**
+     * Zeichnet die Kachel mit den Bildindizes aus einem {@link RenderSnapshot}
+     * @param canvas Zeichenfläche
+     * @param frames Bildindex pro {@link TileAnimation#getId()}
+     */
+    void draw(Canvas canvas, int[] frames) {
+        drawSprite(canvas, animation == null ? sprite : animation.getFrame(frames[animation.getId()]));
+    }
+
+    private void drawSprite(Canvas canvas, Sprite sprite) {
         // Aktuelle Transformationsmatrix speichern
         canvas.save();
         // Transformationsmatrix an Pixel-Koordinate von Block verschieben
         canvas.translate(x * tileSize, y * tileSize);
-        // An der aktuellen Position ein Rechteck entsprechender Größe oder die existierende Bitmap
-        if(tileBitmap == null)
+        // An der aktuellen Position die Grafik oder ersatzweise ein Rechteck entsprechender Größe
+        if(sprite == null || !sprite.draw(canvas, 0, 0))
             canvas.drawRect(0, 0, tileSize, tileSize, tilePaint);
-        else
-            canvas.drawBitmap(tileBitmap, 0, 0, null);
         // Transformationsmatrix auf den Stand von vorherigem canvas.save() zurücksetzen
         canvas.restore();
     }
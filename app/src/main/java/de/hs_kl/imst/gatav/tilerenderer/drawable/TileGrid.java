@@ -0,0 +1,112 @@
+package de.hs_kl.imst.gatav.tilerenderer.drawable;
+
+import android.graphics.Canvas;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Unterste Ebene eines Levels (Wände und Boden), aufgeteilt in quadratische Chunks zu
+ * {@link #CHUNK_SIZE} x {@link #CHUNK_SIZE} Kacheln.
+ *
+ * Ein Chunk liegt entweder vollständig vor oder fehlt; große Level halten nur die Chunks um den
+ * Spieler (siehe {@link GameContent#isScrolling()}). Kacheln fehlender Chunks verhalten sich wie
+ * Kacheln außerhalb des Levels: {@link #get(int, int)} liefert null, sie sind also nicht begehbar.
+ *
+ * Chunks werden nur vom Game Thread gesetzt und entfernt; veröffentlicht werden sie über ein
+ * {@link AtomicReferenceArray}, so dass der Render-Thread ohne Lock lesen kann.
+ */
+class TileGrid {
+    static final int CHUNK_BITS = 4;
+    static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int LOCAL_MASK = CHUNK_SIZE - 1;
+
+    private final int width, height;
+    private final int chunksX, chunksY;
+    private final AtomicReferenceArray<TileGraphics[]> chunks;
+
+    /**
+     * @param width Breite in Kacheln
+     * @param height Höhe in Kacheln
+     */
+    TileGrid(int width, int height) {
+        this.width = width;
+        this.height = height;
+        chunksX = (width + LOCAL_MASK) >> CHUNK_BITS;
+        chunksY = (height + LOCAL_MASK) >> CHUNK_BITS;
+        chunks = new AtomicReferenceArray<>(chunksX * chunksY);
+    }
+
+    int getColumns() { return width; }
+    int getRows() { return height; }
+    int getChunksX() { return chunksX; }
+    int getChunksY() { return chunksY; }
+    int getChunkCount() { return chunks.length(); }
+
+    boolean isInside(int x, int y) {
+        return x >= 0 && y >= 0 && x < width && y < height;
+    }
+
+    /**
+     * @return Nummer des Chunks (cy * {@link #getChunksX()} + cx) oder -1 außerhalb des Levels
+     */
+    int chunkIndex(int x, int y) {
+        if(!isInside(x, y)) return -1;
+        return (y >> CHUNK_BITS) * chunksX + (x >> CHUNK_BITS);
+    }
+
+    /**
+     * @return Kachel oder null, falls außerhalb des Levels, leer oder der Chunk nicht geladen ist
+     */
+    TileGraphics get(int x, int y) {
+        if(!isInside(x, y)) return null;
+        TileGraphics[] chunk = chunks.get((y >> CHUNK_BITS) * chunksX + (x >> CHUNK_BITS));
+        return chunk == null ? null : chunk[((y & LOCAL_MASK) << CHUNK_BITS) | (x & LOCAL_MASK)];
+    }
+
+    /**
+     * Kachel ersetzen (z.B. zerstörte Wand); nur Game Thread
+     * @return false, falls außerhalb des Levels oder der Chunk nicht geladen ist
+     */
+    boolean set(int x, int y, TileGraphics tile) {
+        if(!isInside(x, y)) return false;
+        TileGraphics[] chunk = chunks.get((y >> CHUNK_BITS) * chunksX + (x >> CHUNK_BITS));
+        if(chunk == null) return false;
+        chunk[((y & LOCAL_MASK) << CHUNK_BITS) | (x & LOCAL_MASK)] = tile;
+        return true;
+    }
+
+    boolean isLoaded(int index) {
+        return chunks.get(index) != null;
+    }
+
+    /**
+     * Chunk einsetzen oder entfernen; nur Game Thread
+     * @param index Nummer des Chunks
+     * @param tiles {@link #CHUNK_SIZE}² Kacheln zeilenweise, wird nicht kopiert; null entfernt den Chunk
+     */
+    void setChunk(int index, TileGraphics[] tiles) {
+        chunks.set(index, tiles);
+    }
+
+    /**
+     * Alle vorhandenen Kacheln eines Ausschnitts zeichnen
+     * @param canvas Zeichenfläche
+     * @param frames Bildindex pro {@link TileAnimation#getId()}
+     * @param left erste Spalte
+     * @param top erste Zeile
+     * @param right Spalte hinter dem Ausschnitt
+     * @param bottom Zeile hinter dem Ausschnitt
+     */
+    void draw(Canvas canvas, int[] frames, int left, int top, int right, int bottom) {
+        left = Math.max(0, left);
+        top = Math.max(0, top);
+        right = Math.min(width, right);
+        bottom = Math.min(height, bottom);
+        for(int y = top; y < bottom; y++)
+            for(int x = left; x < right; x++) {
+                TileGraphics tile = get(x, y);
+                if(tile != null)
+                    tile.draw(canvas, frames);
+            }
+    }
+}
@@ -4,12 +4,10 @@ import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
 
-import java.io.InputStream;
-
 public class Wall extends TileGraphics {
 
-    public Wall(int x, int y, InputStream is) {
-        super(x, y, is);
+    public Wall(int x, int y, Sprite sprite) {
+        super(x, y, sprite);
 
         tilePaint.setColor(Color.parseColor("#5F3900"));
     }
@@ -0,0 +1,99 @@
+package de.hs_kl.imst.gatav.tilerenderer.drawable;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+
+import de.hs_kl.imst.gatav.tilerenderer.util.BallPhysics;
+
+/**
+ * Abrissbirnen-Modus: am Spieler hängt eine Kugel an einer Kette, die beim Laufen mitschwingt und
+ * an Wänden abprallt (siehe {@link BallPhysics}).
+ *
+ * Simuliert wird im Simulations-Thread ({@link #update(float, float, float)}), die interpolierten
+ * Positionen gelangen über den {@link RenderSnapshot} in den Render-Thread.
+ */
+class WreckingBalls {
+    static final float CHAIN_LENGTH = 2.5f;     // in Kacheln
+    private static final float BALL_RADIUS = 0.35f;
+
+    private final BallPhysics physics;
+    private final Paint ballPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint chainPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+
+    /**
+     * @param tiles Kacheln des Levels, nicht begehbare Kacheln sind Wände; wird nicht kopiert, damit
+     *              Änderungen am Level sofort wirken
+     */
+    WreckingBalls(final TileGrid tiles) {
+        physics = new BallPhysics(new BallPhysics.Grid() {
+            @Override
+            public boolean isSolid(int x, int y) {
+                TileGraphics tile = tiles.get(x, y);    // auch außerhalb bzw. nicht geladen: null
+                return tile == null || !tile.isPassable();
+            }
+        }, 1);
+        ballPaint.setColor(Color.parseColor("#333333"));
+        chainPaint.setColor(Color.parseColor("#999999"));
+    }
+
+    BallPhysics getPhysics() { return physics; }
+
+    /**
+     * Kugel direkt unter einen Aufhängepunkt hängen
+     * @param x X-Koordinate des Aufhängepunkts in Kacheln
+     * @param y Y-Koordinate des Aufhängepunkts in Kacheln
+     */
+    void attach(float x, float y) {
+        int ball = physics.add(x, y, 0, 0);
+        physics.setAnchor(ball, x, y, CHAIN_LENGTH);
+    }
+
+    /**
+     * Aufhängepunkte aller angeketteten Kugeln verschieben und Physik weiterrechnen
+     * @param fracsec vergangene Zeit in Sekunden
+     * @param anchorX neue X-Koordinate des Aufhängepunkts (Mittelpunkt des Spielers)
+     * @param anchorY neue Y-Koordinate des Aufhängepunkts
+     */
+    void update(float fracsec, float anchorX, float anchorY) {
+        for(int i = 0; i < physics.size(); i++)
+            if(physics.isChained(i))
+                physics.setAnchor(i, anchorX, anchorY, CHAIN_LENGTH);
+        physics.step(fracsec);
+    }
+
+    /**
+     * Interpolierte Positionen in den Snapshot übernehmen; Arrays werden wiederverwendet
+     * @param snapshot Ziel
+     */
+    void capture(RenderSnapshot snapshot) {
+        int count = physics.size();
+        if(snapshot.balls == null || snapshot.balls.length < count * 4)
+            snapshot.balls = new float[count * 4];
+        for(int i = 0; i < count; i++) {
+            snapshot.balls[i * 4] = physics.getRenderX(i);
+            snapshot.balls[i * 4 + 1] = physics.getRenderY(i);
+            snapshot.balls[i * 4 + 2] = physics.isChained(i) ? physics.getAnchorX(i) : Float.NaN;
+            snapshot.balls[i * 4 + 3] = physics.getAnchorY(i);
+        }
+        snapshot.ballCount = count;
+    }
+
+    /**
+     * Ketten und Kugeln eines Snapshots zeichnen
+     * @param canvas Zeichenfläche
+     * @param snapshot Zustand
+     */
+    void draw(Canvas canvas, RenderSnapshot snapshot) {
+        float tileSize = TileGraphics.getTileSize();
+        chainPaint.setStrokeWidth(tileSize * 0.08f);
+        for(int i = 0; i < snapshot.ballCount; i++) {
+            float x = snapshot.balls[i * 4] * tileSize;
+            float y = snapshot.balls[i * 4 + 1] * tileSize;
+            float anchorX = snapshot.balls[i * 4 + 2];
+            if(!Float.isNaN(anchorX))
+                canvas.drawLine(anchorX * tileSize, snapshot.balls[i * 4 + 3] * tileSize, x, y, chainPaint);
+            canvas.drawCircle(x, y, BALL_RADIUS * tileSize, ballPaint);
+        }
+    }
+}
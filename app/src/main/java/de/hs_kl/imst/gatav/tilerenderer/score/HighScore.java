@@ -0,0 +1,36 @@
+package de.hs_kl.imst.gatav.tilerenderer.score;
+
+/**
+ * Ein Eintrag der Bestenliste eines Levels
+ */
+public class HighScore implements Comparable<HighScore> {
+    private final int score;
+    private final int timeCentis;
+    private final long timestamp;
+
+    /**
+     * @param score erreichte Punkte
+     * @param timeCentis benötigte Zeit in Hundertstelsekunden
+     * @param timestamp Zeitpunkt des Spielendes (ms seit 1970)
+     */
+    public HighScore(int score, int timeCentis, long timestamp) {
+        this.score = score;
+        this.timeCentis = timeCentis;
+        this.timestamp = timestamp;
+    }
+
+    public int getScore() { return score; }
+    public int getTimeCentis() { return timeCentis; }
+    public long getTimestamp() { return timestamp; }
+
+    /**
+     * Bessere Einträge zuerst: mehr Punkte, bei Gleichstand kürzere Zeit, dann der frühere Eintrag
+     */
+    @Override
+    public int compareTo(HighScore other) {
+        if(score != other.score) return score > other.score ? -1 : 1;
+        if(timeCentis != other.timeCentis) return timeCentis < other.timeCentis ? -1 : 1;
+        if(timestamp != other.timestamp) return timestamp < other.timestamp ? -1 : 1;
+        return 0;
+    }
+}
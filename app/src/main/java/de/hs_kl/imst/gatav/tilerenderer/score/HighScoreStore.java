@@ -0,0 +1,418 @@
+package de.hs_kl.imst.gatav.tilerenderer.score;
+
+import android.content.Context;
+import android.os.Process;
+import android.util.Log;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Lokale Bestenliste pro Level.
+ *
+ * Jedes Spielende wird als kleiner Datensatz mit Prüfsumme an ein Log angehängt
+ * (<code>&lt;level&gt;.&lt;generation&gt;.log</code>). Im Speicher wird pro Level nur die Bestenliste
+ * ({@link #TOP_N} Einträge) gehalten. Sammeln sich genügend Datensätze an, wird im Hintergrund
+ * kompaktiert: das Log wird rotiert, die Bestenliste in <code>&lt;level&gt;.top</code> geschrieben
+ * und die darin enthaltenen Logs gelöscht. Beim Laden werden daher nur die Bestenliste und die
+ * seitdem angehängten Logs gelesen, nie die gesamte Spielhistorie.
+ *
+ * Datensätze mit falscher Prüfsumme (z.B. abgebrochener Schreibvorgang) werden übersprungen.
+ */
+public class HighScoreStore {
+    private static final String TAG = "HighScoreStore";
+
+    public static final int TOP_N = 100;
+
+    // Datensatz: CRC32 (über den Rest), Punkte, Zeit in Hundertstelsekunden, Zeitpunkt
+    static final int RECORD_BYTES = 4 + 4 + 4 + 8;
+    private static final int TOP_MAGIC = 0x48535431;    // "HST1"
+    private static final int COMPACT_THRESHOLD = 64;    // Datensätze in Logs bis zur Kompaktierung
+
+    private static HighScoreStore instance;
+
+    /**
+     * @param context Kontext
+     * @return gemeinsame Bestenliste der App (files/scores)
+     */
+    public static synchronized HighScoreStore get(Context context) {
+        if(instance == null)
+            instance = new HighScoreStore(new File(context.getFilesDir(), "scores"));
+        return instance;
+    }
+
+    /**
+     * Zustand eines geladenen Levels
+     */
+    private static class LevelScores {
+        final ArrayList<HighScore> top = new ArrayList<>(TOP_N + 1);
+        int generation;             // Generation des Logs, an das angehängt wird
+        int pendingRecords;         // Datensätze in noch nicht kompaktierten Logs
+        boolean compacting;
+        FileOutputStream log;
+    }
+
+    private final File dir;
+    private final HashMap<String, LevelScores> levels = new HashMap<>();
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(final Runnable r) {
+            return new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    r.run();
+                }
+            }, TAG);
+        }
+    });
+    private final ByteBuffer record = ByteBuffer.allocate(RECORD_BYTES);
+    private final CRC32 crc = new CRC32();
+
+    /**
+     * @param dir Verzeichnis der Logs und Bestenlisten
+     */
+    public HighScoreStore(File dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * Trägt ein Spielergebnis ein; kostet einen sequentiellen Schreibvorgang von {@link #RECORD_BYTES} Bytes
+     * @param level Name des Levels
+     * @param score erreichte Punkte
+     * @param timeCentis benötigte Zeit in Hundertstelsekunden
+     * @return Platz in der Bestenliste (0 = bester) oder -1, wenn das Ergebnis nicht in die Bestenliste kommt
+     */
+    synchronized public int add(String level, int score, int timeCentis) {
+        LevelScores scores = load(level);
+        HighScore entry = new HighScore(score, timeCentis, System.currentTimeMillis());
+
+        record.clear();
+        record.putInt(0).putInt(score).putInt(timeCentis).putLong(entry.getTimestamp());
+        crc.reset();
+        crc.update(record.array(), 4, RECORD_BYTES - 4);
+        record.putInt(0, (int) crc.getValue());
+        try {
+            if(scores.log == null) {
+                if(!dir.isDirectory() && !dir.mkdirs())
+                    throw new FileNotFoundException("Verzeichnis nicht anlegbar: " + dir);
+                scores.log = new FileOutputStream(logFile(level, scores.generation), true);
+            }
+            scores.log.write(record.array(), 0, RECORD_BYTES);
+            scores.pendingRecords++;
+        } catch(IOException e) {
+            Log.w(TAG, "Ergebnis für " + level + " nicht speicherbar", e);
+        }
+
+        int rank = insert(scores.top, entry);
+        if(scores.pendingRecords >= COMPACT_THRESHOLD)
+            scheduleCompaction(level, scores);
+        return rank;
+    }
+
+    /**
+     * @param level Name des Levels
+     * @param n maximale Anzahl Einträge
+     * @return die besten n Einträge, bester zuerst
+     */
+    synchronized public List<HighScore> getTop(String level, int n) {
+        ArrayList<HighScore> top = load(level).top;
+        return new ArrayList<>(top.subList(0, Math.min(n, top.size())));
+    }
+
+    /**
+     * @param level Name des Levels
+     * @return bester Eintrag oder null, wenn das Level noch nicht beendet wurde
+     */
+    synchronized public HighScore getBest(String level) {
+        ArrayList<HighScore> top = load(level).top;
+        return top.isEmpty() ? null : top.get(0);
+    }
+
+    /**
+     * Wie {@link #getBest(String)}, liest aber nie aus Dateien (z.B. für den UI Thread)
+     * @param level Name des Levels
+     * @return bester Eintrag oder null, wenn das Level noch nicht beendet oder die Bestenliste noch
+     *         nicht geladen wurde (siehe {@link #preload(String)})
+     */
+    synchronized public HighScore peekBest(String level) {
+        LevelScores scores = levels.get(level);
+        return scores == null || scores.top.isEmpty() ? null : scores.top.get(0);
+    }
+
+    /**
+     * Lädt die Bestenliste eines Levels, falls noch nicht geschehen; kann vorab im Hintergrund
+     * aufgerufen werden, damit spätere Abfragen nur den Speicher lesen
+     * @param level Name des Levels
+     */
+    synchronized public void preload(String level) {
+        load(level);
+    }
+
+    /**
+     * Bestenliste aus <code>&lt;level&gt;.top</code> und allen neueren Logs aufbauen
+     */
+    private LevelScores load(String level) {
+        LevelScores scores = levels.get(level);
+        if(scores != null) return scores;
+        scores = new LevelScores();
+
+        int coveredGeneration = readTop(level, scores.top);
+        int maxGeneration = coveredGeneration;
+        ArrayList<Integer> logs = listLogs(level);
+        Collections.sort(logs);
+        for(int i = 0; i < logs.size(); i++) {
+            int generation = logs.get(i);
+            if(generation <= coveredGeneration) {
+                // bereits in der Bestenliste, Löschen wurde unterbrochen
+                logFile(level, generation).delete();
+                continue;
+            }
+            scores.pendingRecords += readLog(logFile(level, generation), scores.top);
+            maxGeneration = generation;
+        }
+        // immer in ein neues Log schreiben, ein evtl. abgeschnittener letzter Datensatz bleibt so isoliert
+        scores.generation = maxGeneration + 1;
+        levels.put(level, scores);
+
+        if(scores.pendingRecords >= COMPACT_THRESHOLD)
+            scheduleCompaction(level, scores);
+        return scores;
+    }
+
+    /**
+     * @return höchste in der Bestenliste enthaltene Log-Generation, -1 wenn keine Bestenliste existiert
+     */
+    private int readTop(String level, ArrayList<HighScore> top) {
+        File file = topFile(level);
+        if(!file.isFile()) return -1;
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new FileInputStream(file));
+            if(in.readInt() != TOP_MAGIC) {
+                Log.w(TAG, "Unbekanntes Format: " + file);
+                return -1;
+            }
+            int coveredGeneration = in.readInt();
+            int count = in.readInt();
+            byte[] buf = new byte[RECORD_BYTES];
+            for(int i = 0; i < count; i++) {
+                in.readFully(buf);
+                HighScore entry = decode(buf);
+                if(entry != null)
+                    insert(top, entry);
+            }
+            return coveredGeneration;
+        } catch(IOException e) {
+            Log.w(TAG, "Bestenliste nicht lesbar: " + file, e);
+            return -1;
+        } finally {
+            if(in != null)
+                try { in.close(); } catch(IOException e) { e.printStackTrace(); }
+        }
+    }
+
+    /**
+     * @return Anzahl gelesener Datensätze
+     */
+    private int readLog(File file, ArrayList<HighScore> top) {
+        int count = 0;
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new FileInputStream(file));
+            byte[] buf = new byte[RECORD_BYTES];
+            while(true) {
+                in.readFully(buf);
+                count++;
+                HighScore entry = decode(buf);
+                if(entry != null)
+                    insert(top, entry);
+            }
+        } catch(EOFException e) {
+            // Dateiende, ein unvollständiger letzter Datensatz wird ignoriert
+        } catch(IOException e) {
+            Log.w(TAG, "Log nicht lesbar: " + file, e);
+        } finally {
+            if(in != null)
+                try { in.close(); } catch(IOException e) { e.printStackTrace(); }
+        }
+        return count;
+    }
+
+    /**
+     * @return Eintrag oder null bei falscher Prüfsumme
+     */
+    private static HighScore decode(byte[] buf) {
+        CRC32 check = new CRC32();
+        check.update(buf, 4, RECORD_BYTES - 4);
+        ByteBuffer bb = ByteBuffer.wrap(buf);
+        if(bb.getInt() != (int) check.getValue())
+            return null;
+        return new HighScore(bb.getInt(), bb.getInt(), bb.getLong());
+    }
+
+    /**
+     * Sortiert einfügen und auf {@link #TOP_N} Einträge kürzen
+     * @return Platz oder -1, wenn der Eintrag herausfällt
+     */
+    private static int insert(ArrayList<HighScore> top, HighScore entry) {
+        int pos = Collections.binarySearch(top, entry);
+        if(pos < 0) pos = -pos - 1;
+        if(pos >= TOP_N) return -1;
+        top.add(pos, entry);
+        if(top.size() > TOP_N)
+            top.remove(top.size() - 1);
+        return pos;
+    }
+
+    /**
+     * Log rotieren und die Bestenliste im Hintergrund schreiben; nur mit Lock aufrufen.
+     * Sind während des Schreibens wieder genügend Datensätze angefallen, wird im selben Auftrag
+     * erneut kompaktiert.
+     */
+    private void scheduleCompaction(final String level, final LevelScores scores) {
+        if(scores.compacting) return;
+        scores.compacting = true;
+        final Compaction first = rotate(scores);
+
+        compactor.execute(new Runnable() {
+            @Override
+            public void run() {
+                Compaction compaction = first;
+                while(compaction != null) {
+                    try {
+                        writeTop(level, compaction.coveredGeneration, compaction.snapshot);
+                        for(int generation : listLogs(level))
+                            if(generation <= compaction.coveredGeneration)
+                                logFile(level, generation).delete();
+                    } catch(IOException e) {
+                        Log.w(TAG, "Kompaktierung von " + level + " fehlgeschlagen", e);
+                    }
+                    synchronized(HighScoreStore.this) {
+                        if(scores.pendingRecords >= COMPACT_THRESHOLD)
+                            compaction = rotate(scores);
+                        else {
+                            scores.compacting = false;
+                            compaction = null;
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Stand einer Kompaktierung: Bestenliste einschließlich aller Logs bis coveredGeneration
+     */
+    private static class Compaction {
+        final int coveredGeneration;
+        final ArrayList<HighScore> snapshot;
+
+        Compaction(int coveredGeneration, ArrayList<HighScore> snapshot) {
+            this.coveredGeneration = coveredGeneration;
+            this.snapshot = snapshot;
+        }
+    }
+
+    /**
+     * Weitere Datensätze in ein neues Log schreiben; nur mit Lock aufrufen
+     */
+    private static Compaction rotate(LevelScores scores) {
+        closeLog(scores);
+        Compaction compaction = new Compaction(scores.generation, new ArrayList<>(scores.top));
+        scores.generation++;
+        scores.pendingRecords = 0;
+        return compaction;
+    }
+
+    /**
+     * Bestenliste atomar ersetzen (temporäre Datei, sync, umbenennen)
+     */
+    private void writeTop(String level, int coveredGeneration, List<HighScore> top) throws IOException {
+        if(!dir.isDirectory() && !dir.mkdirs())
+            throw new FileNotFoundException("Verzeichnis nicht anlegbar: " + dir);
+        ByteBuffer bb = ByteBuffer.allocate(12 + top.size() * RECORD_BYTES);
+        bb.putInt(TOP_MAGIC).putInt(coveredGeneration).putInt(top.size());
+        CRC32 check = new CRC32();
+        for(int i = 0; i < top.size(); i++) {
+            HighScore entry = top.get(i);
+            int start = bb.position();
+            bb.putInt(0).putInt(entry.getScore()).putInt(entry.getTimeCentis()).putLong(entry.getTimestamp());
+            check.reset();
+            check.update(bb.array(), start + 4, RECORD_BYTES - 4);
+            bb.putInt(start, (int) check.getValue());
+        }
+
+        File tmp = new File(dir, level + ".top.tmp");
+        FileOutputStream out = new FileOutputStream(tmp);
+        try {
+            out.write(bb.array(), 0, bb.position());
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+        if(!tmp.renameTo(topFile(level)))
+            throw new IOException("Umbenennen fehlgeschlagen: " + tmp);
+    }
+
+    private ArrayList<Integer> listLogs(String level) {
+        ArrayList<Integer> generations = new ArrayList<>();
+        String[] names = dir.list();
+        if(names == null) return generations;
+        String prefix = level + ".";
+        for(String name : names) {
+            if(!name.startsWith(prefix) || !name.endsWith(".log")) continue;
+            try {
+                generations.add(Integer.parseInt(name.substring(prefix.length(), name.length() - 4)));
+            } catch(NumberFormatException e) {
+                // anderes Level mit Punkt im Namen
+            }
+        }
+        return generations;
+    }
+
+    private File logFile(String level, int generation) {
+        return new File(dir, level + "." + generation + ".log");
+    }
+
+    private File topFile(String level) {
+        return new File(dir, level + ".top");
+    }
+
+    private static void closeLog(LevelScores scores) {
+        if(scores.log == null) return;
+        try {
+            scores.log.close();
+        } catch(IOException e) {
+            e.printStackTrace();
+        }
+        scores.log = null;
+    }
+
+    /**
+     * Offene Logs schließen und auf laufende Kompaktierungen warten; danach ist keine Eintragung mehr möglich
+     */
+    public void close() throws InterruptedException {
+        synchronized(this) {
+            for(LevelScores scores : levels.values())
+                closeLog(scores);
+        }
+        compactor.shutdown();
+        compactor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+}
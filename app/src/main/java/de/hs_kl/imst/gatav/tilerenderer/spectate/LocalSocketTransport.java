@@ -0,0 +1,53 @@
+package de.hs_kl.imst.gatav.tilerenderer.spectate;
+
+import android.net.LocalServerSocket;
+import android.net.LocalSocket;
+import android.net.LocalSocketAddress;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Transport über einen lokalen (Unix Domain) Socket, z.B. zu einem Zuschauer-Prozess auf dem Gerät
+ */
+public class LocalSocketTransport implements StateTransport {
+    private final LocalSocket socket;
+
+    private LocalSocketTransport(LocalSocket socket) {
+        this.socket = socket;
+    }
+
+    /**
+     * Verbindet sich mit einem wartenden Spiel
+     * @param name Name des Sockets im abstrakten Namensraum
+     * @return verbundener Transport
+     * @throws IOException falls keine Verbindung aufgebaut werden kann
+     */
+    public static LocalSocketTransport connect(String name) throws IOException {
+        LocalSocket socket = new LocalSocket();
+        socket.connect(new LocalSocketAddress(name));
+        return new LocalSocketTransport(socket);
+    }
+
+    /**
+     * Wartet (blockierend) auf den nächsten Zuschauer
+     * @param server Server Socket
+     * @return verbundener Transport
+     * @throws IOException falls beim Warten etwas schief geht
+     */
+    public static LocalSocketTransport accept(LocalServerSocket server) throws IOException {
+        return new LocalSocketTransport(server.accept());
+    }
+
+    @Override
+    public OutputStream getOutputStream() throws IOException { return socket.getOutputStream(); }
+
+    @Override
+    public InputStream getInputStream() throws IOException { return socket.getInputStream(); }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+}
@@ -0,0 +1,39 @@
+package de.hs_kl.imst.gatav.tilerenderer.spectate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+
+/**
+ * Transport innerhalb eines Prozesses über eine Pipe, z.B. für einen lokalen Zuschauer oder Tests
+ */
+public class PipeTransport implements StateTransport {
+    private final PipedInputStream in;
+    private final PipedOutputStream out;
+
+    public PipeTransport() throws IOException {
+        this(64 * 1024);
+    }
+
+    /**
+     * @param pipeSize Puffergröße der Pipe in Bytes; ist sie voll, blockiert der Sender
+     */
+    public PipeTransport(int pipeSize) throws IOException {
+        in = new PipedInputStream(pipeSize);
+        out = new PipedOutputStream(in);
+    }
+
+    @Override
+    public OutputStream getOutputStream() { return out; }
+
+    @Override
+    public InputStream getInputStream() { return in; }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+        in.close();
+    }
+}
@@ -0,0 +1,217 @@
+package de.hs_kl.imst.gatav.tilerenderer.spectate;
+
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import de.hs_kl.imst.gatav.tilerenderer.drawable.GameContent;
+import de.hs_kl.imst.gatav.tilerenderer.util.Direction;
+import de.hs_kl.imst.gatav.tilerenderer.util.RenderScheduler;
+
+/**
+ * Zuschauer-Seite des Streams (Format siehe {@link StateProtocol}).
+ *
+ * Ein eigener Thread liest und dekodiert den Stream, die dekodierten Ereignisse werden
+ * über {@link #applyPending(GameContent)} im Game Thread des Zuschauers auf dessen eigenes
+ * Spielfeld (im Spiegelbetrieb, siehe {@link GameContent#setMirrored(boolean)}) angewendet.
+ */
+public class SpectatorClient implements Runnable {
+    private static final String TAG = "SpectatorClient";
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private final StateTransport transport;
+    private final ConcurrentLinkedQueue<int[]> pending = new ConcurrentLinkedQueue<>();
+
+    private Thread readerThread;
+    private volatile boolean running = false;
+    private volatile String levelName = null;
+    private volatile RenderScheduler renderScheduler = null;
+
+    // Spielerposition laut letztem Snapshot (nur im Lese-Thread verwendet)
+    private int lastPlayerX, lastPlayerY;
+
+    public SpectatorClient(StateTransport transport) {
+        this.transport = transport;
+    }
+
+    /**
+     * @return Name des Levels laut Snapshot oder null, solange noch kein Snapshot empfangen wurde
+     */
+    public String getLevelName() { return levelName; }
+
+    public boolean isRunning() { return running; }
+
+    /**
+     * @param renderScheduler wird nach jedem vollständig empfangenen Tick geweckt
+     */
+    public void setRenderScheduler(RenderScheduler renderScheduler) { this.renderScheduler = renderScheduler; }
+
+    private void wakeUp() {
+        RenderScheduler scheduler = renderScheduler;
+        if(scheduler != null)
+            scheduler.requestRender();
+    }
+
+    public void start() {
+        if(running) return;
+        running = true;
+        readerThread = new Thread(this, TAG);
+        readerThread.start();
+    }
+
+    public void stop() {
+        running = false;
+        try {
+            transport.close();
+        } catch(IOException e) {
+            e.printStackTrace();
+        }
+        if(readerThread != null) {
+            try {
+                readerThread.join();
+            } catch(InterruptedException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Wendet alle bisher empfangenen Ereignisse an; nur aus dem Game Thread aufrufen
+     * @param content Spielfeld des Zuschauers
+     */
+    public void applyPending(GameContent content) {
+        int[] event;
+        while((event = pending.poll()) != null) {
+            switch(StateProtocol.typeOf(event[0])) {
+                case StateProtocol.OP_PLAYER_MOVE:
+                    content.mirrorPlayerMove(event[1], event[2]);
+                    break;
+                case StateProtocol.OP_TARGET_SPAWN:
+                    content.mirrorTargetSpawn(event[1], event[2], event[0] & StateProtocol.ARG_MASK);
+                    break;
+                case StateProtocol.OP_TARGET_COLLECT:
+                    content.mirrorTargetCollect(event[1], event[2]);
+                    break;
+                case StateProtocol.OP_DYN_SPAWN:
+                    content.mirrorDynamicTargetSpawn(event[1], event[2], DIRECTIONS[event[0] & StateProtocol.ARG_MASK]);
+                    break;
+                case StateProtocol.OP_DYN_CAUGHT:
+                    content.mirrorDynamicTargetCaught();
+                    break;
+                case StateProtocol.OP_DYN_EXPIRED:
+                    content.mirrorDynamicTargetExpired();
+                    break;
+                case StateProtocol.OP_SNAPSHOT:
+                    applySnapshot(content, event);
+                    break;
+            }
+        }
+    }
+
+    private void applySnapshot(GameContent content, int[] event) {
+        if(levelName != null && !levelName.equals(content.getLevelName()))
+            Log.w(TAG, "Zuschauer-Stream gehört zu Level " + levelName + ", angezeigt wird " + content.getLevelName());
+        content.mirrorReset(event[1], event[2], event[3], event[4]);
+        int n = event[5];
+        int i = 6;
+        for(int t = 0; t < n; t++, i += 3)
+            content.mirrorTargetSpawn(event[i], event[i + 1], event[i + 2]);
+        if(event[i] != 0)
+            content.mirrorDynamicTargetSpawn(event[i + 1], event[i + 2], DIRECTIONS[event[i + 3]]);
+    }
+
+    /**
+     * Lese-Thread: dekodiert den Stream, bis er endet oder {@link #stop()} aufgerufen wird
+     */
+    @Override
+    public void run() {
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(transport.getInputStream()));
+            readSnapshot(in);
+            wakeUp();
+            // Deltas sind gültig, solange die Position des Spielers bekannt ist
+            int playerX = lastPlayerX, playerY = lastPlayerY;
+            while(running) {
+                int op = in.read();
+                if(op < 0) break;
+                switch(StateProtocol.typeOf(op)) {
+                    case StateProtocol.OP_PLAYER_MOVE:
+                        switch(DIRECTIONS[op & StateProtocol.ARG_MASK]) {
+                            case LEFT: playerX--; break;
+                            case RIGHT: playerX++; break;
+                            case UP: playerY--; break;
+                            case DOWN: playerY++; break;
+                        }
+                        pending.add(new int[] {op, playerX, playerY});
+                        break;
+                    case StateProtocol.OP_TARGET_SPAWN:
+                    case StateProtocol.OP_TARGET_COLLECT:
+                    case StateProtocol.OP_DYN_SPAWN:
+                        pending.add(new int[] {op, StateProtocol.readVarint(in), StateProtocol.readVarint(in)});
+                        break;
+                    case StateProtocol.OP_SNAPSHOT:
+                        readSnapshot(in);
+                        playerX = lastPlayerX;
+                        playerY = lastPlayerY;
+                        wakeUp();
+                        break;
+                    case StateProtocol.OP_DYN_CAUGHT:
+                    case StateProtocol.OP_DYN_EXPIRED:
+                        pending.add(new int[] {op});
+                        break;
+                    case StateProtocol.OP_TICK:
+                        wakeUp();   // Ereignisse des Ticks sind bereits eingereiht
+                        break;
+                    default:
+                        throw new IOException("Unbekannter Opcode im Zuschauer-Stream: " + op);
+                }
+            }
+        } catch(IOException e) {
+            if(running)
+                Log.w(TAG, "Zuschauer-Stream beendet: " + e.getMessage());
+        }
+        running = false;
+    }
+
+    /**
+     * Liest einen Snapshot; das einleitende {@link StateProtocol#OP_SNAPSHOT} wird beim ersten
+     * Snapshot hier, bei späteren bereits in {@link #run()} gelesen
+     */
+    private void readSnapshot(DataInputStream in) throws IOException {
+        if(levelName == null && in.readUnsignedByte() != StateProtocol.OP_SNAPSHOT)
+            throw new IOException("Zuschauer-Stream beginnt nicht mit einem Snapshot");
+        int version = in.readUnsignedByte();
+        if(version != StateProtocol.VERSION)
+            throw new IOException("Nicht unterstützte Protokollversion " + version);
+        levelName = in.readUTF();
+
+        lastPlayerX = StateProtocol.readVarint(in);
+        lastPlayerY = StateProtocol.readVarint(in);
+        int collected = StateProtocol.readVarint(in);
+        int score = StateProtocol.readVarint(in);
+        int n = StateProtocol.readVarint(in);
+        int[] event = new int[6 + 3 * n + 4];
+        event[0] = StateProtocol.OP_SNAPSHOT;
+        event[1] = lastPlayerX;
+        event[2] = lastPlayerY;
+        event[3] = collected;
+        event[4] = score;
+        event[5] = n;
+        int i = 6;
+        for(int t = 0; t < n; t++) {
+            event[i++] = StateProtocol.readVarint(in);
+            event[i++] = StateProtocol.readVarint(in);
+            event[i++] = StateProtocol.readVarint(in);
+        }
+        event[i] = in.readUnsignedByte();
+        if(event[i] != 0) {
+            event[i + 1] = StateProtocol.readVarint(in);
+            event[i + 2] = StateProtocol.readVarint(in);
+            event[i + 3] = StateProtocol.readVarint(in);
+        }
+        pending.add(event);
+    }
+}
@@ -0,0 +1,81 @@
+package de.hs_kl.imst.gatav.tilerenderer.spectate;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Binärformat des Zuschauer-Streams.
+ *
+ * Nach dem Verbindungsaufbau wird genau ein {@link #OP_SNAPSHOT} gesendet, danach nur noch
+ * Deltas. Jedes Delta beginnt mit einem Opcode-Byte, dessen untere vier Bit bei Bewegungen die
+ * Richtung ({@link de.hs_kl.imst.gatav.tilerenderer.util.Direction#ordinal()}) bzw. bei neuen
+ * Zielen deren Nummer tragen. Koordinaten und Zähler werden als vorzeichenlose Varints
+ * (7 Bit pro Byte) übertragen. Ein Tick mit Änderungen wird durch {@link #OP_TICK} abgeschlossen,
+ * Ticks ohne Änderungen erzeugen keine Daten.
+ *
+ * Ein Zug des Spielers kostet damit zwei Bytes (Zug + Tick-Ende), ein eingesammeltes Ziel samt
+ * neuem Ziel in kleinen Levels sieben Bytes.
+ */
+public final class StateProtocol {
+    public static final int VERSION = 1;
+
+    public static final int OP_TICK = 0x00;
+    public static final int OP_SNAPSHOT = 0x01;
+    public static final int OP_PLAYER_MOVE = 0x10;        // | Richtung
+    public static final int OP_TARGET_SPAWN = 0x20;       // | Nummer, x, y
+    public static final int OP_TARGET_COLLECT = 0x30;     // x, y
+    public static final int OP_DYN_SPAWN = 0x40;          // | Richtung, x, y
+    public static final int OP_DYN_CAUGHT = 0x50;
+    public static final int OP_DYN_EXPIRED = 0x51;
+
+    public static final int OP_MASK = 0xF0;
+    public static final int ARG_MASK = 0x0F;
+
+    private StateProtocol() {}
+
+    /**
+     * Ermittelt den Typ eines Opcodes, d.h. entfernt ggf. das Argument in den unteren vier Bit
+     * @param op Opcode-Byte
+     * @return einer der OP_* Werte
+     */
+    public static int typeOf(int op) {
+        if(op < OP_PLAYER_MOVE || op == OP_DYN_CAUGHT || op == OP_DYN_EXPIRED)
+            return op;
+        return op & OP_MASK;
+    }
+
+    /**
+     * Schreibt einen vorzeichenlosen Varint in einen Puffer
+     * @param buf Zielpuffer (muss mindestens 5 freie Bytes ab pos haben)
+     * @param pos Schreibposition
+     * @param value nicht negativer Wert
+     * @return neue Schreibposition
+     */
+    public static int putVarint(byte[] buf, int pos, int value) {
+        while((value & ~0x7F) != 0) {
+            buf[pos++] = (byte)((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buf[pos++] = (byte)value;
+        return pos;
+    }
+
+    /**
+     * Liest einen vorzeichenlosen Varint aus einem Stream
+     * @param in Quelle
+     * @return gelesener Wert
+     * @throws IOException bei Streamende oder ungültigem Wert
+     */
+    public static int readVarint(InputStream in) throws IOException {
+        int value = 0;
+        for(int shift = 0; shift < 32; shift += 7) {
+            int b = in.read();
+            if(b < 0)
+                throw new IOException("Unerwartetes Ende des Zuschauer-Streams");
+            value |= (b & 0x7F) << shift;
+            if((b & 0x80) == 0)
+                return value;
+        }
+        throw new IOException("Ungültiger Varint im Zuschauer-Stream");
+    }
+}
@@ -0,0 +1,270 @@
+package de.hs_kl.imst.gatav.tilerenderer.spectate;
+
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import de.hs_kl.imst.gatav.tilerenderer.drawable.DynamicTarget;
+import de.hs_kl.imst.gatav.tilerenderer.drawable.GameContent;
+import de.hs_kl.imst.gatav.tilerenderer.drawable.GameEventListener;
+import de.hs_kl.imst.gatav.tilerenderer.drawable.OverlayLayer;
+import de.hs_kl.imst.gatav.tilerenderer.drawable.Player;
+import de.hs_kl.imst.gatav.tilerenderer.drawable.Target;
+import de.hs_kl.imst.gatav.tilerenderer.util.Direction;
+
+/**
+ * Sendet den Zustand eines laufenden Spiels an einen Zuschauer (Format siehe {@link StateProtocol}).
+ *
+ * Wird als {@link GameEventListener} bei {@link GameContent} registriert. Die Deltas eines Ticks
+ * werden in einem wiederverwendeten Puffer gesammelt und am Tick-Ende in eine begrenzte
+ * Warteschlange (Ringpuffer) kopiert, die ein eigener Thread in den Stream schreibt. Der Game
+ * Thread blockiert also nie, auch wenn der Zuschauer nicht mehr liest (volle Pipe bzw. Socket).
+ * Läuft die Warteschlange über oder bricht die Verbindung ab, wird der Zuschauer getrennt und
+ * der Writer verwirft alle weiteren Ereignisse.
+ */
+public class StateStreamWriter implements GameEventListener {
+    private static final String TAG = "StateStreamWriter";
+    public static final int DEFAULT_QUEUE_BYTES = 64 * 1024;
+    private static final int WRITE_CHUNK = 4096;
+
+    private final OutputStream out;
+    private byte[] buf = new byte[256];
+    private int pos = 0;
+    private volatile boolean closed = false;
+
+    // Warteschlange zum Schreib-Thread, geschützt durch queueLock
+    private final Object queueLock = new Object();
+    private final byte[] queue;
+    private int queueHead = 0, queueSize = 0;
+    private Thread writerThread;
+
+    public StateStreamWriter(OutputStream out) {
+        this(out, DEFAULT_QUEUE_BYTES);
+    }
+
+    /**
+     * @param out Ziel-Stream
+     * @param queueBytes höchstens so viele Bytes dürfen noch nicht geschrieben sein, danach wird
+     *                   der Zuschauer getrennt
+     */
+    public StateStreamWriter(OutputStream out, int queueBytes) {
+        this.out = out;
+        this.queue = new byte[queueBytes];
+    }
+
+    public boolean isClosed() { return closed; }
+
+    /**
+     * Sendet den vollständigen Spielzustand; muss vor dem Registrieren als Listener und aus dem
+     * Game Thread heraus aufgerufen werden, damit die folgenden Deltas dazu passen
+     * @param content zu sendender Spielzustand
+     */
+    public void writeSnapshot(GameContent content) {
+        if(closed) return;
+        try {
+            ByteArrayOutputStream header = new ByteArrayOutputStream(64);
+            DataOutputStream dos = new DataOutputStream(header);
+            dos.writeByte(StateProtocol.OP_SNAPSHOT);
+            dos.writeByte(StateProtocol.VERSION);
+            dos.writeUTF(content.getLevelName());
+
+            Player player = content.getPlayer();
+            OverlayLayer<Target> targets = content.getTargets();
+            pos = 0;
+            ensureCapacity(5 * 5);
+            pos = StateProtocol.putVarint(buf, pos, player.getX());
+            pos = StateProtocol.putVarint(buf, pos, player.getY());
+            pos = StateProtocol.putVarint(buf, pos, content.getCollectedTargets());
+            pos = StateProtocol.putVarint(buf, pos, content.getCollectedScore());
+            pos = StateProtocol.putVarint(buf, pos, targets.size());
+            for(int i = 0; i < targets.size(); i++) {
+                Target t = targets.get(i);
+                ensureCapacity(3 * 5);
+                pos = StateProtocol.putVarint(buf, pos, t.getX());
+                pos = StateProtocol.putVarint(buf, pos, t.getY());
+                pos = StateProtocol.putVarint(buf, pos, t.getNumber());
+            }
+            DynamicTarget dyn = content.getDynTarget();
+            ensureCapacity(1 + 3 * 5);
+            if(dyn == null || !dyn.isMoving()) {
+                buf[pos++] = 0;
+            } else {
+                buf[pos++] = 1;
+                pos = StateProtocol.putVarint(buf, pos, dyn.getSourceX());
+                pos = StateProtocol.putVarint(buf, pos, dyn.getSourceY());
+                pos = StateProtocol.putVarint(buf, pos, directionOf(dyn).ordinal());
+            }
+            dos.write(buf, 0, pos);
+            enqueue(header.toByteArray(), header.size());
+        } catch(IOException e) {
+            fail(e);
+        }
+        pos = 0;
+    }
+
+    @Override
+    public void onPlayerMoved(int x, int y, Direction direction) {
+        if(closed) return;
+        ensureCapacity(1);
+        buf[pos++] = (byte)(StateProtocol.OP_PLAYER_MOVE | direction.ordinal());
+    }
+
+    @Override
+    public void onTargetSpawned(int x, int y, int targetNumber) {
+        if(closed) return;
+        ensureCapacity(11);
+        buf[pos++] = (byte)(StateProtocol.OP_TARGET_SPAWN | (targetNumber & StateProtocol.ARG_MASK));
+        pos = StateProtocol.putVarint(buf, pos, x);
+        pos = StateProtocol.putVarint(buf, pos, y);
+    }
+
+    @Override
+    public void onTargetCollected(int x, int y, int score) {
+        if(closed) return;
+        ensureCapacity(11);
+        buf[pos++] = (byte) StateProtocol.OP_TARGET_COLLECT;
+        pos = StateProtocol.putVarint(buf, pos, x);
+        pos = StateProtocol.putVarint(buf, pos, y);
+    }
+
+    @Override
+    public void onDynamicTargetSpawned(int x, int y, Direction direction) {
+        if(closed) return;
+        ensureCapacity(11);
+        buf[pos++] = (byte)(StateProtocol.OP_DYN_SPAWN | direction.ordinal());
+        pos = StateProtocol.putVarint(buf, pos, x);
+        pos = StateProtocol.putVarint(buf, pos, y);
+    }
+
+    @Override
+    public void onDynamicTargetCaught(int score) {
+        if(closed) return;
+        ensureCapacity(1);
+        buf[pos++] = (byte) StateProtocol.OP_DYN_CAUGHT;
+    }
+
+    @Override
+    public void onDynamicTargetExpired() {
+        if(closed) return;
+        ensureCapacity(1);
+        buf[pos++] = (byte) StateProtocol.OP_DYN_EXPIRED;
+    }
+
+    @Override
+    public void onTickEnd() {
+        if(closed || pos == 0) return;     // Ticks ohne Änderung kosten nichts
+        ensureCapacity(1);
+        buf[pos++] = (byte) StateProtocol.OP_TICK;
+        enqueue(buf, pos);
+        pos = 0;
+    }
+
+    /**
+     * Verbindung schließen, weitere Ereignisse werden verworfen; noch nicht geschriebene Daten
+     * gehen verloren
+     */
+    public void close() {
+        synchronized(queueLock) {
+            closed = true;
+            queueLock.notifyAll();
+        }
+        closeStream();  // löst auch einen im Schreiben blockierten Schreib-Thread (Socket)
+    }
+
+    private void closeStream() {
+        try {
+            out.close();
+        } catch(IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void fail(IOException e) {
+        Log.w(TAG, "Zuschauer getrennt: " + e.getMessage());
+        close();
+    }
+
+    /**
+     * Daten an den Schreib-Thread übergeben, ohne zu blockieren; nur aus dem Game Thread aufrufen
+     */
+    private void enqueue(byte[] data, int length) {
+        synchronized(queueLock) {
+            if(closed) return;
+            if(length > queue.length - queueSize) {
+                Log.w(TAG, "Zuschauer liest nicht schnell genug, Verbindung wird getrennt");
+                closed = true;
+                queueLock.notifyAll();
+            } else {
+                int tail = (queueHead + queueSize) % queue.length;
+                int first = Math.min(length, queue.length - tail);
+                System.arraycopy(data, 0, queue, tail, first);
+                System.arraycopy(data, first, queue, 0, length - first);
+                queueSize += length;
+                queueLock.notifyAll();
+            }
+        }
+        if(closed) {
+            closeStream();
+            return;
+        }
+        if(writerThread == null) {
+            writerThread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    drain();
+                }
+            }, TAG);
+            writerThread.setDaemon(true);
+            writerThread.start();
+        }
+    }
+
+    /**
+     * Schreib-Thread: schreibt die Warteschlange in den Stream, bis der Writer geschlossen wird
+     */
+    private void drain() {
+        byte[] chunk = new byte[WRITE_CHUNK];
+        try {
+            while(true) {
+                int n;
+                boolean last;
+                synchronized(queueLock) {
+                    while(queueSize == 0 && !closed)
+                        queueLock.wait();
+                    if(closed) break;
+                    n = Math.min(Math.min(queueSize, chunk.length), queue.length - queueHead);
+                    System.arraycopy(queue, queueHead, chunk, 0, n);
+                    queueHead = (queueHead + n) % queue.length;
+                    queueSize -= n;
+                    last = queueSize == 0;
+                }
+                out.write(chunk, 0, n);
+                if(last)
+                    out.flush();
+            }
+        } catch(IOException e) {
+            if(!closed)
+                fail(e);
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        closeStream();
+    }
+
+    private void ensureCapacity(int additional) {
+        if(pos + additional <= buf.length) return;
+        byte[] larger = new byte[Math.max(buf.length * 2, pos + additional)];
+        System.arraycopy(buf, 0, larger, 0, pos);
+        buf = larger;
+    }
+
+    private static Direction directionOf(DynamicTarget dyn) {
+        if(dyn.getX() < dyn.getSourceX()) return Direction.LEFT;
+        if(dyn.getX() > dyn.getSourceX()) return Direction.RIGHT;
+        if(dyn.getY() < dyn.getSourceY()) return Direction.UP;
+        return Direction.DOWN;
+    }
+}
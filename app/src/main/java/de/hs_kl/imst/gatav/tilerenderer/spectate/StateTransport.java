@@ -0,0 +1,15 @@
+package de.hs_kl.imst.gatav.tilerenderer.spectate;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Austauschbarer Transportweg für den Zuschauer-Stream.
+ * Der sendende Teil nutzt nur {@link #getOutputStream()}, der Zuschauer nur {@link #getInputStream()}.
+ */
+public interface StateTransport extends Closeable {
+    OutputStream getOutputStream() throws IOException;
+    InputStream getInputStream() throws IOException;
+}
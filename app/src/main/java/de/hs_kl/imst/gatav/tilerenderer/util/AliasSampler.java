@@ -0,0 +1,118 @@
+package de.hs_kl.imst.gatav.tilerenderer.util;
+
+import java.util.Random;
+
+/**
+ * Gewichtete Zufallsauswahl eines Index in O(1) nach der Alias-Methode (Vose).
+ *
+ * Gewichte dürfen sich während des Spiels ändern. Die Tabelle wird dann nicht sofort neu aufgebaut:
+ * sie bleibt auf den Gewichten des letzten Aufbaus als obere Schranken stehen und eine Ziehung wird
+ * mit Wahrscheinlichkeit Gewicht/Schranke angenommen (Verwerfungsmethode). Neu aufgebaut wird erst
+ * beim nächsten Ziehen, wenn ein Gewicht seine Schranke übersteigt oder im Mittel mehr als jede
+ * zweite Ziehung verworfen würde. Nach dem ersten Aufbau wird nichts mehr allokiert.
+ */
+public class AliasSampler {
+    private static final double MIN_ACCEPTANCE = 0.5;
+
+    private final int n;
+    private final double[] weights;     // aktuelle Gewichte
+    private final double[] bounds;      // Gewichte beim letzten Aufbau
+    private final double[] prob;        // Wahrscheinlichkeit, Spalte i selbst zu wählen
+    private final int[] alias;          // sonst gewählter Index
+    private final int[] small;          // Arbeitsstapel für den Aufbau
+    private final int[] large;
+    private double weightSum;
+    private double boundSum;
+    private boolean dirty = true;
+
+    /**
+     * @param weights nicht-negative Gewichte, mindestens eines größer 0
+     */
+    public AliasSampler(double[] weights) {
+        n = weights.length;
+        if(n == 0)
+            throw new IllegalArgumentException("Keine Gewichte");
+        this.weights = new double[n];
+        bounds = new double[n];
+        prob = new double[n];
+        alias = new int[n];
+        small = new int[n];
+        large = new int[n];
+        for(int i = 0; i < n; i++)
+            setWeight(i, weights[i]);
+    }
+
+    public int size() { return n; }
+
+    public double getWeight(int index) { return weights[index]; }
+
+    /**
+     * Gewicht ändern; die Tabelle wird erst bei Bedarf beim nächsten Ziehen neu aufgebaut
+     * @param index Index
+     * @param weight neues, nicht-negatives Gewicht
+     */
+    public void setWeight(int index, double weight) {
+        if(!(weight >= 0) || Double.isInfinite(weight))
+            throw new IllegalArgumentException("Ungültiges Gewicht: " + weight);
+        weightSum += weight - weights[index];
+        weights[index] = weight;
+        if(weight > bounds[index])
+            dirty = true;
+    }
+
+    /**
+     * @param random Zufallszahlengenerator
+     * @return Index, gewählt mit Wahrscheinlichkeit Gewicht/Summe aller Gewichte
+     */
+    public int sample(Random random) {
+        if(dirty || weightSum < MIN_ACCEPTANCE * boundSum)
+            rebuild();
+        while(true) {
+            int column = random.nextInt(n);
+            int index = random.nextDouble() < prob[column] ? column : alias[column];
+            // Annahme mit Wahrscheinlichkeit Gewicht/Schranke (immer, solange sich nichts geändert hat)
+            if(random.nextDouble() * bounds[index] < weights[index])
+                return index;
+        }
+    }
+
+    /**
+     * Aufbau der Alias-Tabelle aus den aktuellen Gewichten (Vose)
+     */
+    private void rebuild() {
+        weightSum = 0;
+        for(int i = 0; i < n; i++)
+            weightSum += weights[i];
+        if(!(weightSum > 0))
+            throw new IllegalStateException("Alle Gewichte sind 0");
+        System.arraycopy(weights, 0, bounds, 0, n);
+        boundSum = weightSum;
+
+        int smallCount = 0, largeCount = 0;
+        for(int i = 0; i < n; i++) {
+            prob[i] = bounds[i] * n / boundSum;
+            if(prob[i] < 1) small[smallCount++] = i;
+            else large[largeCount++] = i;
+        }
+        while(smallCount > 0 && largeCount > 0) {
+            int s = small[--smallCount];
+            int l = large[--largeCount];
+            alias[s] = l;
+            prob[l] = prob[l] + prob[s] - 1;
+            if(prob[l] < 1) small[smallCount++] = l;
+            else large[largeCount++] = l;
+        }
+        // Rundungsreste: verbleibende Spalten wählen sich selbst
+        while(largeCount > 0) {
+            int l = large[--largeCount];
+            prob[l] = 1;
+            alias[l] = l;
+        }
+        while(smallCount > 0) {
+            int s = small[--smallCount];
+            prob[s] = 1;
+            alias[s] = s;
+        }
+        dirty = false;
+    }
+}
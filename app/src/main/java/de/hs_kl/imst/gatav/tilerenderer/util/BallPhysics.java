@@ -0,0 +1,288 @@
+package de.hs_kl.imst.gatav.tilerenderer.util;
+
+/**
+ * Physik der Abrissbirnen: Kugeln bewegen sich kontinuierlich (Koordinaten in Kacheln) über das
+ * Kachelgitter, optional an einer Kette mit festem Aufhängepunkt (Pendel).
+ *
+ * Simuliert wird in festen Teilschritten von {@link #SUBSTEP_SECONDS}, unabhängig von der Bildrate.
+ * Kollisionen mit Wänden werden pro Teilschritt entlang der gesamten Bewegungsstrecke per
+ * Gittertraversierung (DDA nach Amanatides/Woo) gesucht: es werden genau die überquerten Kacheln
+ * geprüft, eine Kugel kann also bei keiner Geschwindigkeit durch eine Wand tunneln, und der Aufwand
+ * hängt nur von der Anzahl überquerter Kacheln ab, nicht von der Levelgröße.
+ *
+ * Für die Kollision gelten Kugeln als Punkte (ihr Mittelpunkt); ein Radius wird nur beim Zeichnen
+ * berücksichtigt. Die Kugeln liegen spaltenweise in primitiven Arrays, ein Schritt allokiert keinen
+ * Speicher. Nur aus einem Thread verwenden.
+ */
+public class BallPhysics {
+    /**
+     * Länge eines Teilschritts in Sekunden
+     */
+    public static final float SUBSTEP_SECONDS = 1f / 120f;
+
+    /**
+     * Höchstens so viele Teilschritte pro Aufruf von {@link #step(float)}; längere Pausen werden
+     * nicht nachgeholt
+     */
+    private static final int MAX_SUBSTEPS = 16;
+
+    /**
+     * Höchstens so viele Abpraller pro Kugel und Teilschritt (z.B. in einer Ecke)
+     */
+    private static final int MAX_BOUNCES = 4;
+
+    /**
+     * Abstand zur getroffenen Wand nach einem Abpraller in Kacheln
+     */
+    private static final float SKIN = 1e-3f;
+
+    /**
+     * Abfrage der Wände; Kacheln außerhalb des Gitters müssen als fest gelten
+     */
+    public interface Grid {
+        boolean isSolid(int x, int y);
+    }
+
+    /**
+     * Wird bei jedem Wandtreffer aufgerufen (z.B. um zerstörbare Wände zu zerstören)
+     */
+    public interface HitListener {
+        /**
+         * @param ball Nummer der Kugel
+         * @param cellX X-Koordinate der getroffenen Kachel
+         * @param cellY Y-Koordinate der getroffenen Kachel
+         * @param speed Geschwindigkeit senkrecht zur Wand in Kacheln pro Sekunde
+         */
+        void onHit(int ball, int cellX, int cellY, float speed);
+    }
+
+    private final Grid grid;
+    private HitListener hitListener;
+
+    private float gravity = 30f;        // Kacheln pro Sekunde²
+    private float restitution = 0.6f;   // Anteil der Geschwindigkeit senkrecht zur Wand nach dem Abprall
+
+    private int count = 0;
+    private float[] x, y;               // Position (Mittelpunkt) in Kacheln
+    private float[] prevX, prevY;       // Position vor dem letzten Teilschritt (Interpolation)
+    private float[] vx, vy;             // Geschwindigkeit in Kacheln pro Sekunde
+    private float[] anchorX, anchorY;   // Aufhängepunkt
+    private float[] chain;              // Kettenlänge, 0 für freie Kugeln
+
+    private float accumulator = 0;
+    private long substeps = 0;
+    private long cellsVisited = 0;
+
+    /**
+     * @param grid Wände
+     * @param capacity anfängliche Anzahl Kugeln, wächst bei Bedarf
+     */
+    public BallPhysics(Grid grid, int capacity) {
+        this.grid = grid;
+        allocate(Math.max(1, capacity));
+    }
+
+    public void setHitListener(HitListener hitListener) { this.hitListener = hitListener; }
+    public void setGravity(float gravity) { this.gravity = gravity; }
+    public void setRestitution(float restitution) { this.restitution = restitution; }
+
+    /**
+     * Neue Kugel
+     * @param x X-Position in Kacheln
+     * @param y Y-Position in Kacheln
+     * @param vx Geschwindigkeit in X-Richtung
+     * @param vy Geschwindigkeit in Y-Richtung
+     * @return Nummer der Kugel
+     */
+    public int add(float x, float y, float vx, float vy) {
+        if(count == this.x.length)
+            allocate(count * 2);
+        int i = count++;
+        this.x[i] = prevX[i] = x;
+        this.y[i] = prevY[i] = y;
+        this.vx[i] = vx;
+        this.vy[i] = vy;
+        chain[i] = 0;
+        return i;
+    }
+
+    /**
+     * Kugel an eine Kette hängen bzw. den Aufhängepunkt verschieben
+     * @param i Nummer der Kugel
+     * @param x X-Koordinate des Aufhängepunkts
+     * @param y Y-Koordinate des Aufhängepunkts
+     * @param length Kettenlänge in Kacheln, 0 löst die Kette
+     */
+    public void setAnchor(int i, float x, float y, float length) {
+        anchorX[i] = x;
+        anchorY[i] = y;
+        chain[i] = length;
+    }
+
+    public int size() { return count; }
+    public float getX(int i) { return x[i]; }
+    public float getY(int i) { return y[i]; }
+    public float getVelocityX(int i) { return vx[i]; }
+    public float getVelocityY(int i) { return vy[i]; }
+    public float getAnchorX(int i) { return anchorX[i]; }
+    public float getAnchorY(int i) { return anchorY[i]; }
+    public boolean isChained(int i) { return chain[i] > 0; }
+
+    /**
+     * @return Anteil eines Teilschritts, der seit dem letzten ausgeführten Teilschritt vergangen ist
+     */
+    public float getAlpha() { return accumulator / SUBSTEP_SECONDS; }
+
+    /**
+     * @param i Nummer der Kugel
+     * @return zwischen den letzten beiden Teilschritten interpolierte X-Position (zum Zeichnen)
+     */
+    public float getRenderX(int i) { return prevX[i] + (x[i] - prevX[i]) * getAlpha(); }
+    public float getRenderY(int i) { return prevY[i] + (y[i] - prevY[i]) * getAlpha(); }
+
+    /**
+     * @return Anzahl aller bisher ausgeführten Teilschritte
+     */
+    public long getSubsteps() { return substeps; }
+
+    /**
+     * @return Anzahl aller bisher bei der Traversierung geprüften Kacheln
+     */
+    public long getCellsVisited() { return cellsVisited; }
+
+    /**
+     * Simulation um die vergangene Zeit in festen Teilschritten voranbringen
+     * @param fracsec vergangene Zeit in Sekunden
+     * @return Anzahl der ausgeführten Teilschritte
+     */
+    public int step(float fracsec) {
+        accumulator += fracsec;
+        int steps = 0;
+        while(accumulator >= SUBSTEP_SECONDS && steps < MAX_SUBSTEPS) {
+            for(int i = 0; i < count; i++)
+                substep(i, SUBSTEP_SECONDS);
+            accumulator -= SUBSTEP_SECONDS;
+            steps++;
+        }
+        if(steps == MAX_SUBSTEPS)
+            accumulator = Math.min(accumulator, SUBSTEP_SECONDS);
+        substeps += steps;
+        return steps;
+    }
+
+    private void substep(int i, float dt) {
+        prevX[i] = x[i];
+        prevY[i] = y[i];
+        vy[i] += gravity * dt;
+        float targetX = x[i] + vx[i] * dt;
+        float targetY = y[i] + vy[i] * dt;
+
+        // Kette: Ziel auf den Kreis um den Aufhängepunkt zurückholen (straffe Kette)
+        if(chain[i] > 0) {
+            float rx = targetX - anchorX[i];
+            float ry = targetY - anchorY[i];
+            float distance = (float) Math.sqrt(rx * rx + ry * ry);
+            if(distance > chain[i]) {
+                float scale = chain[i] / distance;
+                targetX = anchorX[i] + rx * scale;
+                targetY = anchorY[i] + ry * scale;
+                vx[i] = (targetX - x[i]) / dt;
+                vy[i] = (targetY - y[i]) / dt;
+            }
+        }
+        sweep(i, targetX - x[i], targetY - y[i]);
+    }
+
+    /**
+     * Kugel um (dx, dy) bewegen und an den Wänden der überquerten Kacheln abprallen lassen
+     */
+    private void sweep(int i, float dx, float dy) {
+        float px = x[i];
+        float py = y[i];
+        for(int bounce = 0; bounce <= MAX_BOUNCES && (dx != 0 || dy != 0); bounce++) {
+            int cellX = (int) Math.floor(px);
+            int cellY = (int) Math.floor(py);
+            if(grid.isSolid(cellX, cellY)) {    // steckt bereits in einer Wand (z.B. neu entstanden)
+                px += dx;
+                py += dy;
+                break;
+            }
+            int stepX = dx > 0 ? 1 : (dx < 0 ? -1 : 0);
+            int stepY = dy > 0 ? 1 : (dy < 0 ? -1 : 0);
+            // Anteil der Strecke bis zur nächsten Kachelgrenze in X bzw. Y und pro Kachel
+            float tMaxX = stepX > 0 ? (cellX + 1 - px) / dx : (stepX < 0 ? (cellX - px) / dx : Float.MAX_VALUE);
+            float tMaxY = stepY > 0 ? (cellY + 1 - py) / dy : (stepY < 0 ? (cellY - py) / dy : Float.MAX_VALUE);
+            float tDeltaX = stepX != 0 ? stepX / dx : Float.MAX_VALUE;
+            float tDeltaY = stepY != 0 ? stepY / dy : Float.MAX_VALUE;
+
+            float tHit = -1;
+            boolean hitX = false;
+            while(true) {
+                boolean alongX = tMaxX < tMaxY;
+                float t = alongX ? tMaxX : tMaxY;
+                if(t > 1) break;
+                if(alongX) {
+                    cellX += stepX;
+                    tMaxX += tDeltaX;
+                } else {
+                    cellY += stepY;
+                    tMaxY += tDeltaY;
+                }
+                cellsVisited++;
+                if(grid.isSolid(cellX, cellY)) {
+                    tHit = t;
+                    hitX = alongX;
+                    break;
+                }
+            }
+
+            if(tHit < 0) {      // frei bis zum Ziel
+                px += dx;
+                py += dy;
+                break;
+            }
+
+            // bis zur Wand bewegen, senkrechte Komponente umkehren, Rest der Strecke weiterverfolgen
+            px += dx * tHit;
+            py += dy * tHit;
+            float remaining = 1 - tHit;
+            float speed;
+            if(hitX) {
+                px -= stepX * SKIN;
+                speed = Math.abs(vx[i]);
+                vx[i] = -vx[i] * restitution;
+                dx = -dx * remaining * restitution;
+                dy = dy * remaining;
+            } else {
+                py -= stepY * SKIN;
+                speed = Math.abs(vy[i]);
+                vy[i] = -vy[i] * restitution;
+                dx = dx * remaining;
+                dy = -dy * remaining * restitution;
+            }
+            if(hitListener != null)
+                hitListener.onHit(i, cellX, cellY, speed);
+        }
+        x[i] = px;
+        y[i] = py;
+    }
+
+    private void allocate(int capacity) {
+        x = grow(x, capacity);
+        y = grow(y, capacity);
+        prevX = grow(prevX, capacity);
+        prevY = grow(prevY, capacity);
+        vx = grow(vx, capacity);
+        vy = grow(vy, capacity);
+        anchorX = grow(anchorX, capacity);
+        anchorY = grow(anchorY, capacity);
+        chain = grow(chain, capacity);
+    }
+
+    private static float[] grow(float[] array, int capacity) {
+        float[] result = new float[capacity];
+        if(array != null)
+            System.arraycopy(array, 0, result, 0, Math.min(array.length, capacity));
+        return result;
+    }
+}
@@ -0,0 +1,152 @@
+package de.hs_kl.imst.gatav.tilerenderer.util;
+
+/**
+ * Sichtbereich auf einem Kachelraster nach "Symmetric Shadowcasting" (A. Ford).
+ *
+ * Sieht A die Kachel B, sieht auch B die Kachel A. Undurchsichtige Kacheln (Wände) werden selbst noch
+ * gesehen, verdecken aber alles dahinter. Ergebnis sind zwei Bitsets über alle Kacheln
+ * (Index y * Breite + x): aktuell sichtbar und irgendwann schon einmal gesehen.
+ * Die Berechnung arbeitet mit ganzzahligen Brüchen und allokiert nichts.
+ */
+public class FieldOfView {
+    private final int width;
+    private final int height;
+    private final long[] opaque;
+    private final long[] visible;
+    private final long[] seen;
+
+    // aktuelles Zentrum und Quadrant der Berechnung
+    private int originX, originY, quadrant;
+
+    /**
+     * @param width Breite des Rasters in Kacheln
+     * @param height Höhe des Rasters in Kacheln
+     */
+    public FieldOfView(int width, int height) {
+        this.width = width;
+        this.height = height;
+        int words = (width * height + 63) >>> 6;
+        opaque = new long[words];
+        visible = new long[words];
+        seen = new long[words];
+    }
+
+    public int getWidth() { return width; }
+    public int getHeight() { return height; }
+
+    /**
+     * @param x X-Koordinate
+     * @param y Y-Koordinate
+     * @param isOpaque true, wenn die Kachel die Sicht blockiert
+     */
+    public void setOpaque(int x, int y, boolean isOpaque) {
+        int i = y * width + x;
+        if(isOpaque) opaque[i >>> 6] |= 1L << i;
+        else opaque[i >>> 6] &= ~(1L << i);
+    }
+
+    /**
+     * Sichtbereich von einer Kachel aus neu berechnen; das Ergebnis wird zusätzlich in "gesehen" übernommen
+     * @param x X-Koordinate des Betrachters
+     * @param y Y-Koordinate des Betrachters
+     */
+    public void compute(int x, int y) {
+        for(int i = 0; i < visible.length; i++)
+            visible[i] = 0;
+        originX = x;
+        originY = y;
+        reveal(x, y);
+        for(quadrant = 0; quadrant < 4; quadrant++)
+            scan(1, -1, 1, 1, 1);
+        for(int i = 0; i < seen.length; i++)
+            seen[i] |= visible[i];
+    }
+
+    /**
+     * Vergessen, was bisher gesehen wurde
+     */
+    public void clearSeen() {
+        for(int i = 0; i < seen.length; i++)
+            seen[i] = 0;
+    }
+
+    public boolean isVisible(int x, int y) { return get(visible, x, y) != 0; }
+    public boolean isSeen(int x, int y) { return get(seen, x, y) != 0; }
+
+    /**
+     * @return Bitset der sichtbaren Kacheln (nur lesen)
+     */
+    public long[] getVisibleBits() { return visible; }
+
+    /**
+     * @return Bitset der schon einmal gesehenen Kacheln (nur lesen)
+     */
+    public long[] getSeenBits() { return seen; }
+
+    /**
+     * Eine Zeile im aktuellen Quadranten abtasten; Steigungen als Brüche startNum/startDen bzw. endNum/endDen
+     * @param depth Abstand der Zeile zum Betrachter
+     */
+    private void scan(int depth, int startNum, int startDen, int endNum, int endDen) {
+        if(depth > width + height) return;
+        // Spalten der Zeile: round_ties_up(depth * start) bis round_ties_down(depth * end)
+        int minCol = floorDiv(2 * depth * startNum + startDen, 2 * startDen);
+        int maxCol = -floorDiv(-(2 * depth * endNum - endDen), 2 * endDen);
+        int prev = -1;  // -1: noch keine Kachel, 0: durchsichtig, 1: undurchsichtig
+        for(int col = minCol; col <= maxCol; col++) {
+            int tx = tileX(depth, col), ty = tileY(depth, col);
+            boolean inside = tx >= 0 && tx < width && ty >= 0 && ty < height;
+            int wall = !inside || get(opaque, tx, ty) != 0 ? 1 : 0;
+
+            // symmetrisch: Spalte liegt innerhalb der Steigungen (nicht nur berührt)
+            if(inside && (wall == 1 || ((long) col * startDen >= (long) depth * startNum
+                    && (long) col * endDen <= (long) depth * endNum)))
+                reveal(tx, ty);
+
+            if(prev == 1 && wall == 0) {
+                // neue Startsteigung (2*col - 1) / (2*depth)
+                startNum = 2 * col - 1;
+                startDen = 2 * depth;
+            }
+            if(prev == 0 && wall == 1)
+                scan(depth + 1, startNum, startDen, 2 * col - 1, 2 * depth);
+            prev = wall;
+        }
+        if(prev == 0)
+            scan(depth + 1, startNum, startDen, endNum, endDen);
+    }
+
+    private int tileX(int depth, int col) {
+        switch(quadrant) {
+            case 0: return originX + col;      // oben
+            case 1: return originX + depth;    // rechts
+            case 2: return originX + col;      // unten
+            default: return originX - depth;   // links
+        }
+    }
+
+    private int tileY(int depth, int col) {
+        switch(quadrant) {
+            case 0: return originY - depth;
+            case 1: return originY + col;
+            case 2: return originY + depth;
+            default: return originY + col;
+        }
+    }
+
+    private void reveal(int x, int y) {
+        int i = y * width + x;
+        visible[i >>> 6] |= 1L << i;
+    }
+
+    private long get(long[] bits, int x, int y) {
+        int i = y * width + x;
+        return bits[i >>> 6] & (1L << i);
+    }
+
+    private static int floorDiv(int a, int b) {
+        int q = a / b;
+        if((a % b != 0) && ((a ^ b) < 0)) q--;
+        return q;
+    }
+}
@@ -0,0 +1,133 @@
+package de.hs_kl.imst.gatav.tilerenderer.util;
+
+import java.util.Arrays;
+
+/**
+ * Hash Map von nicht negativen int-Schlüsseln auf int-Werte mit offener Adressierung
+ * (lineares Sondieren). Zugriffe erzeugen keine Objekte, Speicher wird nur beim Wachsen angefordert.
+ */
+public class IntIntMap {
+    private static final int FREE = -1;
+
+    private int[] keys;
+    private int[] values;
+    private int size = 0;
+    private int mask;
+
+    public IntIntMap() {
+        this(16);
+    }
+
+    /**
+     * @param expectedSize erwartete Anzahl an Einträgen
+     */
+    public IntIntMap(int expectedSize) {
+        int capacity = 4;
+        while(capacity < expectedSize * 2)
+            capacity <<= 1;
+        allocate(capacity);
+    }
+
+    public int size() { return size; }
+
+    /**
+     * @param key Schlüssel (>= 0)
+     * @param defaultValue Rückgabewert, falls der Schlüssel nicht enthalten ist
+     * @return zugeordneter Wert oder defaultValue
+     */
+    public int get(int key, int defaultValue) {
+        int i = indexOf(key);
+        return i < 0 ? defaultValue : values[i];
+    }
+
+    public boolean containsKey(int key) {
+        return indexOf(key) >= 0;
+    }
+
+    /**
+     * @param key Schlüssel (>= 0)
+     * @param value Wert
+     */
+    public void put(int key, int value) {
+        if(key < 0)
+            throw new IllegalArgumentException("Schlüssel muss >= 0 sein: " + key);
+        int i = hash(key) & mask;
+        while(keys[i] != FREE) {
+            if(keys[i] == key) {
+                values[i] = value;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        if(++size * 2 > keys.length)
+            grow();
+    }
+
+    /**
+     * @param key Schlüssel
+     * @param defaultValue Rückgabewert, falls der Schlüssel nicht enthalten ist
+     * @return bisher zugeordneter Wert oder defaultValue
+     */
+    public int remove(int key, int defaultValue) {
+        int i = indexOf(key);
+        if(i < 0) return defaultValue;
+        int old = values[i];
+        // Backward Shift: nachfolgende Einträge der Sondierkette aufrücken lassen
+        int gap = i;
+        int j = (i + 1) & mask;
+        while(keys[j] != FREE) {
+            int home = hash(keys[j]) & mask;
+            if(((j - home) & mask) >= ((j - gap) & mask)) {
+                keys[gap] = keys[j];
+                values[gap] = values[j];
+                gap = j;
+            }
+            j = (j + 1) & mask;
+        }
+        keys[gap] = FREE;
+        size--;
+        return old;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, FREE);
+        size = 0;
+    }
+
+    private int indexOf(int key) {
+        int i = hash(key) & mask;
+        while(keys[i] != FREE) {
+            if(keys[i] == key)
+                return i;
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(keys.length * 2);
+        size = 0;
+        for(int i = 0; i < oldKeys.length; i++)
+            if(oldKeys[i] != FREE)
+                put(oldKeys[i], oldValues[i]);
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new int[capacity];
+        Arrays.fill(keys, FREE);
+        mask = capacity - 1;
+    }
+
+    /**
+     * @return Streuwert des Schlüssels; Ausgangsfach ist hash(key) & (Kapazität - 1)
+     */
+    static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,42 @@
+package de.hs_kl.imst.gatav.tilerenderer.util;
+
+/**
+ * Sammelt Latenzen (z.B. von der Touch-Eingabe bis zum ersten Bild mit dem Zug) über ein
+ * Messintervall; wird nur aus einem Thread verwendet.
+ */
+public class LatencyStats {
+    private int count = 0;
+    private long sum = 0;
+    private long min = Long.MAX_VALUE;
+    private long max = 0;
+
+    /**
+     * @param millis gemessene Latenz in Millisekunden
+     */
+    public void record(long millis) {
+        count++;
+        sum += millis;
+        if(millis < min) min = millis;
+        if(millis > max) max = millis;
+    }
+
+    public int getCount() { return count; }
+    public long getMin() { return count == 0 ? 0 : min; }
+    public long getMax() { return max; }
+    public float getAverage() { return count == 0 ? 0 : (float) sum / count; }
+
+    /**
+     * Neues Messintervall beginnen
+     */
+    public void reset() {
+        count = 0;
+        sum = 0;
+        min = Long.MAX_VALUE;
+        max = 0;
+    }
+
+    @Override
+    public String toString() {
+        return count + " Messungen, Ø " + Math.round(getAverage()) + " ms (" + getMin() + "-" + getMax() + " ms)";
+    }
+}
@@ -0,0 +1,90 @@
+package de.hs_kl.imst.gatav.tilerenderer.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Eingelesene Leveldatei: rechteckiges Gitter der Level-Zeichen (W Wand, F Boden, P Spieler),
+ * kürzere Zeilen werden mit Leerzeichen aufgefüllt. Enthält zudem einen Hash über den Dateiinhalt,
+ * z.B. als Schlüssel für zwischengespeicherte Vorschaubilder.
+ */
+public class LevelData {
+    public static final char EMPTY = ' ';
+
+    private final int width;
+    private final int height;
+    private final char[] cells;     // zeilenweise
+    private final String contentHash;
+
+    private LevelData(int width, int height, char[] cells, String contentHash) {
+        this.width = width;
+        this.height = height;
+        this.cells = cells;
+        this.contentHash = contentHash;
+    }
+
+    public int getWidth() { return width; }
+    public int getHeight() { return height; }
+    public String getContentHash() { return contentHash; }
+
+    /**
+     * @return Level-Zeichen an der Position oder {@link #EMPTY} außerhalb des Levels
+     */
+    public char get(int x, int y) {
+        if(x < 0 || y < 0 || x >= width || y >= height)
+            return EMPTY;
+        return cells[y * width + x];
+    }
+
+    /**
+     * Leveldatei vollständig lesen; der Stream wird geschlossen
+     * @param levelIs InputStream der Leveldatei
+     * @return eingelesenes Level
+     * @throws IOException falls beim Lesen etwas schief geht
+     */
+    public static LevelData parse(InputStream levelIs) throws IOException {
+        byte[] content;
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            byte[] buf = new byte[4096];
+            int n;
+            while((n = levelIs.read(buf)) > 0)
+                bos.write(buf, 0, n);
+            content = bos.toByteArray();
+        } finally {
+            levelIs.close();
+        }
+
+        String[] lines = new String(content, Charset.forName("UTF-8")).split("\r?\n", -1);
+        int height = lines.length;
+        if(height > 0 && lines[height - 1].isEmpty())   // abschließender Zeilenumbruch
+            height--;
+        int width = 0;
+        for(int i = 0; i < height; i++)
+            width = Math.max(width, lines[i].length());
+
+        char[] cells = new char[width * height];
+        for(int y = 0; y < height; y++) {
+            String line = lines[y];
+            for(int x = 0; x < width; x++)
+                cells[y * width + x] = x < line.length() ? line.charAt(x) : EMPTY;
+        }
+        return new LevelData(width, height, cells, hash(content));
+    }
+
+    private static String hash(byte[] content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(content);
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for(byte b : digest)
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            return sb.toString();
+        } catch(NoSuchAlgorithmException e) {
+            return Integer.toHexString(java.util.Arrays.hashCode(content));
+        }
+    }
+}
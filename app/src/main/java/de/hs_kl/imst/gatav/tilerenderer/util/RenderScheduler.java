@@ -0,0 +1,56 @@
+package de.hs_kl.imst.gatav.tilerenderer.util;
+
+/**
+ * Weckt den Game Thread, sobald ein neues Bild benötigt wird (Eingabe, neue Daten, ...).
+ * Ohne Anforderung schläft der Game Thread in {@link #await(long)}, statt ununterbrochen
+ * neu zu zeichnen.
+ */
+public class RenderScheduler {
+    private boolean requested = false;
+
+    /**
+     * Neues Bild anfordern; darf aus beliebigen Threads aufgerufen werden
+     */
+    synchronized public void requestRender() {
+        requested = true;
+        notifyAll();
+    }
+
+    /**
+     * Wartet auf eine Anforderung, höchstens aber die angegebene Zeit
+     * @param timeoutMillis maximale Wartezeit in Millisekunden, 0 für unbegrenzt
+     * @return true, falls ein Bild angefordert wurde; die Anforderung ist damit verbraucht
+     */
+    synchronized public boolean await(long timeoutMillis) {
+        if(!requested) {
+            try {
+                if(timeoutMillis > 0) {
+                    long deadline = System.currentTimeMillis() + timeoutMillis;
+                    long remaining = timeoutMillis;
+                    while(!requested && remaining > 0) {
+                        wait(remaining);
+                        remaining = deadline - System.currentTimeMillis();
+                    }
+                } else {
+                    while(!requested)
+                        wait();
+                }
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        boolean result = requested;
+        requested = false;
+        return result;
+    }
+
+    /**
+     * Verbraucht eine evtl. vorliegende Anforderung, ohne zu warten
+     * @return true, falls ein Bild angefordert war
+     */
+    synchronized public boolean consume() {
+        boolean result = requested;
+        requested = false;
+        return result;
+    }
+}
@@ -0,0 +1,118 @@
+package de.hs_kl.imst.gatav.tilerenderer.util;
+
+/**
+ * Wählt die Auflösung, in der das Spielfeld gezeichnet wird, anhand der Zeichenzeit der letzten
+ * Bilder.
+ *
+ * Die Zeichenzeiten werden exponentiell geglättet. Liegt der Mittelwert {@link #DOWN_FRAMES}
+ * Bilder in Folge über dem Budget, wird eine Stufe kleiner gezeichnet; liegt er
+ * {@link #UP_FRAMES} Bilder in Folge unter {@link #UP_THRESHOLD} des Budgets, eine Stufe größer.
+ * Der Abstand zwischen beiden Schwellen ist größer als der Kostensprung zwischen zwei Stufen und
+ * nach jedem Wechsel wird {@link #COOLDOWN_FRAMES} Bilder lang nicht erneut gewechselt, damit die
+ * Auflösung nicht hin und her springt. Nur aus einem Thread (Render-Thread) verwenden.
+ */
+public class ResolutionScaler {
+    /**
+     * Kantenlänge relativ zur vollen Auflösung pro Stufe; die Kosten sinken etwa quadratisch
+     */
+    public static final float[] DEFAULT_LEVELS = {1f, 0.85f, 0.7f, 0.55f};
+
+    private static final float EMA_ALPHA = 0.1f;
+    private static final float UP_THRESHOLD = 0.6f;     // Anteil des Budgets
+    private static final int DOWN_FRAMES = 10;
+    private static final int UP_FRAMES = 60;
+    private static final int COOLDOWN_FRAMES = 30;
+
+    private final float budgetNanos;
+    private final float[] levels;
+
+    private boolean enabled = true;
+    private int level = 0;
+    private float averageNanos = 0;
+    private int overBudget = 0, underBudget = 0;
+    private int cooldown = 0;
+
+    /**
+     * @param budgetMillis Zeitbudget zum Zeichnen eines Bildes in Millisekunden
+     * @param levels Stufen absteigend, beginnend mit 1
+     */
+    public ResolutionScaler(float budgetMillis, float[] levels) {
+        this.budgetNanos = budgetMillis * 1e6f;
+        this.levels = levels;
+    }
+
+    /**
+     * @param enabled false: immer in voller Auflösung zeichnen
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        if(!enabled)
+            reset();
+    }
+
+    public boolean isEnabled() { return enabled; }
+
+    /**
+     * @return aktuelle Kantenlänge relativ zur vollen Auflösung
+     */
+    public float getScale() { return levels[level]; }
+
+    public int getLevel() { return level; }
+
+    /**
+     * @return geglättete Zeichenzeit in Millisekunden
+     */
+    public float getAverageMillis() { return averageNanos / 1e6f; }
+
+    /**
+     * Zeichenzeit eines Bildes erfassen
+     * @param frameNanos Dauer in Nanosekunden
+     * @return true, falls sich die Stufe dadurch geändert hat
+     */
+    public boolean record(long frameNanos) {
+        if(!enabled) return false;
+        // beginnt bei 0, damit einzelne langsame erste Bilder (z.B. Aufbau der Zwischenspeicher)
+        // nicht sofort die Auflösung senken
+        averageNanos += EMA_ALPHA * (frameNanos - averageNanos);
+        if(cooldown > 0) {
+            cooldown--;
+            return false;
+        }
+
+        if(averageNanos > budgetNanos) {
+            overBudget++;
+            underBudget = 0;
+        } else if(averageNanos < budgetNanos * UP_THRESHOLD) {
+            underBudget++;
+            overBudget = 0;
+        } else {
+            overBudget = 0;
+            underBudget = 0;
+        }
+
+        if(overBudget >= DOWN_FRAMES && level < levels.length - 1)
+            return change(level + 1);
+        if(underBudget >= UP_FRAMES && level > 0)
+            return change(level - 1);
+        return false;
+    }
+
+    private boolean change(int newLevel) {
+        level = newLevel;
+        overBudget = 0;
+        underBudget = 0;
+        cooldown = COOLDOWN_FRAMES;
+        return true;
+    }
+
+    /**
+     * Zurück zur vollen Auflösung, z.B. für ein neues Spielfeld
+     */
+    public void reset() {
+        level = 0;
+        averageNanos = 0;
+        overBudget = 0;
+        underBudget = 0;
+        cooldown = 0;
+    }
+}
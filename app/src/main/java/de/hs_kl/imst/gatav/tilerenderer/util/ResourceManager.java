@@ -0,0 +1,212 @@
+package de.hs_kl.imst.gatav.tilerenderer.util;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.util.Log;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+
+/**
+ * Verwaltet den Speicher aller wiederherstellbaren Grafiken (Sprite Sheets, Vorschaubilder,
+ * Nebel, ...) und gibt sie bei Speichermangel in Prioritätsreihenfolge frei.
+ *
+ * Ressourcen melden sich mit {@link #register(Resource, int)} an und werden nur schwach
+ * referenziert, verworfene Spielinhalte müssen sich also nicht abmelden. Freigegebene Ressourcen
+ * erzeugen ihren Inhalt beim nächsten Zugriff selbst neu.
+ *
+ * Freigabe abhängig von der Stufe aus {@link #onTrimMemory(int)}:
+ * <ul>
+ *     <li>jede Stufe: {@link #PRIORITY_CACHE}</li>
+ *     <li>bei TRIM_MEMORY_RUNNING_LOW/-CRITICAL, solange keine Spielfläche sichtbar ist, sowie ab
+ *     TRIM_MEMORY_BACKGROUND und bei {@link #onLowMemory()}: zusätzlich {@link #PRIORITY_SURFACE}</li>
+ * </ul>
+ */
+public class ResourceManager implements ComponentCallbacks2 {
+    private static final String TAG = "ResourceManager";
+
+    /**
+     * Reine Caches, die jederzeit (z.B. aus dem Cache-Verzeichnis) wiederhergestellt werden können
+     */
+    public static final int PRIORITY_CACHE = 0;
+
+    /**
+     * Wird nur benötigt, solange eine Spielfläche sichtbar ist
+     */
+    public static final int PRIORITY_SURFACE = 1;
+
+    private static final int PRIORITY_COUNT = 2;
+
+    /**
+     * Eine freigebbare Ressource; beide Methoden dürfen aus beliebigen Threads aufgerufen werden
+     */
+    public interface Resource {
+        /**
+         * @return derzeit belegter Speicher in Bytes, 0 falls freigegeben
+         */
+        long getByteCount();
+
+        /**
+         * Speicher freigeben; Bitmaps werden nicht recycelt, da sie evtl. gerade gezeichnet werden
+         */
+        void release();
+    }
+
+    private static ResourceManager instance = null;
+
+    /**
+     * @return die einzige Instanz
+     */
+    synchronized public static ResourceManager get() {
+        if(instance == null)
+            instance = new ResourceManager();
+        return instance;
+    }
+
+    private final ArrayList<ArrayList<WeakReference<Resource>>> resources = new ArrayList<>(PRIORITY_COUNT);
+    private boolean attached = false;
+    private int visibleSurfaces = 0;
+    private boolean memoryLow = false;  // zuletzt gemeldete Stufe zeigte echten Speichermangel
+
+    private ResourceManager() {
+        for(int i = 0; i < PRIORITY_COUNT; i++)
+            resources.add(new ArrayList<WeakReference<Resource>>());
+    }
+
+    /**
+     * Für Speicherwarnungen der App anmelden; mehrfacher Aufruf ist unschädlich
+     * @param context Kontext
+     */
+    synchronized public void attach(Context context) {
+        if(attached) return;
+        context.getApplicationContext().registerComponentCallbacks(this);
+        attached = true;
+    }
+
+    /**
+     * Ressource anmelden
+     * @param resource Ressource, wird schwach referenziert
+     * @param priority {@link #PRIORITY_CACHE} oder {@link #PRIORITY_SURFACE}
+     */
+    synchronized public void register(Resource resource, int priority) {
+        if(priority < 0 || priority >= PRIORITY_COUNT)
+            throw new IllegalArgumentException("Ungültige Priorität: " + priority);
+        ArrayList<WeakReference<Resource>> list = resources.get(priority);
+        for(int i = list.size() - 1; i >= 0; i--) {
+            Resource r = list.get(i).get();
+            if(r == resource) return;
+            if(r == null) list.remove(i);
+        }
+        list.add(new WeakReference<>(resource));
+    }
+
+    /**
+     * Ressource abmelden (z.B. beim endgültigen Verwerfen)
+     * @param resource Ressource
+     */
+    synchronized public void unregister(Resource resource) {
+        for(ArrayList<WeakReference<Resource>> list : resources)
+            for(int i = list.size() - 1; i >= 0; i--) {
+                Resource r = list.get(i).get();
+                if(r == null || r == resource) list.remove(i);
+            }
+    }
+
+    /**
+     * @return aktuell von allen angemeldeten Ressourcen belegter Speicher in Bytes
+     */
+    synchronized public long getUsedBytes() {
+        long total = 0;
+        for(int priority = 0; priority < PRIORITY_COUNT; priority++)
+            total += getUsedBytes(priority);
+        return total;
+    }
+
+    /**
+     * @param priority Priorität
+     * @return aktuell von Ressourcen dieser Priorität belegter Speicher in Bytes
+     */
+    synchronized public long getUsedBytes(int priority) {
+        long total = 0;
+        ArrayList<WeakReference<Resource>> list = resources.get(priority);
+        for(int i = 0; i < list.size(); i++) {
+            Resource r = list.get(i).get();
+            if(r != null) total += r.getByteCount();
+        }
+        return total;
+    }
+
+    /**
+     * Alle Ressourcen bis einschließlich der angegebenen Priorität freigeben
+     * @param maxPriority höchste freizugebende Priorität
+     * @return freigegebene Bytes
+     */
+    synchronized public long release(int maxPriority) {
+        long freed = 0;
+        for(int priority = 0; priority <= maxPriority && priority < PRIORITY_COUNT; priority++) {
+            ArrayList<WeakReference<Resource>> list = resources.get(priority);
+            for(int i = list.size() - 1; i >= 0; i--) {
+                Resource r = list.get(i).get();
+                if(r == null) {
+                    list.remove(i);
+                    continue;
+                }
+                freed += r.getByteCount();
+                r.release();
+            }
+        }
+        return freed;
+    }
+
+    /**
+     * Eine Spielfläche wurde sichtbar; solange eine sichtbar ist, bleibt {@link #PRIORITY_SURFACE}
+     * bis TRIM_MEMORY_BACKGROUND erhalten
+     */
+    synchronized public void surfaceCreated() {
+        visibleSurfaces++;
+    }
+
+    /**
+     * Eine Spielfläche wurde zerstört; herrschte zuletzt Speichermangel, werden ihre Ressourcen
+     * sofort freigegeben statt erst bei TRIM_MEMORY_BACKGROUND
+     */
+    synchronized public void surfaceDestroyed() {
+        visibleSurfaces = Math.max(0, visibleSurfaces - 1);
+        if(visibleSurfaces == 0 && memoryLow)
+            log("surfaceDestroyed", release(PRIORITY_SURFACE));
+    }
+
+    /**
+     * @return true, falls die zuletzt gemeldete Stufe echten Speichermangel anzeigte (z.B. um
+     * vorausschauendes Laden auszusetzen)
+     */
+    synchronized public boolean isMemoryLow() {
+        return memoryLow;
+    }
+
+    @Override
+    synchronized public void onTrimMemory(int level) {
+        // TRIM_MEMORY_UI_HIDDEN meldet nur das Verlassen der Oberfläche, keinen Speichermangel
+        if(level != TRIM_MEMORY_UI_HIDDEN)
+            memoryLow = level >= TRIM_MEMORY_RUNNING_LOW;
+        int maxPriority = PRIORITY_CACHE;
+        if(level >= TRIM_MEMORY_BACKGROUND || (memoryLow && visibleSurfaces == 0))
+            maxPriority = PRIORITY_SURFACE;
+        log("onTrimMemory(" + level + ")", release(maxPriority));
+    }
+
+    @Override
+    synchronized public void onLowMemory() {
+        memoryLow = true;
+        log("onLowMemory", release(PRIORITY_SURFACE));
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+    }
+
+    private void log(String reason, long freed) {
+        Log.i(TAG, reason + ": " + freed / 1024 + " KB freigegeben, belegt " + getUsedBytes() / 1024 + " KB");
+    }
+}
@@ -0,0 +1,152 @@
+package de.hs_kl.imst.gatav.tilerenderer.util;
+
+/**
+ * Erkennt Wischrichtungen direkt aus den rohen Touch-Samples, statt auf das Anheben des Fingers
+ * (onFling) zu warten.
+ *
+ * Eine Richtung wird festgelegt, sobald der Finger seit dem Ankerpunkt mindestens
+ * {@link #getMinDistance()} Pixel zurückgelegt hat und dabei in dieser Richtung mindestens
+ * {@link #getMinVelocity()} Pixel pro Sekunde schnell ist (gemessen über die letzten
+ * {@value #VELOCITY_WINDOW_MS} ms). Danach wird der Anker auf die aktuelle Position gesetzt; bleibt
+ * der Finger liegen, gilt die Richtung als gehalten ({@link #getHeldDirection()}), ein Haken in eine
+ * andere Richtung legt ohne Absetzen eine neue Richtung fest.
+ *
+ * Alle Eingabemethoden werden aus dem UI Thread aufgerufen, die gehaltene Richtung darf aus
+ * beliebigen Threads gelesen werden.
+ */
+public class SwipeRecognizer {
+    private static final int MAX_SAMPLES = 16;
+    static final long VELOCITY_WINDOW_MS = 50;
+
+    private float minDistance;
+    private float minVelocity;
+
+    // Ringpuffer der letzten Samples zur Geschwindigkeitsmessung
+    private final float[] sampleX = new float[MAX_SAMPLES];
+    private final float[] sampleY = new float[MAX_SAMPLES];
+    private final long[] sampleTime = new long[MAX_SAMPLES];
+    private int sampleCount = 0;
+    private int nextSample = 0;
+
+    private boolean down = false;
+    private float anchorX, anchorY;
+    private volatile Direction heldDirection = null;
+    private long commitTime = 0;
+
+    /**
+     * @param minDistance Mindestweg in Pixeln
+     * @param minVelocity Mindestgeschwindigkeit in Pixeln pro Sekunde
+     */
+    public SwipeRecognizer(float minDistance, float minVelocity) {
+        this.minDistance = minDistance;
+        this.minVelocity = minVelocity;
+    }
+
+    public float getMinDistance() { return minDistance; }
+    public void setMinDistance(float minDistance) { this.minDistance = minDistance; }
+    public float getMinVelocity() { return minVelocity; }
+    public void setMinVelocity(float minVelocity) { this.minVelocity = minVelocity; }
+
+    /**
+     * Finger aufgesetzt
+     * @param x X-Position in Pixeln
+     * @param y Y-Position in Pixeln
+     * @param time Zeitpunkt des Samples in Millisekunden
+     */
+    public void down(float x, float y, long time) {
+        sampleCount = 0;
+        nextSample = 0;
+        addSample(x, y, time);
+        anchorX = x;
+        anchorY = y;
+        down = true;
+        heldDirection = null;
+    }
+
+    /**
+     * Finger bewegt; auch für jedes historische Sample eines Move-Events aufrufen
+     * @param x X-Position in Pixeln
+     * @param y Y-Position in Pixeln
+     * @param time Zeitpunkt des Samples in Millisekunden
+     * @return neu festgelegte Richtung oder null
+     */
+    public Direction move(float x, float y, long time) {
+        if(!down) return null;
+        addSample(x, y, time);
+
+        float dx = x - anchorX;
+        float dy = y - anchorY;
+        if(dx * dx + dy * dy < minDistance * minDistance)
+            return null;
+
+        Direction direction;
+        if(Math.abs(dx) >= Math.abs(dy))
+            direction = dx > 0 ? Direction.RIGHT : Direction.LEFT;
+        else
+            direction = dy > 0 ? Direction.DOWN : Direction.UP;
+
+        if(direction == heldDirection) {    // Wischen geht weiter: Anker folgt dem Finger
+            anchorX = x;
+            anchorY = y;
+            return null;
+        }
+        if(getVelocity(direction, time) < minVelocity)
+            return null;
+
+        anchorX = x;
+        anchorY = y;
+        commitTime = time;
+        heldDirection = direction;
+        return direction;
+    }
+
+    /**
+     * Finger angehoben oder Geste abgebrochen
+     */
+    public void up() {
+        down = false;
+        heldDirection = null;
+    }
+
+    /**
+     * @return zuletzt festgelegte Richtung, solange der Finger liegt, sonst null
+     */
+    public Direction getHeldDirection() { return heldDirection; }
+
+    /**
+     * @return Zeitpunkt des Samples, mit dem die letzte Richtung festgelegt wurde
+     */
+    public long getCommitTime() { return commitTime; }
+
+    private void addSample(float x, float y, long time) {
+        sampleX[nextSample] = x;
+        sampleY[nextSample] = y;
+        sampleTime[nextSample] = time;
+        nextSample = (nextSample + 1) % MAX_SAMPLES;
+        if(sampleCount < MAX_SAMPLES) sampleCount++;
+    }
+
+    /**
+     * Geschwindigkeit in Richtung direction über das Messfenster
+     */
+    private float getVelocity(Direction direction, long time) {
+        int newest = (nextSample + MAX_SAMPLES - 1) % MAX_SAMPLES;
+        int oldest = newest;
+        for(int i = 1; i < sampleCount; i++) {
+            int index = (newest + MAX_SAMPLES - i) % MAX_SAMPLES;
+            oldest = index;     // erstes Sample vor dem Fenster noch mitnehmen (seltene Samples)
+            if(time - sampleTime[index] > VELOCITY_WINDOW_MS) break;
+        }
+        long dt = sampleTime[newest] - sampleTime[oldest];
+        if(dt <= 0) return 0;
+
+        float distance;
+        switch(direction) {
+            case RIGHT: distance = sampleX[newest] - sampleX[oldest]; break;
+            case LEFT: distance = sampleX[oldest] - sampleX[newest]; break;
+            case DOWN: distance = sampleY[newest] - sampleY[oldest]; break;
+            default: distance = sampleY[oldest] - sampleY[newest]; break;
+        }
+        return distance * 1000f / dt;
+    }
+}
@@ -0,0 +1,263 @@
+package de.hs_kl.imst.gatav.tilerenderer.util;
+
+/**
+ * Zeitgesteuerte Ereignisse in Spielzeit (z.B. Erzeugen und Verschwinden des dynamischen Ziels)
+ * als hierarchisches Timer-Rad.
+ *
+ * Die Zeit läuft in Schritten von {@link #TICK_MILLIS}. Jede der {@link #LEVELS} Ebenen hat 64
+ * Fächer; Ebene l nimmt Timer auf, die weniger als 64^(l+1) Schritte entfernt sind. Läuft die
+ * unterste Ebene einmal herum, werden die Timer des nächsten Fachs der darüberliegenden Ebene
+ * neu einsortiert. Einfügen, Abbrechen und Auslösen kosten damit O(1) pro Timer, unabhängig von
+ * der Anzahl geplanter Ereignisse. Pro Ebene merkt sich eine Bitmaske die belegten Fächer, so
+ * dass die Zeit bis zum nächsten Ereignis ohne Durchsuchen ermittelt werden kann.
+ *
+ * Timer liegen in vorab angelegten Arrays (verkettete Listen über Indizes); Planen allokiert nur,
+ * wenn die Kapazität nicht ausreicht. Nur aus einem Thread (Game Thread) verwenden.
+ */
+public class TimerWheel {
+    public static final int TICK_MILLIS = 10;
+    public static final int LEVELS = 4;     // 64^4 Schritte, also gut 46 Stunden
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int INDEX_BITS = 16;
+    private static final int INDEX_MASK = (1 << INDEX_BITS) - 1;
+    private static final int NONE = -1;
+
+    private final int[] heads = new int[LEVELS * SLOTS];   // erster Timer pro Fach
+    private final long[] occupied = new long[LEVELS];      // belegte Fächer pro Ebene
+
+    private Runnable[] tasks;
+    private long[] deadlines;
+    private int[] next, prev;
+    private int[] slots;            // Fach des Timers, NONE falls frei
+    private int[] generations;      // macht Kennungen bereits ausgelöster Timer ungültig
+    private int free = NONE;
+    private int count = 0;
+
+    private long now = 0;           // aktueller Schritt
+    private float pendingMillis = 0;
+
+    /**
+     * @param capacity erwartete Anzahl gleichzeitig geplanter Timer
+     */
+    public TimerWheel(int capacity) {
+        for(int i = 0; i < heads.length; i++)
+            heads[i] = NONE;
+        tasks = new Runnable[0];
+        deadlines = new long[0];
+        next = new int[0];
+        prev = new int[0];
+        slots = new int[0];
+        generations = new int[0];
+        grow(Math.max(1, capacity));
+    }
+
+    private void grow(int capacity) {
+        int old = tasks.length;
+        if(capacity > INDEX_MASK + 1)
+            throw new IllegalStateException("Zu viele Timer");
+        Runnable[] newTasks = new Runnable[capacity];
+        System.arraycopy(tasks, 0, newTasks, 0, old);
+        tasks = newTasks;
+        deadlines = copyOf(deadlines, capacity);
+        next = copyOf(next, capacity);
+        prev = copyOf(prev, capacity);
+        slots = copyOf(slots, capacity);
+        generations = copyOf(generations, capacity);
+        for(int i = capacity - 1; i >= old; i--) {
+            slots[i] = NONE;
+            next[i] = free;
+            free = i;
+        }
+    }
+
+    private static long[] copyOf(long[] array, int length) {
+        long[] result = new long[length];
+        System.arraycopy(array, 0, result, 0, Math.min(array.length, length));
+        return result;
+    }
+
+    private static int[] copyOf(int[] array, int length) {
+        int[] result = new int[length];
+        System.arraycopy(array, 0, result, 0, Math.min(array.length, length));
+        return result;
+    }
+
+    /**
+     * @return Anzahl geplanter Timer
+     */
+    public int size() { return count; }
+
+    /**
+     * @return vergangene Spielzeit in Millisekunden
+     */
+    public long getTimeMillis() { return now * TICK_MILLIS; }
+
+    /**
+     * Ereignis planen
+     * @param task wird beim Auslösen aus {@link #advance(float)} heraus aufgerufen
+     * @param delayMillis Verzögerung in Millisekunden Spielzeit; wird auf ganze Schritte
+     *                    aufgerundet, mindestens ein Schritt
+     * @return Kennung zum Abbrechen
+     */
+    public int schedule(Runnable task, long delayMillis) {
+        if(free == NONE)
+            grow(tasks.length * 2);
+        int timer = free;
+        free = next[timer];
+        long ticks = Math.max(1, (delayMillis + TICK_MILLIS - 1) / TICK_MILLIS);
+        tasks[timer] = task;
+        deadlines[timer] = now + ticks;
+        count++;
+        insert(timer);
+        return generations[timer] << INDEX_BITS | timer;
+    }
+
+    /**
+     * Geplantes Ereignis abbrechen
+     * @param handle Kennung aus {@link #schedule(Runnable, long)}
+     * @return true, falls das Ereignis noch geplant war
+     */
+    public boolean cancel(int handle) {
+        if(handle < 0) return false;
+        int timer = handle & INDEX_MASK;
+        if(timer >= tasks.length || slots[timer] == NONE || generations[timer] != handle >>> INDEX_BITS)
+            return false;
+        unlink(timer);
+        release(timer);
+        return true;
+    }
+
+    /**
+     * @param handle Kennung aus {@link #schedule(Runnable, long)}
+     * @return true, falls das Ereignis noch geplant ist
+     */
+    public boolean isScheduled(int handle) {
+        if(handle < 0) return false;
+        int timer = handle & INDEX_MASK;
+        return timer < tasks.length && slots[timer] != NONE && generations[timer] == handle >>> INDEX_BITS;
+    }
+
+    /**
+     * Alle geplanten Ereignisse verwerfen
+     */
+    public void clear() {
+        for(int timer = 0; timer < tasks.length; timer++)
+            if(slots[timer] != NONE) {
+                unlink(timer);
+                release(timer);
+            }
+    }
+
+    /**
+     * Spielzeit voranschreiten lassen und fällige Ereignisse in zeitlicher Reihenfolge auslösen.
+     * Ereignisse dürfen dabei neue Ereignisse planen oder andere abbrechen.
+     * @param fracsec vergangene Spielzeit in Sekunden
+     */
+    public void advance(float fracsec) {
+        pendingMillis += fracsec * 1000f;
+        int steps = (int) (pendingMillis / TICK_MILLIS);
+        if(steps <= 0) return;
+        pendingMillis -= steps * TICK_MILLIS;
+        for(int i = 0; i < steps; i++) {
+            if(count == 0) {    // nichts geplant: ohne Einzelschritte vorspulen
+                now += steps - i;
+                return;
+            }
+            step();
+        }
+    }
+
+    /**
+     * @return Millisekunden Spielzeit bis zum nächsten Ereignis (untere Schranke für Timer auf
+     *         höheren Ebenen), -1 falls nichts geplant ist
+     */
+    public long getMillisUntilNext() {
+        if(count == 0) return -1;
+        long best = Long.MAX_VALUE;
+        for(int level = 0; level < LEVELS; level++) {
+            if(occupied[level] == 0) continue;
+            int shift = level * SLOT_BITS;
+            long position = now >>> shift;
+            // Fächer ab dem nächsten (das aktuelle Fach ist bereits abgearbeitet bzw. einsortiert)
+            long rotated = Long.rotateRight(occupied[level], (int) ((position + 1) & SLOT_MASK));
+            long distance = Long.numberOfTrailingZeros(rotated) + 1;
+            long ticks = ((position + distance) << shift) - now;
+            if(ticks < best) best = ticks;
+        }
+        return Math.max(0, best * TICK_MILLIS - (long) pendingMillis);
+    }
+
+    /**
+     * Einen Schritt weiter: ggf. höhere Ebenen einsortieren, dann das aktuelle Fach auslösen
+     */
+    private void step() {
+        now++;
+        for(int level = 1; level < LEVELS; level++) {
+            int shift = (level - 1) * SLOT_BITS;
+            if(((now >>> shift) & SLOT_MASK) != 0) break;
+            cascade(level, (int) ((now >>> (shift + SLOT_BITS)) & SLOT_MASK));
+        }
+        int slot = (int) (now & SLOT_MASK);
+        int timer;
+        while((timer = heads[slot]) != NONE) {
+            Runnable task = tasks[timer];
+            unlink(timer);
+            release(timer);
+            task.run();
+        }
+    }
+
+    private void cascade(int level, int index) {
+        int slot = level * SLOTS + index;
+        int timer = heads[slot];
+        heads[slot] = NONE;
+        occupied[level] &= ~(1L << index);
+        while(timer != NONE) {
+            int following = next[timer];
+            insert(timer);
+            timer = following;
+        }
+    }
+
+    private void insert(int timer) {
+        long deadline = deadlines[timer];
+        long delta = deadline - now;
+        int level = 0;
+        while(level < LEVELS - 1 && delta >= 1L << ((level + 1) * SLOT_BITS))
+            level++;
+        if(delta >= 1L << (LEVELS * SLOT_BITS))     // jenseits des Rads: im letzten Fach warten
+            deadline = now + (1L << (LEVELS * SLOT_BITS)) - 1;
+        int index = (int) ((deadline >>> (level * SLOT_BITS)) & SLOT_MASK);
+        int slot = level * SLOTS + index;
+        prev[timer] = NONE;
+        next[timer] = heads[slot];
+        if(heads[slot] != NONE)
+            prev[heads[slot]] = timer;
+        heads[slot] = timer;
+        slots[timer] = slot;
+        occupied[level] |= 1L << index;
+    }
+
+    private void unlink(int timer) {
+        int slot = slots[timer];
+        if(prev[timer] != NONE)
+            next[prev[timer]] = next[timer];
+        else
+            heads[slot] = next[timer];
+        if(next[timer] != NONE)
+            prev[next[timer]] = prev[timer];
+        if(heads[slot] == NONE)
+            occupied[slot >>> SLOT_BITS] &= ~(1L << (slot & SLOT_MASK));
+    }
+
+    private void release(int timer) {
+        slots[timer] = NONE;
+        tasks[timer] = null;
+        generations[timer] = (generations[timer] + 1) & 0x7FFF;
+        next[timer] = free;
+        free = timer;
+        count--;
+    }
+}
@@ -0,0 +1,58 @@
+package de.hs_kl.imst.gatav.tilerenderer.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Dreifachpuffer zur Übergabe von Zuständen von genau einem Erzeuger an genau einen Verbraucher.
+ *
+ * Der Erzeuger beschreibt {@link #getBack()} und gibt ihn mit {@link #publish()} frei; der Verbraucher
+ * holt sich mit {@link #acquire()} den zuletzt freigegebenen Zustand. Beide tauschen ihre Puffer
+ * lock-frei über den mittleren Puffer, keiner wartet auf den anderen und keiner sieht einen halb
+ * geschriebenen Zustand.
+ */
+public class TripleBuffer<T> {
+    private static final int INDEX_MASK = 0x3;
+    private static final int FRESH = 0x4;   // mittlerer Puffer enthält einen noch nicht abgeholten Zustand
+
+    private final Object[] slots;
+    private final AtomicInteger middle = new AtomicInteger(2);
+    private int back = 0;       // nur Erzeuger
+    private int front = 1;      // nur Verbraucher
+
+    public TripleBuffer(T first, T second, T third) {
+        slots = new Object[] {first, second, third};
+    }
+
+    /**
+     * @return Puffer, den der Erzeuger als nächstes beschreibt
+     */
+    @SuppressWarnings("unchecked")
+    public T getBack() {
+        return (T) slots[back];
+    }
+
+    /**
+     * Beschriebenen Puffer freigeben; ein noch nicht abgeholter älterer Zustand wird dabei ersetzt
+     */
+    public void publish() {
+        back = middle.getAndSet(back | FRESH) & INDEX_MASK;
+    }
+
+    /**
+     * @return true, solange der zuletzt freigegebene Zustand noch nicht abgeholt wurde
+     */
+    public boolean isPending() {
+        return (middle.get() & FRESH) != 0;
+    }
+
+    /**
+     * Nur aus dem Verbraucher aufrufen
+     * @return zuletzt freigegebener Zustand; derselbe wie beim letzten Aufruf, falls nichts Neues vorliegt
+     */
+    @SuppressWarnings("unchecked")
+    public T acquire() {
+        if((middle.get() & FRESH) != 0)
+            front = middle.getAndSet(front) & INDEX_MASK;
+        return (T) slots[front];
+    }
+}
@@ -0,0 +1,28 @@
+package de.hs_kl.imst.gatav.tilerenderer.world;
+
+/**
+ * Quadratischer Ausschnitt eines Levels mit fester Kantenlänge.
+ *
+ * Pro Kachel wird das Levelzeichen (z.B. 'w', 'f') gehalten. Änderungen (z.B. zerstörte Wand)
+ * markieren den Chunk als geändert, damit er beim Verdrängen zurückgeschrieben wird.
+ */
+public class Chunk {
+    final int index;
+    final byte[] cells;
+    boolean dirty = false;     // nur unter synchronized(this)
+    boolean evicted = false;   // nur unter synchronized(this); danach keine Änderungen mehr
+
+    Chunk(int index, int chunkSize) {
+        this.index = index;
+        cells = new byte[chunkSize * chunkSize];
+    }
+
+    public int getIndex() { return index; }
+
+    /**
+     * @return Speicherbedarf eines Chunks der angegebenen Kantenlänge in Bytes
+     */
+    static int payloadBytes(int chunkSize) {
+        return chunkSize * chunkSize;
+    }
+}
@@ -0,0 +1,286 @@
+package de.hs_kl.imst.gatav.tilerenderer.world;
+
+import android.os.Process;
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Hält die Chunks einer {@link ChunkFile} in der Nähe des Spielers im Speicher.
+ *
+ * {@link #focus(int, int)} (Game Thread) meldet die Position des Spielers; ein Hintergrund-Thread
+ * lädt daraufhin alle Chunks im Umkreis und verdrängt die am längsten nicht mehr benötigten
+ * (LRU), sobald die Speichergrenze überschritten ist. Geänderte Chunks werden beim Verdrängen
+ * zurückgeschrieben.
+ *
+ * Abfragen auf geladenen Chunks ({@link #getCell(int, int)}) kosten O(1) und kommen ohne Lock aus;
+ * nicht geladene Bereiche liefern {@link #UNLOADED}.
+ */
+public class ChunkCache {
+    private static final String TAG = "ChunkCache";
+
+    public static final int UNLOADED = -1;
+
+    private final ChunkFile file;
+    private final int chunkSize;
+    private final int pageRadius;
+    private final int maxResident;
+
+    /**
+     * Geladene Chunks nach Nummer; wird nur vom Pager beschrieben, von allen Threads gelesen
+     */
+    private final AtomicReferenceArray<Chunk> resident;
+
+    /**
+     * Geladene Chunks in Reihenfolge der letzten Nutzung (ältester zuerst); nur Pager-Thread
+     */
+    private final LinkedHashMap<Integer, Chunk> lru = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final ExecutorService pager = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(final Runnable r) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    r.run();
+                }
+            }, TAG);
+            thread.setDaemon(true);     // hält den Prozess nicht am Leben, falls close() fehlt
+            return thread;
+        }
+    });
+    private final AtomicBoolean pageScheduled = new AtomicBoolean(false);
+    private volatile int focusChunk = -1;
+    private int requestedChunk = -1;    // nur Game Thread
+    private volatile int generation = 0;
+    private volatile boolean closed = false;
+
+    private final Runnable pageTask = new Runnable() {
+        @Override
+        public void run() {
+            pageScheduled.set(false);
+            page(focusChunk);
+        }
+    };
+
+    /**
+     * @param file Level als Chunk-Datei
+     * @param maxBytes Speichergrenze für geladene Chunks; mindestens der Umkreis wird immer gehalten
+     * @param pageRadius Umkreis um den Chunk des Spielers in Chunks, der geladen wird
+     */
+    public ChunkCache(ChunkFile file, long maxBytes, int pageRadius) {
+        this.file = file;
+        this.chunkSize = file.getChunkSize();
+        this.pageRadius = pageRadius;
+        int area = (2 * pageRadius + 1) * (2 * pageRadius + 1);
+        this.maxResident = (int) Math.max(area, Math.min(Integer.MAX_VALUE, maxBytes / Chunk.payloadBytes(chunkSize)));
+        resident = new AtomicReferenceArray<>(file.getChunkCount());
+    }
+
+    public int getWidth() { return file.getWidth(); }
+    public int getHeight() { return file.getHeight(); }
+    public int getChunkSize() { return chunkSize; }
+
+    /**
+     * @return Zähler, der sich nach jedem Laden oder Verdrängen von Chunks erhöht; z.B. um
+     *         abgeleitete Daten nur bei Bedarf nachzuziehen
+     */
+    public int getGeneration() { return generation; }
+
+    /**
+     * Position des Spielers melden; ändert sich dessen Chunk, werden die Chunks im Umkreis im
+     * Hintergrund nachgeladen. Nur aus dem Game Thread aufrufen, kehrt sofort zurück.
+     * @param x X-Koordinate in Kacheln
+     * @param y Y-Koordinate in Kacheln
+     */
+    public void focus(int x, int y) {
+        int chunk = chunkIndex(x, y);
+        if(chunk < 0 || chunk == requestedChunk || closed) return;
+        requestedChunk = chunk;
+        focusChunk = chunk;
+        if(pageScheduled.compareAndSet(false, true))
+            try {
+                pager.execute(pageTask);
+            } catch(RejectedExecutionException e) {
+                // zeitgleich geschlossen
+            }
+    }
+
+    /**
+     * Wartet, bis alle bisher angestoßenen Lade- und Schreibvorgänge erledigt sind (z.B. beim Levelstart)
+     */
+    public void awaitPaging() {
+        runOnPager(new Runnable() {
+            @Override
+            public void run() {
+            }
+        });
+    }
+
+    /**
+     * @return Levelzeichen der Kachel oder {@link #UNLOADED}, falls außerhalb oder nicht geladen
+     */
+    public int getCell(int x, int y) {
+        Chunk chunk = chunkAt(x, y);
+        return chunk == null ? UNLOADED : chunk.cells[local(x, y)] & 0xFF;
+    }
+
+    /**
+     * Levelzeichen setzen (z.B. Boden für eine zerstörte Wand); der Chunk wird beim Verdrängen
+     * zurückgeschrieben
+     * @return false, falls der Chunk nicht geladen ist
+     */
+    public boolean setCell(int x, int y, char cell) {
+        Chunk chunk = chunkAt(x, y);
+        if(chunk == null) return false;
+        synchronized(chunk) {
+            if(chunk.evicted) return false;
+            chunk.cells[local(x, y)] = (byte) cell;
+            chunk.dirty = true;
+        }
+        return true;
+    }
+
+    public boolean isResident(int x, int y) {
+        return chunkAt(x, y) != null;
+    }
+
+    /**
+     * @return Anzahl geladener Chunks
+     */
+    public int getResidentCount() {
+        int count = 0;
+        for(int i = 0; i < resident.length(); i++)
+            if(resident.get(i) != null)
+                count++;
+        return count;
+    }
+
+    /**
+     * Alle geänderten Chunks zurückschreiben und warten, bis dies geschehen ist
+     */
+    public void flush() {
+        runOnPager(new Runnable() {
+            @Override
+            public void run() {
+                for(Chunk chunk : lru.values())
+                    writeBack(chunk, false);
+            }
+        });
+    }
+
+    /**
+     * Geänderte Chunks zurückschreiben, Pager beenden und Datei schließen; weitere Aufrufe von
+     * {@link #focus(int, int)} werden ignoriert, geladene Chunks bleiben lesbar
+     */
+    public synchronized void close() {
+        if(closed) return;
+        closed = true;
+        flush();
+        pager.shutdown();
+        try {
+            pager.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            file.close();
+        } catch(IOException e) {
+            Log.w(TAG, "Chunk-Datei nicht schließbar", e);
+        }
+    }
+
+    /**
+     * Lädt alle Chunks im Umkreis (nächste zuerst) und verdrängt danach die ältesten; nur Pager-Thread
+     */
+    private void page(int center) {
+        if(center < 0) return;
+        int centerX = center % file.getChunksX(), centerY = center / file.getChunksX();
+        boolean changed = false;
+        for(int ring = 0; ring <= pageRadius; ring++)
+            for(int cy = centerY - ring; cy <= centerY + ring; cy++)
+                for(int cx = centerX - ring; cx <= centerX + ring; cx++) {
+                    if(Math.max(Math.abs(cx - centerX), Math.abs(cy - centerY)) != ring) continue;
+                    if(cx < 0 || cy < 0 || cx >= file.getChunksX() || cy >= file.getChunksY()) continue;
+                    int index = cy * file.getChunksX() + cx;
+                    if(lru.get(index) != null) continue;   // get() zählt als Nutzung
+                    try {
+                        Chunk chunk = file.read(index);
+                        lru.put(index, chunk);
+                        resident.set(index, chunk);
+                        changed = true;
+                    } catch(IOException e) {
+                        Log.w(TAG, "Chunk " + index + " nicht lesbar", e);
+                    }
+                }
+
+        Iterator<Chunk> eldest = lru.values().iterator();
+        while(lru.size() > maxResident && eldest.hasNext()) {
+            Chunk chunk = eldest.next();
+            eldest.remove();
+            resident.set(chunk.index, null);
+            writeBack(chunk, true);
+            changed = true;
+        }
+
+        if(changed)
+            generation++;   // nur Pager-Thread schreibt
+    }
+
+    /**
+     * Geänderten Chunk zurückschreiben; nur Pager-Thread
+     * @param evict true: Chunk danach nicht mehr ändern lassen
+     */
+    private void writeBack(Chunk chunk, boolean evict) {
+        byte[] cells;
+        synchronized(chunk) {
+            if(evict)
+                chunk.evicted = true;
+            if(!chunk.dirty) return;
+            cells = chunk.cells.clone();
+            chunk.dirty = false;
+        }
+        try {
+            file.write(chunk.index, cells);
+        } catch(IOException e) {
+            Log.w(TAG, "Chunk " + chunk.index + " nicht schreibbar", e);
+        }
+    }
+
+    private void runOnPager(Runnable task) {
+        try {
+            pager.submit(task).get();
+        } catch(RejectedExecutionException e) {
+            // bereits geschlossen, es steht nichts mehr aus
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch(ExecutionException e) {
+            Log.w(TAG, "Pager fehlgeschlagen", e.getCause());
+        }
+    }
+
+    private Chunk chunkAt(int x, int y) {
+        int index = chunkIndex(x, y);
+        return index < 0 ? null : resident.get(index);
+    }
+
+    private int chunkIndex(int x, int y) {
+        if(x < 0 || y < 0 || x >= file.getWidth() || y >= file.getHeight()) return -1;
+        return (y / chunkSize) * file.getChunksX() + x / chunkSize;
+    }
+
+    private int local(int x, int y) {
+        return (y % chunkSize) * chunkSize + x % chunkSize;
+    }
+}
@@ -0,0 +1,170 @@
+package de.hs_kl.imst.gatav.tilerenderer.world;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import de.hs_kl.imst.gatav.tilerenderer.util.LevelData;
+
+/**
+ * Level als Datei aus Chunks fester Größe mit Index, damit einzelne Chunks ohne Lesen des
+ * restlichen Levels geladen und zurückgeschrieben werden können.
+ *
+ * Aufbau: Kopf (MAGIC, VERSION, Breite, Höhe, Chunkgröße, Anzahl Chunks), Index (pro Chunk
+ * Offset als long und Länge als int), danach die Levelzeichen der Chunks, jeweils zeilenweise.
+ * Kacheln außerhalb des Levels sind {@link LevelData#EMPTY}.
+ *
+ * Positionelles Lesen und Schreiben über den {@link FileChannel} ist aus mehreren Threads erlaubt.
+ */
+public class ChunkFile {
+    private static final int MAGIC = 0x43484E4B;    // "CHNK"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 6 * 4;
+    private static final int INDEX_ENTRY_BYTES = 8 + 4;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final int width, height, chunkSize;
+    private final int chunksX, chunksY;
+    private final long[] offsets;
+
+    private ChunkFile(RandomAccessFile file, int width, int height, int chunkSize, long[] offsets) {
+        this.file = file;
+        this.channel = file.getChannel();
+        this.width = width;
+        this.height = height;
+        this.chunkSize = chunkSize;
+        this.chunksX = (width + chunkSize - 1) / chunkSize;
+        this.chunksY = (height + chunkSize - 1) / chunkSize;
+        this.offsets = offsets;
+    }
+
+    /**
+     * Level in Chunks zerlegen und als Datei schreiben
+     * @param level eingelesenes Level
+     * @param chunkSize Kantenlänge eines Chunks in Kacheln
+     * @param target Zieldatei, wird überschrieben
+     * @throws IOException bei Schreibfehlern
+     */
+    public static void write(LevelData level, int chunkSize, File target) throws IOException {
+        if(chunkSize <= 0)
+            throw new IllegalArgumentException("Ungültige Chunkgröße: " + chunkSize);
+        int chunksX = (level.getWidth() + chunkSize - 1) / chunkSize;
+        int chunksY = (level.getHeight() + chunkSize - 1) / chunkSize;
+        int count = chunksX * chunksY;
+        int payload = Chunk.payloadBytes(chunkSize);
+
+        RandomAccessFile raf = new RandomAccessFile(target, "rw");
+        try {
+            raf.setLength(0);
+            FileChannel channel = raf.getChannel();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES + count * INDEX_ENTRY_BYTES);
+            header.putInt(MAGIC).putInt(VERSION).putInt(level.getWidth()).putInt(level.getHeight())
+                    .putInt(chunkSize).putInt(count);
+            long offset = header.capacity();
+            for(int i = 0; i < count; i++) {
+                header.putLong(offset).putInt(payload);
+                offset += payload;
+            }
+            header.flip();
+            channel.write(header, 0);
+
+            ByteBuffer chunk = ByteBuffer.allocate(payload);
+            long position = HEADER_BYTES + (long) count * INDEX_ENTRY_BYTES;
+            for(int cy = 0; cy < chunksY; cy++)
+                for(int cx = 0; cx < chunksX; cx++) {
+                    chunk.clear();
+                    for(int y = 0; y < chunkSize; y++)
+                        for(int x = 0; x < chunkSize; x++) {
+                            int levelX = cx * chunkSize + x, levelY = cy * chunkSize + y;
+                            boolean inside = levelX < level.getWidth() && levelY < level.getHeight();
+                            chunk.put((byte)(inside ? level.get(levelX, levelY) : LevelData.EMPTY));
+                        }
+                    chunk.flip();
+                    while(chunk.hasRemaining())
+                        position += channel.write(chunk, position);
+                }
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * @param source mit {@link #write(LevelData, int, File)} erzeugte Datei
+     * @return geöffnete Datei, lesend und schreibend
+     * @throws IOException bei Lesefehlern oder unbekanntem Format
+     */
+    public static ChunkFile open(File source) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(source, "rw");
+        try {
+            FileChannel channel = raf.getChannel();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            readFully(channel, header, 0);
+            if(header.getInt() != MAGIC || header.getInt() != VERSION)
+                throw new IOException("Keine Chunk-Datei: " + source);
+            int width = header.getInt(), height = header.getInt(), chunkSize = header.getInt(), count = header.getInt();
+            if(chunkSize <= 0 || count != ((width + chunkSize - 1) / chunkSize) * ((height + chunkSize - 1) / chunkSize))
+                throw new IOException("Beschädigter Kopf: " + source);
+
+            ByteBuffer index = ByteBuffer.allocate(count * INDEX_ENTRY_BYTES);
+            readFully(channel, index, HEADER_BYTES);
+            long[] offsets = new long[count];
+            for(int i = 0; i < count; i++) {
+                offsets[i] = index.getLong();
+                if(index.getInt() != Chunk.payloadBytes(chunkSize))
+                    throw new IOException("Beschädigter Index: " + source);
+            }
+            return new ChunkFile(raf, width, height, chunkSize, offsets);
+        } catch(IOException e) {
+            raf.close();
+            throw e;
+        }
+    }
+
+    public int getWidth() { return width; }
+    public int getHeight() { return height; }
+    public int getChunkSize() { return chunkSize; }
+    public int getChunksX() { return chunksX; }
+    public int getChunksY() { return chunksY; }
+    public int getChunkCount() { return offsets.length; }
+
+    /**
+     * @param index Nummer des Chunks (cy * {@link #getChunksX()} + cx)
+     * @return frisch gelesener Chunk
+     */
+    Chunk read(int index) throws IOException {
+        Chunk chunk = new Chunk(index, chunkSize);
+        ByteBuffer buffer = ByteBuffer.allocate(Chunk.payloadBytes(chunkSize));
+        readFully(channel, buffer, offsets[index]);
+        buffer.get(chunk.cells);
+        return chunk;
+    }
+
+    /**
+     * Chunk an seine Stelle in der Datei zurückschreiben
+     * @param index Nummer des Chunks
+     * @param cells Levelzeichen
+     */
+    void write(int index, byte[] cells) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(cells);
+        long position = offsets[index];
+        while(buffer.hasRemaining())
+            position += channel.write(buffer, position);
+    }
+
+    public void close() throws IOException {
+        file.close();
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while(buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if(read < 0)
+                throw new IOException("Unerwartetes Dateiende");
+            position += read;
+        }
+        buffer.flip();
+    }
+}
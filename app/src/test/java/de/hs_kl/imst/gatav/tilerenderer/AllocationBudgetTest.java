@@ -0,0 +1,170 @@
+package de.hs_kl.imst.gatav.tilerenderer;
+
+import android.graphics.Canvas;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Random;
+
+import de.hs_kl.imst.gatav.tilerenderer.analytics.GameEventRecorder;
+import de.hs_kl.imst.gatav.tilerenderer.analytics.Heatmap;
+import de.hs_kl.imst.gatav.tilerenderer.drawable.GameContent;
+import de.hs_kl.imst.gatav.tilerenderer.drawable.ParticleSystem;
+import de.hs_kl.imst.gatav.tilerenderer.util.Direction;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Stellt sicher, dass Update und Zeichnen im eingeschwungenen Zustand (nach dem Aufwärmen)
+ * keinen bzw. kaum Speicher allokieren, damit der Garbage Collector das Spiel nicht ruckeln lässt.
+ *
+ * Läuft headless auf der JVM: {@link GameContent} wird ohne Grafiken geladen, gezeichnet wird auf die
+ * Stub-Implementierung von {@link Canvas} (unitTests.returnDefaultValues in build.gradle).
+ * Schlägt eine Messung fehl, nennt die Tabelle im Fehlertext die gemessene Aufrufstelle und darunter
+ * die abgetasteten Stellen im Code, die dort allokieren.
+ */
+public class AllocationBudgetTest {
+    private static final String LEVEL =
+            "wwwwwwwwwwww\n" +
+            "wfpffffffffw\n" +
+            "wffffwwwfffw\n" +
+            "wfffwffwfffw\n" +
+            "wffffwwwfffw\n" +
+            "wffffffffffw\n" +
+            "wwwwwwwwwwww\n";
+
+    private static final int WARMUP_TICKS = 20000;
+    private static final int MEASURED_TICKS = 50000;
+    private static final float FRACSEC = 1f / 60f;
+
+    // Budgets in Bytes pro Tick; seltene Ereignisse (neue Ziele) sind in den Update-Budgets enthalten.
+    // Ein Byte pro Tick lässt Messrauschen (JIT) zu, jede echte Allokation pro Tick liegt bei >= 16 Bytes.
+    private static final double BUDGET_UPDATE_IDLE = 1;
+    private static final double BUDGET_UPDATE_MOVING = 1;
+    private static final double BUDGET_DRAW = 1;
+    private static final double BUDGET_HUD = 1;
+    private static final double BUDGET_FRAME = 1;
+    private static final double BUDGET_RECORDER = 1;
+    private static final double BUDGET_PARTICLES = 1;
+    private static final int EVENTS_PER_TICK = 100;
+
+    private static final Direction[] DIRECTIONS = {Direction.LEFT, Direction.RIGHT, Direction.UP, Direction.DOWN};
+
+    private GameContent gameContent;
+    private Canvas canvas;
+    private HudRenderer hud;
+    private Random random;
+
+    @Before
+    public void setUp() {
+        gameContent = new GameContent(null, "allocation",
+                new ByteArrayInputStream(LEVEL.getBytes(Charset.forName("UTF-8"))));
+        gameContent.addGameEventListener(new Heatmap(gameContent));    // zählt wie im Spiel mit
+        canvas = new Canvas();
+        hud = new HudRenderer();
+        random = new Random(42);
+    }
+
+    @Test
+    public void updateAndDrawStayWithinAllocationBudget() throws IOException {
+        AllocationProbe probe = new AllocationProbe();
+
+        probe.measure("GameContent.update (Spieler steht)", WARMUP_TICKS, MEASURED_TICKS, BUDGET_UPDATE_IDLE,
+                new Runnable() {
+                    @Override public void run() {
+                        gameContent.update(FRACSEC);
+                    }
+                });
+        probe.measure("GameContent.update (Spieler läuft)", WARMUP_TICKS, MEASURED_TICKS, BUDGET_UPDATE_MOVING,
+                new Runnable() {
+                    @Override public void run() {
+                        steerRandomly();
+                        gameContent.update(FRACSEC);
+                    }
+                });
+        probe.measure("GameContent.draw", WARMUP_TICKS, MEASURED_TICKS, BUDGET_DRAW,
+                new Runnable() {
+                    @Override public void run() {
+                        gameContent.draw(canvas);
+                    }
+                });
+        probe.measure("HudRenderer.draw", WARMUP_TICKS, MEASURED_TICKS, BUDGET_HUD,
+                new Runnable() {
+                    int tick = 0;
+                    @Override public void run() {
+                        hud.draw(canvas, 1920, gameContent.getCollectedTargets(), gameContent.getCollectedScore(),
+                                tick++, 1);
+                    }
+                });
+        probe.measure("Frame (Eingabe, Update, Spielfeld, HUD)", WARMUP_TICKS, MEASURED_TICKS, BUDGET_FRAME,
+                new Runnable() {
+                    int tick = 0;
+                    @Override public void run() {
+                        steerRandomly();
+                        gameContent.update(FRACSEC);
+                        gameContent.draw(canvas);
+                        hud.draw(canvas, 1920, gameContent.getCollectedTargets(), gameContent.getCollectedScore(),
+                                tick++, 1);
+                    }
+                });
+        final ParticleSystem particles = gameContent.getParticles();
+        probe.measure("ParticleSystem (Ausstoß, Update, Zeichnen)", WARMUP_TICKS / 10, MEASURED_TICKS / 10,
+                BUDGET_PARTICLES, new Runnable() {
+                    @Override public void run() {
+                        particles.emitPickup(5.5f, 3.5f, 5);
+                        particles.emitDebris(8.5f, 2.5f, true);
+                        particles.update(FRACSEC);
+                        gameContent.draw(canvas);
+                    }
+                });
+
+        File eventLog = File.createTempFile("events", ".bin");
+        final GameEventRecorder recorder = new GameEventRecorder(eventLog, 1 << 16);
+        recorder.start();
+        try {
+            probe.measure("GameEventRecorder (" + EVENTS_PER_TICK + " Ereignisse)", WARMUP_TICKS / 10,
+                    MEASURED_TICKS / 10, BUDGET_RECORDER, new Runnable() {
+                        @Override public void run() {
+                            for(int i = 0; i < EVENTS_PER_TICK; i++)
+                                recorder.onPlayerMoved(i, i, Direction.LEFT);
+                        }
+                    });
+        } finally {
+            recorder.close();
+            eventLog.delete();
+        }
+
+        assertFalse("Allokationsbudget überschritten:\n" + probe.report(), probe.anyExceedsBudget());
+    }
+
+    @Test
+    public void reportNamesAllocatingCode() {
+        AllocationProbe probe = new AllocationProbe();
+        final Object[] sink = new Object[1];
+        probe.measure("allokiert absichtlich", 1000, 20000, 1, new Runnable() {
+            @Override public void run() {
+                sink[0] = allocate();
+            }
+        });
+        assertTrue(probe.anyExceedsBudget());
+        assertTrue(probe.report(), probe.report().contains("AllocationBudgetTest.allocate("));
+    }
+
+    private static int[] allocate() {
+        return new int[256];
+    }
+
+    /**
+     * Simuliert Wischgesten: sobald der Spieler steht, wird eine zufällige Richtung gesetzt
+     */
+    private void steerRandomly() {
+        if(gameContent.isPlayerDirectionIDLE())
+            gameContent.setPlayerDirection(DIRECTIONS[random.nextInt(DIRECTIONS.length)]);
+    }
+}
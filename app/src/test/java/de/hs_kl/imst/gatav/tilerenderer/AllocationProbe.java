@@ -0,0 +1,191 @@
+package de.hs_kl.imst.gatav.tilerenderer;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Misst die pro Aufruf allokierten Bytes einzelner Aufrufstellen über den Allokationszähler
+ * des aktuellen Threads (HotSpot {@link com.sun.management.ThreadMXBean}).
+ *
+ * Überschreitet eine Aufrufstelle ihr Budget, wird sie erneut ausgeführt, während ein zweiter
+ * Thread laufend den Allokationszähler und den Stack des messenden Threads abtastet. Steigt der
+ * Zähler zwischen zwei Abtastungen, werden die Bytes dem gerade ausgeführten Code zugerechnet;
+ * der Bericht nennt so die allokierenden Stellen im Code statt nur der Messung.
+ */
+class AllocationProbe {
+    /**
+     * Ergebnis einer gemessenen Aufrufstelle
+     */
+    static class Site {
+        final String name;
+        final double bytesPerOp;
+        final double budget;
+        String hotspots = "";   // abgetastete allokierende Stellen, nur bei Überschreitung
+
+        Site(String name, double bytesPerOp, double budget) {
+            this.name = name;
+            this.bytesPerOp = bytesPerOp;
+            this.budget = budget;
+        }
+
+        boolean exceedsBudget() { return bytesPerOp > budget; }
+    }
+
+    private static final int HOTSPOTS = 5;
+    private static final long SAMPLE_NANOS = 300000000L;    // mindestens so lange abtasten
+    private static final String APP_PACKAGE = "de.hs_kl.imst.gatav.tilerenderer.";
+
+    private final com.sun.management.ThreadMXBean threadBean;
+    private final long threadId = Thread.currentThread().getId();
+    private final long overhead;
+    private final ArrayList<Site> sites = new ArrayList<>();
+
+    AllocationProbe() {
+        threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if(!threadBean.isThreadAllocatedMemorySupported())
+            throw new IllegalStateException("JVM unterstützt keine Allokationszählung pro Thread");
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+        // Eigenbedarf einer Messung ermitteln (wird von allen Messungen abgezogen)
+        long min = Long.MAX_VALUE;
+        for(int i = 0; i < 1000; i++) {
+            long before = allocatedBytes();
+            long after = allocatedBytes();
+            min = Math.min(min, after - before);
+        }
+        overhead = min;
+    }
+
+    long allocatedBytes() {
+        return threadBean.getThreadAllocatedBytes(threadId);
+    }
+
+    /**
+     * Führt eine Aufrufstelle zunächst zum Aufwärmen (JIT, Klassen laden, Puffer wachsen lassen)
+     * und anschließend gemessen aus
+     * @param name Bezeichnung der Aufrufstelle
+     * @param warmupOps Anzahl der Aufrufe zum Aufwärmen
+     * @param measuredOps Anzahl der gemessenen Aufrufe
+     * @param budget erlaubte Bytes pro Aufruf
+     * @param body Aufrufstelle
+     * @return Ergebnis
+     */
+    Site measure(String name, int warmupOps, int measuredOps, double budget, Runnable body) {
+        for(int i = 0; i < warmupOps; i++)
+            body.run();
+        long before = allocatedBytes();
+        for(int i = 0; i < measuredOps; i++)
+            body.run();
+        long bytes = Math.max(0, allocatedBytes() - before - overhead);
+        Site site = new Site(name, (double) bytes / measuredOps, budget);
+        if(site.exceedsBudget())
+            site.hotspots = sampleAllocationSites(body, measuredOps);
+        sites.add(site);
+        return site;
+    }
+
+    /**
+     * Aufrufstelle erneut ausführen (mindestens ops Mal und {@link #SAMPLE_NANOS} lang) und dabei
+     * die allokierenden Stellen abtasten
+     * @return die Stellen mit den meisten zugerechneten Bytes, eine pro Zeile
+     */
+    private String sampleAllocationSites(Runnable body, int ops) {
+        final Thread target = Thread.currentThread();
+        final HashMap<String, long[]> bytesByFrame = new HashMap<>();
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final Object started = new Object();
+        Thread sampler = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                long last = threadBean.getThreadAllocatedBytes(threadId);
+                synchronized(started) {
+                    started.notify();
+                }
+                while(running.get()) {
+                    long now = threadBean.getThreadAllocatedBytes(threadId);
+                    if(now > last) {
+                        String frame = describe(target.getStackTrace());
+                        synchronized(bytesByFrame) {
+                            long[] sum = bytesByFrame.get(frame);
+                            if(sum == null)
+                                bytesByFrame.put(frame, sum = new long[1]);
+                            sum[0] += now - last;
+                        }
+                    }
+                    last = now;
+                    Thread.yield();
+                }
+            }
+        }, "AllocationSampler");
+        try {
+            synchronized(started) {
+                sampler.start();
+                started.wait();
+            }
+            long start = System.nanoTime();
+            for(int i = 0; i < ops || System.nanoTime() - start < SAMPLE_NANOS; i++)
+                body.run();
+            running.set(false);
+            sampler.join();
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        running.set(false);
+
+        ArrayList<Map.Entry<String, long[]>> entries;
+        synchronized(bytesByFrame) {
+            entries = new ArrayList<>(bytesByFrame.entrySet());
+        }
+        Collections.sort(entries, new Comparator<Map.Entry<String, long[]>>() {
+            @Override
+            public int compare(Map.Entry<String, long[]> a, Map.Entry<String, long[]> b) {
+                return Long.compare(b.getValue()[0], a.getValue()[0]);
+            }
+        });
+        StringBuilder sb = new StringBuilder();
+        for(int i = 0; i < Math.min(HOTSPOTS, entries.size()); i++)
+            sb.append(String.format(Locale.ROOT, "    %10d Bytes  %s%n", entries.get(i).getValue()[0],
+                    entries.get(i).getKey()));
+        return sb.toString();
+    }
+
+    /**
+     * Innerste Stelle des Stacks, bei Bibliothekscode zusätzlich der innerste Aufrufer aus der App
+     */
+    private static String describe(StackTraceElement[] stack) {
+        if(stack.length == 0) return "?";
+        String innermost = stack[0].toString();
+        if(stack[0].getClassName().startsWith(APP_PACKAGE)) return innermost;
+        for(StackTraceElement frame : stack)
+            if(frame.getClassName().startsWith(APP_PACKAGE))
+                return innermost + " <- " + frame;
+        return innermost;
+    }
+
+    boolean anyExceedsBudget() {
+        for(Site site : sites)
+            if(site.exceedsBudget())
+                return true;
+        return false;
+    }
+
+    /**
+     * @return Tabelle aller gemessenen Aufrufstellen, Überschreitungen markiert
+     */
+    String report() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ROOT, "%-44s %12s %10s%n", "Aufrufstelle", "Bytes/Tick", "Budget"));
+        for(Site site : sites)
+        {
+            sb.append(String.format(Locale.ROOT, "%-44s %12.2f %10.2f%s%n", site.name, site.bytesPerOp,
+                    site.budget, site.exceedsBudget() ? "  <== ÜBERSCHRITTEN" : ""));
+            sb.append(site.hotspots);
+        }
+        return sb.toString();
+    }
+}
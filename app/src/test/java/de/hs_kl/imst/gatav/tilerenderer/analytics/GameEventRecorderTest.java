@@ -0,0 +1,123 @@
+package de.hs_kl.imst.gatav.tilerenderer.analytics;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+import de.hs_kl.imst.gatav.tilerenderer.util.Direction;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Prüft, dass alle Ereignisse vollständig und in Reihenfolge in der Protokolldatei ankommen,
+ * dass weitere Spiele an die bestehende Datei angehängt werden und jedes Spiel seinen Levelnamen
+ * behält.
+ */
+public class GameEventRecorderTest {
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("events", ".bin");
+        file.delete();
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void recordsArriveInOrderAndSessionsAreAppended() throws IOException {
+        final int moves = 10000;
+        for(int session = 0; session < 2; session++) {
+            GameEventRecorder recorder = new GameEventRecorder(file, 1 << 14);
+            recorder.start();
+            recorder.beginSession("level" + session);
+            for(int i = 0; i < moves; i++) {
+                recorder.onPlayerMoved(i & 0xFF, i >> 8, Direction.UP);
+            }
+            recorder.onTargetCollected(3, 4, 8);
+            recorder.onDynamicTargetExpired();
+            recorder.recordGameOver(30, 4217);
+            recorder.close();
+            assertEquals(0, recorder.getDroppedEvents());
+        }
+
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            for(int session = 0; session < 2; session++) {
+                assertSession(in, "level" + session);
+
+                int lastTime = 0;
+                for(int i = 0; i < moves; i++) {
+                    int time = in.readInt();
+                    assertTrue(time >= lastTime);
+                    lastTime = time;
+                    assertEquals(GameEventRecorder.TYPE_MOVE, in.readInt());
+                    assertEquals(GameEventRecorder.position(i & 0xFF, i >> 8), in.readInt());
+                    assertEquals(Direction.UP.ordinal(), in.readInt());
+                }
+                assertRecord(in, GameEventRecorder.TYPE_TARGET_COLLECTED, GameEventRecorder.position(3, 4), 8);
+                assertRecord(in, GameEventRecorder.TYPE_DYN_MISSED, 0, 0);
+                assertRecord(in, GameEventRecorder.TYPE_GAME_OVER, 30, 4217);
+            }
+            try {
+                in.readByte();
+                throw new AssertionError("unerwartete Daten am Dateiende");
+            } catch(EOFException expected) {
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    @Test
+    public void sessionsKeepTheirLevelUntilWritten() throws IOException {
+        // beide Spiele beginnen, bevor der Writer Thread etwas schreibt
+        GameEventRecorder recorder = new GameEventRecorder(file, 1 << 8);
+        recorder.beginSession("first");
+        recorder.onPlayerMoved(1, 2, Direction.LEFT);
+        recorder.recordGameOver(1, 100);
+        recorder.beginSession("second");
+        recorder.onPlayerMoved(3, 4, Direction.RIGHT);
+        recorder.start();
+        recorder.close();
+        assertEquals(0, recorder.getDroppedEvents());
+
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            assertSession(in, "first");
+            assertRecord(in, GameEventRecorder.TYPE_MOVE, GameEventRecorder.position(1, 2), Direction.LEFT.ordinal());
+            assertRecord(in, GameEventRecorder.TYPE_GAME_OVER, 1, 100);
+            assertSession(in, "second");
+            assertRecord(in, GameEventRecorder.TYPE_MOVE, GameEventRecorder.position(3, 4), Direction.RIGHT.ordinal());
+            assertEquals(-1, in.read());
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void assertSession(DataInputStream in, String level) throws IOException {
+        in.readInt();
+        assertEquals(GameEventRecorder.TYPE_SESSION, in.readInt());
+        in.readInt();
+        byte[] name = new byte[in.readInt()];
+        in.readFully(name);
+        assertEquals(level, new String(name, "UTF-8"));
+    }
+
+    private static void assertRecord(DataInputStream in, int type, int a, int b) throws IOException {
+        in.readInt();
+        assertEquals(type, in.readInt());
+        assertEquals(a, in.readInt());
+        assertEquals(b, in.readInt());
+    }
+}
@@ -0,0 +1,103 @@
+package de.hs_kl.imst.gatav.tilerenderer.analytics;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import de.hs_kl.imst.gatav.tilerenderer.drawable.GameContent;
+import de.hs_kl.imst.gatav.tilerenderer.util.Direction;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Prüft das Zählen in headless simulierten Spielen, das parallele Zusammenführen und das
+ * Dateiformat der Heatmap.
+ */
+public class HeatmapTest {
+    private static final String LEVEL =
+            "wwwwwwww\n" +
+            "wfpffffw\n" +
+            "wffwwffw\n" +
+            "wffffffw\n" +
+            "wwwwwwww\n";
+
+    private static final Direction[] DIRECTIONS = {Direction.LEFT, Direction.RIGHT, Direction.UP, Direction.DOWN};
+
+    /**
+     * Ein Spiel mit zufälligen Zügen simulieren
+     */
+    private static Heatmap simulate(long seed, int ticks) {
+        GameContent content = new GameContent(null, "heatmap",
+                new ByteArrayInputStream(LEVEL.getBytes(Charset.forName("UTF-8"))));
+        Heatmap map = new Heatmap(content);
+        content.addGameEventListener(map);
+        Random random = new Random(seed);
+        for(int i = 0; i < ticks; i++) {
+            if(content.isPlayerDirectionIDLE())
+                content.setPlayerDirection(DIRECTIONS[random.nextInt(DIRECTIONS.length)]);
+            content.update(1f / 60f);
+        }
+        assertEquals(content.getCollectedTargets(), map.total(Heatmap.LAYER_PICKUPS));
+        return map;
+    }
+
+    @Test
+    public void countsOnlyPassableCells() {
+        Heatmap map = simulate(1, 20000);
+        assertTrue(map.total(Heatmap.LAYER_VISITS) > 0);
+        assertTrue(map.total(Heatmap.LAYER_SPAWNS) >= map.total(Heatmap.LAYER_PICKUPS));
+        for(int layer = 0; layer < Heatmap.LAYER_COUNT; layer++) {
+            assertEquals(0, map.get(layer, 0, 0));     // Wände
+            assertEquals(0, map.get(layer, 3, 2));
+        }
+    }
+
+    @Test
+    public void parallelReduceMatchesSequentialMerge() throws InterruptedException {
+        ArrayList<Heatmap> maps = new ArrayList<>();
+        for(int i = 0; i < 8; i++)
+            maps.add(simulate(i, 5000));
+
+        Heatmap sequential = new Heatmap(maps.get(0).getWidth(), maps.get(0).getHeight());
+        for(int i = 0; i < maps.size(); i++)
+            sequential.merge(maps.get(i));
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Heatmap parallel = Heatmap.reduce(maps, executor, 4);
+            assertEquals(8, parallel.getSessions());
+            for(int layer = 0; layer < Heatmap.LAYER_COUNT; layer++)
+                for(int y = 0; y < parallel.getHeight(); y++)
+                    for(int x = 0; x < parallel.getWidth(); x++)
+                        assertEquals(sequential.get(layer, x, y), parallel.get(layer, x, y));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void roundTripThroughFile() throws IOException {
+        Heatmap map = simulate(3, 5000);
+        File file = File.createTempFile("heatmap", ".heat");
+        try {
+            map.write(file);
+            Heatmap read = Heatmap.read(file);
+            assertEquals(map.getWidth(), read.getWidth());
+            assertEquals(map.getSessions(), read.getSessions());
+            for(int layer = 0; layer < Heatmap.LAYER_COUNT; layer++)
+                for(int y = 0; y < map.getHeight(); y++)
+                    for(int x = 0; x < map.getWidth(); x++)
+                        assertEquals(map.get(layer, x, y), read.get(layer, x, y));
+        } finally {
+            file.delete();
+        }
+    }
+}
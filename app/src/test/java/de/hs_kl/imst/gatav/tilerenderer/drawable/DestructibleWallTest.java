@@ -0,0 +1,87 @@
+package de.hs_kl.imst.gatav.tilerenderer.drawable;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.Charset;
+
+import de.hs_kl.imst.gatav.tilerenderer.util.Direction;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Prüft das Zerstören von Wänden samt Kettenreaktion explosiver Wände.
+ */
+public class DestructibleWallTest {
+    private static GameContent load(String level) {
+        return new GameContent(null, "destructible", new ByteArrayInputStream(level.getBytes(Charset.forName("UTF-8"))));
+    }
+
+    @Test
+    public void destroyedWallBecomesFloor() {
+        GameContent content = load(
+                "wwwwwwww\n" +
+                "wpDffffw\n" +
+                "wwwwwwww\n");
+        assertFalse(content.canPlayerMove(Direction.RIGHT));
+        assertTrue(content.destroyWall(2, 1));
+        assertFalse(content.destroyWall(2, 1));     // bereits vorgemerkt
+        assertFalse(content.destroyWall(0, 0));     // normale Wand
+        content.update(1f / 60f);
+        assertTrue(content.canPlayerMove(Direction.RIGHT));
+    }
+
+    @Test
+    public void destroyedBorderWallEndsTheField() {
+        GameContent content = load(
+                "wwwwwD\n" +
+                "wfffpD\n" +
+                "wffffw\n" +
+                "wwwwww\n");
+        assertTrue(content.destroyWall(5, 1));
+        content.update(1f / 60f);
+        assertTrue(content.movePlayer(Direction.RIGHT));
+        content.getPlayer().finishMove();
+        // Boden am Rand: dahinter liegt nichts mehr
+        assertFalse(content.canPlayerMove(Direction.RIGHT));
+        assertFalse(content.canPlayerMove(Direction.DOWN));
+        assertTrue(content.canPlayerMove(Direction.LEFT));
+        assertTrue(content.destroyWall(5, 0));
+        content.update(1f / 60f);
+        assertTrue(content.movePlayer(Direction.UP));
+        content.getPlayer().finishMove();
+        assertFalse(content.canPlayerMove(Direction.UP));
+        assertFalse(content.canPlayerMove(Direction.RIGHT));
+    }
+
+    @Test
+    public void explosiveWallsReactInOneTick() {
+        StringBuilder level = new StringBuilder();
+        int size = 40;
+        for(int y = 0; y < size; y++) {
+            for(int x = 0; x < size; x++) {
+                if(x == 0 || y == 0 || x == size - 1 || y == size - 1) level.append('w');
+                else if(x == 1 && y == 1) level.append('p');
+                else if(x == 2 && y == 1) level.append('f');
+                else if(x == 2) level.append('D');     // bremst die Kettenreaktion, wird aber zerstört
+                else if(x == 1) level.append('f');
+                else level.append('X');
+            }
+            level.append('\n');
+        }
+        GameContent content = load(level.toString());
+
+        assertTrue(content.destroyWall(3, 1));
+        content.update(1f / 60f);
+        RenderSnapshot snapshot = new RenderSnapshot();
+        content.capture(snapshot, 0, 0);
+        // alle explosiven Wände (Spalten 3..38) und die angrenzenden zerstörbaren Wände (Spalte 2)
+        assertEquals(36 * 38 + 37, snapshot.tileChangeCount);
+        for(int i = 0; i < 20; i++)
+            content.update(1f / 60f);
+        content.capture(snapshot, 0, 0);
+        assertEquals(36 * 38 + 37, snapshot.tileChangeCount);
+    }
+}
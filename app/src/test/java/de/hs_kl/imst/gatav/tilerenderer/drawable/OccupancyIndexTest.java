@@ -0,0 +1,153 @@
+package de.hs_kl.imst.gatav.tilerenderer.drawable;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Prüft die Buchführung des Belegungsindex: Aufnehmen und Entfernen, die verlassene Kachel während
+ * einer Bewegung bis zum Ende der Animation sowie viele Elemente auf einer Kachel.
+ */
+public class OccupancyIndexTest {
+    private final OccupancyIndex index = new OccupancyIndex(8);
+
+    /**
+     * Anzahl Knoten einer Kachel (über first/next)
+     */
+    private int countAt(int x, int y) {
+        int count = 0;
+        for(int node = index.first(x, y); node >= 0; node = index.next(node))
+            count++;
+        return count;
+    }
+
+    @Test
+    public void findsAddedEntitiesByType() {
+        Player player = new Player(1, 1, null);
+        Target target = new Target(2, 1, null);
+        index.add(player);
+        index.add(target);
+        assertSame(player, index.find(1, 1, Player.class));
+        assertSame(player, index.find(1, 1, TileGraphics.class));
+        assertNull(index.find(1, 1, Target.class));
+        assertSame(target, index.find(2, 1, Target.class));
+        assertTrue(index.isFree(3, 1));
+
+        index.remove(target);
+        assertTrue(index.isFree(2, 1));
+        assertNull(index.find(2, 1, Target.class));
+        // erneut aufnehmen, die freigewordene Kennung wird wiederverwendet
+        index.add(target);
+        assertSame(target, index.find(2, 1, Target.class));
+        assertSame(player, index.find(1, 1, Player.class));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rejectsSecondRegistration() {
+        Target target = new Target(2, 1, null);
+        index.add(target);
+        new OccupancyIndex(8).add(target);
+    }
+
+    @Test
+    public void movingEntityKeepsLeavingCellUntilSettled() {
+        Player player = new Player(1, 1, null);
+        index.add(player);
+        index.nextTick();
+        player.move(2, 1);
+
+        // alte Kachel bleibt belegt, aber nur als verlassene
+        assertFalse(index.isFree(1, 1));
+        assertNull(index.find(1, 1, Player.class));
+        int leaving = index.first(1, 1);
+        assertTrue(index.isLeaving(leaving));
+        assertFalse(index.isEntering(leaving));
+        assertSame(player, index.entityAt(leaving));
+
+        // neue Kachel ist die logische, in diesem Tick betreten
+        int entering = index.first(2, 1);
+        assertSame(player, index.find(2, 1, Player.class));
+        assertFalse(index.isLeaving(entering));
+        assertTrue(index.isEntering(entering));
+        index.nextTick();
+        assertFalse(index.isEntering(entering));
+
+        // Animation läuft zu Ende: verlassene Kachel wird frei
+        player.update(0.05f);
+        assertFalse(index.isFree(1, 1));
+        player.update(1f);
+        assertFalse(player.isMoving());
+        assertTrue(index.isFree(1, 1));
+        assertEquals(1, countAt(2, 1));
+    }
+
+    @Test
+    public void consecutiveMovesAndFinishMove() {
+        Player player = new Player(1, 1, null);
+        index.add(player);
+        player.move(2, 1);
+        player.finishMove();
+        assertTrue(index.isFree(1, 1));
+        // Zug, der vor dem Ende der Animation vom nächsten abgelöst wird: nur die zuletzt
+        // verlassene Kachel bleibt belegt
+        player.move(3, 1);
+        player.move(3, 2);
+        assertTrue(index.isFree(1, 1));
+        assertTrue(index.isFree(2, 1));
+        assertTrue(index.isLeaving(index.first(3, 1)));
+        assertSame(player, index.find(3, 2, Player.class));
+        player.finishMove();
+        assertTrue(index.isFree(3, 1));
+
+        index.remove(player);
+        assertTrue(index.isFree(3, 2));
+        // Bewegungen nach dem Entfernen betreffen den Index nicht mehr
+        player.move(4, 2);
+        assertTrue(index.isFree(4, 2));
+    }
+
+    @Test
+    public void staticEntityLeavesCellImmediately() {
+        Target target = new Target(2, 1, null);
+        index.add(target);
+        target.move(2, 2);
+        assertTrue(index.isFree(2, 1));
+        assertSame(target, index.find(2, 2, Target.class));
+    }
+
+    @Test
+    public void manyEntitiesOnOneCell() {
+        ArrayList<Target> targets = new ArrayList<>();
+        for(int i = 0; i < 40; i++) {      // mehr als die Anfangskapazität
+            Target target = new Target(5, 3, null, 1, i);
+            targets.add(target);
+            index.add(target);
+        }
+        assertEquals(40, countAt(5, 3));
+
+        // jedes zweite entfernen, auch Kopf und Ende der Liste
+        for(int i = 0; i < targets.size(); i += 2)
+            index.remove(targets.get(i));
+        assertEquals(20, countAt(5, 3));
+        boolean[] seen = new boolean[40];
+        for(int node = index.first(5, 3); node >= 0; node = index.next(node))
+            seen[((Target) index.entityAt(node)).getNumber()] = true;
+        for(int i = 0; i < seen.length; i++)
+            assertEquals(i % 2 == 1, seen[i]);
+
+        // übrige auf eine andere Kachel verschieben
+        for(int i = 1; i < targets.size(); i += 2)
+            targets.get(i).move(6, 3);
+        assertTrue(index.isFree(5, 3));
+        assertEquals(20, countAt(6, 3));
+        for(int i = 1; i < targets.size(); i += 2)
+            index.remove(targets.get(i));
+        assertTrue(index.isFree(6, 3));
+    }
+}
@@ -0,0 +1,65 @@
+package de.hs_kl.imst.gatav.tilerenderer.drawable;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Prüft Vorratsgrenze, Ablauf und Qualitätsanpassung des Partikelsystems sowie mehrere tausend
+ * gleichzeitig lebende Partikel.
+ */
+public class ParticleSystemTest {
+    private static final float FRACSEC = 1f / 60f;
+
+    private final ParticleSystem particles = new ParticleSystem(1000, new Random(7));
+
+    @Test
+    public void emitStopsAtCapacity() {
+        assertEquals(800, particles.emit(0, 0, 800, ParticleSystem.COLOR_GOLD, 1, 0, 1));
+        assertEquals(200, particles.emit(0, 0, 800, ParticleSystem.COLOR_DUST, 1, 0, 1));
+        assertEquals(1000, particles.size());
+    }
+
+    @Test
+    public void particlesExpire() {
+        particles.emitPickup(2, 2, 3);
+        assertTrue(particles.size() > 0);
+        for(int i = 0; i < 60; i++)     // eine Sekunde, länger als jede Lebensdauer
+            particles.update(FRACSEC);
+        assertEquals(0, particles.size());
+    }
+
+    @Test
+    public void qualityDropsOverBudgetAndRecovers() {
+        particles.emit(0, 0, 500, ParticleSystem.COLOR_DEBRIS, 1, 0, 100);
+        for(int i = 0; i < 10; i++)
+            particles.update(0.05f);    // 20 Bilder pro Sekunde
+        float degraded = particles.getQuality();
+        assertTrue(degraded < 0.5f);
+        assertTrue(particles.emit(0, 0, 100, ParticleSystem.COLOR_DEBRIS, 1, 0, 1) <= Math.round(100 * degraded));
+
+        for(int i = 0; i < 100; i++)
+            particles.update(FRACSEC);
+        assertEquals(1f, particles.getQuality(), 1e-6f);
+    }
+
+    @Test
+    public void thousandsPerFrame() {
+        ParticleSystem many = new ParticleSystem(ParticleSystem.DEFAULT_CAPACITY, new Random(7));
+        RenderSnapshot snapshot = new RenderSnapshot();
+        int frames = 2000;
+        for(int i = 0; i < frames; i++) {
+            many.emit(10, 10, 200, i % 4, 6, 2, 2f);
+            many.update(FRACSEC);
+            many.capture(snapshot);
+        }
+        assertTrue(snapshot.particleCount > 2000);
+        int sum = 0;
+        for(int c = 0; c < snapshot.particleColorCounts.length; c++)
+            sum += snapshot.particleColorCounts[c];
+        assertEquals(snapshot.particleCount, sum);
+    }
+}
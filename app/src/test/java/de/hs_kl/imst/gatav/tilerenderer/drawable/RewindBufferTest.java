@@ -0,0 +1,171 @@
+package de.hs_kl.imst.gatav.tilerenderer.drawable;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Random;
+
+import de.hs_kl.imst.gatav.tilerenderer.util.Direction;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Prüft, dass Zurückspulen in headless simulierten Spielen genau den zuvor aufgezeichneten
+ * Zustand wiederherstellt, der Speicher begrenzt bleibt und das Zurückspulen schneller als
+ * Echtzeit ist.
+ */
+public class RewindBufferTest {
+    private static final String LEVEL =
+            "wwwwwwww\n" +
+            "wfpffffw\n" +
+            "wffwwffw\n" +
+            "wffffffw\n" +
+            "wwwwwwww\n";
+
+    private static final Direction[] DIRECTIONS = {Direction.LEFT, Direction.RIGHT, Direction.UP, Direction.DOWN};
+    private static final float TICK = 1f / 60f;
+
+    private final GameContent content = new GameContent(null, "rewind",
+            new ByteArrayInputStream(LEVEL.getBytes(Charset.forName("UTF-8"))));
+    private final Random random = new Random(7);
+
+    /**
+     * Zustand nach einem Tick: Spielzeit, Spieler, Zähler und Ziele
+     */
+    private static class State {
+        final int time, playerX, playerY, collected, score;
+        final String targets;
+
+        State(GameContent content) {
+            time = content.getHistoryTimeMillis();
+            playerX = content.getPlayer().getX();
+            playerY = content.getPlayer().getY();
+            collected = content.getCollectedTargets();
+            score = content.getCollectedScore();
+            boolean[] cells = new boolean[content.getColumns() * content.getRows()];
+            OverlayLayer<Target> layer = content.getTargets();
+            for(int i = 0; i < layer.size(); i++)
+                cells[layer.get(i).getY() * content.getColumns() + layer.get(i).getX()] = true;
+            StringBuilder builder = new StringBuilder();
+            for(int i = 0; i < cells.length; i++)
+                if(cells[i]) {
+                    Target target = layer.get(i % content.getColumns(), i / content.getColumns());
+                    builder.append(i).append(':').append(target.getNumber()).append(' ');
+                }
+            targets = builder.toString();
+        }
+
+        void assertRestored(GameContent content) {
+            State now = new State(content);
+            assertEquals(playerX, now.playerX);
+            assertEquals(playerY, now.playerY);
+            assertEquals(collected, now.collected);
+            assertEquals(score, now.score);
+            assertEquals(targets, now.targets);
+        }
+    }
+
+    /**
+     * Spiel mit zufälligen Zügen simulieren und den Zustand nach jedem Tick festhalten
+     */
+    private ArrayList<State> play(int ticks) {
+        ArrayList<State> states = new ArrayList<>();
+        for(int i = 0; i < ticks; i++) {
+            if(content.isPlayerDirectionIDLE())
+                content.setPlayerDirection(DIRECTIONS[random.nextInt(DIRECTIONS.length)]);
+            content.update(TICK);
+            states.add(new State(content));
+        }
+        return states;
+    }
+
+    /**
+     * Letzter festgehaltener Zustand, der nicht neuer als der Zeitpunkt ist
+     */
+    private static State at(ArrayList<State> states, int time) {
+        State result = null;
+        for(int i = 0; i < states.size() && states.get(i).time <= time; i++)
+            result = states.get(i);
+        assertTrue("kein Zustand bis " + time + " ms festgehalten", result != null);
+        return result;
+    }
+
+    @Test
+    public void restoresRecordedStates() {
+        for(int round = 0; round < 20; round++) {
+            ArrayList<State> states = play(300 + random.nextInt(600));
+            float seconds = 0.1f + random.nextFloat() * 3f;
+            int target = content.getHistoryTimeMillis() - (int) (seconds * 1000);
+            State expected = at(states, target);
+            content.rewind(seconds);
+            expected.assertRestored(content);
+        }
+    }
+
+    @Test
+    public void rewindsAcrossKeyframes() {
+        ArrayList<State> states = play(60 * 20);
+        // weiter zurück als mehrere Schlüsselbildabstände
+        int target = content.getHistoryTimeMillis() - 7000;
+        content.rewind(7f);
+        at(states, target).assertRestored(content);
+        // danach weiterspielen und erneut zurückspulen
+        states = play(600);
+        target = content.getHistoryTimeMillis() - 1000;
+        content.rewind(1f);
+        at(states, target).assertRestored(content);
+    }
+
+    @Test
+    public void stopsAtLevelStart() {
+        State initial = new State(content);
+        assertEquals(3, content.getTargets().size());
+        play(60);
+        // weiter zurück als gespielt: Ausgangszustand des Levels samt seiner Ziele
+        content.rewind(3f);
+        initial.assertRestored(content);
+        assertEquals(3, content.getTargets().size());
+        // Spiel läuft normal weiter
+        play(600);
+        assertEquals(3, content.getTargets().size());
+    }
+
+    @Test
+    public void stopsAtOldestKeyframe() {
+        // länger spielen, als der Verlauf fasst
+        ArrayList<State> states = play(60 * 600);
+        int oldest = content.getHistoryStartMillis();
+        assertTrue(oldest > 0);
+        content.rewind(600f);
+        at(states, oldest).assertRestored(content);
+        assertEquals(3, content.getTargets().size());
+        assertEquals(oldest, content.getHistoryStartMillis());
+    }
+
+    @Test
+    public void memoryIsBounded() {
+        RewindBuffer buffer = new RewindBuffer(1024);
+        play(1);
+        for(int i = 0; i < 60 * 600; i++) {
+            buffer.recordMove(random.nextInt(8), random.nextInt(5));
+            if(random.nextInt(4) == 0)
+                buffer.recordCollect(random.nextInt(8), random.nextInt(5), 1 + random.nextInt(4));
+            buffer.endTick(TICK, content);
+            assertTrue(buffer.size() <= buffer.getCapacity());
+        }
+        assertEquals(1024, buffer.getCapacity());
+    }
+
+    @Test
+    public void fasterThanRealTime() {
+        play(60 * 120);
+        long start = System.nanoTime();
+        content.rewind(120f);
+        long nanos = System.nanoTime() - start;
+        // zwei Minuten Spiel in deutlich unter einer Sekunde zurückspulen
+        assertTrue("Zurückspulen dauerte " + nanos / 1000000 + " ms", nanos < 500000000L);
+    }
+}
@@ -0,0 +1,74 @@
+package de.hs_kl.imst.gatav.tilerenderer.drawable;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Prüft das Aufräumen des Sprite-Caches: Dateien anderer Asset-Stände verschwinden, Dateien, die
+ * gerade von einem anderen Cache-Objekt geschrieben werden, bleiben erhalten.
+ */
+public class SpriteCacheTest {
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = File.createTempFile("sprites", "");
+        assertTrue(dir.delete() && dir.mkdir());
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if(files != null)
+            for(File file : files)
+                file.delete();
+        dir.delete();
+    }
+
+    private File write(String name, int bytes) throws IOException {
+        File file = new File(dir, name);
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(new byte[bytes]);
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    @Test
+    public void evictKeepsFilesBeingWritten() throws IOException {
+        File current = write("forest_64_new.raw", 100);
+        File outdated = write("forest_64_old.raw", 100);
+        File writing = write("desert_64_new.raw.tmp", 100);
+        File abandoned = write("desert_32_new.raw.tmp", 100);
+        assertTrue(abandoned.setLastModified(System.currentTimeMillis() - 10 * 60 * 1000));
+
+        new SpriteCache(dir, "new", 1024);
+        assertTrue(current.isFile());
+        assertFalse(outdated.exists());
+        assertTrue(writing.isFile());
+        assertFalse(abandoned.exists());
+    }
+
+    @Test
+    public void evictIgnoresTemporaryFilesForSizeLimit() throws IOException {
+        File older = write("forest_64_new.raw", 100);
+        assertTrue(older.setLastModified(System.currentTimeMillis() - 5000));
+        File newer = write("forest_32_new.raw", 100);
+        File writing = write("desert_64_new.raw.tmp", 1000);
+
+        new SpriteCache(dir, "new", 150);
+        assertFalse(older.exists());
+        assertTrue(newer.isFile());
+        assertTrue(writing.isFile());
+    }
+}
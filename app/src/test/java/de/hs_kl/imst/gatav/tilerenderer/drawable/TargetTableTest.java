@@ -0,0 +1,65 @@
+package de.hs_kl.imst.gatav.tilerenderer.drawable;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Prüft das Einlesen der Zieltabelle und die Anpassung der Gewichte an den Punktestand, auch bei
+ * extremen Punkteständen.
+ */
+public class TargetTableTest {
+    private static TargetTable parse(String text) throws IOException {
+        return TargetTable.parse(new ByteArrayInputStream(text.getBytes(Charset.forName("UTF-8"))));
+    }
+
+    private static int[] histogram(TargetTable table, int samples) {
+        Random random = new Random(3);
+        int[] counts = new int[table.size() + 1];
+        for(int i = 0; i < samples; i++)
+            counts[table.sample(random)]++;
+        return counts;
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsNegativeDecay() throws IOException {
+        // würde mit steigendem Punktestand gegen unendlich wachsen
+        parse("can1 1 60\n" +
+              "can4 8 5 -0.5\n");
+    }
+
+    @Test
+    public void decayingTierBecomesRare() throws IOException {
+        TargetTable table = parse("# Sprite Punkte Gewicht Abnahme\n" +
+                                  "can1 1 60\n" +
+                                  "can4 8 60 0.1\n");
+        int[] counts = histogram(table, 10000);
+        assertTrue(counts[2] > 4000);
+        table.updateForScore(100000);
+        counts = histogram(table, 10000);
+        assertEquals(10000, counts[1]);
+        assertEquals(8, table.getScore(2));
+    }
+
+    @Test
+    public void allTiersDecayingStaySampleable() throws IOException {
+        TargetTable table = parse("can1 1 60 0.5\n" +
+                                  "can2 2 20 0.5\n" +
+                                  "can3 4 20 2\n");
+        // e^(-Abnahme * Punktestand) ist hier 0: die Untergrenze hält alle Stufen ziehbar
+        table.updateForScore(1000000);
+        int[] counts = histogram(table, 100000);
+        assertEquals(100000, counts[1] + counts[2] + counts[3]);
+        // gleiche Untergrenze für alle: Verhältnis wie in der Tabelle
+        assertEquals(3.0, (double) counts[1] / counts[2], 0.2);
+        table.updateForScore(0);
+        counts = histogram(table, 100000);
+        assertEquals(0.6, counts[1] / 100000.0, 0.01);
+    }
+}
@@ -0,0 +1,135 @@
+package de.hs_kl.imst.gatav.tilerenderer.drawable;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+import de.hs_kl.imst.gatav.tilerenderer.util.Direction;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Prüft das Kachelgitter in Chunks sowie große Level, von denen nur die Chunks um den Spieler
+ * als Kacheln vorliegen: Laufen über Chunkgrenzen, begrenzte Anzahl Chunks, zerstörte Wände
+ * nach dem Nachladen und die Kamera.
+ */
+public class TileGridTest {
+    private static final int WIDTH = 200, HEIGHT = 5;
+    private static final float TICK = 1f / 60f;
+
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = File.createTempFile("world", "");
+        dir.delete();
+        GameContent.setWorldDirectory(dir);
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if(files != null)
+            for(File file : files)
+                file.delete();
+        dir.delete();
+    }
+
+    /**
+     * Gang über die ganze Breite, Spieler links, zerstörbare Wand oberhalb des Gangs
+     */
+    private static GameContent loadCorridor() {
+        StringBuilder sb = new StringBuilder();
+        for(int y = 0; y < HEIGHT; y++) {
+            for(int x = 0; x < WIDTH; x++) {
+                boolean border = x == 0 || y == 0 || x == WIDTH - 1 || y == HEIGHT - 1;
+                sb.append(border ? 'w' : x == 1 && y == 2 ? 'p' : x == 3 && y == 1 ? 'd' : 'f');
+            }
+            sb.append('\n');
+        }
+        return new GameContent(null, "corridor",
+                new ByteArrayInputStream(sb.toString().getBytes(Charset.forName("UTF-8"))));
+    }
+
+    private static int loadedChunks(TileGrid grid) {
+        int count = 0;
+        for(int i = 0; i < grid.getChunkCount(); i++)
+            if(grid.isLoaded(i))
+                count++;
+        return count;
+    }
+
+    private static void walk(GameContent content, Direction direction, int steps) {
+        for(int i = 0; i < steps; i++) {
+            content.awaitPaging();
+            content.update(TICK);
+            assertTrue(content.movePlayer(direction));
+            content.getPlayer().finishMove();
+        }
+    }
+
+    @Test
+    public void missingChunksAreNotPassable() {
+        TileGrid grid = new TileGrid(40, 20);
+        assertEquals(3, grid.getChunksX());
+        assertEquals(2, grid.getChunksY());
+        assertEquals(grid.getChunksX() + 2, grid.chunkIndex(39, 16));
+        assertEquals(-1, grid.chunkIndex(40, 0));
+
+        Floor floor = new Floor(17, 3, null);
+        assertFalse(grid.set(17, 3, floor));
+        grid.setChunk(grid.chunkIndex(17, 3), new TileGraphics[TileGrid.CHUNK_SIZE * TileGrid.CHUNK_SIZE]);
+        assertTrue(grid.set(17, 3, floor));
+        assertEquals(floor, grid.get(17, 3));
+        assertNull(grid.get(16, 3));
+        assertNull(grid.get(-1, 3));
+        grid.setChunk(grid.chunkIndex(17, 3), null);
+        assertNull(grid.get(17, 3));
+    }
+
+    @Test
+    public void pagesChunksAroundThePlayer() {
+        GameContent content = loadCorridor();
+        assertTrue(content.isScrolling());
+        assertTrue(content.isPaged());
+        TileGrid grid = content.getTiles();
+        assertNull(grid.get(WIDTH - 2, 2));
+
+        assertTrue(content.destroyWall(3, 1));
+        content.update(TICK);
+
+        walk(content, Direction.RIGHT, WIDTH - 3);
+        assertEquals(WIDTH - 2, content.getPlayer().getX());
+        assertFalse(content.canPlayerMove(Direction.RIGHT));
+        assertTrue(loadedChunks(grid) <= 2 * 3 + 1);
+        assertNull(grid.get(3, 1));
+
+        // zurück: die Kacheln entstehen neu aus den Levelzeichen, die Wand bleibt zerstört
+        walk(content, Direction.LEFT, WIDTH - 5);
+        assertEquals(3, content.getPlayer().getX());
+        assertTrue(grid.get(3, 1) instanceof Floor);
+        assertTrue(content.movePlayer(Direction.UP));
+
+        content.close();
+        assertEquals(0, dir.listFiles().length);
+    }
+
+    @Test
+    public void cameraFollowsThePlayer() {
+        GameContent content = loadCorridor();
+        RenderSnapshot snapshot = new RenderSnapshot();
+        content.capture(snapshot, 0, 0);
+        float tileSize = TileGraphics.getTileSize();
+        assertEquals(320 - 1.5f * tileSize, snapshot.getOffsetX(640), 1e-3f);
+        assertEquals(240 - 2.5f * tileSize, snapshot.getOffsetY(480), 1e-3f);
+        content.close();
+    }
+}
@@ -0,0 +1,128 @@
+package de.hs_kl.imst.gatav.tilerenderer.score;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Prüft Reihenfolge der Bestenliste, Wiederherstellen nach Neustart, Kompaktierung
+ * und das Überspringen beschädigter Datensätze.
+ */
+public class HighScoreStoreTest {
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = File.createTempFile("scores", "");
+        dir.delete();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if(files != null)
+            for(File f : files)
+                f.delete();
+        dir.delete();
+    }
+
+    @Test
+    public void bestEntriesFirstAndRestoredAfterRestart() throws Exception {
+        HighScoreStore store = new HighScoreStore(dir);
+        assertNull(store.getBest("level1"));
+        assertEquals(0, store.add("level1", 50, 3000));
+        assertEquals(0, store.add("level1", 60, 4000));
+        assertEquals(1, store.add("level1", 50, 2500));
+        store.add("level2", 10, 100);
+        store.close();
+
+        store = new HighScoreStore(dir);
+        List<HighScore> top = store.getTop("level1", 10);
+        assertEquals(3, top.size());
+        assertEquals(60, top.get(0).getScore());
+        assertEquals(2500, top.get(1).getTimeCentis());
+        assertEquals(3000, top.get(2).getTimeCentis());
+        assertEquals(10, store.getBest("level2").getScore());
+        store.close();
+    }
+
+    @Test
+    public void peekBestOnlyReadsLoadedLevels() throws Exception {
+        HighScoreStore store = new HighScoreStore(dir);
+        store.add("level1", 50, 3000);
+        assertEquals(50, store.peekBest("level1").getScore());
+        store.close();
+
+        store = new HighScoreStore(dir);
+        assertNull(store.peekBest("level1"));      // noch nicht geladen
+        store.preload("level1");
+        assertEquals(50, store.peekBest("level1").getScore());
+        store.preload("level2");
+        assertNull(store.peekBest("level2"));
+        store.close();
+    }
+
+    @Test
+    public void compactionKeepsTopNAndRemovesLogs() throws Exception {
+        HighScoreStore store = new HighScoreStore(dir);
+        int games = 5 * HighScoreStore.TOP_N + 7;
+        for(int i = 0; i < games; i++)
+            store.add("level", i, 1000);
+        store.close();
+
+        assertTrue(new File(dir, "level.top").isFile());
+        long logBytes = 0;
+        for(File f : dir.listFiles())
+            if(f.getName().endsWith(".log"))
+                logBytes += f.length();
+        assertTrue("Logs nicht kompaktiert: " + logBytes + " Bytes",
+                logBytes < (long) HighScoreStore.TOP_N * HighScoreStore.RECORD_BYTES);
+
+        store = new HighScoreStore(dir);
+        List<HighScore> top = store.getTop("level", Integer.MAX_VALUE);
+        assertEquals(HighScoreStore.TOP_N, top.size());
+        for(int i = 0; i < top.size(); i++)
+            assertEquals(games - 1 - i, top.get(i).getScore());
+        assertEquals(-1, store.add("level", 0, 1000));
+        store.close();
+    }
+
+    @Test
+    public void corruptAndTruncatedRecordsAreSkipped() throws Exception {
+        HighScoreStore store = new HighScoreStore(dir);
+        store.add("level", 70, 1000);
+        store.add("level", 80, 1000);
+        store.close();
+
+        RandomAccessFile log = new RandomAccessFile(new File(dir, "level.0.log"), "rw");
+        try {
+            log.seek(HighScoreStore.RECORD_BYTES + 5);  // Punkte des zweiten Datensatzes
+            log.write(0x7F);
+            log.seek(log.length());
+            log.write(new byte[HighScoreStore.RECORD_BYTES / 2]);   // abgebrochener Schreibvorgang
+        } finally {
+            log.close();
+        }
+
+        store = new HighScoreStore(dir);
+        List<HighScore> top = store.getTop("level", 10);
+        assertEquals(1, top.size());
+        assertEquals(70, top.get(0).getScore());
+        store.add("level", 90, 1000);
+        store.close();
+
+        store = new HighScoreStore(dir);
+        assertEquals(2, store.getTop("level", 10).size());
+        assertEquals(90, store.getBest("level").getScore());
+        store.close();
+    }
+}
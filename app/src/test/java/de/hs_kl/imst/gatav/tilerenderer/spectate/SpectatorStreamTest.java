@@ -0,0 +1,120 @@
+package de.hs_kl.imst.gatav.tilerenderer.spectate;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Random;
+
+import de.hs_kl.imst.gatav.tilerenderer.drawable.GameContent;
+import de.hs_kl.imst.gatav.tilerenderer.drawable.OverlayLayer;
+import de.hs_kl.imst.gatav.tilerenderer.drawable.Target;
+import de.hs_kl.imst.gatav.tilerenderer.util.Direction;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Prüft Snapshot und Deltas des Zuschauer-Streams über eine Pipe: das gespiegelte Spielfeld muss
+ * dem Original entsprechen, und ein Zuschauer, der nicht liest, darf das Spiel nicht blockieren.
+ */
+public class SpectatorStreamTest {
+    private static final String LEVEL =
+            "wwwwwwww\n" +
+            "wfpffffw\n" +
+            "wffwwffw\n" +
+            "wffffffw\n" +
+            "wwwwwwww\n";
+
+    private static final Direction[] DIRECTIONS = {Direction.LEFT, Direction.RIGHT, Direction.UP, Direction.DOWN};
+
+    private static GameContent load() {
+        return new GameContent(null, "spectate", new ByteArrayInputStream(LEVEL.getBytes(Charset.forName("UTF-8"))));
+    }
+
+    private static void play(GameContent content, Random random, int ticks) {
+        for(int i = 0; i < ticks; i++) {
+            if(content.isPlayerDirectionIDLE())
+                content.setPlayerDirection(DIRECTIONS[random.nextInt(DIRECTIONS.length)]);
+            content.update(1f / 60f);
+        }
+    }
+
+    /**
+     * Vergleichbarer Zustand: Spieler, Zähler und Ziele samt Nummer
+     */
+    private static String describe(GameContent content) {
+        StringBuilder builder = new StringBuilder();
+        builder.append(content.getPlayer().getX()).append(',').append(content.getPlayer().getY())
+                .append(' ').append(content.getCollectedTargets()).append(' ').append(content.getCollectedScore());
+        OverlayLayer<Target> targets = content.getTargets();
+        for(int y = 0; y < content.getRows(); y++)
+            for(int x = 0; x < content.getColumns(); x++) {
+                Target target = targets.get(x, y);
+                if(target != null)
+                    builder.append(' ').append(x).append(',').append(y).append(':').append(target.getNumber());
+            }
+        return builder.toString();
+    }
+
+    /**
+     * Empfangenes anwenden, bis der Spiegel dem Original entspricht (oder die Zeit abläuft)
+     */
+    private static void awaitMirror(SpectatorClient client, GameContent source, GameContent mirror)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        String expected = describe(source);
+        while(System.currentTimeMillis() < deadline) {
+            client.applyPending(mirror);
+            if(expected.equals(describe(mirror))) break;
+            Thread.sleep(5);
+        }
+        assertEquals(expected, describe(mirror));
+    }
+
+    @Test(timeout = 20000)
+    public void mirrorFollowsSnapshotAndDeltas() throws IOException, InterruptedException {
+        Random random = new Random(5);
+        GameContent source = load();
+        play(source, random, 300);      // Snapshot mitten im Spiel
+
+        PipeTransport transport = new PipeTransport();
+        StateStreamWriter writer = new StateStreamWriter(transport.getOutputStream());
+        writer.writeSnapshot(source);
+        source.addGameEventListener(writer);
+
+        GameContent mirror = load();
+        mirror.setMirrored(true);
+        SpectatorClient client = new SpectatorClient(transport);
+        client.start();
+        try {
+            awaitMirror(client, source, mirror);
+            for(int round = 0; round < 10; round++) {
+                play(source, random, 600);
+                awaitMirror(client, source, mirror);
+            }
+            assertTrue(source.getCollectedTargets() > 0);
+            assertFalse(writer.isClosed());
+        } finally {
+            writer.close();
+            client.stop();
+        }
+    }
+
+    @Test(timeout = 20000)
+    public void stalledSpectatorDoesNotBlockGame() throws IOException {
+        Random random = new Random(6);
+        GameContent source = load();
+        // kleine Pipe, aus der niemand liest
+        PipeTransport transport = new PipeTransport(256);
+        StateStreamWriter writer = new StateStreamWriter(transport.getOutputStream(), 1024);
+        writer.writeSnapshot(source);
+        source.addGameEventListener(writer);
+
+        play(source, random, 60 * 600);
+        assertTrue(writer.isClosed());
+        transport.close();
+    }
+}
@@ -0,0 +1,50 @@
+package de.hs_kl.imst.gatav.tilerenderer.util;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Prüft die Verteilung der Alias-Methode, auch nachdem Gewichte im laufenden Betrieb
+ * gesenkt (Verwerfen) oder erhöht (Neuaufbau) wurden.
+ */
+public class AliasSamplerTest {
+    private static final int SAMPLES = 400000;
+
+    @Test
+    public void matchesWeights() {
+        AliasSampler sampler = new AliasSampler(new double[] {60, 20, 15, 5, 0});
+        assertDistribution(sampler, new Random(1));
+    }
+
+    @Test
+    public void matchesWeightsAfterChanges() {
+        Random random = new Random(2);
+        AliasSampler sampler = new AliasSampler(new double[] {60, 20, 15, 5});
+        sampler.sample(random);
+
+        sampler.setWeight(3, 1);        // kleiner: bleibt bei der alten Tabelle
+        assertDistribution(sampler, random);
+        sampler.setWeight(0, 10);       // Annahmequote unter 50 %: Neuaufbau
+        assertDistribution(sampler, random);
+        sampler.setWeight(3, 50);       // größer als die Schranke: Neuaufbau
+        sampler.setWeight(1, 0);
+        assertDistribution(sampler, random);
+    }
+
+    private static void assertDistribution(AliasSampler sampler, Random random) {
+        int[] counts = new int[sampler.size()];
+        for(int i = 0; i < SAMPLES; i++)
+            counts[sampler.sample(random)]++;
+
+        double sum = 0;
+        for(int i = 0; i < sampler.size(); i++)
+            sum += sampler.getWeight(i);
+        for(int i = 0; i < sampler.size(); i++) {
+            double expected = sampler.getWeight(i) / sum;
+            assertEquals("Index " + i, expected, (double) counts[i] / SAMPLES, 0.005);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package de.hs_kl.imst.gatav.tilerenderer.util;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Prüft die Kollision per Gittertraversierung (kein Tunneln bei beliebiger Geschwindigkeit) und
+ * den Aufwand vieler Kugeln pro Bild, gemessen in besuchten Kacheln statt in Rechenzeit. Die
+ * Rechenzeit misst ein Benchmark, der nur mit -Dbenchmark=true läuft und nichts prüft.
+ */
+public class BallPhysicsTest {
+    private static final float FRACSEC = 1f / 60f;
+    private static final int BENCHMARK_BALLS = 500;
+    private static final int BENCHMARK_FRAMES = 600;
+    // Kugeln legen pro Teilschritt deutlich weniger als eine Kachel zurück; gemessen werden ca. 0.17
+    private static final double BUDGET_CELLS_PER_BALL_STEP = 1;
+
+    /**
+     * Gitter mit festem Rand und einer einzelnen Kachel dicken Wand in Spalte wallX
+     */
+    private static BallPhysics.Grid wallGrid(final int width, final int height, final int wallX) {
+        return new BallPhysics.Grid() {
+            @Override
+            public boolean isSolid(int x, int y) {
+                return x <= 0 || y <= 0 || x >= width - 1 || y >= height - 1 || x == wallX;
+            }
+        };
+    }
+
+    @Test
+    public void doesNotTunnelAtAnySpeed() {
+        for(float speed = 10; speed <= 1e6f; speed *= 10) {
+            BallPhysics physics = new BallPhysics(wallGrid(20, 5, 10), 1);
+            physics.setGravity(0);
+            final int[] hits = {0};
+            physics.setHitListener(new BallPhysics.HitListener() {
+                @Override
+                public void onHit(int ball, int cellX, int cellY, float s) {
+                    hits[0]++;
+                }
+            });
+            int ball = physics.add(2.5f, 2.5f, speed, 0);
+            for(int frame = 0; frame < 60; frame++) {
+                physics.step(FRACSEC);
+                assertTrue("Kugel bei " + speed + " Kacheln/s durch die Wand getunnelt",
+                        physics.getX(ball) > 1 && physics.getX(ball) < 10);
+            }
+            assertTrue(hits[0] > 0);
+        }
+    }
+
+    @Test
+    public void pendulumStaysOnChain() {
+        BallPhysics physics = new BallPhysics(wallGrid(20, 20, -1), 1);
+        int ball = physics.add(10.5f, 5.5f, 8, 0);
+        physics.setAnchor(ball, 10.5f, 5.5f, 2.5f);
+        for(int frame = 0; frame < 600; frame++) {
+            physics.step(FRACSEC);
+            float dx = physics.getX(ball) - 10.5f;
+            float dy = physics.getY(ball) - 5.5f;
+            assertTrue(Math.sqrt(dx * dx + dy * dy) <= 2.5f + 1e-3f);
+        }
+        assertEquals(600 * 2, physics.getSubsteps(), 2);
+    }
+
+    /**
+     * Spielfeld mit festem Rand und zufälligen Hindernissen, darin viele Kugeln, die Hälfte an
+     * Ankern (wie Trümmer einer zerstörten Wand)
+     */
+    private static class Scene {
+        static final int SIZE = 64;
+        final boolean[] solid = new boolean[SIZE * SIZE];
+        final BallPhysics physics;
+
+        Scene() {
+            Random random = new Random(7);
+            for(int i = 0; i < solid.length; i++) {
+                int x = i % SIZE, y = i / SIZE;
+                solid[i] = x == 0 || y == 0 || x == SIZE - 1 || y == SIZE - 1 || random.nextInt(6) == 0;
+            }
+            physics = new BallPhysics(new BallPhysics.Grid() {
+                @Override
+                public boolean isSolid(int x, int y) {
+                    return x < 0 || y < 0 || x >= SIZE || y >= SIZE || solid[y * SIZE + x];
+                }
+            }, BENCHMARK_BALLS);
+            for(int i = 0; i < BENCHMARK_BALLS; i++) {
+                int cell;
+                do { cell = random.nextInt(solid.length); } while(solid[cell]);
+                int ball = physics.add(cell % SIZE + 0.5f, cell / SIZE + 0.5f,
+                        random.nextFloat() * 40 - 20, random.nextFloat() * 40 - 20);
+                if(i % 2 == 0)
+                    physics.setAnchor(ball, cell % SIZE + 0.5f, cell / SIZE + 0.5f, 2.5f);
+            }
+        }
+    }
+
+    @Test
+    public void hundredsOfBallsPerFrame() {
+        Scene scene = new Scene();
+        BallPhysics physics = scene.physics;
+        for(int frame = 0; frame < BENCHMARK_FRAMES; frame++)
+            physics.step(FRACSEC);
+        double cellsPerBallStep = (double) physics.getCellsVisited() / physics.getSubsteps() / BENCHMARK_BALLS;
+
+        for(int i = 0; i < physics.size(); i++)
+            assertFalse(scene.solid[(int) physics.getY(i) * Scene.SIZE + (int) physics.getX(i)]);
+        assertTrue(cellsPerBallStep + " Kacheln pro Kugel und Teilschritt",
+                cellsPerBallStep < BUDGET_CELLS_PER_BALL_STEP);
+    }
+
+    /**
+     * Rechenzeit pro Bild für mehrere hundert Kugeln; hängt vom Rechner ab und bricht daher nie ab
+     */
+    @Test
+    public void benchmarkHundredsOfBallsPerFrame() {
+        Assume.assumeTrue(Boolean.getBoolean("benchmark"));
+        BallPhysics physics = new Scene().physics;
+        for(int frame = 0; frame < BENCHMARK_FRAMES; frame++)     // Aufwärmen (JIT)
+            physics.step(FRACSEC);
+        long start = System.nanoTime();
+        for(int frame = 0; frame < BENCHMARK_FRAMES; frame++)
+            physics.step(FRACSEC);
+        double msPerFrame = (System.nanoTime() - start) / 1e6 / BENCHMARK_FRAMES;
+        System.out.println(String.format(Locale.ROOT, "BallPhysics: %d Kugeln, %.3f ms pro Bild",
+                BENCHMARK_BALLS, msPerFrame));
+    }
+}
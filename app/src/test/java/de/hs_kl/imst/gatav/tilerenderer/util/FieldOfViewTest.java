@@ -0,0 +1,67 @@
+package de.hs_kl.imst.gatav.tilerenderer.util;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Prüft Verdeckung durch Wände und die Symmetrie des Sichtbereichs auf zufälligen Rastern.
+ */
+public class FieldOfViewTest {
+
+    @Test
+    public void wallsBlockVisionButAreSeen() {
+        //  0123456
+        // 0.......
+        // 1...#...
+        // 2.......
+        // 3...@...
+        FieldOfView fov = new FieldOfView(7, 4);
+        fov.setOpaque(3, 1, true);
+        fov.compute(3, 3);
+
+        assertTrue(fov.isVisible(3, 3));
+        assertTrue(fov.isVisible(3, 2));
+        assertTrue(fov.isVisible(3, 1));    // Wand selbst
+        assertFalse(fov.isVisible(3, 0));   // dahinter
+        assertTrue(fov.isVisible(0, 3));
+        assertTrue(fov.isVisible(6, 0));
+
+        fov.setOpaque(3, 1, false);
+        fov.setOpaque(2, 3, true);
+        fov.compute(3, 3);
+        assertTrue(fov.isVisible(3, 0));
+        assertFalse(fov.isVisible(0, 3));
+        assertTrue(fov.isSeen(0, 3));       // aus der ersten Berechnung
+    }
+
+    @Test
+    public void visibilityIsSymmetric() {
+        Random random = new Random(7);
+        int width = 23, height = 17;
+        for(int round = 0; round < 20; round++) {
+            FieldOfView a = new FieldOfView(width, height);
+            FieldOfView b = new FieldOfView(width, height);
+            boolean[][] walls = new boolean[height][width];
+            for(int y = 0; y < height; y++)
+                for(int x = 0; x < width; x++) {
+                    walls[y][x] = random.nextInt(4) == 0;
+                    a.setOpaque(x, y, walls[y][x]);
+                    b.setOpaque(x, y, walls[y][x]);
+                }
+            for(int i = 0; i < 30; i++) {
+                int ax = random.nextInt(width), ay = random.nextInt(height);
+                int bx = random.nextInt(width), by = random.nextInt(height);
+                if(walls[ay][ax] || walls[by][bx]) continue;
+                a.compute(ax, ay);
+                b.compute(bx, by);
+                assertEquals("(" + ax + "," + ay + ") <-> (" + bx + "," + by + ")",
+                        a.isVisible(bx, by), b.isVisible(ax, ay));
+            }
+        }
+    }
+}
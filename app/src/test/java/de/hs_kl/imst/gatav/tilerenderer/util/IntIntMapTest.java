@@ -0,0 +1,132 @@
+package de.hs_kl.imst.gatav.tilerenderer.util;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Prüft Einfügen und Entfernen innerhalb von Sondierketten, auch wenn diese über das Ende des
+ * Arrays hinauslaufen (Backward Shift beim Entfernen), sowie das Verhalten gegenüber einer
+ * {@link HashMap} bei zufälligen Zugriffen.
+ */
+public class IntIntMapTest {
+    private static final int CAPACITY = 8;      // IntIntMap(4): 8 Fächer, wächst erst ab 5 Einträgen
+    private static final int MASK = CAPACITY - 1;
+
+    /**
+     * Die ersten count Schlüssel mit dem angegebenen Ausgangsfach
+     */
+    private static int[] keysWithHome(int home, int count) {
+        int[] keys = new int[count];
+        for(int key = 0, n = 0; n < count; key++)
+            if((IntIntMap.hash(key) & MASK) == home)
+                keys[n++] = key;
+        return keys;
+    }
+
+    @Test
+    public void removeShiftsChainAcrossArrayEnd() {
+        int[] last = keysWithHome(MASK, 3);   // Kette ab dem letzten Fach, läuft auf 0 und 1 über
+        int[] first = keysWithHome(0, 1);     // Ausgangsfach 0, landet hinter dem Überlauf
+        IntIntMap map = new IntIntMap(4);
+        map.put(last[0], 10);
+        map.put(last[1], 11);
+        map.put(first[0], 20);
+        map.put(last[2], 12);
+        assertEquals(4, map.size());
+
+        // Wert innerhalb der Kette ersetzen
+        map.put(last[2], 13);
+        assertEquals(4, map.size());
+        assertEquals(13, map.get(last[2], -1));
+
+        // Kopf der Kette entfernen: alle Nachfolger rücken über das Array-Ende zurück
+        assertEquals(10, map.remove(last[0], -1));
+        assertFalse(map.containsKey(last[0]));
+        assertEquals(11, map.get(last[1], -1));
+        assertEquals(20, map.get(first[0], -1));
+        assertEquals(13, map.get(last[2], -1));
+
+        // Element hinter dem Überlauf entfernen, der Rest der Kette bleibt erreichbar
+        assertEquals(20, map.remove(first[0], -1));
+        assertEquals(11, map.get(last[1], -1));
+        assertEquals(13, map.get(last[2], -1));
+        assertEquals(-1, map.remove(first[0], -1));
+        assertEquals(2, map.size());
+
+        // freigewordene Fächer werden wiederverwendet
+        map.put(last[0], 30);
+        map.put(first[0], 40);
+        assertEquals(30, map.get(last[0], -1));
+        assertEquals(40, map.get(first[0], -1));
+        assertEquals(4, map.size());
+    }
+
+    @Test
+    public void removeKeepsEntriesOfOtherChains() {
+        int[] a = keysWithHome(2, 3);
+        int[] b = keysWithHome(3, 2);
+        IntIntMap map = new IntIntMap(4);
+        // a[0], a[1] in 2 und 3; b[0] weicht auf 4 aus, a[2] auf 5
+        map.put(a[0], 1);
+        map.put(a[1], 2);
+        map.put(b[0], 3);
+        map.put(a[2], 4);
+        assertEquals(1, map.remove(a[0], -1));
+        assertEquals(2, map.get(a[1], -1));
+        assertEquals(3, map.get(b[0], -1));
+        assertEquals(4, map.get(a[2], -1));
+        assertEquals(2, map.remove(a[1], -1));
+        assertEquals(3, map.get(b[0], -1));
+        assertEquals(4, map.get(a[2], -1));
+        assertFalse(map.containsKey(b[1]));
+    }
+
+    @Test
+    public void matchesHashMap() {
+        Random random = new Random(11);
+        IntIntMap map = new IntIntMap(2);
+        HashMap<Integer, Integer> expected = new HashMap<>();
+        for(int i = 0; i < 200000; i++) {
+            // wenige Schlüssel, damit sich Ketten ständig bilden und auflösen
+            int key = random.nextInt(i < 100000 ? 12 : 200);
+            if(random.nextInt(3) == 0) {
+                Integer old = expected.remove(key);
+                assertEquals(old == null ? -1 : old, map.remove(key, -1));
+            } else {
+                int value = random.nextInt(1000);
+                expected.put(key, value);
+                map.put(key, value);
+            }
+            assertEquals(expected.size(), map.size());
+            if(i % 1000 == 0)
+                for(int k = 0; k < 200; k++) {
+                    Integer value = expected.get(k);
+                    assertEquals(value == null ? -1 : value, map.get(k, -1));
+                }
+        }
+        map.clear();
+        assertEquals(0, map.size());
+        for(int k = 0; k < 200; k++)
+            assertFalse(map.containsKey(k));
+    }
+
+    @Test
+    public void growsWithoutLosingEntries() {
+        IntIntMap map = new IntIntMap(1);
+        for(int key = 0; key < 5000; key += 3)
+            map.put(key, key * 2);
+        for(int key = 0; key < 5000; key++)
+            assertEquals(key % 3 == 0 ? key * 2 : -1, map.get(key, -1));
+        assertEquals(1667, map.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNegativeKeys() {
+        new IntIntMap().put(-1, 0);
+    }
+}
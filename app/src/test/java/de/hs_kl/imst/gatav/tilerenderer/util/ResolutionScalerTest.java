@@ -0,0 +1,66 @@
+package de.hs_kl.imst.gatav.tilerenderer.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Prüft Absenken und Anheben der Auflösung anhand der Zeichenzeit sowie die Hysterese.
+ */
+public class ResolutionScalerTest {
+    private static final long MS = 1000000L;
+
+    private final ResolutionScaler scaler = new ResolutionScaler(10f, ResolutionScaler.DEFAULT_LEVELS);
+
+    /**
+     * Zeichenzeit wie bei echtem Zeichnen mit der Pixelzahl (Quadrat der Stufe) skalieren
+     */
+    private int run(float fullResolutionMillis, int frames) {
+        int changes = 0;
+        for(int i = 0; i < frames; i++) {
+            float scale = scaler.getScale();
+            if(scaler.record((long) (fullResolutionMillis * scale * scale * MS)))
+                changes++;
+        }
+        return changes;
+    }
+
+    @Test
+    public void staysAtFullResolutionWithinBudget() {
+        assertEquals(0, run(8f, 1000));
+        assertEquals(1f, scaler.getScale(), 0);
+    }
+
+    @Test
+    public void lowersUntilWithinBudgetWithoutFlicker() {
+        run(16f, 1000);
+        float scale = scaler.getScale();
+        assertTrue(scale < 1f);
+        assertTrue(16f * scale * scale <= 10f);
+        // eingeschwungen: keine weiteren Wechsel
+        assertEquals(0, run(16f, 2000));
+    }
+
+    @Test
+    public void raisesAgainWithHeadroom() {
+        run(16f, 1000);
+        assertTrue(scaler.getLevel() > 0);
+        run(4f, 2000);
+        assertEquals(0, scaler.getLevel());
+    }
+
+    @Test
+    public void ignoresSingleSpikes() {
+        for(int i = 0; i < 1000; i++)
+            scaler.record((i % 30 == 0 ? 40 : 6) * MS);
+        assertEquals(0, scaler.getLevel());
+    }
+
+    @Test
+    public void disabledKeepsFullResolution() {
+        scaler.setEnabled(false);
+        assertEquals(0, run(40f, 1000));
+        assertEquals(1f, scaler.getScale(), 0);
+    }
+}
@@ -0,0 +1,74 @@
+package de.hs_kl.imst.gatav.tilerenderer.util;
+
+import android.content.ComponentCallbacks2;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Prüft die Freigabereihenfolge abhängig von Speicherwarnung und sichtbarer Spielfläche.
+ */
+public class ResourceManagerTest {
+    private final FakeResource cache = new FakeResource(1000);
+    private final FakeResource surface = new FakeResource(5000);
+
+    @After
+    public void unregister() {
+        ResourceManager manager = ResourceManager.get();
+        manager.unregister(cache);
+        manager.unregister(surface);
+        manager.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE);
+    }
+
+    @Test
+    public void releasesInPriorityOrder() {
+        ResourceManager manager = register();
+        manager.surfaceCreated();
+        assertEquals(6000, manager.getUsedBytes());
+
+        manager.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW);     // Spielfläche sichtbar
+        assertEquals(0, cache.bytes);
+        assertEquals(5000, surface.bytes);
+
+        manager.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN);
+        assertEquals(5000, surface.bytes);
+
+        manager.surfaceDestroyed();     // zuletzt Speichermangel: sofort freigeben
+        assertEquals(0, surface.bytes);
+        assertEquals(0, manager.getUsedBytes());
+    }
+
+    @Test
+    public void keepsSurfaceUntilBackground() {
+        ResourceManager manager = register();
+        manager.surfaceCreated();
+        manager.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN);
+        manager.surfaceDestroyed();
+        assertEquals(0, cache.bytes);
+        assertEquals(5000, surface.bytes);
+
+        manager.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_BACKGROUND);
+        assertEquals(0, surface.bytes);
+    }
+
+    private ResourceManager register() {
+        ResourceManager manager = ResourceManager.get();
+        manager.register(cache, ResourceManager.PRIORITY_CACHE);
+        manager.register(surface, ResourceManager.PRIORITY_SURFACE);
+        return manager;
+    }
+
+    private static class FakeResource implements ResourceManager.Resource {
+        long bytes;
+
+        FakeResource(long bytes) { this.bytes = bytes; }
+
+        @Override
+        public long getByteCount() { return bytes; }
+
+        @Override
+        public void release() { bytes = 0; }
+    }
+}
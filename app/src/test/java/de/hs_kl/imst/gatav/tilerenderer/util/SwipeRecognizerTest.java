@@ -0,0 +1,43 @@
+package de.hs_kl.imst.gatav.tilerenderer.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Prüft das Festlegen der Richtung während des Wischens anhand von Weg und Geschwindigkeit.
+ */
+public class SwipeRecognizerTest {
+    private final SwipeRecognizer recognizer = new SwipeRecognizer(20, 200);
+
+    @Test
+    public void commitsBeforeLift() {
+        recognizer.down(100, 100, 0);
+        assertNull(recognizer.move(110, 101, 8));     // noch zu kurz
+        assertEquals(Direction.RIGHT, recognizer.move(125, 102, 16));
+        assertEquals(16, recognizer.getCommitTime());
+        assertNull(recognizer.move(150, 103, 24));    // gleiche Richtung: kein neuer Zug
+        assertEquals(Direction.RIGHT, recognizer.getHeldDirection());
+
+        recognizer.up();
+        assertNull(recognizer.getHeldDirection());
+    }
+
+    @Test
+    public void ignoresSlowDrag() {
+        recognizer.down(100, 100, 0);
+        for(int i = 1; i <= 20; i++)       // 2 Pixel alle 16 ms = 125 Pixel/s
+            assertNull(recognizer.move(100, 100 + 2 * i, 16 * i));
+        assertNull(recognizer.getHeldDirection());
+    }
+
+    @Test
+    public void hookChangesDirectionWithoutLift() {
+        recognizer.down(100, 100, 0);
+        assertEquals(Direction.DOWN, recognizer.move(100, 130, 16));
+        assertNull(recognizer.move(110, 132, 24));
+        assertEquals(Direction.LEFT, recognizer.move(60, 131, 32));
+        assertEquals(Direction.LEFT, recognizer.getHeldDirection());
+    }
+}
@@ -0,0 +1,133 @@
+package de.hs_kl.imst.gatav.tilerenderer.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Prüft Auslösezeitpunkte über alle Ebenen des Timer-Rads gegen die erwarteten Zeitpunkte, das
+ * Abbrechen sowie die Unabhängigkeit von der Bildrate.
+ */
+public class TimerWheelTest {
+    private final TimerWheel wheel = new TimerWheel(4);
+
+    /**
+     * Timer, der seine Auslösezeit festhält
+     */
+    private class Probe implements Runnable {
+        final long deadline;
+        long firedAt = -1;
+
+        Probe(long delayMillis) {
+            long ticks = Math.max(1, (delayMillis + TimerWheel.TICK_MILLIS - 1) / TimerWheel.TICK_MILLIS);
+            deadline = wheel.getTimeMillis() + ticks * TimerWheel.TICK_MILLIS;
+        }
+
+        @Override
+        public void run() {
+            assertEquals(-1, firedAt);
+            firedAt = wheel.getTimeMillis();
+        }
+    }
+
+    @Test
+    public void firesAtDeadlineOnAllLevels() {
+        Random random = new Random(3);
+        ArrayList<Probe> probes = new ArrayList<>();
+        ArrayList<Integer> handles = new ArrayList<>();
+        ArrayList<Probe> cancelled = new ArrayList<>();
+        for(int round = 0; round < 2000; round++) {
+            // Verzögerungen von wenigen Millisekunden bis über eine Stunde (Ebenen 0 bis 3)
+            long delay = (long) Math.pow(10, random.nextDouble() * 6.7);
+            Probe probe = new Probe(delay);
+            probes.add(probe);
+            handles.add(wheel.schedule(probe, delay));
+            if(random.nextInt(10) == 0) {
+                int index = random.nextInt(probes.size());
+                if(wheel.cancel(handles.get(index)))
+                    cancelled.add(probes.get(index));
+            }
+            wheel.advance(random.nextFloat() * 0.2f);
+            assertEquals(wheel.size() == 0, wheel.getMillisUntilNext() < 0);
+        }
+        while(wheel.size() > 0)
+            wheel.advance(60f);
+
+        for(int i = 0; i < probes.size(); i++) {
+            Probe probe = probes.get(i);
+            if(cancelled.contains(probe))
+                assertEquals(-1, probe.firedAt);
+            else
+                assertEquals(probe.deadline, probe.firedAt);
+        }
+    }
+
+    @Test
+    public void nextEventIsLowerBound() {
+        Probe near = new Probe(250);
+        Probe far = new Probe(90000);
+        wheel.schedule(near, 250);
+        wheel.schedule(far, 90000);
+        assertEquals(250, wheel.getMillisUntilNext());
+        wheel.advance(0.25f);
+        assertTrue(near.firedAt > 0);
+        long next = wheel.getMillisUntilNext();
+        assertTrue(next > 0 && next <= 90000 - 250);
+        // höchstens so oft aufwachen, wie die Ebenen bis zum Ereignis durchlaufen werden
+        int wakeups = 0;
+        while(far.firedAt < 0) {
+            wheel.advance(Math.max(TimerWheel.TICK_MILLIS, wheel.getMillisUntilNext()) / 1000f);
+            wakeups++;
+        }
+        assertEquals(far.deadline, far.firedAt);
+        assertTrue(wakeups < 10);
+        assertEquals(-1, wheel.getMillisUntilNext());
+    }
+
+    @Test
+    public void tasksMayRescheduleAndCancel() {
+        final int[] fired = new int[1];
+        final int other = wheel.schedule(new Probe(1000), 1000);
+        wheel.schedule(new Runnable() {
+            @Override
+            public void run() {
+                fired[0]++;
+                wheel.cancel(other);
+                if(fired[0] < 5)
+                    wheel.schedule(this, 100);
+            }
+        }, 100);
+        wheel.advance(2f);
+        assertEquals(5, fired[0]);
+        assertFalse(wheel.isScheduled(other));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void independentOfFrameRate() {
+        int[] counts = new int[2];
+        float[] frameSeconds = {1f / 30f, 1f / 144f};
+        for(int f = 0; f < frameSeconds.length; f++) {
+            final TimerWheel wheel = new TimerWheel(1);
+            final int[] count = counts;
+            final int index = f;
+            wheel.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    count[index]++;
+                    wheel.schedule(this, 250);
+                }
+            }, 250);
+            for(float time = 0; time < 60f; time += frameSeconds[f])
+                wheel.advance(frameSeconds[f]);
+        }
+        // gleiche Anzahl Ereignisse bei 30 und 144 Bildern pro Sekunde (bis auf Rundung am Ende)
+        assertTrue(Math.abs(counts[0] - counts[1]) <= 1);
+        assertTrue(counts[0] >= 239);
+    }
+}
@@ -0,0 +1,75 @@
+package de.hs_kl.imst.gatav.tilerenderer.util;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Prüft, dass der Verbraucher nur vollständig geschriebene Zustände in aufsteigender Reihenfolge
+ * sieht, während Erzeuger und Verbraucher gleichzeitig laufen.
+ */
+public class TripleBufferTest {
+
+    /**
+     * Zustand aus zwei Feldern, die immer zusammen geschrieben werden
+     */
+    private static class State {
+        long a, b;
+    }
+
+    @Test
+    public void acquireReturnsLatestPublished() {
+        TripleBuffer<State> buffer = new TripleBuffer<>(new State(), new State(), new State());
+        State first = buffer.acquire();
+        assertFalse(buffer.isPending());
+
+        buffer.getBack().a = 1;
+        buffer.publish();
+        buffer.getBack().a = 2;
+        buffer.publish();
+        assertTrue(buffer.isPending());
+        assertEquals(2, buffer.acquire().a);
+        assertFalse(buffer.isPending());
+        assertSame(buffer.acquire(), buffer.acquire());
+        assertFalse(first == buffer.acquire());
+    }
+
+    @Test
+    public void consumerNeverSeesTornOrOlderStates() throws InterruptedException {
+        final TripleBuffer<State> buffer = new TripleBuffer<>(new State(), new State(), new State());
+        final long count = 2000000;
+        final AtomicReference<String> failure = new AtomicReference<>();
+
+        Thread consumer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                long last = 0;
+                while(last < count) {
+                    State state = buffer.acquire();
+                    long a = state.a, b = state.b;
+                    if(a != -b || a < last) {
+                        failure.set("a=" + a + " b=" + b + " zuletzt=" + last);
+                        return;
+                    }
+                    last = a;
+                }
+            }
+        });
+        consumer.start();
+        for(long i = 1; i <= count; i++) {
+            State state = buffer.getBack();
+            state.a = i;
+            state.b = -i;
+            buffer.publish();
+        }
+        consumer.join(10000);
+        assertFalse("Verbraucher hängt", consumer.isAlive());
+        assertNull(failure.get(), failure.get());
+    }
+}
@@ -0,0 +1,88 @@
+package de.hs_kl.imst.gatav.tilerenderer.world;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+import de.hs_kl.imst.gatav.tilerenderer.util.LevelData;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Prüft Nachladen um den Spieler, Einhalten der Speichergrenze und Zurückschreiben geänderter Chunks.
+ */
+public class ChunkCacheTest {
+    private static final int WIDTH = 53, HEIGHT = 41, CHUNK_SIZE = 8;
+
+    private File file;
+    private LevelData level;
+
+    @Before
+    public void setUp() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for(int y = 0; y < HEIGHT; y++) {
+            for(int x = 0; x < WIDTH; x++)
+                sb.append((x * 7 + y * 3) % 5 == 0 ? 'w' : 'f');
+            sb.append('\n');
+        }
+        level = LevelData.parse(new ByteArrayInputStream(sb.toString().getBytes(Charset.forName("UTF-8"))));
+        file = File.createTempFile("level", ".chunks");
+        ChunkFile.write(level, CHUNK_SIZE, file);
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void pagesAroundFocusWithinMemoryCap() throws IOException {
+        ChunkCache cache = new ChunkCache(ChunkFile.open(file), 0, 1);   // nur der Umkreis: 3x3 Chunks
+        assertEquals(ChunkCache.UNLOADED, cache.getCell(0, 0));
+
+        for(int x = 0; x < WIDTH; x += 5) {
+            int y = x * (HEIGHT - 1) / WIDTH;
+            cache.focus(x, y);
+            cache.awaitPaging();
+            assertTrue(cache.getResidentCount() <= 9);
+            for(int dy = -CHUNK_SIZE; dy <= CHUNK_SIZE; dy++)
+                for(int dx = -CHUNK_SIZE; dx <= CHUNK_SIZE; dx++) {
+                    int px = x + dx, py = y + dy;
+                    if(px < 0 || py < 0 || px >= WIDTH || py >= HEIGHT) continue;
+                    assertEquals(level.get(px, py), cache.getCell(px, py));
+                }
+        }
+        assertFalse(cache.isResident(0, 0));
+        cache.close();
+    }
+
+    @Test
+    public void modifiedChunksAreWrittenBackOnEviction() throws IOException {
+        ChunkCache cache = new ChunkCache(ChunkFile.open(file), 0, 0);
+        cache.focus(1, 1);
+        cache.awaitPaging();
+        assertEquals(level.get(2, 3), cache.getCell(2, 3));
+        assertTrue(cache.setCell(2, 3, 'x'));
+        assertEquals('x', cache.getCell(2, 3));
+
+        cache.focus(WIDTH - 1, HEIGHT - 1);     // verdrängt den ersten Chunk
+        cache.awaitPaging();
+        assertFalse(cache.isResident(2, 3));
+        assertFalse(cache.setCell(2, 3, 'f'));
+        cache.close();
+
+        cache = new ChunkCache(ChunkFile.open(file), 0, 0);
+        cache.focus(2, 3);
+        cache.awaitPaging();
+        assertEquals('x', cache.getCell(2, 3));
+        assertEquals(level.get(3, 3), cache.getCell(3, 3));
+        cache.close();
+    }
+}